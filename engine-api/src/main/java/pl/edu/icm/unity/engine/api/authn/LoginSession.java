@@ -16,6 +16,7 @@ import java.util.Set;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -98,6 +99,29 @@ public class LoginSession
 		this(id, started, null, maxInactivity, entityId, realm, rememberMeInfo, login1stFactor, login2ndFactor);
 	}
 
+	/**
+	 * Creates a deep copy of the given session.
+	 */
+	public LoginSession(LoginSession toClone)
+	{
+		this.id = toClone.id;
+		this.started = copy(toClone.started);
+		this.expires = copy(toClone.expires);
+		this.lastUsed = copy(toClone.lastUsed);
+		this.maxInactivity = toClone.maxInactivity;
+		this.entityId = toClone.entityId;
+		this.realm = toClone.realm;
+		this.outdatedCredentialId = toClone.outdatedCredentialId;
+		this.entityLabel = toClone.entityLabel;
+		this.authenticatedIdentities = new LinkedHashSet<>(toClone.authenticatedIdentities);
+		this.remoteIdP = toClone.remoteIdP;
+		this.rememberMeInfo = toClone.rememberMeInfo;
+		this.login1stFactor = toClone.login1stFactor;
+		this.login2ndFactor = toClone.login2ndFactor;
+		this.additionalAuthn = toClone.additionalAuthn;
+		this.sessionData = new HashMap<>(toClone.sessionData);
+	}
+
 	
 	public String getId()
 	{
@@ -305,7 +329,7 @@ public class LoginSession
 		
 		setId(token.getValue());
 		setStarted(token.getCreated());
-		setExpires(token.getExpires());
+		setExpires(getExpires(main, token));
 		setMaxInactivity(maxInactive);
 		setEntityId(token.getOwner());
 		setRealm(realm);
@@ -324,12 +348,28 @@ public class LoginSession
 		setSessionData(attrs);
 	}
 	
+	/**
+	 * Sessions stored by older versions have no expiration in contents, then the token's expiration 
+	 * is the session's absolute expiration.
+	 */
+	private static Date getExpires(ObjectNode main, Token token)
+	{
+		if (!main.has("expires"))
+			return token.getExpires();
+		JsonNode expires = main.get("expires");
+		return expires.isNull() ? null : new Date(expires.asLong());
+	}
+	
 	public byte[] getTokenContents()
 	{
 		ObjectNode main = Constants.MAPPER.createObjectNode();
 		main.put("realm", getRealm());
 		main.put("maxInactivity", getMaxInactivity());
 		main.put("lastUsed", getLastUsed().getTime());
+		if (getExpires() != null)
+			main.put("expires", getExpires().getTime());
+		else
+			main.putNull("expires");
 		if (isUsedOutdatedCredential())
 			main.put("outdatedCredentialId", getOutdatedCredentialId());
 		main.put("entityLabel", getEntityLabel());
@@ -357,6 +397,11 @@ public class LoginSession
 		return JsonUtil.serialize2Bytes(main);
 	}
 	
+	private static Date copy(Date date)
+	{
+		return date == null ? null : new Date(date.getTime());
+	}
+	
 	@Override
 	public String toString()
 	{
@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine.api.authn;
+
+/**
+ * Thrown when credential can not be verified now, as the server is overloaded. It is not an evidence
+ * of an invalid credential: the client should retry later and the attempt must not be counted as
+ * an unsuccessful authentication.
+ * 
+ * @author K. Benedyczak
+ */
+public class ServerBusyAuthenticationException extends AuthenticationException
+{
+	public ServerBusyAuthenticationException(String msg, Exception cause)
+	{
+		super(msg, cause);
+	}
+}
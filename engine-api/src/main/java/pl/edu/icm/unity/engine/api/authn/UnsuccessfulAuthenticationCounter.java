@@ -4,76 +4,99 @@
  */
 package pl.edu.icm.unity.engine.api.authn;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.Logger;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import pl.edu.icm.unity.base.utils.Log;
 
 /**
  * Counts unsuccessful authentication attempts per client's IP address.
  * Configured with maximum number of attempts. Signals if the access should be blocked.
- *  
- * Thread safe.
+ * <p>
+ * Unsuccessful attempts are forgotten when there was no other unsuccessful attempt from the same
+ * address for the {@link #FAILURES_MEMORY} time (or the block time if longer). The number of tracked
+ * addresses is bounded, the least recently updated ones are dropped first.
+ *
+ * Thread safe, checks of the blocked state don't lock.
  * @author K. Benedyczak
  */
 public class UnsuccessfulAuthenticationCounter
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER, UnsuccessfulAuthenticationCounter.class);
-	private int maxAttepts;
-	private long blockTime;
-	private Map<String, ClientInfo> accessMap;
-	
+	public static final long FAILURES_MEMORY = 3600000;
+	public static final int MAX_TRACKED_CLIENTS = 100000;
+	private final int maxAttepts;
+	private final long blockTime;
+	private final Cache<String, ClientInfo> accessMap;
+
 	public UnsuccessfulAuthenticationCounter(int maxAttepts, long blockTime)
+	{
+		this(maxAttepts, blockTime, MAX_TRACKED_CLIENTS);
+	}
+
+	UnsuccessfulAuthenticationCounter(int maxAttepts, long blockTime, int maxTrackedClients)
 	{
 		this.maxAttepts = maxAttepts;
 		this.blockTime = blockTime;
-		this.accessMap = new HashMap<>(64);
+		this.accessMap = CacheBuilder.newBuilder()
+				.expireAfterWrite(Math.max(blockTime, FAILURES_MEMORY), TimeUnit.MILLISECONDS)
+				.maximumSize(maxTrackedClients)
+				.build();
 	}
-	
-	public synchronized long getRemainingBlockedTime(String ip)
+
+	public long getRemainingBlockedTime(String ip)
 	{
-		ClientInfo clientInfo = accessMap.get(ip);
+		ClientInfo clientInfo = accessMap.getIfPresent(ip);
 		if (clientInfo == null || clientInfo.blockedStartTime == -1)
 			return 0;
 		long blockedFor = System.currentTimeMillis() - clientInfo.blockedStartTime;
 		if (blockedFor >= blockTime)
 		{
-			accessMap.remove(ip);
+			accessMap.asMap().remove(ip, clientInfo);
 			return 0;
 		}
 		return blockTime - blockedFor;
 	}
-	
-	public synchronized void unsuccessfulAttempt(String ip)
+
+	public void unsuccessfulAttempt(String ip)
 	{
-		ClientInfo clientInfo = accessMap.get(ip);
-		if (clientInfo == null)
-		{
-			clientInfo = new ClientInfo();
-			accessMap.put(ip, clientInfo);
-		}
-		clientInfo.unsuccessfulAttempts++;
+		ClientInfo clientInfo = accessMap.asMap().compute(ip, (key, previous) -> 
+				(previous == null ? ClientInfo.NO_ATTEMPTS : previous).withNextAttempt(maxAttepts));
 		log.trace("New unsuccessful attempts count for " + ip + " is " + clientInfo.unsuccessfulAttempts);
-		if (clientInfo.unsuccessfulAttempts >= maxAttepts)
-		{
+		if (clientInfo.unsuccessfulAttempts == maxAttepts)
 			log.info("Blocking access for IP " + ip + " after " + clientInfo.unsuccessfulAttempts +
 					" unsuccessful login attempts for " + blockTime + "ms");
-			clientInfo.blockedStartTime = System.currentTimeMillis();
-		}
 	}
-	
-	public synchronized void successfulAttempt(String ip)
+
+	public void successfulAttempt(String ip)
 	{
 		log.trace("Cleaning unsuccessful attempts for " + ip);
-		accessMap.remove(ip);
+		accessMap.invalidate(ip);
 	}
-	
-	
+
+
 	private static class ClientInfo
 	{
-		private int unsuccessfulAttempts = 0;
-		private long blockedStartTime = -1;
+		private static final ClientInfo NO_ATTEMPTS = new ClientInfo(0, -1);
+		
+		private final int unsuccessfulAttempts;
+		private final long blockedStartTime;
+
+		ClientInfo(int unsuccessfulAttempts, long blockedStartTime)
+		{
+			this.unsuccessfulAttempts = unsuccessfulAttempts;
+			this.blockedStartTime = blockedStartTime;
+		}
+
+		ClientInfo withNextAttempt(int maxAttepts)
+		{
+			int attempts = unsuccessfulAttempts + 1;
+			return new ClientInfo(attempts, attempts >= maxAttepts ?
+					System.currentTimeMillis() : blockedStartTime);
+		}
 	}
 }
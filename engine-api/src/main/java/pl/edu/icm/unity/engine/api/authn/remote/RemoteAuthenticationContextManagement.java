@@ -4,71 +4,76 @@
  */
 package pl.edu.icm.unity.engine.api.authn.remote;
 
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import pl.edu.icm.unity.exceptions.WrongArgumentException;
 
 /**
  * Maintains a map of remote authentication contexts matched by some string key.
- * The contexts are matched by the random relay state. The in-memory store of contexts is purged, so the stale 
- * contexts are automatically removed after a timeout.
+ * The contexts are matched by the random relay state. Each context expires after a timeout counted
+ * from its creation. The number of stored contexts is bounded, so that abandoned logins can not exhaust
+ * memory: when the limit is reached the least recently used contexts are dropped.
  * <p>
  * This class is not anyhow persisted, so after restart all information is lost. This is intended.
- * <p> 
- * Naturally this class is thread safe. 
+ * Contexts are also not shared between cluster nodes, as they hold references to live objects
+ * of the node which started the authentication.
+ * <p>
+ * Naturally this class is thread safe, and does not serialize concurrent authentications.
 
  * @author K. Benedyczak
  */
 public class RemoteAuthenticationContextManagement<T extends RemoteAuthnState>
 {
 	public static final long MAX_TTL = 15*3600*1000;
-	public static final long CLEANUP_INTERVAL = 3600*1000;
-	
-	private Map<String, T> contexts = new HashMap<String, T>();
-	private Date lastCleanup = new Date();
-	
-	public synchronized void addAuthnContext(T context)
+	public static final long MAX_CONTEXTS = 100000;
+
+	private final long ttl;
+	private final Cache<String, T> contexts;
+
+	public RemoteAuthenticationContextManagement()
+	{
+		this(MAX_TTL, MAX_CONTEXTS);
+	}
+
+	RemoteAuthenticationContextManagement(long ttl, long maxContexts)
+	{
+		this.ttl = ttl;
+		this.contexts = CacheBuilder.newBuilder()
+				.expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+				.maximumSize(maxContexts)
+				.build();
+	}
+
+	public void addAuthnContext(T context)
 	{
-		cleanup();
 		String relayState = context.getRelayState();
-		if (contexts.containsKey(relayState))
+		if (contexts.asMap().putIfAbsent(relayState, context) != null)
 			throw new IllegalArgumentException("Ups, the relay state " + relayState + " is already assigned");
-		
-		contexts.put(relayState, context);
 	}
-	
-	public synchronized T getAuthnContext(String relayState) throws WrongArgumentException
+
+	public T getAuthnContext(String relayState) throws WrongArgumentException
 	{
-		cleanup();
-		T ret = contexts.get(relayState);
+		T ret = contexts.getIfPresent(relayState);
+		if (ret != null && isExpired(ret))
+		{
+			contexts.asMap().remove(relayState, ret);
+			ret = null;
+		}
 		if (ret == null)
 			throw new WrongArgumentException("The relay state " + relayState + " is not assigned");
 		return ret;
 	}
-	
-	public synchronized void removeAuthnContext(String relayState)
+
+	public void removeAuthnContext(String relayState)
 	{
-		contexts.remove(relayState);
+		contexts.invalidate(relayState);
 	}
-	
-	private void cleanup()
+
+	private boolean isExpired(T context)
 	{
-		long now = System.currentTimeMillis();
-		if (new Date(now-CLEANUP_INTERVAL).before(lastCleanup))
-			return;
-		
-		lastCleanup = new Date(now);
-		Date oldestAllowed = new Date(now - MAX_TTL);
-		
-		Iterator<T> it = contexts.values().iterator();
-		while (it.hasNext())
-		{
-			T ctx = it.next();
-			if (ctx.getCreationTime().before(oldestAllowed))
-				it.remove();
-		}
+		return context.getCreationTime().getTime() + ttl < System.currentTimeMillis();
 	}
 }
@@ -52,6 +52,7 @@ public class UnityServerConfiguration extends UnityFilePropertiesHelper
 	public static final String PROFILE_PRODUCTION = "production";
 	
 	public enum LogoutMode {internalOnly, internalAndSyncPeers, internalAndAsyncPeers}
+	public enum ReplayCacheMode {local, shared}
 	private static final Logger log = Log.getLegacyLogger(Log.U_SERVER_CFG, UnityServerConfiguration.class);
 	public static final String CONFIGURATION_FILE = "conf/unityServer.conf";
 	public static final String DEFAULT_EMAIL_CHANNEL = "default_email";
@@ -76,6 +77,7 @@ public class UnityServerConfiguration extends UnityFilePropertiesHelper
 	public static final String CONFIG_ONLY_ERA_CONTROL = "fullyRecreateEndpointsAROnStartup";
 	private static final String RECREATE_ENDPOINTS_ON_STARTUP = "recreateEndpointsOnStartup";
 	public static final String LOGOUT_MODE = "logoutMode";
+	public static final String SAML_REPLAY_CACHE = "samlReplayCache";
 	public static final String DEFAULT_WEB_CONTENT_PATH = "defaultWebContentDirectory";
 	public static final String MESSAGES_DIRECTORY = "i18nMessagesDirectory";
 	public static final String THEME = "defaultTheme";
@@ -234,6 +236,11 @@ public class UnityServerConfiguration extends UnityFilePropertiesHelper
 				+ "+internalAndAsyncPeers+ will logout remote session participants also using asynchronous"
 				+ " protocols (with web browser redirects) if needed. This last option is risky as it may"
 				+ " happen that a faulty peer won't redirect the web agent back."));
+		defaults.put(SAML_REPLAY_CACHE, new PropertyMD(ReplayCacheMode.local).setCategory(mainCat).
+				setDescription("Controls where identifiers of received SAML requests and assertions are "
+				+ "remembered, to detect replay attacks. +local+ keeps them in memory of this server only. "
+				+ "+shared+ stores them in the database, so that a message replayed to another node of "
+				+ "a cluster is also detected, at the cost of a database write per received message."));
 		defaults.put(THREAD_POOL_SIZE, new PropertyMD("4").setCategory(mainCat).setDescription(
 				"Number of threads used by internal processes of the server. HTTP server threads use a separate pool."));
 		defaults.put(INITIALIZERS, new PropertyMD().setList(true).setCategory(mainCat).setDescription(
@@ -464,10 +471,10 @@ public class UnityServerConfiguration extends UnityFilePropertiesHelper
 						+ "execution time) and therefore by defualt is disabled."));
 		
 		defaults.put(AUTHZ_CACHE_MS, new PropertyMD("2000").setCategory(mainCat).
-				setDescription("Defines for how long (in ms) authorization roles are cached. "
-						+ "Increasing this value improves server overall performance, "
-						+ "but change of authrization role may not be fully recognized "
-						+ "by the system untile the time defined here passes. "
+				setDescription("Defines for how long (in ms) the index of authorization roles is cached. "
+						+ "Role changes performed on this server are recognized immediately, "
+						+ "but changes performed on other cluster nodes may not be recognized "
+						+ "by the system until the time defined here passes. "
 						+ "Set to 0 to disable cache."));
 
 		defaults.put(EXTERNAL_NOTIFICATION_PFX, new PropertyMD().setStructuredList(false).setCategory(mainCat)
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine.api.authn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestUnsuccessfulAuthenticationCounter
+{
+	@Test
+	public void shouldBlockAfterMaxAttempts()
+	{
+		UnsuccessfulAuthenticationCounter counter = new UnsuccessfulAuthenticationCounter(2, 100000);
+		
+		counter.unsuccessfulAttempt("1.1.1.1");
+		assertEquals(0, counter.getRemainingBlockedTime("1.1.1.1"));
+		counter.unsuccessfulAttempt("1.1.1.1");
+		
+		assertTrue(counter.getRemainingBlockedTime("1.1.1.1") > 0);
+		assertEquals(0, counter.getRemainingBlockedTime("2.2.2.2"));
+	}
+
+	@Test
+	public void shouldUnblockAfterBlockTime() throws Exception
+	{
+		UnsuccessfulAuthenticationCounter counter = new UnsuccessfulAuthenticationCounter(1, 1);
+		counter.unsuccessfulAttempt("1.1.1.1");
+		
+		Thread.sleep(10);
+		
+		assertEquals(0, counter.getRemainingBlockedTime("1.1.1.1"));
+	}
+
+	@Test
+	public void shouldResetAttemptsAfterSuccess()
+	{
+		UnsuccessfulAuthenticationCounter counter = new UnsuccessfulAuthenticationCounter(2, 100000);
+		counter.unsuccessfulAttempt("1.1.1.1");
+		
+		counter.successfulAttempt("1.1.1.1");
+		counter.unsuccessfulAttempt("1.1.1.1");
+		
+		assertEquals(0, counter.getRemainingBlockedTime("1.1.1.1"));
+	}
+
+	@Test
+	public void shouldForgetLeastRecentClientsOverLimit()
+	{
+		UnsuccessfulAuthenticationCounter counter = new UnsuccessfulAuthenticationCounter(1, 100000, 1);
+		counter.unsuccessfulAttempt("1.1.1.1");
+		
+		counter.unsuccessfulAttempt("2.2.2.2");
+		
+		assertEquals(0, counter.getRemainingBlockedTime("1.1.1.1"));
+		assertTrue(counter.getRemainingBlockedTime("2.2.2.2") > 0);
+	}
+}
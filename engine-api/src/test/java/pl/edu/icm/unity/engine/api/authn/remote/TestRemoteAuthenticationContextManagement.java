@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine.api.authn.remote;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import pl.edu.icm.unity.exceptions.WrongArgumentException;
+
+public class TestRemoteAuthenticationContextManagement
+{
+	@Test
+	public void shouldReturnAddedContext() throws Exception
+	{
+		RemoteAuthenticationContextManagement<RemoteAuthnState> contexts = 
+				new RemoteAuthenticationContextManagement<>();
+		RemoteAuthnState state = new RemoteAuthnState();
+		
+		contexts.addAuthnContext(state);
+		
+		assertSame(state, contexts.getAuthnContext(state.getRelayState()));
+	}
+
+	@Test
+	public void shouldNotReturnRemovedContext()
+	{
+		RemoteAuthenticationContextManagement<RemoteAuthnState> contexts = 
+				new RemoteAuthenticationContextManagement<>();
+		RemoteAuthnState state = new RemoteAuthnState();
+		contexts.addAuthnContext(state);
+		
+		contexts.removeAuthnContext(state.getRelayState());
+		
+		assertNotAssigned(contexts, state.getRelayState());
+	}
+
+	@Test
+	public void shouldExpireContext() throws Exception
+	{
+		RemoteAuthenticationContextManagement<RemoteAuthnState> contexts = 
+				new RemoteAuthenticationContextManagement<>(1, 100);
+		RemoteAuthnState state = new RemoteAuthnState();
+		contexts.addAuthnContext(state);
+		
+		Thread.sleep(10);
+		
+		assertNotAssigned(contexts, state.getRelayState());
+	}
+
+	@Test
+	public void shouldLimitNumberOfContexts() throws Exception
+	{
+		RemoteAuthenticationContextManagement<RemoteAuthnState> contexts = 
+				new RemoteAuthenticationContextManagement<>(100000, 1);
+		RemoteAuthnState first = new RemoteAuthnState();
+		RemoteAuthnState second = new RemoteAuthnState();
+		contexts.addAuthnContext(first);
+		
+		contexts.addAuthnContext(second);
+		
+		assertNotAssigned(contexts, first.getRelayState());
+		assertSame(second, contexts.getAuthnContext(second.getRelayState()));
+	}
+
+	@Test
+	public void shouldNotAddContextTwice()
+	{
+		RemoteAuthenticationContextManagement<RemoteAuthnState> contexts = 
+				new RemoteAuthenticationContextManagement<>();
+		RemoteAuthnState state = new RemoteAuthnState();
+		contexts.addAuthnContext(state);
+		
+		try
+		{
+			contexts.addAuthnContext(state);
+			fail("Context was added twice");
+		} catch (IllegalArgumentException e)
+		{
+			//ok, expected
+		}
+	}
+	
+	private void assertNotAssigned(RemoteAuthenticationContextManagement<RemoteAuthnState> contexts, 
+			String relayState)
+	{
+		try
+		{
+			contexts.getAuthnContext(relayState);
+			fail("Context is available");
+		} catch (WrongArgumentException e)
+		{
+			//ok, expected
+		}
+	}
+}
@@ -51,12 +51,14 @@ public class AttributeClassManagementImpl implements AttributeClassManagement
 	private EntityResolver idResolver;
 	private InternalAuthorizationManager authz;
 	private AttributesHelper attributesHelper;
+	private EffectiveAttributesCache effectiveAttributesCache;
 
 	
 	@Autowired
 	public AttributeClassManagementImpl(AttributeClassDB acDB, AttributeDAO dbAttributes,
 			IdentityHelper identityHelper, GroupDAO dbGroups, EntityResolver idResolver,
-			InternalAuthorizationManager authz, AttributesHelper attributesHelper)
+			InternalAuthorizationManager authz, AttributesHelper attributesHelper,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.acDB = acDB;
 		this.dbAttributes = dbAttributes;
@@ -65,6 +67,7 @@ public class AttributeClassManagementImpl implements AttributeClassManagement
 		this.idResolver = idResolver;
 		this.authz = authz;
 		this.attributesHelper = attributesHelper;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	@Override
@@ -86,6 +89,7 @@ public class AttributeClassManagementImpl implements AttributeClassManagement
 
 		AttributeClassHelper.cleanupClass(clazz, allClasses);
 		acDB.create(clazz);
+		effectiveAttributesCache.invalidateAll();
 	}
 
 	@Override
@@ -118,6 +122,7 @@ public class AttributeClassManagementImpl implements AttributeClassManagement
 					groupsUsing.toString());
 
 		acDB.delete(id);
+		effectiveAttributesCache.invalidateAll();
 	}
 
 	@Override
@@ -143,6 +148,7 @@ public class AttributeClassManagementImpl implements AttributeClassManagement
 			checkIfUnused(acName, allClasses);
 
 		acDB.update(updated);
+		effectiveAttributesCache.invalidateAll();
 	}
 	
 	@Override
@@ -49,6 +49,7 @@ public class AttributeTypeManagementImpl implements AttributeTypeManagement
 	private InternalAuthorizationManager authz;
 	private AttributeTypeHelper atHelper;
 	private AttributesHelper aHelper;
+	private EffectiveAttributesCache effectiveAttributesCache;
 
 
 	@Autowired
@@ -57,7 +58,8 @@ public class AttributeTypeManagementImpl implements AttributeTypeManagement
 			IdentityTypeDAO dbIdentities,
 			AttributeMetadataProvidersRegistry atMetaProvidersRegistry,
 			InternalAuthorizationManager authz, AttributeTypeHelper atHelper,
-			AttributesHelper aHelper)
+			AttributesHelper aHelper,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.attrValueTypesReg = attrValueTypesReg;
 		this.attributeTypeDAO = attributeTypeDAO;
@@ -67,6 +69,7 @@ public class AttributeTypeManagementImpl implements AttributeTypeManagement
 		this.authz = authz;
 		this.atHelper = atHelper;
 		this.aHelper = aHelper;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	@Override
@@ -94,6 +97,7 @@ public class AttributeTypeManagementImpl implements AttributeTypeManagement
 		Collection<AttributeType> existingAts = attributeTypeDAO.getAll();
 		verifyATMetadata(toAdd, existingAts);
 		attributeTypeDAO.create(toAdd);
+		effectiveAttributesCache.invalidateAll();
 	}
 
 	
@@ -122,6 +126,7 @@ public class AttributeTypeManagementImpl implements AttributeTypeManagement
 		verifyAttributesConsistencyWithUpdatedType(at);
 		
 		attributeTypeDAO.update(at);
+		effectiveAttributesCache.invalidateAll();
 		if (!at.getValueSyntax().equals(atExisting.getValueSyntax()))
 			clearAttributeExtractionFromIdentities(at.getName());
 	}
@@ -166,6 +171,7 @@ public class AttributeTypeManagementImpl implements AttributeTypeManagement
 	{
 		setModifiableSettingsOfImmutableAT(at, existing);
 		attributeTypeDAO.update(existing);
+		effectiveAttributesCache.invalidateAll();
 	}
 	
 	private void verifyATMetadata(AttributeType at, Collection<AttributeType> existingAts) 
@@ -215,6 +221,7 @@ public class AttributeTypeManagementImpl implements AttributeTypeManagement
 			throw new IllegalAttributeTypeException("The attribute type " + id + " has instances");
 		
 		attributeTypeDAO.delete(id);
+		effectiveAttributesCache.invalidateAll();
 		clearAttributeExtractionFromIdentities(id);
 	}
 
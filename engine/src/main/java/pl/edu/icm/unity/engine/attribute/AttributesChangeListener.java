@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine.attribute;
+
+/**
+ * Receives notifications about changes of data which influence attributes of entities. Notifications are
+ * delivered by {@link EffectiveAttributesCache} twice: when the change is performed and after the modifying
+ * transaction is finished. Implementations must be fast and must not access the database.
+ * 
+ * @author K. Benedyczak
+ */
+public interface AttributesChangeListener
+{
+	/**
+	 * Entity's attributes, identities or group memberships were changed or the entity was removed.
+	 */
+	void entityChanged(long entityId);
+	
+	/**
+	 * Group's attribute statements were changed or the group was removed.
+	 */
+	void groupChanged(String group);
+	
+	/**
+	 * Data of any entity might have been changed.
+	 */
+	void allChanged();
+}
@@ -6,6 +6,7 @@ package pl.edu.icm.unity.engine.attribute;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -71,6 +72,7 @@ public class AttributesHelper
 	private AttributeStatementProcessor statementsHelper;
 	private AttributeTypeHelper atHelper;
 	private GroupDAO groupDAO;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 	
 	
@@ -81,7 +83,7 @@ public class AttributesHelper
 			AttributeTypeDAO attributeTypeDAO, AttributeDAO attributeDAO,
 			MembershipDAO membershipDAO, AttributeStatementProcessor statementsHelper,
 			AttributeTypeHelper atHelper, AttributeClassUtil acUtil,
-			GroupDAO groupDAO)
+			GroupDAO groupDAO, EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.atMetaProvidersRegistry = atMetaProvidersRegistry;
 		this.acDB = acDB;
@@ -95,11 +97,13 @@ public class AttributesHelper
 		this.atHelper = atHelper;
 		this.acUtil = acUtil;
 		this.groupDAO = groupDAO;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	/**
 	 * See {@link #getAllAttributes(long, String, String, SqlSession)}, the only difference is that the result
 	 * is returned in a map indexed with groups (1st key) and attribute names (submap key).
+	 * Effective attributes are served from {@link EffectiveAttributesCache} when possible.
 	 * @param entityId
 	 * @param groupPath
 	 * @param attributeTypeName
@@ -111,28 +115,62 @@ public class AttributesHelper
 			boolean effective, String attributeTypeName) 
 			throws EngineException
 	{
-		Map<String, Map<String, AttributeExt>> directAttributesByGroup = getAllEntityAttributesMap(entityId);
 		if (!effective)
 		{
+			Map<String, Map<String, AttributeExt>> directAttributesByGroup = getAllEntityAttributesMap(entityId);
 			filterMap(directAttributesByGroup, groupPath, attributeTypeName);
 			return directAttributesByGroup;
 		}
+		long stamp = effectiveAttributesCache.getStamp(entityId);
 		Set<String> allGroups = membershipDAO.getEntityMembershipSimple(entityId);
 		List<String> groups = groupPath == null ? new ArrayList<>(allGroups) : Lists.newArrayList(groupPath);
 		Map<String, Map<String, AttributeExt>> ret = new HashMap<>();
 		
-		Map<String, AttributesClass> allClasses = acDB.getAllAsMap();
-		
-		List<Identity> identities = identityDAO.getByEntity(entityId);
+		Map<String, Map<String, AttributeExt>> directAttributesByGroup = null;
+		Map<String, AttributesClass> allClasses = null;
+		List<Identity> identities = null;
 		for (String group: groups)
 		{
-			Map<String, AttributeExt> inGroup = statementsHelper.getEffectiveAttributes(identities, 
-					group, attributeTypeName, allGroups, directAttributesByGroup, allClasses,
-					groupDAO::get, attributeTypeDAO::get);
+			Map<String, AttributeExt> inGroup = effectiveAttributesCache.get(entityId, group);
+			if (inGroup == null)
+			{
+				if (directAttributesByGroup == null)
+				{
+					directAttributesByGroup = getAllEntityAttributesMap(entityId);
+					allClasses = acDB.getAllAsMap();
+					identities = identityDAO.getByEntity(entityId);
+				}
+				inGroup = computeEffectiveAttributes(entityId, group, identities, allGroups, 
+						directAttributesByGroup, allClasses, stamp);
+			}
+			if (attributeTypeName != null)
+				inGroup.keySet().retainAll(Collections.singleton(attributeTypeName));
 			ret.put(group, inGroup);
 		}
 		return ret;
 	}
+	
+	/**
+	 * Computes all effective attributes in a group and caches them. Groups used in computation are
+	 * recorded, so that the cached entry can be invalidated when any of them changes.
+	 */
+	private Map<String, AttributeExt> computeEffectiveAttributes(long entityId, String group, 
+			List<Identity> identities, Set<String> allGroups, 
+			Map<String, Map<String, AttributeExt>> directAttributesByGroup,
+			Map<String, AttributesClass> allClasses, long stamp)
+	{
+		Set<String> usedGroups = new HashSet<>();
+		Map<String, AttributeExt> inGroup = statementsHelper.getEffectiveAttributes(identities, 
+				group, null, allGroups, directAttributesByGroup, allClasses,
+				groupPath -> 
+				{
+					usedGroups.add(groupPath);
+					return groupDAO.get(groupPath);
+				}, 
+				attributeTypeDAO::get);
+		effectiveAttributesCache.put(entityId, group, inGroup, usedGroups, stamp);
+		return inGroup;
+	}
 
 	public Map<String, AttributeExt> getAllAttributesAsMapOneGroup(long entityId, String groupPath) 
 			throws EngineException
@@ -367,6 +405,7 @@ public class AttributesHelper
 			param.getAttribute().setCreationTs(updated.getCreationTs());
 			attributeDAO.updateAttribute(param);
 		}
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 	
 	/**
@@ -527,6 +566,7 @@ public class AttributesHelper
 			sAttr.getAttribute().setCreationTs(existing.get(0).getCreationTs());
 			attributeDAO.updateAttribute(sAttr);
 		}
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 	
 	/**
@@ -538,6 +578,7 @@ public class AttributesHelper
 	{
 		StoredAttribute sAttr = toStoredAttribute(toCreate, entityId);
 		attributeDAO.create(sAttr);
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 
 	private StoredAttribute toStoredAttribute(Attribute toCreate, long entityId)
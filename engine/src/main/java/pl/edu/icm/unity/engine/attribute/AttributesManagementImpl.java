@@ -59,6 +59,7 @@ public class AttributesManagementImpl implements AttributesManagement
 	private TransactionalRunner txRunner;
 	private AttributeMetadataProvidersRegistry atMetaProvidersRegistry;
 	private AdditionalAuthenticationService additionalAuthnService;
+	private EffectiveAttributesCache effectiveAttributesCache;
 
 	@Autowired
 	public AttributesManagementImpl(AttributeClassUtil acUtil,
@@ -67,7 +68,8 @@ public class AttributesManagementImpl implements AttributesManagement
 			AttributesHelper attributesHelper, EmailConfirmationManager confirmationManager,
 			TransactionalRunner txRunner,
 			AttributeMetadataProvidersRegistry atMetaProvidersRegistry,
-			AdditionalAuthenticationService repeatedAuthnService)
+			AdditionalAuthenticationService repeatedAuthnService,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.acUtil = acUtil;
 		this.attributeTypeDAO = attributeTypeDAO;
@@ -79,6 +81,7 @@ public class AttributesManagementImpl implements AttributesManagement
 		this.txRunner = txRunner;
 		this.atMetaProvidersRegistry = atMetaProvidersRegistry;
 		this.additionalAuthnService = repeatedAuthnService;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	
@@ -132,10 +135,6 @@ public class AttributesManagementImpl implements AttributesManagement
 
 			attributesHelper.addAttribute(entityId, attribute, at, allowUpdate, fullAuthz);
 		});
-		//this is merely to propagate the change to authz layer more quickly in typical situations. It does 
-		// not guarantee that authz cache is cleared after all possible situations when roles are be altered. 
-		if (RoleAttributeTypeProvider.AUTHORIZATION_ROLE.equals(attribute.getName()))
-			authz.clearCache();
 		if (sendConfirmations)
 			confirmationManager.sendVerificationQuietNoTx(entity, attribute, false);
 	}
@@ -209,6 +208,7 @@ public class AttributesManagementImpl implements AttributesManagement
 		checkIfMandatory(entityId, groupPath, attributeTypeId);
 		
 		dbAttributes.deleteAttribute(attributeTypeId, entityId, groupPath);
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 
 	@Override
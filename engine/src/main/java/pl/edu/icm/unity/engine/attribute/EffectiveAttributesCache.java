@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.engine.attribute;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import pl.edu.icm.unity.store.api.tx.TxManager;
+import pl.edu.icm.unity.types.basic.AttributeExt;
+import pl.edu.icm.unity.types.basic.Group;
+
+/**
+ * Caches effective attributes of entities, per (entity, group). Entry is invalidated when any data used
+ * to compute it is changed: entity's attributes, identities or memberships, attribute statements of any group
+ * which was consulted during computation or attribute types and classes.
+ * <p>
+ * Code modifying the above data must call one of the invalidate methods. As modifications are done in
+ * transactions, invalidation is repeated after the modifying transaction is finished. Entries computed
+ * concurrently with an invalidation are not cached. Finally entries expire after a short time, what limits
+ * the effects of modifications performed on other cluster nodes.
+ * <p>
+ * Invalidations are propagated to registered {@link AttributesChangeListener}s, so that other caches
+ * of attribute derived data can be updated incrementally.
+ *
+ * @author K. Benedyczak
+ */
+@Component
+public class EffectiveAttributesCache
+{
+	private static final long TTL = 60000;
+	private static final int MAX_ENTITIES = 10000;
+	private static final int STAMP_STRIPES = 64;
+
+	private final Cache<Long, ConcurrentMap<String, CachedAttributes>> cache = CacheBuilder.newBuilder()
+			.expireAfterWrite(TTL, TimeUnit.MILLISECONDS)
+			.maximumSize(MAX_ENTITIES)
+			.build();
+	private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+	private final TxManager txManager;
+	private final List<AttributesChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+	@Autowired
+	public EffectiveAttributesCache(TxManager txManager)
+	{
+		this.txManager = txManager;
+	}
+
+	/**
+	 * @return stamp which must be obtained before starting computation of a new entry and then
+	 * given to {@link #put(long, String, Map, Set, long)}
+	 */
+	long getStamp(long entityId)
+	{
+		return stamps.get(getStripe(entityId));
+	}
+
+	/**
+	 * @return a copy of cached effective attributes of the entity in the group or null if not cached
+	 */
+	Map<String, AttributeExt> get(long entityId, String group)
+	{
+		ConcurrentMap<String, CachedAttributes> entityEntries = cache.getIfPresent(entityId);
+		CachedAttributes cached = entityEntries == null ? null : entityEntries.get(group);
+		return cached == null ? null : copy(cached.attributes);
+	}
+
+	/**
+	 * Caches effective attributes, unless entity's data was invalidated after the stamp was obtained.
+	 * @param usedGroups groups whose attribute statements were used to compute the attributes
+	 */
+	void put(long entityId, String group, Map<String, AttributeExt> attributes, Set<String> usedGroups,
+			long stamp)
+	{
+		if (getStamp(entityId) != stamp)
+			return;
+		ConcurrentMap<String, CachedAttributes> entityEntries;
+		try
+		{
+			entityEntries = cache.get(entityId, ConcurrentHashMap::new);
+		} catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Can not create cache entry", e);
+		}
+		entityEntries.put(group, new CachedAttributes(copy(attributes), usedGroups));
+		if (getStamp(entityId) != stamp)
+			entityEntries.remove(group);
+	}
+
+	public void addListener(AttributesChangeListener listener)
+	{
+		listeners.add(listener);
+	}
+	
+	/**
+	 * To be called after entity's attributes, identities or group memberships were changed or
+	 * when the entity was removed.
+	 */
+	public void invalidateEntity(long entityId)
+	{
+		invalidateNowAndAfterTransaction(() -> invalidateEntityNow(entityId));
+	}
+
+	/**
+	 * To be called after group's attribute statements were changed or when the group was removed.
+	 * Entries depending on the group's children are also invalidated.
+	 */
+	public void invalidateGroup(String group)
+	{
+		invalidateNowAndAfterTransaction(() -> invalidateGroupNow(group));
+	}
+
+	/**
+	 * To be called after modifications which can influence effective attributes of all entities,
+	 * as changes of attribute types or attribute classes.
+	 */
+	public void invalidateAll()
+	{
+		invalidateNowAndAfterTransaction(this::invalidateAllNow);
+	}
+
+	private void invalidateNowAndAfterTransaction(Runnable invalidation)
+	{
+		invalidation.run();
+		txManager.addPostCompletionAction(invalidation);
+	}
+
+	private void invalidateEntityNow(long entityId)
+	{
+		stamps.incrementAndGet(getStripe(entityId));
+		cache.invalidate(entityId);
+		listeners.forEach(listener -> listener.entityChanged(entityId));
+	}
+
+	private void invalidateGroupNow(String group)
+	{
+		incrementAllStamps();
+		for (ConcurrentMap<String, CachedAttributes> entityEntries: cache.asMap().values())
+			entityEntries.values().removeIf(cached -> cached.usedGroups.stream()
+					.anyMatch(used -> Group.isChildOrSame(used, group)));
+		listeners.forEach(listener -> listener.groupChanged(group));
+	}
+
+	private void invalidateAllNow()
+	{
+		incrementAllStamps();
+		cache.invalidateAll();
+		listeners.forEach(AttributesChangeListener::allChanged);
+	}
+
+	private void incrementAllStamps()
+	{
+		for (int i = 0; i < STAMP_STRIPES; i++)
+			stamps.incrementAndGet(i);
+	}
+
+	private static int getStripe(long entityId)
+	{
+		return (int) Math.floorMod(entityId, (long) STAMP_STRIPES);
+	}
+
+	private static Map<String, AttributeExt> copy(Map<String, AttributeExt> attributes)
+	{
+		Map<String, AttributeExt> ret = new HashMap<>(attributes.size());
+		for (Map.Entry<String, AttributeExt> entry: attributes.entrySet())
+			ret.put(entry.getKey(), new AttributeExt(entry.getValue()));
+		return ret;
+	}
+
+	private static class CachedAttributes
+	{
+		private final Map<String, AttributeExt> attributes;
+		private final Set<String> usedGroups;
+
+		CachedAttributes(Map<String, AttributeExt> attributes, Set<String> usedGroups)
+		{
+			this.attributes = attributes;
+			this.usedGroups = usedGroups;
+		}
+	}
+}
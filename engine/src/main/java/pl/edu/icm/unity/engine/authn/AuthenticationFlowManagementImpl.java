@@ -19,6 +19,7 @@ import com.google.common.collect.Sets;
 import com.google.common.collect.Sets.SetView;
 
 import pl.edu.icm.unity.engine.api.AuthenticationFlowManagement;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.engine.authz.InternalAuthorizationManager;
 import pl.edu.icm.unity.engine.authz.AuthzCapability;
 import pl.edu.icm.unity.engine.events.InvocationEventProducer;
@@ -48,16 +49,19 @@ public class AuthenticationFlowManagementImpl implements AuthenticationFlowManag
 	private InternalAuthorizationManager authz;
 	private AuthenticatorConfigurationDB authenticatorDB;
 	private AttributeDAO dbAttributes;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 	@Autowired
 	public AuthenticationFlowManagementImpl(AuthenticationFlowDB authnFlowDB,
-			InternalAuthorizationManager authz, AuthenticatorConfigurationDB authenticatorDB, AttributeDAO dbAttributes)
+			InternalAuthorizationManager authz, AuthenticatorConfigurationDB authenticatorDB, AttributeDAO dbAttributes,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		
 		this.authnFlowDB = authnFlowDB;
 		this.authz = authz;
 		this.authenticatorDB = authenticatorDB;
 		this.dbAttributes = dbAttributes;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	
@@ -170,5 +174,6 @@ public class AuthenticationFlowManagementImpl implements AuthenticationFlowManag
 			else
 				dbAttributes.create(new StoredAttribute(atExt, entityId));
 		}
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 }
@@ -86,18 +86,18 @@ public class RemoteAuthnResultProcessorImpl implements RemoteAuthnResultProcesso
 			throws AuthenticationException
 	{
 		
-		TranslationProfile translationProfile;
+		InputTranslationProfile profileInstance;
 		try
 		{
-			 translationProfile = inputProfileRepo.getProfile(profile);
-
+			profileInstance = inputProfileRepo.getProfileInstance(profile, translationProfile -> 
+					new InputTranslationProfile(translationProfile, inputProfileRepo, actionsRegistry));
 		} catch (EngineException e)
 		{
 			log.error("Can not get translation profile " + profile , e);
 			throw new ConfigurationException("Can not get translation profile " + profile , e);
 		}
 		
-		if (translationProfile == null)
+		if (profileInstance == null)
 		{
 			log.warn("The translation profile '" + profile + 
 					"' configured for the authenticator does not exist");
@@ -105,8 +105,7 @@ public class RemoteAuthnResultProcessorImpl implements RemoteAuthnResultProcesso
 					"' configured for the authenticator does not exist");
 		}
 		
-		
-		return getResult(input, translationProfile, dryRun, identity);
+		return getResult(input, profileInstance, dryRun, identity);
 	}
 	
 	@Override
@@ -114,6 +113,19 @@ public class RemoteAuthnResultProcessorImpl implements RemoteAuthnResultProcesso
 	public AuthenticationResult getResult(RemotelyAuthenticatedInput input, TranslationProfile profile, 
 			boolean dryRun, Optional<IdentityTaV> identity) 
 			throws AuthenticationException
+	{
+		if (profile == null)
+		{
+			log.warn("The translation profile can not be empty");
+			throw new ConfigurationException("The translation profile can not be empty");
+		}
+		return getResult(input, new InputTranslationProfile(profile, inputProfileRepo, actionsRegistry), 
+				dryRun, identity);
+	}
+	
+	private AuthenticationResult getResult(RemotelyAuthenticatedInput input, InputTranslationProfile profile, 
+			boolean dryRun, Optional<IdentityTaV> identity) 
+			throws AuthenticationException
 	{
 		RemotelyAuthenticatedContext context;
 		try
@@ -204,7 +216,13 @@ public class RemoteAuthnResultProcessorImpl implements RemoteAuthnResultProcesso
 		
 		InputTranslationProfile profileInstance = new InputTranslationProfile(
 				translationProfile, inputProfileRepo, actionsRegistry);
-		
+		return processRemoteInput(input, profileInstance, dryRun, identity);
+	}
+	
+	private RemotelyAuthenticatedContext processRemoteInput(RemotelyAuthenticatedInput input, 
+			InputTranslationProfile profileInstance, boolean dryRun, Optional<IdentityTaV> identity) 
+					throws EngineException
+	{
 		MappingResult result = profileInstance.translate(input);
 		
 		if (identity.isPresent())
@@ -218,7 +236,8 @@ public class RemoteAuthnResultProcessorImpl implements RemoteAuthnResultProcesso
 		if (!dryRun)
 			trEngine.process(result);
 		
-		RemotelyAuthenticatedContext ret = new RemotelyAuthenticatedContext(input.getIdpName(), translationProfile.getName());
+		RemotelyAuthenticatedContext ret = new RemotelyAuthenticatedContext(input.getIdpName(), 
+				profileInstance.getProfile().getName());
 		ret.addAttributes(extractAttributes(result));
 		ret.addIdentities(extractIdentities(result));
 		ret.addGroups(extractGroups(result));
@@ -4,94 +4,109 @@
  */
 package pl.edu.icm.unity.engine.authz;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
-
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.collect.Maps;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import pl.edu.icm.unity.engine.attribute.AttributesChangeListener;
 import pl.edu.icm.unity.engine.attribute.AttributesHelper;
 import pl.edu.icm.unity.exceptions.EngineException;
-import pl.edu.icm.unity.exceptions.IllegalGroupValueException;
-import pl.edu.icm.unity.exceptions.IllegalTypeException;
 import pl.edu.icm.unity.exceptions.InternalException;
+import pl.edu.icm.unity.store.api.AttributeDAO;
 import pl.edu.icm.unity.store.api.GroupDAO;
+import pl.edu.icm.unity.store.types.StoredAttribute;
 import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.AttributeExt;
+import pl.edu.icm.unity.types.basic.AttributeStatement;
 import pl.edu.icm.unity.types.basic.Group;
 
 /**
- * Returns roles for a user in a provided group. Results are cached.
- * 
+ * Returns roles for a user in a provided group. Roles in a group are the sum of the entity's effective role 
+ * attributes in the group and all its parents. 
+ * <p>
+ * Directly assigned roles are resolved from an index of all authorization role attributes, which holds only 
+ * the entities having any role assigned. The index also records groups with attribute statements assigning
+ * the role attribute. In those groups effective attributes are used, which are cached by 
+ * {@link AttributesHelper} on its own.
+ * <p>
+ * The index is updated incrementally: after a change notification, roles of the changed entity are reloaded
+ * on the next use. Changes of groups trigger reload of the whole index, as it is also done periodically,
+ * after the cache TTL, so that changes performed on other cluster nodes are recognized.
+ *
  * @author K. Benedyczak
  */
-class CachingRolesResolver
+class CachingRolesResolver implements AttributesChangeListener
 {
-	private final Map<String, AuthzRole> roles; 
+	private static final int MAX_STALE_ENTITIES = 10000;
+
+	private final Map<String, AuthzRole> roles;
 	private final AttributesHelper dbAttributes;
-	private final Cache<CacheKey, Set<AuthzRole>> rolesCache;
+	private final AttributeDAO attributeDAO;
+	private final GroupDAO groupDAO;
 	private final long cacheTTL;
-	private final GroupDAO groupsDAO;
-	
-	CachingRolesResolver(Map<String, AuthzRole> roles, AttributesHelper dbAttributes, long cacheTTL, 
-			GroupDAO groupsDAO)
+	private final AtomicLong changeSequence = new AtomicLong();
+	private final ConcurrentMap<Long, Long> staleEntities = new ConcurrentHashMap<>();
+	private volatile long lastIndexInvalidation;
+	private volatile RolesIndex index;
+
+	CachingRolesResolver(Map<String, AuthzRole> roles, AttributesHelper dbAttributes, AttributeDAO attributeDAO,
+			GroupDAO groupDAO, long cacheTTL)
 	{
 		this.roles = roles;
 		this.dbAttributes = dbAttributes;
+		this.attributeDAO = attributeDAO;
+		this.groupDAO = groupDAO;
 		this.cacheTTL = cacheTTL;
-		this.groupsDAO = groupsDAO;
-		this.rolesCache = CacheBuilder.newBuilder()
-				.expireAfterWrite(cacheTTL, TimeUnit.MILLISECONDS)
-				.build();
 	}
 
 	Set<AuthzRole> establishRoles(long entityId, Group group)
 	{
 		if (cacheTTL <= 0)
 			return establishRolesNoCache(entityId, group);
-		
-		CacheKey cKey = new CacheKey(group, entityId);
-		Set<AuthzRole> cached = rolesCache.getIfPresent(cKey);
-		if (cached != null)
-			return cached;
-		Set<AuthzRole> actual = establishRolesNoCache(entityId, group);
-		rolesCache.put(cKey, actual);
-		return actual;
-	}
-	
+
+		RolesIndex current = getIndex();
+		Long staleSince = staleEntities.get(entityId);
+		if (staleSince != null)
+		{
+			current.update(entityId, loadEntityRoles(entityId));
+			staleEntities.remove(entityId, staleSince);
+		}
+		Set<AuthzRole> ret = getRolesInGroup(current.get(entityId), group);
+		ret.addAll(getRolesAssignedByStatements(entityId, group, current.statementGroups));
+		return ret;
+	}
+
 	void clearCache()
 	{
-		rolesCache.invalidateAll();
+		lastIndexInvalidation = changeSequence.incrementAndGet();
+		index = null;
+		staleEntities.clear();
 	}
-	
-	private Set<AuthzRole> establishRolesNoCache(long entityId, Group group)
+
+	@Override
+	public void entityChanged(long entityId)
 	{
-		try
-		{
-			Group current = group;
-			Set<AuthzRole> ret = new HashSet<>();
-			do
-			{
-				Map<String, Map<String, AttributeExt>> allAttributes = getAuthzRoleAttributes(entityId, current);
-				Map<String, AttributeExt> inCurrent = allAttributes.get(current.toString());
-				if (inCurrent != null)
-				{
-					Attribute role = inCurrent.get(RoleAttributeTypeProvider.AUTHORIZATION_ROLE);
-					ret.addAll(getRolesFromAttribute(role));
-				}
-				String parent = current.getParentPath();
-				current = parent == null ? null : new Group(parent);
-			} while (current != null);
-			return ret;
-		} catch (EngineException e)
-		{
-			throw new InternalException("Can't establish caller's roles", e);
-		}
+		staleEntities.put(entityId, changeSequence.incrementAndGet());
+		if (staleEntities.size() > MAX_STALE_ENTITIES)
+			clearCache();
+	}
+
+	@Override
+	public void groupChanged(String group)
+	{
+		clearCache();
+	}
+
+	@Override
+	public void allChanged()
+	{
+		clearCache();
 	}
 
 	Set<AuthzRole> getRolesFromAttribute(Attribute role)
@@ -111,59 +126,146 @@ class CachingRolesResolver
 		}
 		return ret;
 	}
-	
-	/**
-	 * Retrieves the authz role for given entity in give group.
-	 */
-	private Map<String, Map<String, AttributeExt>> getAuthzRoleAttributes(long entityId, Group group) throws EngineException 
+
+	private Set<AuthzRole> getRolesInGroup(Map<String, Attribute> entityRoles, Group group)
+	{
+		Set<AuthzRole> ret = new HashSet<>();
+		if (entityRoles.isEmpty())
+			return ret;
+		String current = group.toString();
+		while (current != null)
+		{
+			ret.addAll(getRolesFromAttribute(entityRoles.get(current)));
+			current = new Group(current).getParentPath();
+		}
+		return ret;
+	}
+
+	private Set<AuthzRole> getRolesAssignedByStatements(long entityId, Group group, Set<String> statementGroups)
+	{
+		Set<AuthzRole> ret = new HashSet<>();
+		if (statementGroups.isEmpty())
+			return ret;
+		String current = group.toString();
+		while (current != null)
+		{
+			if (statementGroups.contains(current))
+				ret.addAll(getRolesFromAttribute(getEffectiveRoleAttribute(entityId, current)));
+			current = new Group(current).getParentPath();
+		}
+		return ret;
+	}
+
+	private Set<AuthzRole> establishRolesNoCache(long entityId, Group group)
+	{
+		Set<AuthzRole> ret = new HashSet<>();
+		String current = group.toString();
+		while (current != null)
+		{
+			if (groupDAO.exists(current))
+				ret.addAll(getRolesFromAttribute(getEffectiveRoleAttribute(entityId, current)));
+			current = new Group(current).getParentPath();
+		}
+		return ret;
+	}
+
+	private Attribute getEffectiveRoleAttribute(long entityId, String group)
 	{
-		String groupPath = group.getName();
-		
-		if (!groupsDAO.exists(groupPath))
-			return Maps.newHashMap();
-		
 		try
 		{
-			Map<String, Map<String, AttributeExt>> allAttributes = dbAttributes.getAllAttributesAsMap(
-					entityId, groupPath, true, RoleAttributeTypeProvider.AUTHORIZATION_ROLE);
-			return allAttributes;
-		} catch (IllegalTypeException e)
+			Map<String, AttributeExt> inGroup = dbAttributes.getAllAttributesAsMap(entityId, group, true,
+					RoleAttributeTypeProvider.AUTHORIZATION_ROLE).get(group);
+			return inGroup == null ? null : inGroup.get(RoleAttributeTypeProvider.AUTHORIZATION_ROLE);
+		} catch (EngineException e)
 		{
 			throw new InternalException("Can't establish attributes for authorization pipeline", e);
-		} catch (IllegalGroupValueException e)
+		}
+	}
+
+	private RolesIndex getIndex()
+	{
+		RolesIndex current = index;
+		if (current != null && !current.isExpired())
+			return current;
+		synchronized (this)
 		{
-			throw new InternalException("Can't establish attributes for authorization pipeline - group problem", e);
+			current = index;
+			if (current != null && !current.isExpired())
+				return current;
+			long loadedSequence = changeSequence.get();
+			current = loadIndex();
+			if (lastIndexInvalidation <= loadedSequence)
+			{
+				index = current;
+				staleEntities.values().removeIf(changedAt -> changedAt <= loadedSequence);
+			}
+			return current;
 		}
 	}
-	
-	private static class CacheKey
+
+	private RolesIndex loadIndex()
+	{
+		RolesIndex ret = new RolesIndex(System.currentTimeMillis() + cacheTTL, loadStatementGroups());
+		Map<Long, Map<String, Attribute>> byEntity = new HashMap<>();
+		for (StoredAttribute role: attributeDAO.getAttributes(RoleAttributeTypeProvider.AUTHORIZATION_ROLE,
+				null, null))
+			byEntity.computeIfAbsent(role.getEntityId(), id -> new HashMap<>())
+				.put(role.getAttribute().getGroupPath(), role.getAttribute());
+		byEntity.forEach(ret::update);
+		return ret;
+	}
+
+	private Set<String> loadStatementGroups()
 	{
-		private final Group group;
-		private final long entityId;
-		
-		CacheKey(Group group, long entityId)
+		Set<String> ret = new HashSet<>();
+		for (Group group: groupDAO.getAll())
+			for (AttributeStatement statement: group.getAttributeStatements())
+				if (RoleAttributeTypeProvider.AUTHORIZATION_ROLE.equals(statement.getAssignedAttributeName()))
+					ret.add(group.getName());
+		return ret;
+	}
+
+	private Map<String, Attribute> loadEntityRoles(long entityId)
+	{
+		Map<String, Attribute> ret = new HashMap<>();
+		for (StoredAttribute role: attributeDAO.getAttributes(RoleAttributeTypeProvider.AUTHORIZATION_ROLE,
+				entityId, null))
+			ret.put(role.getAttribute().getGroupPath(), role.getAttribute());
+		return ret;
+	}
+
+	/**
+	 * Role attributes of entities, by group. Entities without any role are not stored.
+	 * Additionally groups with statements assigning roles.
+	 */
+	private static class RolesIndex
+	{
+		private final ConcurrentMap<Long, Map<String, Attribute>> byEntity = new ConcurrentHashMap<>();
+		private final Set<String> statementGroups;
+		private final long expiresAt;
+
+		RolesIndex(long expiresAt, Set<String> statementGroups)
+		{
+			this.expiresAt = expiresAt;
+			this.statementGroups = statementGroups;
+		}
+
+		boolean isExpired()
 		{
-			this.group = group;
-			this.entityId = entityId;
+			return System.currentTimeMillis() > expiresAt;
 		}
 
-		@Override
-		public int hashCode()
+		Map<String, Attribute> get(long entityId)
 		{
-			return Objects.hash(entityId, group);
+			return byEntity.getOrDefault(entityId, Collections.emptyMap());
 		}
 
-		@Override
-		public boolean equals(Object obj)
+		void update(long entityId, Map<String, Attribute> entityRoles)
 		{
-			if (this == obj)
-				return true;
-			if (obj == null)
-				return false;
-			if (getClass() != obj.getClass())
-				return false;
-			CacheKey other = (CacheKey) obj;
-			return entityId == other.entityId && Objects.equals(group, other.group);
+			if (entityRoles.isEmpty())
+				byEntity.remove(entityId);
+			else
+				byEntity.put(entityId, entityRoles);
 		}
 	}
 }
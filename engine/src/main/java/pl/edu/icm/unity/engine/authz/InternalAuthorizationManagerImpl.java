@@ -18,8 +18,10 @@ import pl.edu.icm.unity.engine.api.authn.InvocationContext;
 import pl.edu.icm.unity.engine.api.authn.LoginSession;
 import pl.edu.icm.unity.engine.api.config.UnityServerConfiguration;
 import pl.edu.icm.unity.engine.attribute.AttributesHelper;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.exceptions.AuthorizationException;
 import pl.edu.icm.unity.exceptions.AuthorizationExceptionRT;
+import pl.edu.icm.unity.store.api.AttributeDAO;
 import pl.edu.icm.unity.store.api.GroupDAO;
 import pl.edu.icm.unity.store.api.tx.Transactional;
 import pl.edu.icm.unity.types.basic.Attribute;
@@ -50,12 +52,13 @@ public class InternalAuthorizationManagerImpl implements InternalAuthorizationMa
 	private CachingRolesResolver rolesResolver;
 			
 	@Autowired
-	public InternalAuthorizationManagerImpl(AttributesHelper dbAttributes, UnityServerConfiguration config, 
-			GroupDAO groupDAO)
+	public InternalAuthorizationManagerImpl(AttributesHelper dbAttributes, AttributeDAO attributeDAO, 
+			GroupDAO groupDAO, UnityServerConfiguration config, EffectiveAttributesCache attributesCache)
 	{
 		setupRoleCapabilities();
-		rolesResolver = new CachingRolesResolver(roles, dbAttributes, 
-				config.getLongValue(UnityServerConfiguration.AUTHZ_CACHE_MS), groupDAO);
+		rolesResolver = new CachingRolesResolver(roles, dbAttributes, attributeDAO, groupDAO,
+				config.getLongValue(UnityServerConfiguration.AUTHZ_CACHE_MS));
+		attributesCache.addListener(rolesResolver);
 	}
 	
 	/**
@@ -85,7 +85,7 @@ class CompositeEntitiesInfoProvider
 			.withIdentities(getIdentities(members, group))
 			.withDirectAttributes(getAttributes(members, group))
 			.withCredentialRequirements(getCredentialRequirements())
-			.withEnquiryForms(enquiryDB.getAllAsMap())
+			.withEnquiryForms(enquiryDB.getAllAsMapReadOnly())
 			.build();
 		log.debug("Bulk group membership data retrieval: {}", watch.toString());
 		return ret;
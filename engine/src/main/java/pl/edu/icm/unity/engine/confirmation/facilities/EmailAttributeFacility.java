@@ -20,6 +20,7 @@ import pl.edu.icm.unity.engine.api.confirmation.states.EmailAttribiuteConfirmati
 import pl.edu.icm.unity.engine.api.finalization.WorkflowFinalizationConfiguration;
 import pl.edu.icm.unity.engine.api.msg.UnityMessageSource;
 import pl.edu.icm.unity.engine.attribute.AttributeTypeHelper;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.store.api.AttributeDAO;
 import pl.edu.icm.unity.store.api.EntityDAO;
@@ -38,14 +39,17 @@ public class EmailAttributeFacility extends UserEmailFacility<EmailAttribiuteCon
 	private AttributeDAO dbAttributes;
 	private AttributeTypeHelper atHelper;
 	private boolean autoRedirect;
+	private EffectiveAttributesCache effectiveAttributesCache;
 
 	@Autowired
 	public EmailAttributeFacility(AttributeDAO dbAttributes, EntityDAO dbIdentities,
-			AttributeTypeHelper atHelper, UnityMessageSource msg, UnityServerConfiguration serverConfig)
+			AttributeTypeHelper atHelper, UnityMessageSource msg, UnityServerConfiguration serverConfig,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		super(dbIdentities, msg, serverConfig.getValue(CONFIRMATION_DEFAULT_RETURN_URL));
 		this.dbAttributes = dbAttributes;
 		this.atHelper = atHelper;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 		this.autoRedirect = serverConfig.getBooleanValue(CONFIRMATION_AUTO_REDIRECT);
 	}
 
@@ -77,6 +81,7 @@ public class EmailAttributeFacility extends UserEmailFacility<EmailAttribiuteCon
 			StoredAttribute confirmed = new StoredAttribute(attr, attrState.getOwnerEntityId());
 			dbAttributes.updateAttribute(confirmed);
 		}
+		effectiveAttributesCache.invalidateEntity(attrState.getOwnerEntityId());
 		boolean confirmed = (confirmedList.size() > 0);
 		String title = msg.getMessage(confirmed ? 
 				"ConfirmationStatus.successTitle" : "ConfirmationStatus.unsuccessful");
@@ -110,6 +115,7 @@ public class EmailAttributeFacility extends UserEmailFacility<EmailAttribiuteCon
 				dbAttributes.updateAttribute(updated);
 			}
 		}
+		effectiveAttributesCache.invalidateEntity(attrState.getOwnerEntityId());
 	}
 
 	@Override
@@ -24,6 +24,7 @@ import pl.edu.icm.unity.engine.api.CredentialManagement;
 import pl.edu.icm.unity.engine.api.authn.AuthenticatorSupportService;
 import pl.edu.icm.unity.engine.api.authn.local.LocalCredentialsRegistry;
 import pl.edu.icm.unity.engine.attribute.AttributeTypeHelper;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.engine.authz.InternalAuthorizationManager;
 import pl.edu.icm.unity.engine.authz.AuthzCapability;
 import pl.edu.icm.unity.engine.events.InvocationEventProducer;
@@ -65,6 +66,7 @@ public class CredentialManagementImpl implements CredentialManagement
 	private AttributeTypeHelper attrTypeHelper;
 	private EntityCredentialsHelper entityCredentialsHelper;
 	private AuthenticatorSupportService authenticatorsService;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 	@Autowired
 	public CredentialManagementImpl(LocalCredentialsRegistry localCredReg,
@@ -73,7 +75,8 @@ public class CredentialManagementImpl implements CredentialManagement
 			AttributeDAO attributeDAO, InternalAuthorizationManager authz,
 			SystemCredentialProvider sysProvider, CredentialRepository credentialRepository, 
 			AttributeTypeHelper attrTypeHelper, EntityCredentialsHelper entityCredentialsHelper,
-			AuthenticatorSupportService authenticatorsService)
+			AuthenticatorSupportService authenticatorsService,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.localCredReg = localCredReg;
 		this.credentialDB = credentialDB;
@@ -87,6 +90,7 @@ public class CredentialManagementImpl implements CredentialManagement
 		this.attrTypeHelper = attrTypeHelper;
 		this.entityCredentialsHelper = entityCredentialsHelper;
 		this.authenticatorsService = authenticatorsService;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	@Override
@@ -107,6 +111,7 @@ public class CredentialManagementImpl implements CredentialManagement
 		credentialDB.create(credentialDefinition);
 		AttributeType at = attrTypeHelper.getCredentialAT(helper.getCredentialDefinition().getName());
 		attributeTypeDAO.create(at);
+		effectiveAttributesCache.invalidateAll();
 	}
 
 	@Override
@@ -172,6 +177,7 @@ public class CredentialManagementImpl implements CredentialManagement
 		assertIsNotSystemCredential(toRemove);
 		credentialDB.delete(toRemove);
 		attributeTypeDAO.delete(CREDENTIAL_PREFIX+toRemove);
+		effectiveAttributesCache.invalidateAll();
 	}
 
 	@Override
@@ -203,6 +209,7 @@ public class CredentialManagementImpl implements CredentialManagement
 		{
 			String credAttribute = CREDENTIAL_PREFIX + credentialChanged.getCredentialDefinition().getName(); 
 			attributeDAO.deleteAttribute(credAttribute, entityId, "/");
+			effectiveAttributesCache.invalidateEntity(entityId);
 			return;
 		}
 		CredentialPublicInformation currentState = credentialChanged.getHandler().checkCredentialState(credential);
@@ -12,6 +12,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import pl.edu.icm.unity.base.utils.Log;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.exceptions.IllegalAttributeTypeException;
 import pl.edu.icm.unity.exceptions.IllegalGroupValueException;
 import pl.edu.icm.unity.store.api.GroupDAO;
@@ -31,14 +32,18 @@ public class AttributeStatementsCleaner
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER,
 			AttributeStatementsCleaner.class);
+	private static final int BATCH_SIZE = 1000;
 	private GroupHelper groupHelper;
 	private GroupDAO groupDAO;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 	@Autowired
-	public AttributeStatementsCleaner(GroupHelper groupHelper, GroupDAO groupDAO)
+	public AttributeStatementsCleaner(GroupHelper groupHelper, GroupDAO groupDAO,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.groupHelper = groupHelper;
 		this.groupDAO = groupDAO;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	@Transactional
@@ -55,10 +60,7 @@ public class AttributeStatementsCleaner
 	 */
 	private void updateAllGroups()
 	{
-		for (Group gb: groupDAO.getAll())
-		{
-			updateGroup(gb);
-		}
+		groupDAO.forEach(BATCH_SIZE, this::updateGroup);
 	}
 	
 	private void updateGroup(Group group)
@@ -81,6 +83,7 @@ public class AttributeStatementsCleaner
 		{
 			group.setAttributeStatements(updated.toArray(new AttributeStatement[updated.size()]));
 			groupDAO.update(group);
+			effectiveAttributesCache.invalidateGroup(group.getName());
 		}
 	}
 }
@@ -19,6 +19,7 @@ import org.springframework.stereotype.Component;
 import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.engine.api.identity.EntityResolver;
 import pl.edu.icm.unity.engine.attribute.AttributesHelper;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.exceptions.IllegalAttributeTypeException;
 import pl.edu.icm.unity.exceptions.IllegalAttributeValueException;
 import pl.edu.icm.unity.exceptions.IllegalGroupValueException;
@@ -51,11 +52,13 @@ public class GroupHelper
 	private AttributesHelper attributesHelper;
 	private GroupDAO groupDAO;
 	private AttributeDAO dbAttributes;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 	@Autowired
 	public GroupHelper(MembershipDAO membershipDAO, EntityResolver entityResolver,
 			AttributeTypeDAO attributeTypeDAO, AttributesHelper attributesHelper,
-			GroupDAO groupDAO, AttributeDAO dbAttributes)
+			GroupDAO groupDAO, AttributeDAO dbAttributes,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.membershipDAO = membershipDAO;
 		this.entityResolver = entityResolver;
@@ -63,6 +66,7 @@ public class GroupHelper
 		this.attributesHelper = attributesHelper;
 		this.groupDAO = groupDAO;
 		this.dbAttributes = dbAttributes;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	/**
@@ -93,6 +97,7 @@ public class GroupHelper
 
 		GroupMembership param = new GroupMembership(path, entityId, creationTs, translationProfile, idp);
 		membershipDAO.create(param);
+		effectiveAttributesCache.invalidateEntity(entityId);
 		log.debug("Added entity " + entityId + " to group " + group.toString());
 	}
 	
@@ -185,6 +190,7 @@ public class GroupHelper
 				}
 			}
 		}
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 	
 	private Set<String> establishOnlyParentGroups(Set<String> source)
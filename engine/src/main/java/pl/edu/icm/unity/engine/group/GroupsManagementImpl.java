@@ -26,6 +26,7 @@ import pl.edu.icm.unity.engine.api.msg.UnityMessageSource;
 import pl.edu.icm.unity.engine.api.registration.GroupPatternMatcher;
 import pl.edu.icm.unity.engine.attribute.AttributeClassUtil;
 import pl.edu.icm.unity.engine.attribute.AttributesHelper;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.engine.authz.InternalAuthorizationManager;
 import pl.edu.icm.unity.engine.authz.AuthzCapability;
 import pl.edu.icm.unity.engine.events.InvocationEventProducer;
@@ -73,6 +74,7 @@ public class GroupsManagementImpl implements GroupsManagement
 	private TransactionalRunner tx;
 	private AttributeClassUtil acUtil;
 	private UnityMessageSource msg;
+	private EffectiveAttributesCache effectiveAttributesCache;
 
 	
 	@Autowired
@@ -81,7 +83,8 @@ public class GroupsManagementImpl implements GroupsManagement
 			AttributeTypeDAO attributeTypeDAO, AttributeClassDB acDB,
 			InternalAuthorizationManager authz, AttributesHelper attributesHelper,
 			EntityResolver idResolver, EmailConfirmationManager confirmationManager,
-			AttributeClassUtil acUtil, TransactionalRunner tx, UnityMessageSource msg)
+			AttributeClassUtil acUtil, TransactionalRunner tx, UnityMessageSource msg,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.dbGroups = dbGroups;
 		this.membershipDAO = membershipDAO;
@@ -96,6 +99,7 @@ public class GroupsManagementImpl implements GroupsManagement
 		this.acUtil = acUtil;
 		this.tx = tx;
 		this.msg = msg;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	@Override
@@ -126,6 +130,7 @@ public class GroupsManagementImpl implements GroupsManagement
 		if (!recursive && !getSubGroups(path).isEmpty())
 			throw new IllegalGroupValueException("The group contains subgroups");
 		dbGroups.delete(path);
+		effectiveAttributesCache.invalidateGroup(path);
 	}
 
 	@Override
@@ -185,6 +190,7 @@ public class GroupsManagementImpl implements GroupsManagement
 				dbAttributes.deleteAttributesInGroup(entityId, group);
 			}
 		}
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 
 	@Override
@@ -305,6 +311,7 @@ public class GroupsManagementImpl implements GroupsManagement
 		}
 		
 		dbGroups.updateByName(path, group);
+		effectiveAttributesCache.invalidateGroup(path);
 	}
 	
 	
@@ -5,6 +5,7 @@
 package pl.edu.icm.unity.engine.identity;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +27,7 @@ import pl.edu.icm.unity.types.basic.EntityState;
 public class EntitiesScheduledUpdater
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER, EntitiesScheduledUpdater.class);
+	private static final int BATCH_SIZE = 1000;
 	private UnityServerConfiguration config;
 	private EntityDAO entityDAO;
 	
@@ -58,23 +60,29 @@ public class EntitiesScheduledUpdater
 	private Date performScheduledEntityOperations()
 	{
 		Date now = new Date();
-		Date ret = new Date(Long.MAX_VALUE);
-		for (EntityInformation entityInfo: entityDAO.getAll())
+		AtomicReference<Date> ret = new AtomicReference<>(new Date(Long.MAX_VALUE));
+		entityDAO.forEach(BATCH_SIZE, entityInfo -> {
+			Date nextOp = performScheduledEntityOperation(entityInfo, now);
+			if (nextOp != null)
+				ret.accumulateAndGet(nextOp, (current, next) -> next.before(current) ? next : current);
+		});
+		return ret.get();
+	}
+
+	/**
+	 * @return the time of the next scheduled operation on the entity or null if there is no such operation
+	 */
+	private Date performScheduledEntityOperation(EntityInformation entityInfo, Date now)
+	{
+		if (isSetAndAfter(now, entityInfo.getScheduledOperationTime()))
+		{
+			EntityScheduledOperation op = entityInfo.getScheduledOperation();
+			performScheduledOperationInternal(op, entityInfo);
+		} else if (isSetAndAfter(now, entityInfo.getRemovalByUserTime()))
 		{
-			if (isSetAndAfter(now, entityInfo.getScheduledOperationTime()))
-			{
-				EntityScheduledOperation op = entityInfo.getScheduledOperation();
-				performScheduledOperationInternal(op, entityInfo);
-			} else if (isSetAndAfter(now, entityInfo.getRemovalByUserTime()))
-			{
-				performScheduledOperationInternal(EntityScheduledOperation.REMOVE, entityInfo);
-			}
-			
-			Date nextOp = entityInfo.getScheduledOperationTime();
-			if (nextOp != null && nextOp.before(ret))
-				ret = nextOp;
+			performScheduledOperationInternal(EntityScheduledOperation.REMOVE, entityInfo);
 		}
-		return ret;
+		return entityInfo.getScheduledOperationTime();
 	}
 
 	private void performScheduledOperationInternal(EntityScheduledOperation op, EntityInformation entityInfo)
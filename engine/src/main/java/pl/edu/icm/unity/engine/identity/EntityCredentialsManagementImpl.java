@@ -15,6 +15,7 @@ import pl.edu.icm.unity.engine.api.EntityCredentialManagement;
 import pl.edu.icm.unity.engine.api.authn.local.LocalCredentialVerificator;
 import pl.edu.icm.unity.engine.api.identity.EntityResolver;
 import pl.edu.icm.unity.engine.attribute.AttributesHelper;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.engine.authz.InternalAuthorizationManager;
 import pl.edu.icm.unity.engine.authz.AuthzCapability;
 import pl.edu.icm.unity.engine.credential.CredentialAttributeTypeProvider;
@@ -54,13 +55,15 @@ public class EntityCredentialsManagementImpl implements EntityCredentialManageme
 	private AttributesHelper attributesHelper;
 	private EntityCredentialsHelper credHelper;
 	private AdditionalAuthenticationService repeatedAuthnService;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 
 	@Autowired
 	public EntityCredentialsManagementImpl(EntityResolver idResolver, AttributeDAO attributeDAO,
 			InternalAuthorizationManager authz, AttributesHelper attributesHelper,
 			EntityCredentialsHelper credHelper,
-			AdditionalAuthenticationService repeatedAuthnService)
+			AdditionalAuthenticationService repeatedAuthnService,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.idResolver = idResolver;
 		this.attributeDAO = attributeDAO;
@@ -68,6 +71,7 @@ public class EntityCredentialsManagementImpl implements EntityCredentialManageme
 		this.attributesHelper = attributesHelper;
 		this.credHelper = credHelper;
 		this.repeatedAuthnService = repeatedAuthnService;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 		
 	}
 
@@ -191,5 +195,6 @@ public class EntityCredentialsManagementImpl implements EntityCredentialManageme
 			StoredAttribute updatedA = new StoredAttribute(added, entityId);
 			attributeDAO.updateAttribute(updatedA);
 		}
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 }
@@ -35,6 +35,7 @@ import pl.edu.icm.unity.engine.api.identity.IdentityTypesRegistry;
 import pl.edu.icm.unity.engine.api.notification.NotificationProducer;
 import pl.edu.icm.unity.engine.attribute.AttributeClassUtil;
 import pl.edu.icm.unity.engine.attribute.AttributesHelper;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.engine.authz.InternalAuthorizationManager;
 import pl.edu.icm.unity.engine.authz.AuthzCapability;
 import pl.edu.icm.unity.engine.credential.CredentialAttributeTypeProvider;
@@ -107,6 +108,7 @@ public class EntityManagementImpl implements EntityManagement
 	private TransactionalRunner tx;
 	private UnityServerConfiguration cfg;
 	private NotificationProducer notificationProducer;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 	@Autowired
 	public EntityManagementImpl(IdentityTypeDAO idTypeDAO, IdentityTypeHelper idTypeHelper,
@@ -119,7 +121,8 @@ public class EntityManagementImpl implements EntityManagement
 			IdentityTypesRegistry idTypesRegistry,
 			EmailConfirmationManager confirmationManager, AttributeClassUtil acUtil,
 			TransactionalRunner tx,
-			UnityServerConfiguration cfg, NotificationProducer notificationProducer)
+			UnityServerConfiguration cfg, NotificationProducer notificationProducer,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.idTypeDAO = idTypeDAO;
 		this.idTypeHelper = idTypeHelper;
@@ -141,6 +144,7 @@ public class EntityManagementImpl implements EntityManagement
 		this.tx = tx;
 		this.cfg = cfg;
 		this.notificationProducer = notificationProducer;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	@Override
@@ -211,6 +215,7 @@ public class EntityManagementImpl implements EntityManagement
 						+ "the configured maximum number of instances was reached.");
 			Identity toCreate = idTypeHelper.upcastIdentityParam(toAdd, entityId);
 			idDAO.create(new StoredIdentity(toCreate));
+			effectiveAttributesCache.invalidateEntity(entityId);
 			if (extractAttributes && fullAuthz)
 				identityHelper.addExtractedAttributes(toCreate);
 			return new IdentityWithAuthzInfo(toCreate, fullAuthz);
@@ -307,6 +312,7 @@ public class EntityManagementImpl implements EntityManagement
 		String cmpValue = typeDefinition.getComparableValue(toRemove.getValue(), toRemove.getRealm(), 
 				toRemove.getTarget()); 
 		idDAO.delete(StoredIdentity.toInDBIdentityValue(identityType.getName(), cmpValue));
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 
 	@Override
@@ -331,6 +337,7 @@ public class EntityManagementImpl implements EntityManagement
 		long entityId = idResolver.getEntityId(new EntityParam(original));
 		Identity updatedFull = idTypeHelper.upcastIdentityParam(updated, entityId);
 		idDAO.updateByName(inDBKey, new StoredIdentity(updatedFull));
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 
 	@Override
@@ -393,6 +400,7 @@ public class EntityManagementImpl implements EntityManagement
 					getComparableValue();
 			idDAO.delete(StoredIdentity.toInDBIdentityValue(remove.getTypeId(), comparableValue));
 		}
+		effectiveAttributesCache.invalidateEntity(entityId);
 		return created;
 	}
 	
@@ -560,6 +568,7 @@ public class EntityManagementImpl implements EntityManagement
 		authz.checkAuthorization(authz.isSelf(entityId), AuthzCapability.identityModify);
 		sendNotification(entityId, cfg.getValue(UnityServerConfiguration.ACCOUNT_REMOVED_NOTIFICATION));
 		entityDAO.deleteByKey(entityId);
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 	
 	@Override
@@ -772,6 +781,8 @@ public class EntityManagementImpl implements EntityManagement
 		mergeMemberships(mergedId, targetId);
 		mergeAttributes(mergedId, targetId, safeMode);
 		entityDAO.deleteByKey(mergedId);
+		effectiveAttributesCache.invalidateEntity(mergedId);
+		effectiveAttributesCache.invalidateEntity(targetId);
 	}
 
 	private void mergeAttributes(long mergedId, long targetId, boolean safeMode) throws EngineException
@@ -909,6 +920,7 @@ public class EntityManagementImpl implements EntityManagement
 				idDAO.delete(sid.getName());
 			}
 		}
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 	
 	private List<Identity> getIdentitiesForEntity(long entityId, String target, boolean allowCreate) 
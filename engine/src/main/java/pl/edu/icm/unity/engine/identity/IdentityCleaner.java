@@ -12,6 +12,7 @@ import org.springframework.stereotype.Component;
 
 import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.engine.api.identity.IdentityTypeDefinition;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.store.api.IdentityDAO;
 import pl.edu.icm.unity.store.api.IdentityTypeDAO;
 import pl.edu.icm.unity.store.api.tx.Transactional;
@@ -27,34 +28,41 @@ import pl.edu.icm.unity.types.basic.IdentityType;
 public class IdentityCleaner
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER, IdentityCleaner.class);
+	private static final int BATCH_SIZE = 1000;
 	private IdentityDAO identityDAO;
 	private IdentityTypeHelper idTypeHelper;
 	private IdentityTypeDAO idTypeDAO;
+	private EffectiveAttributesCache effectiveAttributesCache;
 
 	@Autowired
 	public IdentityCleaner(IdentityDAO identityDAO, IdentityTypeHelper idTypeHelper,
-			IdentityTypeDAO idTypeDAO)
+			IdentityTypeDAO idTypeDAO,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.identityDAO = identityDAO;
 		this.idTypeHelper = idTypeHelper;
 		this.idTypeDAO = idTypeDAO;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	@Transactional
 	public void removeExpiredIdentities()
 	{
 		Map<String, IdentityType> types = idTypeDAO.getAllAsMap();
-		for (StoredIdentity sidentity: identityDAO.getAll())
+		identityDAO.forEach(BATCH_SIZE, sidentity -> removeIfExpired(sidentity, types));
+	}
+
+	private void removeIfExpired(StoredIdentity sidentity, Map<String, IdentityType> types)
+	{
+		Identity identity = sidentity.getIdentity();
+		IdentityType identityType = types.get(identity.getTypeId());
+		IdentityTypeDefinition typeDefinition = idTypeHelper.getTypeDefinition(identityType);
+		if (typeDefinition.isExpired(identity))
 		{
-			Identity identity = sidentity.getIdentity();
-			IdentityType identityType = types.get(identity.getTypeId());
-			IdentityTypeDefinition typeDefinition = idTypeHelper.getTypeDefinition(identityType);
-			if (typeDefinition.isExpired(identity))
-			{
-				log.debug("Removing expired identity " + identity);
-				identityDAO.delete(StoredIdentity.toInDBIdentityValue(identityType.getName(), 
-						identity.getComparableValue()));
-			}
+			log.debug("Removing expired identity " + identity);
+			identityDAO.delete(StoredIdentity.toInDBIdentityValue(identityType.getName(), 
+					identity.getComparableValue()));
+			effectiveAttributesCache.invalidateEntity(identity.getEntityId());
 		}
 	}
 }
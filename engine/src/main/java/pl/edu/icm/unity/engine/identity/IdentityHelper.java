@@ -22,6 +22,7 @@ import pl.edu.icm.unity.engine.api.authn.InvocationContext;
 import pl.edu.icm.unity.engine.api.identity.IdentityTypeDefinition;
 import pl.edu.icm.unity.engine.api.identity.IdentityTypesRegistry;
 import pl.edu.icm.unity.engine.attribute.AttributesHelper;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.engine.authz.RoleAttributeTypeProvider;
 import pl.edu.icm.unity.engine.credential.EntityCredentialsHelper;
 import pl.edu.icm.unity.engine.credential.SystemAllCredentialRequirements;
@@ -62,13 +63,15 @@ public class IdentityHelper
 	private AttributesHelper attributeHelper;
 	private GroupHelper groupHelper;
 	private EntityCredentialsHelper credentialHelper;
+	private EffectiveAttributesCache effectiveAttributesCache;
 
 	
 	@Autowired
 	public IdentityHelper(IdentityTypesRegistry idTypesRegistry, EntityDAO entityDAO,
 			IdentityDAO identityDAO, AttributeDAO attributeDAO, IdentityTypeHelper idTypeHelper,
 			AttributesHelper attributeHelper, GroupHelper groupHelper,
-			EntityCredentialsHelper credentialHelper)
+			EntityCredentialsHelper credentialHelper,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.idTypesRegistry = idTypesRegistry;
 		this.entityDAO = entityDAO;
@@ -78,6 +81,7 @@ public class IdentityHelper
 		this.attributeHelper = attributeHelper;
 		this.groupHelper = groupHelper;
 		this.credentialHelper = credentialHelper;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	/**
@@ -276,6 +280,7 @@ public class IdentityHelper
 		{
 			throw new IllegalIdentityValueException("Can not add identity " + toAdd, e);
 		}
+		effectiveAttributesCache.invalidateEntity(entityId);
 		
 		return identity;
 	}
@@ -305,6 +310,7 @@ public class IdentityHelper
 			return null;
 		Identity newId = idTypeImpl.createNewIdentity(realm, target, entityId);
 		identityDAO.create(new StoredIdentity(newId));
+		effectiveAttributesCache.invalidateEntity(entityId);
 		return newId;
 	}
 }
@@ -5,7 +5,7 @@
 package pl.edu.icm.unity.engine.identity;
 
 import java.util.Date;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,6 +27,7 @@ import pl.edu.icm.unity.types.basic.EntityState;
 public class SheduledOperationHelper
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER, SheduledOperationHelper.class);
+	private static final int BATCH_SIZE = 1000;
 	private EntityDAO entityDAO;
 	
 	
@@ -104,25 +105,30 @@ public class SheduledOperationHelper
 	 */
 	public Date performScheduledEntityOperations()
 	{
-		List<EntityInformation> all = entityDAO.getAll();
 		Date now = new Date();
-		Date ret = new Date(Long.MAX_VALUE);
-		for (EntityInformation entityInfo: all)
+		AtomicReference<Date> ret = new AtomicReference<>(new Date(Long.MAX_VALUE));
+		entityDAO.forEach(BATCH_SIZE, entityInfo -> {
+			Date nextOp = performScheduledEntityOperation(entityInfo, now);
+			if (nextOp != null)
+				ret.accumulateAndGet(nextOp, (current, next) -> next.before(current) ? next : current);
+		});
+		return ret.get();
+	}
+
+	/**
+	 * @return the time of the next scheduled operation on the entity or null if there is no such operation
+	 */
+	private Date performScheduledEntityOperation(EntityInformation entityInfo, Date now)
+	{
+		if (isSetAndAfter(now, entityInfo.getScheduledOperationTime()))
+		{
+			EntityScheduledOperation op = entityInfo.getScheduledOperation();
+			performScheduledOperationInternal(op, entityInfo);
+		} else if (isSetAndAfter(now, entityInfo.getRemovalByUserTime()))
 		{
-			if (isSetAndAfter(now, entityInfo.getScheduledOperationTime()))
-			{
-				EntityScheduledOperation op = entityInfo.getScheduledOperation();
-				performScheduledOperationInternal(op, entityInfo);
-			} else if (isSetAndAfter(now, entityInfo.getRemovalByUserTime()))
-			{
-				performScheduledOperationInternal(EntityScheduledOperation.REMOVE, entityInfo);
-			}
-			
-			Date nextOp = entityInfo.getScheduledOperationTime();
-			if (nextOp != null && nextOp.before(ret))
-				ret = nextOp;
+			performScheduledOperationInternal(EntityScheduledOperation.REMOVE, entityInfo);
 		}
-		return ret;
+		return entityInfo.getScheduledOperationTime();
 	}
 
 	public void performScheduledOperation(long entityId, EntityScheduledOperation op)
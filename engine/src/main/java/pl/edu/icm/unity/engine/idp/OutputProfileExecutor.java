@@ -60,12 +60,12 @@ class OutputProfileExecutor
 		OutputTranslationProfile profileInstance;
 		if (profile != null)
 		{
-			TranslationProfile translationProfile = outputProfileRepo.listAllProfiles().get(profile);
-			if (translationProfile == null)
+			profileInstance = outputProfileRepo.getProfileInstance(profile, translationProfile -> 
+					new OutputTranslationProfile(translationProfile, outputProfileRepo, 
+							actionsRegistry, attrValueConverter));
+			if (profileInstance == null)
 				throw new ConfigurationException("The translation profile '" + profile + 
 					"' configured for the authenticator does not exist");
-			profileInstance = new OutputTranslationProfile(translationProfile, outputProfileRepo, 
-					actionsRegistry, attrValueConverter);
 		} else
 		{
 			profileInstance = defaultProfile;
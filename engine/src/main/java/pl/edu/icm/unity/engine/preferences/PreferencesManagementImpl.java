@@ -20,6 +20,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import pl.edu.icm.unity.engine.api.PreferencesManagement;
 import pl.edu.icm.unity.engine.api.attributes.AttributeSyntaxFactoriesRegistry;
 import pl.edu.icm.unity.engine.api.identity.EntityResolver;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.engine.authz.InternalAuthorizationManager;
 import pl.edu.icm.unity.engine.authz.AuthzCapability;
 import pl.edu.icm.unity.engine.events.InvocationEventProducer;
@@ -51,16 +52,19 @@ public class PreferencesManagementImpl implements PreferencesManagement
 	private AttributeDAO dbAttributes;
 	private InternalAuthorizationManager authz;
 	private EntityResolver idResolver;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 	@Autowired
 	public PreferencesManagementImpl(AttributeSyntaxFactoriesRegistry attrValueTypesReg,
 			AttributeDAO dbAttributes, 
-			EntityResolver idResolver, InternalAuthorizationManager authz, ObjectMapper mapper)
+			EntityResolver idResolver, InternalAuthorizationManager authz, ObjectMapper mapper,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.dbAttributes = dbAttributes;
 		this.idResolver = idResolver;
 		this.authz = authz;
 		this.mapper = mapper;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 	}
 
 	@Override
@@ -129,6 +133,7 @@ public class PreferencesManagementImpl implements PreferencesManagement
 			dbAttributes.updateAttribute(new StoredAttribute(atExt, entityId));
 		else
 			dbAttributes.create(new StoredAttribute(atExt, entityId));
+		effectiveAttributesCache.invalidateEntity(entityId);
 	}
 	
 	private String extractPreference(String raw, String preferenceId)
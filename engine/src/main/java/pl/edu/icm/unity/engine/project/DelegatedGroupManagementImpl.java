@@ -13,6 +13,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -23,6 +26,7 @@ import pl.edu.icm.unity.engine.api.AttributeTypeManagement;
 import pl.edu.icm.unity.engine.api.EntityManagement;
 import pl.edu.icm.unity.engine.api.GroupsManagement;
 import pl.edu.icm.unity.engine.api.bulk.BulkGroupQueryService;
+import pl.edu.icm.unity.engine.api.bulk.GroupMembershipData;
 import pl.edu.icm.unity.engine.api.bulk.GroupStructuralData;
 import pl.edu.icm.unity.engine.api.msg.UnityMessageSource;
 import pl.edu.icm.unity.engine.api.project.DelegatedGroup;
@@ -40,6 +44,7 @@ import pl.edu.icm.unity.stdext.utils.EntityNameMetadataProvider;
 import pl.edu.icm.unity.store.api.tx.Transactional;
 import pl.edu.icm.unity.types.I18nString;
 import pl.edu.icm.unity.types.basic.Attribute;
+import pl.edu.icm.unity.types.basic.AttributeExt;
 import pl.edu.icm.unity.types.basic.Entity;
 import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.Group;
@@ -276,26 +281,34 @@ public class DelegatedGroupManagementImpl implements DelegatedGroupManagement
 	private List<DelegatedGroupMember> getDelegatedGroupMemebersInternal(String projectPath, String path)
 			throws EngineException
 	{
-		GroupContents orgGroupContents = groupMan.getContents(path, GroupContents.MEMBERS);
-		List<GroupMembership> orgMembers = orgGroupContents.getMembers();
-		List<DelegatedGroupMember> members = new ArrayList<>();
-		if (orgMembers != null && !orgMembers.isEmpty())
+		GroupMembershipData bulkData = bulkQueryService.getBulkMembershipData(path);
+		Map<Long, Entity> entities = bulkQueryService.getGroupEntitiesNoContextWithoutTargeted(bulkData);
+		List<DelegatedGroupMember> members = new ArrayList<>(entities.size());
+		if (entities.isEmpty())
+			return members;
+
+		Map<Long, Map<String, AttributeExt>> rootAttributes = bulkQueryService.getGroupUsersAttributes("/",
+				bulkData);
+		Map<Long, Map<String, AttributeExt>> projectAttributes = bulkQueryService
+				.getGroupUsersAttributes(projectPath, bulkData);
+		List<String> projectAttrs = getProjectAttrs(projectPath);
+		Function<Map<String, ? extends Attribute>, VerifiableElementBase> nameExtractor = projectAttrHelper
+				.getVerifiableAttributeExtractor(EntityNameMetadataProvider.NAME);
+		Function<Map<String, ? extends Attribute>, VerifiableElementBase> emailExtractor = projectAttrHelper
+				.getVerifiableAttributeExtractor(ContactEmailMetadataProvider.NAME);
+
+		for (Entity entity : entities.values())
 		{
-
-			List<String> projectAttrs = getProjectAttrs(projectPath);
-			for (GroupMembership member : orgMembers)
-			{
-				long entity = member.getEntityId();
-				VerifiableElementBase emailId = getEmailIdentity(entity);
-				DelegatedGroupMember entry = new DelegatedGroupMember(member.getEntityId(), projectPath,
-						member.getGroup(), getGroupAuthRoleAttr(entity, projectPath),
-						projectAttrHelper.getAttributeFromMeta(entity, "/",
-								EntityNameMetadataProvider.NAME),
-						emailId != null ? emailId : projectAttrHelper.getVerifiableAttributeFromMeta(entity, "/",
-								ContactEmailMetadataProvider.NAME),
-						Optional.ofNullable(getProjectMemberAttributes(entity, projectPath, projectAttrs)));
-				members.add(entry);
-			}
+			long entityId = entity.getId();
+			Map<String, AttributeExt> inRoot = rootAttributes.get(entityId);
+			Map<String, AttributeExt> inProject = projectAttributes.get(entityId);
+			VerifiableElementBase emailId = getEmailIdentity(entity);
+			VerifiableElementBase name = nameExtractor.apply(inRoot);
+			DelegatedGroupMember entry = new DelegatedGroupMember(entityId, projectPath, path,
+					getGroupAuthRole(inProject), name != null ? name.getValue() : null,
+					emailId != null ? emailId : emailExtractor.apply(inRoot),
+					Optional.of(getProjectMemberAttributes(inProject, projectAttrs)));
+			members.add(entry);
 		}
 		members.sort((m1,m2) -> Long.compare(m1.entityId, m2.entityId));
 		return members;
@@ -310,35 +323,28 @@ public class DelegatedGroupManagementImpl implements DelegatedGroupManagement
 
 	private void assertIfOneManagerRemain(String projectPath, long entityId) throws EngineException
 	{
-
-		List<DelegatedGroupMember> delegatedGroupMemebersInternal = getDelegatedGroupMemebersInternal(
-				projectPath, projectPath);
-		List<Long> managers = new ArrayList<>();
-
-		for (DelegatedGroupMember member : delegatedGroupMemebersInternal)
-		{
-			if (member.role.equals(GroupAuthorizationRole.manager))
-			{
-				managers.add(member.entityId);
-			}
-		}
+		GroupMembershipData bulkData = bulkQueryService.getBulkMembershipData(projectPath);
+		Set<Long> managers = bulkQueryService.getGroupUsersAttributes(projectPath, bulkData).entrySet()
+				.stream()
+				.filter(e -> getGroupAuthRole(e.getValue()).equals(GroupAuthorizationRole.manager))
+				.map(Entry::getKey)
+				.collect(Collectors.toSet());
 
 		if (managers.size() == 1 && managers.contains(entityId))
 			throw new OneManagerRemainsException(projectPath);
 	}
 
-	private List<Attribute> getProjectMemberAttributes(long entity, String projectPath, List<String> attributes)
-			throws EngineException
+	private List<Attribute> getProjectMemberAttributes(Map<String, AttributeExt> entityAttributes,
+			List<String> attributes)
 	{
 		List<Attribute> ret = new ArrayList<>();
-		if (attributes == null || attributes.isEmpty())
+		if (entityAttributes == null || attributes == null || attributes.isEmpty())
 			return ret;
 		for (String attr : attributes)
 		{
-			Optional<Attribute> oattr = projectAttrHelper.getAttribute(entity, projectPath, attr);
-			if (oattr.isPresent())
-				ret.add(oattr.get());
-
+			Attribute attribute = entityAttributes.get(attr);
+			if (attribute != null)
+				ret.add(attribute);
 		}
 		return ret;
 	}
@@ -349,16 +355,14 @@ public class DelegatedGroupManagementImpl implements DelegatedGroupManagement
 		return projectGroup.getDelegationConfiguration().attributes;
 	}
 
-	private GroupAuthorizationRole getGroupAuthRoleAttr(long entityId, String path) throws EngineException
+	private GroupAuthorizationRole getGroupAuthRole(Map<String, AttributeExt> entityAttributes)
 	{
-		Optional<String> attrVal = projectAttrHelper.getAttributeValue(entityId, path,
+		Attribute role = entityAttributes == null ? null : entityAttributes.get(
 				ProjectAuthorizationRoleAttributeTypeProvider.PROJECT_MANAGEMENT_AUTHORIZATION_ROLE);
-
-		if (attrVal.isPresent())
-			return GroupAuthorizationRole.valueOf(attrVal.get());
+		if (role != null && !role.getValues().isEmpty())
+			return GroupAuthorizationRole.valueOf(role.getValues().get(0));
 
 		return GroupAuthorizationRole.regular;
-
 	}
 
 	private Deque<String> getMissingEntityGroups(String finalGroup, long entityId) throws EngineException
@@ -391,9 +395,8 @@ public class DelegatedGroupManagementImpl implements DelegatedGroupManagement
 		return displayName;
 	}
 	
-	private VerifiableElementBase getEmailIdentity(long entityId) throws EngineException
+	private VerifiableElementBase getEmailIdentity(Entity entity)
 	{
-		Entity entity = identitiesMan.getEntity(new EntityParam(entityId));
 		for (IdentityParam id : entity.getIdentities())
 		{
 			if (id != null && id.getTypeId().equals(EmailIdentity.ID))
@@ -6,7 +6,9 @@
 package pl.edu.icm.unity.engine.project;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -120,9 +122,11 @@ public class ProjectAttributeHelper
 	{
 		if (value == null)
 			return null;
-		
-		AttributeValueSyntax<?> attributeSyntax = getAttributeSyntaxSafe(attributeName);
-		
+		return toVerifiableValue(getAttributeSyntaxSafe(attributeName), value);
+	}
+
+	private VerifiableElementBase toVerifiableValue(AttributeValueSyntax<?> attributeSyntax, String value)
+	{
 		if (attributeSyntax != null && attributeSyntax.isEmailVerifiable())
 		{
 			return (VerifiableElementBase) attributeSyntax.convertFromString(value);
@@ -170,4 +174,26 @@ public class ProjectAttributeHelper
 		return getVerifiableAttributeValue(attrType.getName(), value.get());
 	}
 
+	/**
+	 * Returns a function extracting the first value of the attribute marked with the given metadata,
+	 * from a map of entity's attributes keyed by name. Attribute type and its syntax are resolved once,
+	 * so the function is cheap to apply to attributes of many entities loaded in bulk.
+	 * The function returns null if the attribute is missing.
+	 */
+	@Transactional
+	public Function<Map<String, ? extends Attribute>, VerifiableElementBase> getVerifiableAttributeExtractor(
+			String metadata) throws EngineException
+	{
+		String attrName = getAttributeName(metadata);
+		if (attrName == null)
+			return attributes -> null;
+		AttributeValueSyntax<?> attributeSyntax = getAttributeSyntaxSafe(attrName);
+		return attributes ->
+		{
+			Attribute attribute = attributes == null ? null : attributes.get(attrName);
+			if (attribute == null || attribute.getValues() == null || attribute.getValues().isEmpty())
+				return null;
+			return toVerifiableValue(attributeSyntax, attribute.getValues().get(0));
+		};
+	}
 }
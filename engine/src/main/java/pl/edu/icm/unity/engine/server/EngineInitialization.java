@@ -36,6 +36,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.Lists;
 
 import eu.unicore.util.configuration.ConfigurationException;
@@ -97,6 +98,7 @@ import pl.edu.icm.unity.store.api.IdentityTypeDAO;
 import pl.edu.icm.unity.store.api.generic.AuthenticationFlowDB;
 import pl.edu.icm.unity.store.api.generic.AuthenticatorConfigurationDB;
 import pl.edu.icm.unity.store.api.tx.TransactionalRunner;
+import pl.edu.icm.unity.store.objstore.GenericObjectsDAOImpl;
 import pl.edu.icm.unity.types.I18nString;
 import pl.edu.icm.unity.types.authn.AuthenticationFlowDefinition;
 import pl.edu.icm.unity.types.authn.AuthenticationFlowDefinition.Policy;
@@ -233,6 +235,8 @@ public class EngineInitialization extends LifecycleBase
 	@Autowired
 	@Qualifier("insecure")
 	private PKIManagement pkiManagement;
+	@Autowired
+	private List<GenericObjectsDAOImpl<?>> genericObjectsDAOs;
 
 	private long endpointsLoadTime;
 
@@ -327,6 +331,9 @@ public class EngineInitialization extends LifecycleBase
 		};
 		executors.getService().schedule(entitiesUpdaterTask, (int) (interval * 0.5), TimeUnit.SECONDS);
 
+		executors.getService().scheduleWithFixedDelay(this::logDecodedObjectsCacheStats, interval * 10, 
+				interval * 10, TimeUnit.SECONDS);
+
 		// wait to ensure that we return only when endpoint updates will
 		// be caught
 		try
@@ -339,6 +346,18 @@ public class EngineInitialization extends LifecycleBase
 
 	}
 
+	private void logDecodedObjectsCacheStats()
+	{
+		if (!log.isDebugEnabled())
+			return;
+		for (GenericObjectsDAOImpl<?> dao: genericObjectsDAOs)
+		{
+			CacheStats stats = dao.getDecodedCacheStats();
+			if (stats != null)
+				log.debug("Cache of decoded " + dao.getObjectName() + " objects: " + stats);
+		}
+	}
+
 	public void initializeDatabaseContents()
 	{
 		Boolean isColdStart = determineIfColdStart();
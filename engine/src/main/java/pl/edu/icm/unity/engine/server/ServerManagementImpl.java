@@ -26,6 +26,7 @@ import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.engine.api.ServerManagement;
 import pl.edu.icm.unity.engine.api.config.UnityServerConfiguration;
 import pl.edu.icm.unity.engine.api.utils.ExecutorsService;
+import pl.edu.icm.unity.engine.attribute.EffectiveAttributesCache;
 import pl.edu.icm.unity.engine.authz.InternalAuthorizationManager;
 import pl.edu.icm.unity.engine.authz.AuthzCapability;
 import pl.edu.icm.unity.engine.bulkops.BulkProcessingInternal;
@@ -56,6 +57,7 @@ public class ServerManagementImpl implements ServerManagement
 	private InternalEndpointManagement endpointMan;
 	private TransactionalRunner tx;
 	private BulkProcessingInternal bulkProcessing;
+	private EffectiveAttributesCache effectiveAttributesCache;
 	
 	
 	@Autowired
@@ -63,7 +65,8 @@ public class ServerManagementImpl implements ServerManagement
 			EngineInitialization engineInit, InternalEndpointManagement endpointMan,
 			InternalAuthorizationManager authz, ExecutorsService executorsService, 
 			UnityServerConfiguration config,
-			BulkProcessingInternal bulkProcessing)
+			BulkProcessingInternal bulkProcessing,
+			EffectiveAttributesCache effectiveAttributesCache)
 	{
 		this.tx = tx;
 		this.dbDump = dbDump;
@@ -73,6 +76,7 @@ public class ServerManagementImpl implements ServerManagement
 		this.authz = authz;
 		this.config = config;
 		this.bulkProcessing = bulkProcessing;
+		this.effectiveAttributesCache = effectiveAttributesCache;
 		executorsService.getService().scheduleWithFixedDelay(new ClenupDumpsTask(), 20, 60, TimeUnit.SECONDS);
 	}
 
@@ -83,6 +87,7 @@ public class ServerManagementImpl implements ServerManagement
 		authz.checkAuthorization(AuthzCapability.maintenance);
 		bulkProcessing.removeAllRules();
 		initDb.reset();
+		effectiveAttributesCache.invalidateAll();
 		endpointMan.undeployAll();
 		engineInit.initializeDatabaseContents();
 	}
@@ -127,6 +132,7 @@ public class ServerManagementImpl implements ServerManagement
 			}
 			initDb.runPostImportCleanup();
 		});
+		effectiveAttributesCache.invalidateAll();
 		endpointMan.undeployAll();
 		engineInit.initializeDatabaseContents();
 	}
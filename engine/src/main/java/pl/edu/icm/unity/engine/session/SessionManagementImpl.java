@@ -10,16 +10,20 @@ import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import pl.edu.icm.unity.base.token.Token;
 import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.engine.api.authn.InvocationContext;
@@ -40,6 +44,8 @@ import pl.edu.icm.unity.exceptions.WrongArgumentException;
 import pl.edu.icm.unity.stdext.attr.StringAttribute;
 import pl.edu.icm.unity.store.api.EntityDAO;
 import pl.edu.icm.unity.store.api.tx.Transactional;
+import pl.edu.icm.unity.store.api.tx.TransactionalRunner;
+import pl.edu.icm.unity.store.api.tx.TxManager;
 import pl.edu.icm.unity.types.authn.AuthenticationRealm;
 import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.EntityInformation;
@@ -48,6 +54,14 @@ import pl.edu.icm.unity.types.basic.EntityState;
 
 /**
  * Implementation of {@link SessionManagement}
+ * <p>
+ * Sessions are stored as tokens. Expiration time of a session token is updated whenever session's
+ * activity is recorded, so inactive sessions are removed by the regular cleanup of expired tokens.
+ * <p>
+ * Decoded sessions are cached for a short time, so that typical requests don't need to read the session 
+ * token, while changes performed on other cluster nodes are recognized quickly. Session activity is written 
+ * to DB at most once per {@link #DB_ACTIVITY_WRITE_DELAY} for each session: activity recorded in the meantime
+ * is kept in memory and written behind by a periodic job.
  * @author K. Benedyczak
  */
 @Component
@@ -56,30 +70,55 @@ public class SessionManagementImpl implements SessionManagement
 	private static final Logger log = Log.getLogger(Log.U_SERVER, SessionManagementImpl.class);
 	public static final long DB_ACTIVITY_WRITE_DELAY = 3000;
 	public static final String SESSION_TOKEN_TYPE = "session";
+	/**
+	 * Session token is kept for this time after the session became inactive, so that session is 
+	 * reported as expired rather than missing.
+	 */
+	private static final long EXPIRED_SESSION_RETENTION = 30000;
+	private static final long SESSION_CACHE_TTL = DB_ACTIVITY_WRITE_DELAY;
+	private static final int MAX_CACHED_SESSIONS = 100000;
 	private TokensManagement tokensManagement;
 	private LoginToHttpSessionBinder sessionBinder;
 	private SessionParticipantTypesRegistry participantTypesRegistry;
 	private EntityDAO entityDAO;
 	private AttributesHelper attributeHelper;
+	private TransactionalRunner txRunner;
+	private TxManager txManager;
+	
+	private final Cache<String, LoginSession> sessionsCache = CacheBuilder.newBuilder()
+			.expireAfterWrite(SESSION_CACHE_TTL, TimeUnit.MILLISECONDS)
+			.maximumSize(MAX_CACHED_SESSIONS)
+			.build();
+	private final AtomicLong sessionsCacheInvalidations = new AtomicLong();
 	
 	/**
 	 * map of timestamps indexed by session ids, when the last activity update was written to DB.
 	 */
-	private Map<String, Long> recentUsageUpdates = new WeakHashMap<>();
+	private final ConcurrentMap<String, Long> recentUsageUpdates = new ConcurrentHashMap<>();
+
+	/**
+	 * map of activity timestamps indexed by session ids, which were not yet written to DB.
+	 */
+	private final ConcurrentMap<String, Date> pendingUsageUpdates = new ConcurrentHashMap<>();
 	
 	@Autowired
 	public SessionManagementImpl(TokensManagement tokensManagement, ExecutorsService execService,
 			LoginToHttpSessionBinder sessionBinder, 
 			SessionParticipantTypesRegistry participantTypesRegistry,
-			EntityDAO entityDAO, AttributesHelper attributeHelper)
+			EntityDAO entityDAO, AttributesHelper attributeHelper,
+			TransactionalRunner txRunner, TxManager txManager)
 	{
 		this.tokensManagement = tokensManagement;
 		this.sessionBinder = sessionBinder;
 		this.participantTypesRegistry = participantTypesRegistry;
 		this.entityDAO = entityDAO;
 		this.attributeHelper = attributeHelper;
-		execService.getService().scheduleWithFixedDelay(new TerminateInactiveSessions(), 
-				20, 30, TimeUnit.SECONDS);
+		this.txRunner = txRunner;
+		this.txManager = txManager;
+		tokensManagement.addTokenExpirationListener(this::sessionTokenExpired, SESSION_TOKEN_TYPE);
+		execService.getService().schedule(new TerminateLegacyInactiveSessions(), 20, TimeUnit.SECONDS);
+		execService.getService().scheduleWithFixedDelay(this::writePendingUsageUpdates, 
+				DB_ACTIVITY_WRITE_DELAY, DB_ACTIVITY_WRITE_DELAY, TimeUnit.MILLISECONDS);
 	}
 
 	@Override
@@ -105,7 +144,9 @@ public class SessionManagementImpl implements SessionManagement
 					ret.setLogin2ndFactor(new AuthNInfo(secondFactorOptionId, now));
 					byte[] contents = ret.getTokenContents();
 					tokensManagement.updateToken(SESSION_TOKEN_TYPE,
-							ret.getId(), null, contents);
+							ret.getId(), getTokenExpiration(ret), contents);
+					pendingUsageUpdates.remove(ret.getId());
+					invalidateCachedSession(ret.getId());
 
 					if (log.isDebugEnabled())
 						log.debug("Using existing session " + ret.getId()
@@ -168,7 +209,7 @@ public class SessionManagementImpl implements SessionManagement
 		try
 		{
 			tokensManagement.addToken(SESSION_TOKEN_TYPE, id, new EntityParam(loggedEntity), 
-					ls.getTokenContents(), ls.getStarted(), ls.getExpires());
+					ls.getTokenContents(), ls.getStarted(), getTokenExpiration(ls));
 			updateLoginAttributes(loggedEntity, ls.getStarted());
 		} catch (Exception e)
 		{
@@ -198,6 +239,7 @@ public class SessionManagementImpl implements SessionManagement
 	public void removeSession(String id, boolean soft)
 	{
 		sessionBinder.removeLoginSession(id, soft);
+		forgetSession(id);
 		try
 		{
 			tokensManagement.removeToken(SESSION_TOKEN_TYPE, id);
@@ -212,8 +254,7 @@ public class SessionManagementImpl implements SessionManagement
 	@Override
 	public LoginSession getSession(String id)
 	{
-		Token token = tokensManagement.getTokenById(SESSION_TOKEN_TYPE, id);
-		LoginSession session = token2session(token);
+		LoginSession session = getCachedSession(id);
 		if (session.isExpiredAt(System.currentTimeMillis()))
 			throw new SessionExpiredException();
 		log.trace("Returning session {} last used at {} maxInactivity {}", id, session.getLastUsed(), 
@@ -221,6 +262,49 @@ public class SessionManagementImpl implements SessionManagement
 		return session;
 	}
 
+	/**
+	 * @return copy of the cached session, with activity which was not yet written to DB applied
+	 */
+	private LoginSession getCachedSession(String id)
+	{
+		LoginSession cached = sessionsCache.getIfPresent(id);
+		if (cached == null)
+		{
+			long invalidations = sessionsCacheInvalidations.get();
+			Token token = tokensManagement.getTokenById(SESSION_TOKEN_TYPE, id);
+			cached = token2session(token);
+			if (sessionsCacheInvalidations.get() == invalidations)
+				sessionsCache.put(id, cached);
+		}
+		LoginSession ret = new LoginSession(cached);
+		applyPendingUsageUpdate(ret);
+		return ret;
+	}
+	
+	private void applyPendingUsageUpdate(LoginSession session)
+	{
+		Date pending = pendingUsageUpdates.get(session.getId());
+		if (pending != null && pending.after(session.getLastUsed()))
+			session.setLastUsed(pending);
+	}
+	
+	private void invalidateCachedSession(String id)
+	{
+		Runnable invalidation = () -> 
+		{
+			sessionsCacheInvalidations.incrementAndGet();
+			sessionsCache.invalidate(id);
+		};
+		invalidation.run();
+		txManager.addPostCompletionAction(invalidation);
+	}
+	
+	private void forgetSession(String id)
+	{
+		pendingUsageUpdates.remove(id);
+		recentUsageUpdates.remove(id);
+		invalidateCachedSession(id);
+	}
 	
 	private LoginSession getOwnedSessionInternal(EntityParam owner, String realm)
 			throws EngineException
@@ -229,6 +313,7 @@ public class SessionManagementImpl implements SessionManagement
 		for (Token token: tokens)
 		{
 			LoginSession ls = token2session(token);
+			applyPendingUsageUpdate(ls);
 			if (realm.equals(ls.getRealm()) && !ls.isExpiredAt(System.currentTimeMillis()))
 				return ls;
 		}
@@ -247,21 +332,50 @@ public class SessionManagementImpl implements SessionManagement
 	}
 	
 	@Override
-	@Transactional
 	public void updateSessionActivity(String id)
 	{
+		LoginSession session = getCachedSession(id);
+		Date now = new Date();
+		if (session.isExpiredAt(now.getTime()))
+			throw new SessionExpiredException();
+		
 		Long lastWrite = recentUsageUpdates.get(id);
-		if (lastWrite != null)
+		if (lastWrite != null && now.getTime() < lastWrite + DB_ACTIVITY_WRITE_DELAY)
 		{
-			if (System.currentTimeMillis() < lastWrite + DB_ACTIVITY_WRITE_DELAY)
-				return;
+			pendingUsageUpdates.merge(id, now, (previous, current) -> 
+				current.after(previous) ? current : previous);
+			return;
 		}
 		
-		if (!updateSession(id, session -> session.setLastUsed(new Date())))
-			throw new SessionExpiredException();
-
+		txRunner.runInTransaction(() -> 
+		{
+			if (!updateSession(id, updated -> updated.setLastUsed(now)))
+				throw new SessionExpiredException();
+		});
 		log.trace("Updated in db session activity timestamp for " + id);
-		recentUsageUpdates.put(id, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Writes activity of sessions which was recorded in memory only. Each session is updated 
+	 * in a separate transaction, so that a session removed in the meantime doesn't affect others.
+	 */
+	private void writePendingUsageUpdates()
+	{
+		for (String id: pendingUsageUpdates.keySet())
+		{
+			try
+			{
+				txRunner.runInTransaction(() -> updateSession(id, session -> {}));
+				log.trace("Written behind session activity timestamp for " + id);
+			} catch (Exception e)
+			{
+				log.debug("Can't write activity timestamp of session " + id + 
+						" - it was removed(?)", e);
+				pendingUsageUpdates.remove(id);
+			}
+		}
+		long now = System.currentTimeMillis();
+		recentUsageUpdates.values().removeIf(lastWrite -> now >= lastWrite + DB_ACTIVITY_WRITE_DELAY);
 	}
 	
 	@Override
@@ -285,6 +399,9 @@ public class SessionManagementImpl implements SessionManagement
 	{
 		Token token = tokensManagement.getTokenById(SESSION_TOKEN_TYPE, id);
 		LoginSession session = token2session(token);
+		Date pendingUsage = pendingUsageUpdates.remove(id);
+		if (pendingUsage != null && pendingUsage.after(session.getLastUsed()))
+			session.setLastUsed(pendingUsage);
 		
 		if (session.isExpiredAt(System.currentTimeMillis()))
 			return false;
@@ -293,10 +410,33 @@ public class SessionManagementImpl implements SessionManagement
 		updateCurrentSessionIfMatching(session);
 		
 		byte[] contents = session.getTokenContents();
-		tokensManagement.updateToken(SESSION_TOKEN_TYPE, id, null, contents);
+		tokensManagement.updateToken(SESSION_TOKEN_TYPE, id, getTokenExpiration(session), contents);
+		recentUsageUpdates.put(id, System.currentTimeMillis());
+		invalidateCachedSession(id);
 		return true;
 	}
 	
+	private Date getTokenExpiration(LoginSession session)
+	{
+		long inactivityExpiration = session.getLastUsed().getTime() + session.getMaxInactivity();
+		long expiration = session.getExpires() == null ? inactivityExpiration : 
+			Math.max(inactivityExpiration, session.getExpires().getTime());
+		return new Date(expiration + EXPIRED_SESSION_RETENTION);
+	}
+	
+	private void sessionTokenExpired(Token token)
+	{
+		log.debug("Expiring login session {}", token.getValue());
+		forgetSession(token.getValue());
+		try
+		{
+			sessionBinder.removeLoginSession(token.getValue(), false);
+		} catch (Exception e)
+		{
+			log.error("Can't expire the session " + token.getValue(), e);
+		}
+	}
+	
 	private void updateCurrentSessionIfMatching(LoginSession changed)
 	{
 		if (!InvocationContext.hasCurrent())
@@ -327,7 +467,12 @@ public class SessionManagementImpl implements SessionManagement
 		attributeHelper.addSystemAttribute(entityId, lastAuthn, true);
 	}
 	
-	private class TerminateInactiveSessions implements Runnable
+	/**
+	 * Handles sessions which were stored without expiration time: inactive ones are removed, the remaining 
+	 * ones get their expiration time set. Afterwards all sessions are covered by the expired tokens cleanup,
+	 * so it is enough to run this once.
+	 */
+	private class TerminateLegacyInactiveSessions implements Runnable
 	{
 		@Override
 		public void run()
@@ -339,27 +484,33 @@ public class SessionManagementImpl implements SessionManagement
 			} catch (Exception e)
 			{
 				log.warn("Encounterd an error when trying to obtain session tokens from DB. "
-						+ "Cleanup will be tried again in the next round.", e);
+						+ "Sessions without expiration time won't be cleaned up.", e);
 				return;
 			}
 			long now = System.currentTimeMillis();
 			for (Token t: tokens)
 			{
+				if (t.getExpires() != null)
+					continue;
 				try
 				{
-					removeSessionIfExpired(now, t);
+					handleLegacySession(now, t);
 				} catch (Exception e)
 				{
-					log.warn("Removing expired session " + t.getValue() + " failed", e);
+					log.warn("Handling session " + t.getValue() + " stored without expiration failed", e);
 				}
 			}
 		}
 		
-		private void removeSessionIfExpired(long now, Token t)
+		private void handleLegacySession(long now, Token t)
 		{
 			LoginSession session = token2session(t);
 			long inactiveFor = now - session.getLastUsed().getTime(); 
-			if (inactiveFor > session.getMaxInactivity())
+			if (inactiveFor <= session.getMaxInactivity())
+			{
+				tokensManagement.updateToken(SESSION_TOKEN_TYPE, session.getId(), 
+						getTokenExpiration(session), session.getTokenContents());
+			} else
 			{
 				log.debug("Expiring login session " + session + " inactive for: " + 
 						inactiveFor);
@@ -87,6 +87,15 @@ public abstract class SystemTranslationProfileProviderBase
 			copy.put(tp.getName(), tp.clone());
 		return copy;
 	}
+
+	/**
+	 * @return copy of the system profile with the given name or null if there is no such profile
+	 */
+	public TranslationProfile getSystemProfile(String name)
+	{
+		TranslationProfile profile = profiles.get(name);
+		return profile == null ? null : profile.clone();
+	}
 	
 	protected void checkProfile(TranslationProfile profile) throws EngineException
 	{
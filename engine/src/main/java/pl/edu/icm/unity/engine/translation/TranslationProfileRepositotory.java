@@ -4,7 +4,13 @@
  */
 package pl.edu.icm.unity.engine.translation;
 
+import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.store.api.generic.NamedCRUDDAOWithTS;
@@ -12,7 +18,11 @@ import pl.edu.icm.unity.store.api.tx.Transactional;
 import pl.edu.icm.unity.types.translation.TranslationProfile;
 
 /**
- * Allows read profiles from DB and @{SystemTranslationProfileProvider}s 
+ * Allows read profiles from DB and @{SystemTranslationProfileProvider}s.
+ * <p>
+ * Additionally ready to use profile instances are cached. Instance is reused as long as the profile's 
+ * update timestamp is unchanged, so changes made on any cluster node are respected. As actions may depend 
+ * on other objects (e.g. attribute types) instances are also expiring after a short time.
  * @author P.Piernik
  *
  */
@@ -20,6 +30,11 @@ public abstract class TranslationProfileRepositotory
 {
 	private NamedCRUDDAOWithTS<TranslationProfile> dao;
 	private SystemTranslationProfileProviderBase systemProfileprovider;
+	private static final long INSTANCE_CACHE_TTL = 60000;
+	private static final Date SYSTEM_PROFILE_REVISION = new Date(0);
+	private final Cache<String, CachedInstance> instanceCache = CacheBuilder.newBuilder()
+			.expireAfterWrite(INSTANCE_CACHE_TTL, TimeUnit.MILLISECONDS)
+			.build();
 	
 	
 	
@@ -69,5 +84,39 @@ public abstract class TranslationProfileRepositotory
 		return dao.get(name);
 	}
 
+	/**
+	 * @param instanceFactory used to create profile instance if there is no up to date cached one. 
+	 * Should always create instances of the same type for a given repository.
+	 * @return ready to use instance of the profile with the given name or null if there is no such profile
+	 */
+	@Transactional
+	@SuppressWarnings("unchecked")
+	public <I extends TranslationProfileInstance<?, ?>> I getProfileInstance(String name, 
+			Function<TranslationProfile, I> instanceFactory) throws EngineException
+	{
+		TranslationProfile systemProfile = systemProfileprovider.getSystemProfile(name);
+		if (systemProfile == null && !dao.exists(name))
+			return null;
+		Date revision = systemProfile != null ? SYSTEM_PROFILE_REVISION : dao.getUpdateTimestamp(name);
+		CachedInstance cached = instanceCache.getIfPresent(name);
+		if (cached != null && cached.revision.equals(revision))
+			return (I) cached.instance;
+		
+		I instance = instanceFactory.apply(systemProfile != null ? systemProfile : dao.get(name));
+		if (!instance.hasInvalidActions())
+			instanceCache.put(name, new CachedInstance(revision, instance));
+		return instance;
+	}
+	
+	private static class CachedInstance
+	{
+		private final Date revision;
+		private final TranslationProfileInstance<?, ?> instance;
 
+		CachedInstance(Date revision, TranslationProfileInstance<?, ?> instance)
+		{
+			this.revision = revision;
+			this.instance = instance;
+		}
+	}
 }
@@ -228,13 +228,12 @@ public class OutputTranslationProfile
 			TranslationInput input, TranslationResult translationState)
 			throws EngineException
 	{
-		TranslationProfile translationProfile = profileRepo.listAllProfiles()
-				.get(profile);
-		if (translationProfile == null)
+		OutputTranslationProfile profileInstance = profileRepo.getProfileInstance(profile, 
+				translationProfile -> new OutputTranslationProfile(translationProfile, profileRepo, 
+						registry, attrConverter));
+		if (profileInstance == null)
 			throw new ConfigurationException("The output translation profile '"
 					+ profile + "' included in another profile does not exist");
-		OutputTranslationProfile profileInstance = new OutputTranslationProfile(
-				translationProfile, profileRepo, registry, attrConverter);
 		TranslationResult result = profileInstance.translate(input, translationState);
 		return result;
 	}
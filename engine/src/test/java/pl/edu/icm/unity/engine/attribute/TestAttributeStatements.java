@@ -183,6 +183,48 @@ public class TestAttributeStatements extends DBIntegrationTestBase
 				1, 0, 1, 1,  0, 0); //a2
 	}
 	
+	@Test
+	public void effectiveAttributeIsUpdatedAfterSourceAttributeChange() throws Exception
+	{
+		setupStateForConditions();
+		AttributeStatement statement0 = new AttributeStatement(
+				"true", 
+				"/A", 
+				ConflictResolution.skip, 
+				"a2", 
+				"attrs['a1']");
+		setStatments(groupAB, statement0);
+		Collection<AttributeExt> aRet = attrsMan.getAllAttributes(entity, true, "/A/B", "a2", false);
+		assertThat(aRet.iterator().next().getValues().get(0), is("va1"));
+		
+		attrsMan.setAttribute(entity, StringAttribute.of("a1", "/A", "va2"));
+		
+		aRet = attrsMan.getAllAttributes(entity, true, "/A/B", "a2", false);
+		assertThat(aRet.iterator().next().getValues().get(0), is("va2"));
+	}
+	
+	@Test
+	public void effectiveAttributeIsUpdatedAfterStatementChangeInSubgroup() throws Exception
+	{
+		setupStateForConditions();
+		setStatments(groupABC, AttributeStatement.getFixedEverybodyStatement(
+				StringAttribute.of("a2", "/A/B/C", "v1")));
+		setStatments(groupAB, new AttributeStatement(
+				"eattr['a2'] != null",
+				"/A/B/C", 
+				ConflictResolution.skip, 
+				"a2", 
+				"eattr['a2']"));
+		Collection<AttributeExt> aRet = attrsMan.getAllAttributes(entity, true, "/A/B", "a2", false);
+		assertThat(aRet.iterator().next().getValues().get(0), is("v1"));
+		
+		setStatments(groupABC, AttributeStatement.getFixedEverybodyStatement(
+				StringAttribute.of("a2", "/A/B/C", "v2")));
+		
+		aRet = attrsMan.getAllAttributes(entity, true, "/A/B", "a2", false);
+		assertThat(aRet.iterator().next().getValues().get(0), is("v2"));
+	}
+	
 	@Test
 	public void cyclesAreNotFollowed() throws Exception
 	{
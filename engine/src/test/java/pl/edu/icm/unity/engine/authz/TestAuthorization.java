@@ -21,6 +21,7 @@ import pl.edu.icm.unity.exceptions.AuthorizationException;
 import pl.edu.icm.unity.stdext.attr.EnumAttribute;
 import pl.edu.icm.unity.stdext.identity.UsernameIdentity;
 import pl.edu.icm.unity.types.basic.Attribute;
+import pl.edu.icm.unity.types.basic.AttributeStatement;
 import pl.edu.icm.unity.types.basic.EntityParam;
 import pl.edu.icm.unity.types.basic.EntityState;
 import pl.edu.icm.unity.types.basic.Group;
@@ -226,6 +227,25 @@ public class TestAuthorization extends DBIntegrationTestBase
 	}
 
 	
+	@Test
+	public void shouldAllowUserWithSysManAssignedByStatementToAddSubGroup() throws Exception
+	{
+		EntityParam entity = addRegularUser();
+		setupUserContext("admin", null);
+		Group groupA = new Group("/A");
+		groupA.setAttributeStatements(new AttributeStatement[] {
+				AttributeStatement.getFixedEverybodyStatement(EnumAttribute.of(
+						RoleAttributeTypeProvider.AUTHORIZATION_ROLE, "/A", 
+						InternalAuthorizationManagerImpl.SYSTEM_MANAGER_ROLE))});
+		groupsMan.addGroup(groupA);
+		groupsMan.addMemberFromParent("/A", entity);
+		
+		setupUserContext("user1", null);
+		catchException(groupsMan).addGroup(new Group("/A/B"));
+		
+		assertThat(caughtException(), is(nullValue()));
+	}
+	
 	@Test
 	public void shouldNotAllowUserWithoutRoleToAddGroup() throws Exception
 	{
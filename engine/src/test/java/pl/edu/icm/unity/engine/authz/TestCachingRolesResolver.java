@@ -7,13 +7,15 @@ package pl.edu.icm.unity.engine.authz;
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -24,14 +26,17 @@ import org.junit.Test;
 import com.google.common.collect.Lists;
 
 import pl.edu.icm.unity.engine.attribute.AttributesHelper;
-import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.store.api.AttributeDAO;
 import pl.edu.icm.unity.store.api.GroupDAO;
+import pl.edu.icm.unity.store.types.StoredAttribute;
 import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.AttributeExt;
+import pl.edu.icm.unity.types.basic.AttributeStatement;
 import pl.edu.icm.unity.types.basic.Group;
 
 public class TestCachingRolesResolver
 {
+	private AttributeDAO attributeDAO;
 	private AttributesHelper dbAttributes;
 	private GroupDAO groupDAO;
 	private Map<String, AuthzRole> rolesMap;
@@ -40,74 +45,84 @@ public class TestCachingRolesResolver
 	@Before
 	public void init()
 	{
+		attributeDAO = mock(AttributeDAO.class);
 		dbAttributes = mock(AttributesHelper.class);
 		groupDAO = mock(GroupDAO.class);
-		when(groupDAO.exists(anyString())).thenReturn(true);
 		rolesMap = new HashMap<>();
 		r1 = mock(AuthzRole.class);
 		rolesMap.put("role1", r1);
+		StoredAttribute roleInRoot = new StoredAttribute(new AttributeExt(new Attribute(
+				RoleAttributeTypeProvider.AUTHORIZATION_ROLE, "string", "/",
+				Lists.newArrayList("role1")), true), 1L);
+		when(attributeDAO.getAttributes(eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE), isNull(), isNull()))
+			.thenReturn(Lists.newArrayList(roleInRoot));
+		when(attributeDAO.getAttributes(eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE), eq(1L), isNull()))
+			.thenReturn(Lists.newArrayList(roleInRoot));
 	}
-	
+
 	@Test
-	public void shouldReturnFromDB() throws EngineException
+	public void shouldReturnFromDB()
 	{
-		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, 100000, groupDAO);
-		
-		Map<String, Map<String, AttributeExt>> roleAttrs = new HashMap<>();
-		Map<String, AttributeExt> roleInRoot = new HashMap<>();
-		roleInRoot.put(RoleAttributeTypeProvider.AUTHORIZATION_ROLE, 
-				new AttributeExt(new Attribute(
-						RoleAttributeTypeProvider.AUTHORIZATION_ROLE, "string", "/", 
-						Lists.newArrayList("role1")), true));
-		roleAttrs.put("/", roleInRoot);
-		when(dbAttributes.getAllAttributesAsMap(
-				eq(1L), eq("/"), eq(true), eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE))).thenReturn(roleAttrs);
-		
+		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, attributeDAO, groupDAO, 100000);
+
 		Set<AuthzRole> roles = resolver.establishRoles(1, new Group("/A"));
-		
+
 		assertThat(roles.size(), is(1));
 		assertThat(roles, hasItem(r1));
 	}
 
 	@Test
-	public void shouldReturnFromCache() throws EngineException
+	public void shouldReturnFromCache()
 	{
-		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, 100000, groupDAO);
-		
-		Map<String, Map<String, AttributeExt>> roleAttrs = new HashMap<>();
-		Map<String, AttributeExt> roleInRoot = new HashMap<>();
-		roleInRoot.put(RoleAttributeTypeProvider.AUTHORIZATION_ROLE, 
-				new AttributeExt(new Attribute(
-						RoleAttributeTypeProvider.AUTHORIZATION_ROLE, "string", "/", 
-						Lists.newArrayList("role1")), true));
-		roleAttrs.put("/", roleInRoot);
-		when(dbAttributes.getAllAttributesAsMap(
-				eq(1L), eq("/"), eq(true), eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE))).thenReturn(roleAttrs);
-		
+		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, attributeDAO, groupDAO, 100000);
+
 		resolver.establishRoles(1, new Group("/A"));
 		Set<AuthzRole> roles = resolver.establishRoles(1, new Group("/A"));
-		
+		Set<AuthzRole> otherEntityRoles = resolver.establishRoles(2, new Group("/A"));
+
 		assertThat(roles.size(), is(1));
 		assertThat(roles, hasItem(r1));
-		verify(dbAttributes).getAllAttributesAsMap(eq(1L), eq("/"), eq(true), eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE));
-		verify(dbAttributes).getAllAttributesAsMap(eq(1L), eq("/A"), eq(true), eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE));
+		assertThat(otherEntityRoles.isEmpty(), is(true));
+		verify(attributeDAO).getAttributes(eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE), isNull(), isNull());
+	}
+
+	@Test
+	public void shouldReloadOnlyChangedEntity()
+	{
+		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, attributeDAO, groupDAO, 100000);
+		resolver.establishRoles(1, new Group("/A"));
+		when(attributeDAO.getAttributes(eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE), eq(1L), isNull()))
+			.thenReturn(Collections.emptyList());
+
+		resolver.entityChanged(1);
+		Set<AuthzRole> roles = resolver.establishRoles(1, new Group("/A"));
+		resolver.establishRoles(1, new Group("/A"));
+
+		assertThat(roles.isEmpty(), is(true));
+		verify(attributeDAO).getAttributes(eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE), isNull(), isNull());
+		verify(attributeDAO).getAttributes(eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE), eq(1L), isNull());
+	}
+
+	@Test
+	public void shouldReloadIndexAfterGroupChange()
+	{
+		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, attributeDAO, groupDAO, 100000);
+		resolver.establishRoles(1, new Group("/A"));
+
+		resolver.groupChanged("/A");
+		Set<AuthzRole> roles = resolver.establishRoles(1, new Group("/A"));
+
+		assertThat(roles, hasItem(r1));
+		verify(attributeDAO, times(2)).getAttributes(eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE),
+				isNull(), isNull());
+		verify(attributeDAO, never()).getAttributes(eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE),
+				eq(1L), isNull());
 	}
 
-	
 	@Test
 	public void shouldExpireCache() throws Exception
 	{
-		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, 1, groupDAO);
-
-		Map<String, Map<String, AttributeExt>> roleAttrs = new HashMap<>();
-		Map<String, AttributeExt> roleInRoot = new HashMap<>();
-		roleInRoot.put(RoleAttributeTypeProvider.AUTHORIZATION_ROLE, 
-				new AttributeExt(new Attribute(
-						RoleAttributeTypeProvider.AUTHORIZATION_ROLE, "string", "/", 
-						Lists.newArrayList("role1")), true));
-		roleAttrs.put("/", roleInRoot);
-		when(dbAttributes.getAllAttributesAsMap(
-				eq(1L), eq("/"), eq(true), eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE))).thenReturn(roleAttrs);
+		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, attributeDAO, groupDAO, 1);
 
 		resolver.establishRoles(1, new Group("/A"));
 		Thread.sleep(10);
@@ -115,8 +130,49 @@ public class TestCachingRolesResolver
 
 		assertThat(roles.size(), is(1));
 		assertThat(roles, hasItem(r1));
-		verify(dbAttributes, times(2)).getAllAttributesAsMap(eq(1L), eq("/"), eq(true), eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE));
-		verify(dbAttributes, times(2)).getAllAttributesAsMap(eq(1L), eq("/A"), eq(true), eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE));
+		verify(attributeDAO, times(2)).getAttributes(eq(RoleAttributeTypeProvider.AUTHORIZATION_ROLE),
+				isNull(), isNull());
 	}
 
+	@Test
+	public void shouldReturnRoleAssignedByStatement() throws Exception
+	{
+		Attribute role = new Attribute(RoleAttributeTypeProvider.AUTHORIZATION_ROLE, "string", "/A",
+				Lists.newArrayList("role1"));
+		Group groupA = new Group("/A");
+		groupA.setAttributeStatements(new AttributeStatement[] {
+				AttributeStatement.getFixedEverybodyStatement(role)});
+		when(groupDAO.getAll()).thenReturn(Lists.newArrayList(new Group("/"), groupA));
+		Map<String, Map<String, AttributeExt>> effective = new HashMap<>();
+		effective.put("/A", Collections.singletonMap(RoleAttributeTypeProvider.AUTHORIZATION_ROLE,
+				new AttributeExt(role, false)));
+		when(dbAttributes.getAllAttributesAsMap(2L, "/A", true, RoleAttributeTypeProvider.AUTHORIZATION_ROLE))
+			.thenReturn(effective);
+		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, attributeDAO, groupDAO, 
+				100000);
+
+		Set<AuthzRole> inA = resolver.establishRoles(2, new Group("/A/B"));
+		Set<AuthzRole> inRoot = resolver.establishRoles(2, new Group("/"));
+
+		assertThat(inA, hasItem(r1));
+		assertThat(inRoot.isEmpty(), is(true));
+	}
+
+	@Test
+	public void shouldUseEffectiveAttributesWithoutCache() throws Exception
+	{
+		Attribute role = new Attribute(RoleAttributeTypeProvider.AUTHORIZATION_ROLE, "string", "/A",
+				Lists.newArrayList("role1"));
+		Map<String, Map<String, AttributeExt>> effective = new HashMap<>();
+		effective.put("/A", Collections.singletonMap(RoleAttributeTypeProvider.AUTHORIZATION_ROLE,
+				new AttributeExt(role, false)));
+		when(groupDAO.exists("/A")).thenReturn(true);
+		when(dbAttributes.getAllAttributesAsMap(2L, "/A", true, RoleAttributeTypeProvider.AUTHORIZATION_ROLE))
+			.thenReturn(effective);
+		CachingRolesResolver resolver = new CachingRolesResolver(rolesMap, dbAttributes, attributeDAO, groupDAO, 0);
+
+		Set<AuthzRole> roles = resolver.establishRoles(2, new Group("/A"));
+
+		assertThat(roles, hasItem(r1));
+	}
 }
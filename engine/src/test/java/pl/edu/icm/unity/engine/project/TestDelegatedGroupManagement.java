@@ -47,6 +47,7 @@ import pl.edu.icm.unity.types.basic.Attribute;
 import pl.edu.icm.unity.types.basic.AttributeExt;
 import pl.edu.icm.unity.types.basic.AttributeType;
 import pl.edu.icm.unity.types.basic.Entity;
+import pl.edu.icm.unity.types.basic.EntityInformation;
 import pl.edu.icm.unity.types.basic.Group;
 import pl.edu.icm.unity.types.basic.GroupContents;
 import pl.edu.icm.unity.types.basic.GroupDelegationConfiguration;
@@ -147,14 +148,13 @@ public class TestDelegatedGroupManagement extends TestProjectBase
 		con.getGroup().setDelegationConfiguration(new GroupDelegationConfiguration(true, null, null, null, null,
 				Arrays.asList("extraAttr")));
 
-		when(mockIdMan.getEntity(any()))
-				.thenReturn(new Entity(
+		when(mockBulkQueryService.getGroupEntitiesNoContextWithoutTargeted(any()))
+				.thenReturn(getEntities(new Entity(
 						Arrays.asList(new Identity(EmailIdentity.ID, "demo@demo.com", 1,
 								new UsernameIdentity().getComparableValue("", "", ""))),
-						null, null));
+						new EntityInformation(1L), null)));
 
 		when(mockGroupMan.getContents(any(), anyInt())).thenReturn(con);
-		when(mockGroupMan.getContents(any(), anyInt())).thenReturn(con);
 
 		when(mockAttrHelper.getAttributeTypeWithSingeltonMetadata(eq(EntityNameMetadataProvider.NAME)))
 				.thenReturn(new AttributeType("name", null));
@@ -162,16 +162,17 @@ public class TestDelegatedGroupManagement extends TestProjectBase
 		when(mockAtHelper.getUnconfiguredSyntaxForAttributeName(eq("name")))
 				.thenAnswer(x -> new StringAttributeSyntax());
 
-		when(mockAttrMan.getAttributes(any(), eq("/project"), eq(
-				ProjectAuthorizationRoleAttributeTypeProvider.PROJECT_MANAGEMENT_AUTHORIZATION_ROLE)))
-						.thenReturn(Arrays.asList(getAttributeExt(
-								GroupAuthorizationRole.manager.toString())));
-
-		when(mockAttrMan.getAttributes(any(), eq("/"), eq("name")))
-				.thenReturn(Arrays.asList(getAttributeExt("demo")));
+		Map<String, AttributeExt> projectAttributes = new HashMap<>();
+		projectAttributes.put(ProjectAuthorizationRoleAttributeTypeProvider.PROJECT_MANAGEMENT_AUTHORIZATION_ROLE,
+				getAttributeExt(GroupAuthorizationRole.manager.toString()));
+		projectAttributes.put("extraAttr", getAttributeExt("extraValue"));
+		when(mockBulkQueryService.getGroupUsersAttributes(eq("/project"), any()))
+				.thenReturn(getUsersAttributes(1L, projectAttributes));
 
-		when(mockAttrMan.getAttributes(any(), eq("/project"), eq("extraAttr")))
-				.thenReturn(Arrays.asList(getAttributeExt("extraValue")));
+		Map<String, AttributeExt> rootAttributes = new HashMap<>();
+		rootAttributes.put("name", getAttributeExt("demo"));
+		when(mockBulkQueryService.getGroupUsersAttributes(eq("/"), any()))
+				.thenReturn(getUsersAttributes(1L, rootAttributes));
 
 		List<DelegatedGroupMember> delegatedGroupMemebers = dGroupMan.getDelegatedGroupMemebers("/project",
 				"/project");
@@ -182,6 +183,7 @@ public class TestDelegatedGroupManagement extends TestProjectBase
 		assertThat(firstMember.entityId, is(1L));
 		assertThat(firstMember.email.getValue(), is("demo@demo.com"));
 		assertThat(firstMember.name, is("demo"));
+		assertThat(firstMember.role, is(GroupAuthorizationRole.manager));
 		assertThat(firstMember.attributes.iterator().next().getValues().iterator().next(), is("extraValue"));
 
 	}
@@ -254,20 +256,11 @@ public class TestDelegatedGroupManagement extends TestProjectBase
 	@Test
 	public void shouldForbidRemoveLastManagerInProjectGroup() throws EngineException
 	{
-
-		when(mockIdMan.getEntity(any()))
-		.thenReturn(new Entity(
-				Arrays.asList(new Identity(UsernameIdentity.ID, "xx", 1,
-						new UsernameIdentity().getComparableValue("", "", ""))),
-				null, null));
-		
-		when(mockGroupMan.getContents(eq("/project"), anyInt()))
-				.thenReturn(getEnabledGroupContentsWithDefaultMember("/project"));
-
-		when(mockAttrMan.getAttributes(any(), eq("/project"), eq(
-				ProjectAuthorizationRoleAttributeTypeProvider.PROJECT_MANAGEMENT_AUTHORIZATION_ROLE)))
-						.thenReturn(Arrays.asList(getAttributeExt(
-								GroupAuthorizationRole.manager.toString())));
+		Map<String, AttributeExt> projectAttributes = new HashMap<>();
+		projectAttributes.put(ProjectAuthorizationRoleAttributeTypeProvider.PROJECT_MANAGEMENT_AUTHORIZATION_ROLE,
+				getAttributeExt(GroupAuthorizationRole.manager.toString()));
+		when(mockBulkQueryService.getGroupUsersAttributes(eq("/project"), any()))
+				.thenReturn(getUsersAttributes(1L, projectAttributes));
 
 		Throwable exception = catchThrowable(() -> dGroupMan.setGroupAuthorizationRole("/project", 1L,
 				GroupAuthorizationRole.regular));
@@ -322,6 +315,21 @@ public class TestDelegatedGroupManagement extends TestProjectBase
 		return new AttributeExt(new Attribute(null, null, null, Arrays.asList(value)), false);
 	}
 
+	private Map<Long, Entity> getEntities(Entity entity)
+	{
+		Map<Long, Entity> entities = new HashMap<>();
+		entities.put(entity.getId(), entity);
+		return entities;
+	}
+
+	private Map<Long, Map<String, AttributeExt>> getUsersAttributes(long entityId,
+			Map<String, AttributeExt> attributes)
+	{
+		Map<Long, Map<String, AttributeExt>> usersAttributes = new HashMap<>();
+		usersAttributes.put(entityId, attributes);
+		return usersAttributes;
+	}
+
 	private GroupContents getGroupContent(String path, List<String> subgroups)
 	{
 		GroupContents con = new GroupContents();
@@ -17,15 +17,23 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Collection;
+import java.util.Date;
 import java.util.Map;
 
+import org.awaitility.Awaitility;
+import org.awaitility.Duration;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import pl.edu.icm.unity.JsonUtil;
+import pl.edu.icm.unity.base.token.Token;
 import pl.edu.icm.unity.engine.DBIntegrationTestBase;
 import pl.edu.icm.unity.engine.api.authn.LoginSession;
 import pl.edu.icm.unity.engine.api.session.SessionManagement;
 import pl.edu.icm.unity.engine.api.session.SessionManagement.AttributeUpdater;
+import pl.edu.icm.unity.engine.api.token.TokensManagement;
 import pl.edu.icm.unity.engine.server.EngineInitialization;
 import pl.edu.icm.unity.engine.session.LastAuthenticationAttributeTypeProvider;
 import pl.edu.icm.unity.engine.session.SessionManagementImpl.SessionExpiredException;
@@ -44,6 +52,8 @@ public class TestSessions extends DBIntegrationTestBase
 {
 	@Autowired
 	protected SessionManagement sessionMan;
+	@Autowired
+	protected TokensManagement tokensMan;
 
 
 
@@ -172,6 +182,77 @@ public class TestSessions extends DBIntegrationTestBase
 		assertThat(caughtException(), isA(SessionExpiredException.class));
 	}
 	
+	@Test
+	public void sessionTokenExpirationFollowsInactivityLimit() throws Exception
+	{
+		IdentityParam toAdd = new IdentityParam(UsernameIdentity.ID, "u1");
+		Identity id = idsMan.addEntity(toAdd, EngineInitialization.DEFAULT_CREDENTIAL_REQUIREMENT, 
+				EntityState.valid, false);
+		AuthenticationRealm realm = new AuthenticationRealm("test", "", 3, 33, RememberMePolicy.disallow , 1, 100);
+		LoginSession s = sessionMan.getCreateSession(id.getEntityId(), realm, "u1", null, null, null, null);
+		long created = getSessionToken(s.getId()).getExpires().getTime();
+		
+		Awaitility.await().atMost(Duration.TEN_SECONDS).until(() -> {
+			sessionMan.updateSessionActivity(s.getId());
+			return getSessionToken(s.getId()).getExpires().getTime() > created;
+		});
+		
+		Token token = getSessionToken(s.getId());
+		LoginSession stored = new LoginSession();
+		stored.deserialize(token);
+		assertThat(token.getExpires().getTime() >= stored.getLastUsed().getTime() + 100000, is(true));
+	}
+	
+	@Test
+	public void recentSessionActivityIsWrittenBehind() throws Exception
+	{
+		IdentityParam toAdd = new IdentityParam(UsernameIdentity.ID, "u1");
+		Identity id = idsMan.addEntity(toAdd, EngineInitialization.DEFAULT_CREDENTIAL_REQUIREMENT, 
+				EntityState.valid, false);
+		AuthenticationRealm realm = new AuthenticationRealm("test", "", 3, 33, RememberMePolicy.disallow , 1, 100);
+		LoginSession s = sessionMan.getCreateSession(id.getEntityId(), realm, "u1", null, null, null, null);
+		sessionMan.updateSessionActivity(s.getId());
+		Date firstUse = sessionMan.getSession(s.getId()).getLastUsed();
+		
+		Awaitility.await().atMost(Duration.ONE_SECOND).until(() -> {
+			sessionMan.updateSessionActivity(s.getId());
+			return sessionMan.getSession(s.getId()).getLastUsed().after(firstUse);
+		});
+		Date lastUse = sessionMan.getSession(s.getId()).getLastUsed();
+		
+		Awaitility.await().atMost(Duration.TEN_SECONDS).until(() -> {
+			LoginSession stored = new LoginSession();
+			stored.deserialize(getSessionToken(s.getId()));
+			return stored.getLastUsed().equals(lastUse);
+		});
+	}
+	
+	@Test
+	public void legacySessionExpirationIsTakenFromToken() throws Exception
+	{
+		IdentityParam toAdd = new IdentityParam(UsernameIdentity.ID, "u1");
+		Identity id = idsMan.addEntity(toAdd, EngineInitialization.DEFAULT_CREDENTIAL_REQUIREMENT, 
+				EntityState.valid, false);
+		AuthenticationRealm realm = new AuthenticationRealm("test", "", 3, 33, RememberMePolicy.disallow , 1, 100);
+		LoginSession s = sessionMan.getCreateSession(id.getEntityId(), realm, "u1", null, null, null, null);
+		Token legacy = getSessionToken(s.getId());
+		ObjectNode contents = JsonUtil.parse(legacy.getContents());
+		contents.remove("expires");
+		legacy.setContents(JsonUtil.serialize2Bytes(contents));
+		Date absoluteExpiration = new Date(System.currentTimeMillis() + 3600000);
+		legacy.setExpires(absoluteExpiration);
+		
+		LoginSession deserialized = new LoginSession();
+		deserialized.deserialize(legacy);
+		
+		assertThat(deserialized.getExpires(), is(absoluteExpiration));
+	}
+	
+	private Token getSessionToken(String id)
+	{
+		return tokensMan.getTokenById(SessionManagementImpl.SESSION_TOKEN_TYPE, id);
+	}
+	
 	private void checkLastAuthnAttribute(long entityId) throws EngineException
 	{
 		Collection<AttributeExt> attrs = attrsMan.getAllAttributes(new EntityParam(entityId), false, "/", 
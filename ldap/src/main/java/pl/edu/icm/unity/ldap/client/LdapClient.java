@@ -28,12 +28,14 @@ import com.unboundid.ldap.sdk.Filter;
 import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPConnectionOptions;
 import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.PostConnectProcessor;
 import com.unboundid.ldap.sdk.ReadOnlySearchRequest;
 import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.ldap.sdk.SearchRequest;
 import com.unboundid.ldap.sdk.SearchResult;
 import com.unboundid.ldap.sdk.SearchResultEntry;
 import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldap.sdk.StartTLSPostConnectProcessor;
 import com.unboundid.ldap.sdk.extensions.StartTLSExtendedRequest;
 
 import eu.emi.security.authn.x509.X509CertChainValidator;
@@ -43,6 +45,7 @@ import pl.edu.icm.unity.engine.api.authn.remote.RemoteAttribute;
 import pl.edu.icm.unity.engine.api.authn.remote.RemoteGroupMembership;
 import pl.edu.icm.unity.engine.api.authn.remote.RemoteIdentity;
 import pl.edu.icm.unity.engine.api.authn.remote.RemotelyAuthenticatedInput;
+import pl.edu.icm.unity.ldap.client.LdapConnectionPool.LdapOperation;
 import pl.edu.icm.unity.ldap.client.config.GroupSpecification;
 import pl.edu.icm.unity.ldap.client.config.LdapClientConfiguration;
 import pl.edu.icm.unity.ldap.client.config.SearchSpecification;
@@ -69,6 +72,9 @@ import pl.edu.icm.unity.stdext.identity.X500Identity;
  * flexible group retrieval. Both 'memberOf' style and 'member' means of expressing group membership are supported,
  * with some additional options. Most notably it is possible to use a full DN of the group or its attribute 
  * as the group name.  
+ * <p>
+ * If enabled in configuration, connections are taken from a {@link LdapConnectionPool} of the configuration,
+ * instead of being established for each operation.
  * 
  * @author K. Benedyczak
  */
@@ -102,34 +108,28 @@ public class LdapClient
 			LdapClientConfiguration configuration) throws LDAPException, LdapAuthenticationException, 
 			KeyManagementException, NoSuchAlgorithmException
 	{
-		LDAPConnection connection = createConnection(configuration);
-		
 		String user = LdapUtils.extractUsername(userOrig, configuration.getUserExtractPattern());
+		if (configuration.isConnectionPoolEnabled())
+			return bindAndSearchPooled(user, password, configuration, getConnectionPool(configuration));
 		
-		String dn = establishUserDN(user, configuration, connection);
-		log.debug("Established user's DN is: " + dn);
-		
-		bindAsUser(connection, dn, password, configuration);
-		if (configuration.isBindOnly())
+		LDAPConnection connection = createConnection(configuration);
+		try
 		{
-			RemotelyAuthenticatedInput ret = new RemotelyAuthenticatedInput(idpName);
-			ret.addIdentity(new RemoteIdentity(dn, X500Identity.ID));
-			return ret;
+			String dn = establishUserDN(user, configuration, connection);
+			log.debug("Established user's DN is: " + dn);
+
+			bindAsUser(connection, dn, password, configuration);
+			if (configuration.isBindOnly())
+				return assembleBindOnlyResult(dn);
+
+			if (configuration.getBindAs() == BindAs.system)
+				bindAsSystem(connection, configuration);
+
+			return searchUserData(connection, configuration, user, dn);
+		} finally
+		{
+			connection.close();
 		}
-		
-		if (configuration.getBindAs() == BindAs.system)
-			bindAsSystem(connection, configuration);
-		
-		SearchResultEntry entry = findBaseEntry(configuration, dn, connection);
-		
-		RemotelyAuthenticatedInput ret = assembleBaseResult(entry);
-		findGroupsMembership(connection, entry, configuration, ret.getGroups());
-		
-		performAdditionalQueries(connection, configuration, user, ret);
-		ret.setRawAttributes(ret.getAttributes());
-		
-		connection.close();
-		return ret;
 	}
 
 	/**
@@ -156,34 +156,94 @@ public class LdapClient
 		}
 		
 		String user = LdapUtils.extractUsername(userOrig, configuration.getUserExtractPattern());
+		if (configuration.isConnectionPoolEnabled())
+			return searchPooled(user, configuration, getConnectionPool(configuration));
 		
 		LDAPConnection connection = createConnection(configuration);
-		
-		String dn = establishUserDN(user, configuration, connection);
+		try
+		{
+			String dn = establishUserDN(user, configuration, connection);
+			log.debug("Established user's DN is: " + dn);
+
+			if (configuration.isBindOnly())
+				return assembleBindOnlyResult(dn);
+
+			if (configuration.getBindAs() == BindAs.system)
+				bindAsSystem(connection, configuration);
+
+			return searchUserData(connection, configuration, user, dn);
+		} finally
+		{
+			connection.close();
+		}
+	}
+	
+	/**
+	 * Pooled variant of {@link #bindAndSearch(String, String, LdapClientConfiguration)}. Searches 
+	 * with system credentials are run on the connections bound as the system user, so only the 
+	 * user's bind is performed on each authentication.
+	 */
+	private RemotelyAuthenticatedInput bindAndSearchPooled(String user, String password, 
+			LdapClientConfiguration configuration, LdapConnectionPool pool) 
+					throws LDAPException, LdapAuthenticationException
+	{
+		String dn = configuration.getSearchForUserSpec() == null ? configuration.getBindDN(user) :
+			pool.withSystemConnection(connection -> searchUserDN(user, configuration, connection));
 		log.debug("Established user's DN is: " + dn);
 		
-		if (configuration.isBindOnly())
+		if (configuration.isBindOnly() || configuration.getBindAs() == BindAs.system)
 		{
-			RemotelyAuthenticatedInput ret = new RemotelyAuthenticatedInput(idpName);
-			ret.addIdentity(new RemoteIdentity(dn, X500Identity.ID));
-			return ret;
+			pool.withUserConnection(connection -> 
+			{
+				bindAsUser(connection, dn, password, configuration);
+				return null;
+			});
+			if (configuration.isBindOnly())
+				return assembleBindOnlyResult(dn);
+			return pool.withSystemConnection(connection -> 
+				searchUserData(connection, configuration, user, dn));
 		}
 		
-		if (configuration.getBindAs() == BindAs.system)
-			bindAsSystem(connection, configuration);
-		
-		SearchResultEntry entry = findBaseEntry(configuration, dn, connection);
-		
-		RemotelyAuthenticatedInput ret = assembleBaseResult(entry);
-		findGroupsMembership(connection, entry, configuration, ret.getGroups());
-		
-		performAdditionalQueries(connection, configuration, user, ret);
-		ret.setRawAttributes(ret.getAttributes());
+		return pool.withUserConnection(connection -> 
+		{
+			bindAsUser(connection, dn, password, configuration);
+			return searchUserData(connection, configuration, user, dn);
+		});
+	}
+
+	/**
+	 * Pooled variant of {@link #search(String, LdapClientConfiguration)}.
+	 */
+	private RemotelyAuthenticatedInput searchPooled(String user, LdapClientConfiguration configuration, 
+			LdapConnectionPool pool) throws LDAPException, LdapAuthenticationException
+	{
+		LdapOperation<RemotelyAuthenticatedInput> search = connection -> 
+		{
+			String dn = configuration.getSearchForUserSpec() == null ? configuration.getBindDN(user) :
+				searchUserDN(user, configuration, connection);
+			log.debug("Established user's DN is: " + dn);
+			if (configuration.isBindOnly())
+				return assembleBindOnlyResult(dn);
+			return searchUserData(connection, configuration, user, dn);
+		};
 		
-		connection.close();
-		return ret;
+		if (configuration.getBindAs() == BindAs.system || configuration.getSearchForUserSpec() != null)
+			return pool.withSystemConnection(search);
+		return pool.withUserConnection(search);
 	}
 	
+	private LdapConnectionPool getConnectionPool(LdapClientConfiguration configuration) 
+			throws KeyManagementException, NoSuchAlgorithmException
+	{
+		LdapConnectionPool pool = LdapConnectionPool.get(configuration);
+		if (pool != null)
+			return pool;
+		PostConnectProcessor postConnectProcessor = 
+				configuration.getConnectionMode() == ConnectionMode.startTLS ?
+				new StartTLSPostConnectProcessor(createStartTLSContext(configuration)) : null;
+		return LdapConnectionPool.register(configuration, new LdapConnectionPool(idpName, 
+				createServerSet(configuration), postConnectProcessor, configuration));
+	}
 	
 	/**
 	 * Returns DN of the user. Depending on configuration the user's DN can be simply formed from a 
@@ -198,11 +258,20 @@ public class LdapClient
 	private String establishUserDN(String username, LdapClientConfiguration configuration, 
 			LDAPConnection connection) throws LDAPException, LdapAuthenticationException
 	{
-		SearchSpecification searchForUser = configuration.getSearchForUserSpec(); 
-		if (searchForUser == null)
+		if (configuration.getSearchForUserSpec() == null)
 			return configuration.getBindDN(username);
 
 		bindAsSystem(connection, configuration);
+		return searchUserDN(username, configuration, connection);
+	}
+	
+	/**
+	 * Discovers user's DN with the configured custom search. The connection must be already bound.
+	 */
+	private String searchUserDN(String username, LdapClientConfiguration configuration, 
+			LDAPConnection connection) throws LDAPException, LdapAuthenticationException
+	{
+		SearchSpecification searchForUser = configuration.getSearchForUserSpec(); 
 		int timeLimit = configuration.getSearchTimeLimit();
 		int sizeLimit = configuration.getResultEntriesLimit();
 		DereferencePolicy derefPolicy = configuration.getDereferencePolicy();
@@ -222,6 +291,27 @@ public class LdapClient
 		}
 	}
 	
+	private RemotelyAuthenticatedInput searchUserData(LDAPConnection connection, 
+			LdapClientConfiguration configuration, String user, String dn) 
+					throws LDAPException, LdapAuthenticationException
+	{
+		SearchResultEntry entry = findBaseEntry(configuration, dn, connection);
+		
+		RemotelyAuthenticatedInput ret = assembleBaseResult(entry);
+		findGroupsMembership(connection, entry, configuration, ret.getGroups());
+		
+		performAdditionalQueries(connection, configuration, user, ret);
+		ret.setRawAttributes(ret.getAttributes());
+		return ret;
+	}
+	
+	private RemotelyAuthenticatedInput assembleBindOnlyResult(String dn)
+	{
+		RemotelyAuthenticatedInput ret = new RemotelyAuthenticatedInput(idpName);
+		ret.addIdentity(new RemoteIdentity(dn, X500Identity.ID));
+		return ret;
+	}
+	
 	/**
 	 * Creates an ladp connection and secures it. Failover settings from configuration are taken into account.
 	 * @param configuration
@@ -233,36 +323,13 @@ public class LdapClient
 	private LDAPConnection createConnection(LdapClientConfiguration configuration) 
 			throws KeyManagementException, NoSuchAlgorithmException, LDAPException
 	{
-		LDAPConnectionOptions connectionOptions = new LDAPConnectionOptions();
-		connectionOptions.setConnectTimeoutMillis(configuration.getSocketTimeout());
-		connectionOptions.setFollowReferrals(configuration.isFollowReferral());
-		connectionOptions.setReferralHopLimit(configuration.getFollowReferrals());
-		connectionOptions.setResponseTimeoutMillis(configuration.getSocketReadTimeout());
-		
-		FailoverServerSet failoverSet;
-		if (configuration.getConnectionMode() == ConnectionMode.SSL)
-		{
-			X509CertChainValidator validator = configuration.getConnectionValidator();
-			SSLContext ctx = SSLContextCreator.createSSLContext(null, validator, 
-					"TLS", "LDAP client", legacyLog);
-			failoverSet = new FailoverServerSet(configuration.getServersAddresses(), 
-					configuration.getPorts(), ctx.getSocketFactory(), connectionOptions);
-		} else
-		{
-			failoverSet = new FailoverServerSet(configuration.getServersAddresses(), 
-				configuration.getPorts(), connectionOptions);
-		}
-		
-		LDAPConnection connection = failoverSet.getConnection();
+		LDAPConnection connection = createServerSet(configuration).getConnection();
 		
 		log.debug("Established connection to LDAP server");
 		if (configuration.getConnectionMode() == ConnectionMode.startTLS)
 		{
-			X509CertChainValidator validator = configuration.getConnectionValidator();
-			SSLContext ctx = SSLContextCreator.createSSLContext(null, validator, 
-					"TLSv1.2", "LDAP client", legacyLog);
 			ExtendedResult extendedResult = connection.processExtendedOperation(
-					new StartTLSExtendedRequest(ctx));
+					new StartTLSExtendedRequest(createStartTLSContext(configuration)));
 
 			if (extendedResult.getResultCode() != ResultCode.SUCCESS)
 			{
@@ -276,6 +343,35 @@ public class LdapClient
 		return connection;
 	}
 
+	private FailoverServerSet createServerSet(LdapClientConfiguration configuration) 
+			throws KeyManagementException, NoSuchAlgorithmException
+	{
+		LDAPConnectionOptions connectionOptions = new LDAPConnectionOptions();
+		connectionOptions.setConnectTimeoutMillis(configuration.getSocketTimeout());
+		connectionOptions.setFollowReferrals(configuration.isFollowReferral());
+		connectionOptions.setReferralHopLimit(configuration.getFollowReferrals());
+		connectionOptions.setResponseTimeoutMillis(configuration.getSocketReadTimeout());
+		
+		if (configuration.getConnectionMode() == ConnectionMode.SSL)
+		{
+			X509CertChainValidator validator = configuration.getConnectionValidator();
+			SSLContext ctx = SSLContextCreator.createSSLContext(null, validator, 
+					"TLS", "LDAP client", legacyLog);
+			return new FailoverServerSet(configuration.getServersAddresses(), 
+					configuration.getPorts(), ctx.getSocketFactory(), connectionOptions);
+		}
+		return new FailoverServerSet(configuration.getServersAddresses(), 
+				configuration.getPorts(), connectionOptions);
+	}
+	
+	private SSLContext createStartTLSContext(LdapClientConfiguration configuration) 
+			throws KeyManagementException, NoSuchAlgorithmException
+	{
+		X509CertChainValidator validator = configuration.getConnectionValidator();
+		return SSLContextCreator.createSSLContext(null, validator, 
+				"TLSv1.2", "LDAP client", legacyLog);
+	}
+
 	private void bindAsUser(LDAPConnection connection, String dn, String password, 
 			LdapClientConfiguration configuration) throws LdapAuthenticationException, LDAPException
 	{
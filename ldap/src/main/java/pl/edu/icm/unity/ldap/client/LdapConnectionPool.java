@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.ldap.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.unboundid.ldap.sdk.BindRequest;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPConnectionPool;
+import com.unboundid.ldap.sdk.LDAPConnectionPoolHealthCheck;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.PostConnectProcessor;
+import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.ServerSet;
+import com.unboundid.ldap.sdk.SimpleBindRequest;
+
+import pl.edu.icm.unity.base.utils.Log;
+import pl.edu.icm.unity.ldap.client.config.LdapClientConfiguration;
+
+/**
+ * Pooled connections to the LDAP servers of a single configuration. Two separate pools are maintained:
+ * connections bound as the system user, used for searches performed with system credentials, and
+ * anonymous connections, used to verify user's password and for searches performed as the user.
+ * The latter are reverted to the anonymous state when returned to the pool.
+ * <p>
+ * Pools are created on first use and shared by all users of the same configuration object. Pools which
+ * were not used for the configured idle time and pools whose configuration is not used anymore are closed.
+ * Pooled connections are checked in background, are re-established after the configured maximum age
+ * and when not used for the idle time. Statistics of all pools are periodically logged.
+ *
+ * @author K. Benedyczak
+ */
+class LdapConnectionPool
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER_LDAP, LdapConnectionPool.class);
+	private static final long STATISTICS_LOG_INTERVAL = 300000;
+	private static final Cache<LdapClientConfiguration, LdapConnectionPool> POOLS = CacheBuilder.newBuilder()
+			.weakKeys()
+			.<LdapClientConfiguration, LdapConnectionPool>removalListener(LdapConnectionPool::onRemoval)
+			.build();
+	private static final AtomicLong lastStatisticsLog = new AtomicLong(System.currentTimeMillis());
+
+	private final String name;
+	private final ServerSet servers;
+	private final PostConnectProcessor postConnectProcessor;
+	private final BindRequest systemBind;
+	private final int maxSize;
+	private final long maxConnectionAge;
+	private final long maxIdleTime;
+	private final long healthCheckInterval;
+	private LDAPConnectionPool systemPool;
+	private LDAPConnectionPool userPool;
+	private volatile long lastUsed = System.currentTimeMillis();
+	private boolean closed;
+
+	/**
+	 * Configuration is not retained by the created object, so that the pool can be closed when
+	 * the configuration is not used anymore.
+	 */
+	LdapConnectionPool(String name, ServerSet servers, PostConnectProcessor postConnectProcessor,
+			LdapClientConfiguration configuration)
+	{
+		this.name = name;
+		this.servers = servers;
+		this.postConnectProcessor = postConnectProcessor;
+		this.systemBind = configuration.getSystemDN() == null ? new SimpleBindRequest() :
+			new SimpleBindRequest(configuration.getSystemDN(), configuration.getSystemPassword());
+		this.maxSize = configuration.getConnectionPoolMaxSize();
+		this.maxConnectionAge = configuration.getConnectionPoolMaxConnectionAge();
+		this.maxIdleTime = configuration.getConnectionPoolMaxIdleTime();
+		this.healthCheckInterval = configuration.getConnectionPoolHealthCheckInterval();
+	}
+
+	/**
+	 * @return pool of the given configuration or null if there is no pool yet.
+	 */
+	static LdapConnectionPool get(LdapClientConfiguration configuration)
+	{
+		POOLS.asMap().values().removeIf(LdapConnectionPool::closeIfIdle);
+		logStatisticsIfNeeded();
+		LdapConnectionPool pool = POOLS.getIfPresent(configuration);
+		return pool != null && pool.markUsed() ? pool : null;
+	}
+
+	/**
+	 * Registers a new pool of the given configuration.
+	 * @return the pool to be used, which is the given pool unless other one was concurrently registered
+	 */
+	static LdapConnectionPool register(LdapClientConfiguration configuration, LdapConnectionPool pool)
+	{
+		LdapConnectionPool registered = POOLS.asMap().compute(configuration,
+				(key, existing) -> existing != null && existing.markUsed() ? existing : pool);
+		if (registered != pool)
+			pool.close();
+		return registered;
+	}
+
+	/**
+	 * Runs the operation with a connection bound as the system user. If system user is not configured
+	 * the connection is anonymous.
+	 */
+	<T> T withSystemConnection(LdapOperation<T> operation) throws LDAPException, LdapAuthenticationException
+	{
+		LDAPConnectionPool pool = getSystemPool();
+		LDAPConnection connection = pool.getConnection();
+		T ret;
+		try
+		{
+			ret = operation.perform(connection);
+		} catch (LDAPException e)
+		{
+			pool.releaseConnectionAfterException(connection, e);
+			throw e;
+		} catch (LdapAuthenticationException e)
+		{
+			pool.releaseConnection(connection);
+			throw e;
+		} catch (RuntimeException e)
+		{
+			pool.releaseDefunctConnection(connection);
+			throw e;
+		}
+		pool.releaseConnection(connection);
+		return ret;
+	}
+
+	/**
+	 * Runs the operation with an anonymous connection, which can be bound as a user by the operation.
+	 * Connection is reverted to the anonymous state when the operation is finished.
+	 */
+	<T> T withUserConnection(LdapOperation<T> operation) throws LDAPException, LdapAuthenticationException
+	{
+		LDAPConnectionPool pool = getUserPool();
+		LDAPConnection connection = pool.getConnection();
+		T ret;
+		try
+		{
+			ret = operation.perform(connection);
+		} catch (LDAPException e)
+		{
+			if (ResultCode.isConnectionUsable(e.getResultCode()))
+				pool.releaseAndReAuthenticateConnection(connection);
+			else
+				pool.releaseDefunctConnection(connection);
+			throw e;
+		} catch (LdapAuthenticationException e)
+		{
+			pool.releaseAndReAuthenticateConnection(connection);
+			throw e;
+		} catch (RuntimeException e)
+		{
+			pool.releaseDefunctConnection(connection);
+			throw e;
+		}
+		pool.releaseAndReAuthenticateConnection(connection);
+		return ret;
+	}
+
+	private synchronized LDAPConnectionPool getSystemPool() throws LDAPException
+	{
+		if (systemPool == null)
+			systemPool = createPool(systemBind, "system");
+		return systemPool;
+	}
+
+	private synchronized LDAPConnectionPool getUserPool() throws LDAPException
+	{
+		if (userPool == null)
+			userPool = createPool(new SimpleBindRequest(), "user");
+		return userPool;
+	}
+
+	private LDAPConnectionPool createPool(BindRequest bindRequest, String type) throws LDAPException
+	{
+		if (closed)
+			throw new LDAPException(ResultCode.CONNECT_ERROR, "LDAP connection pool was closed");
+		LDAPConnectionPool pool = new LDAPConnectionPool(servers, bindRequest, 1, maxSize,
+				postConnectProcessor);
+		pool.setConnectionPoolName(name + " " + type);
+		pool.setCreateIfNecessary(true);
+		pool.setMaxConnectionAgeMillis(maxConnectionAge);
+		pool.setHealthCheck(new IdleConnectionHealthCheck(maxIdleTime));
+		pool.setHealthCheckIntervalMillis(healthCheckInterval);
+		log.debug("Created LDAP connection pool {}", pool.getConnectionPoolName());
+		return pool;
+	}
+
+	private synchronized boolean markUsed()
+	{
+		if (closed)
+			return false;
+		lastUsed = System.currentTimeMillis();
+		return true;
+	}
+
+	private boolean closeIfIdle()
+	{
+		if (!isIdle())
+			return false;
+		synchronized (this)
+		{
+			if (!isIdle())
+				return false;
+			log.debug("Closing LDAP connection pool of {} which was not used for {}ms", name, maxIdleTime);
+			close();
+			return true;
+		}
+	}
+
+	private boolean isIdle()
+	{
+		return System.currentTimeMillis() - lastUsed > maxIdleTime;
+	}
+
+	private synchronized void close()
+	{
+		closed = true;
+		closePool(systemPool);
+		closePool(userPool);
+		systemPool = null;
+		userPool = null;
+	}
+
+	private void closePool(LDAPConnectionPool pool)
+	{
+		if (pool == null)
+			return;
+		log.info("Closing LDAP connection pool {}, statistics: {}", pool.getConnectionPoolName(),
+				pool.getConnectionPoolStatistics());
+		pool.close();
+	}
+
+	private synchronized void logStatistics()
+	{
+		for (LDAPConnectionPool pool: new LDAPConnectionPool[] {systemPool, userPool})
+			if (pool != null)
+				log.info("LDAP connection pool {} statistics: {}", pool.getConnectionPoolName(),
+						pool.getConnectionPoolStatistics());
+	}
+
+	private static void logStatisticsIfNeeded()
+	{
+		long now = System.currentTimeMillis();
+		long lastLog = lastStatisticsLog.get();
+		if (now - lastLog > STATISTICS_LOG_INTERVAL && lastStatisticsLog.compareAndSet(lastLog, now))
+			POOLS.asMap().values().forEach(LdapConnectionPool::logStatistics);
+	}
+
+	private static void onRemoval(RemovalNotification<LdapClientConfiguration, LdapConnectionPool> removal)
+	{
+		if (removal.getValue() != null)
+			removal.getValue().close();
+	}
+
+	@FunctionalInterface
+	interface LdapOperation<T>
+	{
+		T perform(LDAPConnection connection) throws LDAPException, LdapAuthenticationException;
+	}
+
+	/**
+	 * Connections which were not used for the configured time are treated as invalid, so that they are
+	 * re-established, before being silently dropped by the server or a firewall. Other connections are
+	 * checked with a read of the server's root DSE, which fails if the connection is broken.
+	 */
+	private static class IdleConnectionHealthCheck extends LDAPConnectionPoolHealthCheck
+	{
+		private final long maxIdleTime;
+
+		IdleConnectionHealthCheck(long maxIdleTime)
+		{
+			this.maxIdleTime = maxIdleTime;
+		}
+
+		@Override
+		public void ensureConnectionValidForContinuedUse(LDAPConnection connection) throws LDAPException
+		{
+			long lastCommunication = connection.getLastCommunicationTime();
+			if (lastCommunication > 0 && System.currentTimeMillis() - lastCommunication > maxIdleTime)
+				throw new LDAPException(ResultCode.TIMEOUT, "Connection was not used for longer than "
+						+ maxIdleTime + "ms");
+			connection.getRootDSE();
+		}
+	}
+}
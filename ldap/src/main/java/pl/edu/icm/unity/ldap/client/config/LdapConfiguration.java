@@ -72,6 +72,12 @@ public class LdapConfiguration
 	private String clientTrustStore;
 	private int resultEntriesLimit;
 
+	private boolean connectionPoolEnabled;
+	private int connectionPoolMaxSize;
+	private int connectionPoolMaxConnectionAge;
+	private int connectionPoolMaxIdleTime;
+	private int connectionPoolHealthCheckInterval;
+
 	private boolean delegateGroupFiltering;
 	private String groupsBaseName;
 	private String memberOfAttribute;
@@ -109,6 +115,11 @@ public class LdapConfiguration
 		setLdapSearchScope(SearchScope.base);
 		setDelegateGroupFiltering(LdapProperties.DEFAULT_GROUPS_SEARCH_IN_LDAP);
 		setResultEntriesLimit(LdapProperties.DEFAULT_RESULT_ENTRIES_LIMIT);
+		setConnectionPoolEnabled(LdapProperties.DEFAULT_POOL_ENABLED);
+		setConnectionPoolMaxSize(LdapProperties.DEFAULT_POOL_MAX_SIZE);
+		setConnectionPoolMaxConnectionAge(LdapProperties.DEFAULT_POOL_MAX_CONNECTION_AGE);
+		setConnectionPoolMaxIdleTime(LdapProperties.DEFAULT_POOL_MAX_IDLE_TIME);
+		setConnectionPoolHealthCheckInterval(LdapProperties.DEFAULT_POOL_HEALTH_CHECK_INTERVAL);
 	}
 
 	public void fromProperties(LdapProperties ldapProp)
@@ -170,6 +181,27 @@ public class LdapConfiguration
 		{
 			setResultEntriesLimit(ldapProp.getIntValue(LdapProperties.RESULT_ENTRIES_LIMIT));
 		}
+		if (ldapProp.isSet(LdapProperties.POOL_ENABLED))
+		{
+			setConnectionPoolEnabled(ldapProp.getBooleanValue(LdapProperties.POOL_ENABLED));
+		}
+		if (ldapProp.isSet(LdapProperties.POOL_MAX_SIZE))
+		{
+			setConnectionPoolMaxSize(ldapProp.getIntValue(LdapProperties.POOL_MAX_SIZE));
+		}
+		if (ldapProp.isSet(LdapProperties.POOL_MAX_CONNECTION_AGE))
+		{
+			setConnectionPoolMaxConnectionAge(ldapProp.getIntValue(LdapProperties.POOL_MAX_CONNECTION_AGE));
+		}
+		if (ldapProp.isSet(LdapProperties.POOL_MAX_IDLE_TIME))
+		{
+			setConnectionPoolMaxIdleTime(ldapProp.getIntValue(LdapProperties.POOL_MAX_IDLE_TIME));
+		}
+		if (ldapProp.isSet(LdapProperties.POOL_HEALTH_CHECK_INTERVAL))
+		{
+			setConnectionPoolHealthCheckInterval(
+					ldapProp.getIntValue(LdapProperties.POOL_HEALTH_CHECK_INTERVAL));
+		}
 
 		setTrustAllCerts(ldapProp.getBooleanValue(LdapProperties.TLS_TRUST_ALL));
 		setClientTrustStore(ldapProp.getValue(LdapProperties.TRUSTSTORE));
@@ -342,6 +374,19 @@ public class LdapConfiguration
 		raw.put(LdapProperties.PREFIX + LdapProperties.RESULT_ENTRIES_LIMIT,
 				String.valueOf(getResultEntriesLimit()));
 
+		raw.put(LdapProperties.PREFIX + LdapProperties.POOL_ENABLED, String.valueOf(isConnectionPoolEnabled()));
+		if (isConnectionPoolEnabled())
+		{
+			raw.put(LdapProperties.PREFIX + LdapProperties.POOL_MAX_SIZE,
+					String.valueOf(getConnectionPoolMaxSize()));
+			raw.put(LdapProperties.PREFIX + LdapProperties.POOL_MAX_CONNECTION_AGE,
+					String.valueOf(getConnectionPoolMaxConnectionAge()));
+			raw.put(LdapProperties.PREFIX + LdapProperties.POOL_MAX_IDLE_TIME,
+					String.valueOf(getConnectionPoolMaxIdleTime()));
+			raw.put(LdapProperties.PREFIX + LdapProperties.POOL_HEALTH_CHECK_INTERVAL,
+					String.valueOf(getConnectionPoolHealthCheckInterval()));
+		}
+
 		if (getClientTrustStore() != null)
 		{
 			raw.put(LdapProperties.PREFIX + LdapProperties.TRUSTSTORE,
@@ -899,6 +944,56 @@ public class LdapConfiguration
 		this.resultEntriesLimit = resultEntriesLimit;
 	}
 
+	public boolean isConnectionPoolEnabled()
+	{
+		return connectionPoolEnabled;
+	}
+
+	public void setConnectionPoolEnabled(boolean connectionPoolEnabled)
+	{
+		this.connectionPoolEnabled = connectionPoolEnabled;
+	}
+
+	public int getConnectionPoolMaxSize()
+	{
+		return connectionPoolMaxSize;
+	}
+
+	public void setConnectionPoolMaxSize(int connectionPoolMaxSize)
+	{
+		this.connectionPoolMaxSize = connectionPoolMaxSize;
+	}
+
+	public int getConnectionPoolMaxConnectionAge()
+	{
+		return connectionPoolMaxConnectionAge;
+	}
+
+	public void setConnectionPoolMaxConnectionAge(int connectionPoolMaxConnectionAge)
+	{
+		this.connectionPoolMaxConnectionAge = connectionPoolMaxConnectionAge;
+	}
+
+	public int getConnectionPoolMaxIdleTime()
+	{
+		return connectionPoolMaxIdleTime;
+	}
+
+	public void setConnectionPoolMaxIdleTime(int connectionPoolMaxIdleTime)
+	{
+		this.connectionPoolMaxIdleTime = connectionPoolMaxIdleTime;
+	}
+
+	public int getConnectionPoolHealthCheckInterval()
+	{
+		return connectionPoolHealthCheckInterval;
+	}
+
+	public void setConnectionPoolHealthCheckInterval(int connectionPoolHealthCheckInterval)
+	{
+		this.connectionPoolHealthCheckInterval = connectionPoolHealthCheckInterval;
+	}
+
 	public String getUserDNSearchKey()
 	{
 		return userDNSearchKey;
@@ -61,6 +61,12 @@ public class LdapProperties extends UnityPropertiesHelper
 	public static final String CONNECTION_MODE = "connectionMode";
 	public static final String TLS_TRUST_ALL = "trustAllServerCertificates";
 
+	public static final String POOL_ENABLED = "connectionPoolEnabled";
+	public static final String POOL_MAX_SIZE = "connectionPoolMaxSize";
+	public static final String POOL_MAX_CONNECTION_AGE = "connectionPoolMaxConnectionAge";
+	public static final String POOL_MAX_IDLE_TIME = "connectionPoolMaxIdleTime";
+	public static final String POOL_HEALTH_CHECK_INTERVAL = "connectionPoolHealthCheckInterval";
+
 	public static final String BIND_AS = "bindAs";
 	
 
@@ -104,6 +110,11 @@ public class LdapProperties extends UnityPropertiesHelper
 	public static final int DEFAULT_SOCKET_TIMEOUT = 30000;
 	public static final boolean DEFAULT_GROUPS_SEARCH_IN_LDAP = true;
 	public static final ConnectionMode DEFAULT_CONNECTION_MODE = ConnectionMode.plain;
+	public static final boolean DEFAULT_POOL_ENABLED = false;
+	public static final int DEFAULT_POOL_MAX_SIZE = 10;
+	public static final int DEFAULT_POOL_MAX_CONNECTION_AGE = 600000;
+	public static final int DEFAULT_POOL_MAX_IDLE_TIME = 300000;
+	public static final int DEFAULT_POOL_HEALTH_CHECK_INTERVAL = 60000;
 	
 	@DocumentationReferenceMeta
 	public final static Map<String, PropertyMD> META=new HashMap<String, PropertyMD>();
@@ -111,6 +122,7 @@ public class LdapProperties extends UnityPropertiesHelper
 	static
 	{
 		DocumentationCategory main = new DocumentationCategory("General settings", "1");
+		DocumentationCategory pool = new DocumentationCategory("Connection pool settings", "2");
 		DocumentationCategory groups = new DocumentationCategory("Group retrieval settings", "3");
 		DocumentationCategory advSearch = new DocumentationCategory("Advanced attribute search settings", "5");
 		
@@ -129,6 +141,22 @@ public class LdapProperties extends UnityPropertiesHelper
 		META.put(FOLLOW_REFERRALS, new PropertyMD(String.valueOf(DEFAULT_FOLLOW_REFERRALS)).setNonNegative().setCategory(main).setDescription("Number of referrals to follow. " +
 				"Set to 0 to disable following referrals."));
 		
+		META.put(POOL_ENABLED, new PropertyMD(String.valueOf(DEFAULT_POOL_ENABLED)).setCategory(pool).setDescription(
+				"If true then connections to the LDAP server are pooled and reused between authentications. "
+				+ "Separate pools are used for connections bound as the system user and for connections "
+				+ "used to verify users' credentials."));
+		META.put(POOL_MAX_SIZE, new PropertyMD(String.valueOf(DEFAULT_POOL_MAX_SIZE)).setPositive().setCategory(pool).setDescription(
+				"Maximum number of connections kept in each of the pools. When more connections are "
+				+ "needed at the same time, additional ones are opened and closed after use."));
+		META.put(POOL_MAX_CONNECTION_AGE, new PropertyMD(String.valueOf(DEFAULT_POOL_MAX_CONNECTION_AGE)).setNonNegative().setCategory(pool).setDescription(
+				"Number of milliseconds after which a pooled connection is closed and replaced with a new one. "
+				+ "Set to 0 to disable the limit."));
+		META.put(POOL_MAX_IDLE_TIME, new PropertyMD(String.valueOf(DEFAULT_POOL_MAX_IDLE_TIME)).setPositive().setCategory(pool).setDescription(
+				"Number of milliseconds after which an unused pooled connection is re-established. "
+				+ "If the whole pool is not used for this time, it is closed."));
+		META.put(POOL_HEALTH_CHECK_INTERVAL, new PropertyMD(String.valueOf(DEFAULT_POOL_HEALTH_CHECK_INTERVAL)).setPositive().setCategory(pool).setDescription(
+				"Number of milliseconds between background checks of the pooled connections."));
+		
 		META.put(BIND_AS, new PropertyMD(DEFAULT_BIND_AS).setCategory(main).setDescription("Fundamental setting "
 				+ "controlling how Unity interacts with the LDAP server. By default Unity binds to the LDAP server "
 				+ "_as the user_ who is being authenticated by Unity. This may be changed to use a "
@@ -25,6 +25,8 @@ import static pl.edu.icm.unity.ldap.client.config.LdapProperties.GROUP_DEFINITIO
 import static pl.edu.icm.unity.ldap.client.config.LdapProperties.GROUP_DEFINITION_PFX;
 import static pl.edu.icm.unity.ldap.client.config.LdapProperties.MEMBER_OF_ATTRIBUTE;
 import static pl.edu.icm.unity.ldap.client.config.LdapProperties.MEMBER_OF_GROUP_ATTRIBUTE;
+import static pl.edu.icm.unity.ldap.client.config.LdapProperties.POOL_ENABLED;
+import static pl.edu.icm.unity.ldap.client.config.LdapProperties.POOL_MAX_SIZE;
 import static pl.edu.icm.unity.ldap.client.config.LdapProperties.PORTS;
 import static pl.edu.icm.unity.ldap.client.config.LdapProperties.PREFIX;
 import static pl.edu.icm.unity.ldap.client.config.LdapProperties.SERVERS;
@@ -594,6 +596,77 @@ public class LdapTest
 	}	
 	
 	
+	@Test
+	public void shouldAuthenticateWithPooledConnectionsWhenBindsAsSystem() throws Exception
+	{
+		Properties p = new Properties();
+		p.setProperty(PREFIX+SERVERS+"1", hostname);
+		p.setProperty(PREFIX+PORTS+"1", port);
+		p.setProperty(PREFIX+USER_DN_TEMPLATE, "cn={USERNAME},ou=users,dc=unity-example,dc=com");
+		p.setProperty(PREFIX+ATTRIBUTES+"1", "sn");
+		p.setProperty(PREFIX+BIND_AS, "system");
+		p.setProperty(PREFIX+SYSTEM_DN, "cn=user1,ou=users,dc=unity-example,dc=com");
+		p.setProperty(PREFIX+SYSTEM_PASSWORD, "user1");
+		p.setProperty(PREFIX+POOL_ENABLED, "true");
+		p.setProperty(PREFIX+POOL_MAX_SIZE, "1");
+		p.setProperty(PREFIX+TRANSLATION_PROFILE, "dummy");
+		
+		LdapProperties lp = new LdapProperties(p);
+		LdapClientConfiguration clientConfig = new LdapClientConfiguration(lp, pkiManagement);
+		LdapClient client = new LdapClient("test");
+		try
+		{
+			client.bindAndSearch("user2", "wrong", clientConfig);
+			fail("authenticated with a wrong password");
+		} catch (LdapAuthenticationException e)
+		{
+			//ok, expected
+		}
+		
+		for (int i=0; i<3; i++)
+		{
+			RemotelyAuthenticatedInput ret = client.bindAndSearch("user2", "user1", clientConfig);
+			assertEquals(1, ret.getAttributes().size());
+			assertTrue(containsAttribute(ret.getAttributes(), "sn", "User2 Surname"));
+		}
+		RemotelyAuthenticatedInput ret = client.search("user2", clientConfig);
+		assertTrue(containsAttribute(ret.getAttributes(), "sn", "User2 Surname"));
+	}
+
+	@Test
+	public void shouldRevertUserBindOfPooledConnection() throws Exception
+	{
+		Properties p = new Properties();
+		p.setProperty(PREFIX+SERVERS+"1", hostname);
+		p.setProperty(PREFIX+PORTS+"1", port);
+		p.setProperty(PREFIX+USER_DN_SEARCH_KEY, "1");
+		p.setProperty(PREFIX+ATTRIBUTES+"1", "sn");
+		p.setProperty(PREFIX+SYSTEM_DN, "cn=user1,ou=users,dc=unity-example,dc=com");
+		p.setProperty(PREFIX+SYSTEM_PASSWORD, "user1");
+		p.setProperty(PREFIX+ADV_SEARCH_PFX+"1."+ADV_SEARCH_BASE, "ou=users,dc=unity-example,dc=com");
+		p.setProperty(PREFIX+ADV_SEARCH_PFX+"1."+ADV_SEARCH_FILTER, "(sn={USERNAME})");
+		p.setProperty(PREFIX+POOL_ENABLED, "true");
+		p.setProperty(PREFIX+POOL_MAX_SIZE, "1");
+		p.setProperty(PREFIX+TRANSLATION_PROFILE, "dummy");
+		
+		LdapProperties lp = new LdapProperties(p);
+		LdapClientConfiguration clientConfig = new LdapClientConfiguration(lp, pkiManagement);
+		LdapClient client = new LdapClient("test");
+		client.bindAndSearch("User2 Surname", "user1", clientConfig);
+		try
+		{
+			client.bindAndSearch("User2 Surname", "wrong", clientConfig);
+			fail("authenticated with a wrong password on a reused connection");
+		} catch (LdapAuthenticationException e)
+		{
+			//ok, expected
+		}
+		RemotelyAuthenticatedInput ret = client.bindAndSearch("User2 Surname", "user1", clientConfig);
+
+		assertEquals(1, ret.getAttributes().size());
+		assertTrue(containsAttribute(ret.getAttributes(), "sn", "User2 Surname"));
+	}
+	
 	private boolean containsGroup(Map<String, RemoteGroupMembership> groups, String group)
 	{
 		return groups.containsKey(group);
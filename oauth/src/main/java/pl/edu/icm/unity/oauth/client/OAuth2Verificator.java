@@ -4,6 +4,7 @@
  */
 package pl.edu.icm.unity.oauth.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -67,8 +68,10 @@ import pl.edu.icm.unity.engine.api.authn.remote.RemoteAttribute;
 import pl.edu.icm.unity.engine.api.authn.remote.RemoteAuthnResultProcessor;
 import pl.edu.icm.unity.engine.api.authn.remote.RemoteIdentity;
 import pl.edu.icm.unity.engine.api.authn.remote.RemotelyAuthenticatedInput;
+import pl.edu.icm.unity.engine.api.config.UnityServerConfiguration;
 import pl.edu.icm.unity.engine.api.endpoint.SharedEndpointManagement;
 import pl.edu.icm.unity.engine.api.server.NetworkServer;
+import pl.edu.icm.unity.engine.api.utils.ExecutorsService;
 import pl.edu.icm.unity.engine.api.utils.PrototypeComponent;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.exceptions.InternalException;
@@ -97,18 +100,22 @@ public class OAuth2Verificator extends AbstractRemoteVerificator implements OAut
 	public static final String DESC = "Handles OAuth2 tokens obtained from remote OAuth providers. "
 			+ "Queries about additional user information.";
 	public static final String DEFAULT_TOKEN_EXPIRATION = "3600";
+	private static final String METADATA_BACKUP_DIR = "oidcMetadata";
 	
 	private OAuthClientProperties config;
 	private String responseConsumerAddress;
 	private OAuthContextsManagement contextManagement;
 	private OpenIdProviderMetadataManager metadataManager;
 	private PKIManagement pkiManagement;
+	private ExecutorsService executorsService;
+	private File metadataBackupDirectory;
 	
 	@Autowired
 	public OAuth2Verificator(NetworkServer jettyServer,
 			SharedEndpointManagement sharedEndpointManagement,
 			OAuthContextsManagement contextManagement,
-			PKIManagement pkiManagement, RemoteAuthnResultProcessor processor)
+			PKIManagement pkiManagement, RemoteAuthnResultProcessor processor,
+			ExecutorsService executorsService, UnityServerConfiguration serverConfig)
 	{
 		super(NAME, DESC, OAuthExchange.ID, processor);
 		URL baseAddress = jettyServer.getAdvertisedAddress();
@@ -116,6 +123,9 @@ public class OAuth2Verificator extends AbstractRemoteVerificator implements OAut
 		this.responseConsumerAddress = baseAddress + baseContext + ResponseConsumerServlet.PATH;
 		this.contextManagement = contextManagement;
 		this.pkiManagement = pkiManagement;
+		this.executorsService = executorsService;
+		this.metadataBackupDirectory = new File(serverConfig.getValue(
+				UnityServerConfiguration.WORKSPACE_DIRECTORY), METADATA_BACKUP_DIR);
 	}
 
 	@Override
@@ -140,7 +150,8 @@ public class OAuth2Verificator extends AbstractRemoteVerificator implements OAut
 			Properties properties = new Properties();
 			properties.load(new StringReader(source));
 			config = new OAuthClientProperties(properties, pkiManagement);
-			metadataManager = new OpenIdProviderMetadataManager();
+			metadataManager = new OpenIdProviderMetadataManager(executorsService.getService(),
+					metadataBackupDirectory);
 			Set<String> keys = config.getStructuredListKeys(OAuthClientProperties.PROVIDERS);
 			for (String key: keys)
 			{
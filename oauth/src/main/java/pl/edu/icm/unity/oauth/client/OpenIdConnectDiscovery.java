@@ -4,9 +4,19 @@
  */
 package pl.edu.icm.unity.oauth.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.StringTokenizer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.logging.log4j.Logger;
 
 import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.http.HTTPRequest;
@@ -14,76 +24,268 @@ import com.nimbusds.oauth2.sdk.http.HTTPRequest.Method;
 import com.nimbusds.oauth2.sdk.http.HTTPResponse;
 import com.nimbusds.openid.connect.sdk.op.OIDCProviderMetadata;
 
+import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.oauth.client.config.CustomProviderProperties;
 
 /**
  * Retrieves and caches information about OpenID Connect provider.
- *  
+ * <p>
+ * Only the first retrieval is performed synchronously, concurrent callers wait for its result.
+ * Afterwards metadata is refreshed in background, after 3/4 of its max-age passes, and the previously
+ * obtained copy is returned until the refresh succeeds. Failed downloads are retried with an exponential
+ * back off. As long as no metadata was obtained the back off is kept short, since every login using
+ * the provider fails in the meantime. If backup directory is given, the last successfully downloaded
+ * metadata is stored there and used when the provider is not available on the first retrieval.
+ *
  * @author K. Benedyczak
  */
 public class OpenIdConnectDiscovery
 {
-	private static final long DEFAULT_MAX_AGE = 30000;
-	private URL providerMetadataEndpoint;
-	private OIDCProviderMetadata providerMeta;
-	private long expiresAt = -1;
-	private CustomHttpRequestFactory requestFactory;
-	
+	private static final Logger log = Log.getLogger(Log.U_SERVER_OAUTH, OpenIdConnectDiscovery.class);
+	static final long DEFAULT_MAX_AGE = 30000;
+	static final long MIN_MAX_AGE = 5000;
+	static final long MAX_MAX_AGE = 24 * 3600000L;
+	static final long MIN_BACKOFF = 5000;
+	static final long MAX_BACKOFF = 600000;
+	static final long MAX_INITIAL_BACKOFF = 20000;
+	private static final String MS_ENDPOINT =
+			"https://login.microsoftonline.com/common/v2.0/.well-known/openid-configuration";
+
+	private final URL providerMetadataEndpoint;
+	private final CustomHttpRequestFactory requestFactory;
+	private final Executor refreshExecutor;
+	private final File backupFile;
+	private final Clock clock;
+	private final Object initialLoadLock = new Object();
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private volatile CachedMetadata cached;
+	private volatile long nextAttemptAt;
+	private int failures;
+	private String storedContent;
+
+	/**
+	 * Refreshes are performed in the calling thread, without backup on disk.
+	 */
 	public OpenIdConnectDiscovery(URL providerMetadataEndpoint)
 	{
-		this(providerMetadataEndpoint, new CustomHttpRequestFactory());
+		this(providerMetadataEndpoint, Runnable::run, null);
+	}
+
+	/**
+	 * @param refreshExecutor used to refresh metadata in background
+	 * @param backupDirectory where the last known good metadata is stored. If null metadata is not stored.
+	 */
+	public OpenIdConnectDiscovery(URL providerMetadataEndpoint, Executor refreshExecutor, File backupDirectory)
+	{
+		this(providerMetadataEndpoint, new CustomHttpRequestFactory(), refreshExecutor, backupDirectory);
 	}
 
 	OpenIdConnectDiscovery(URL providerMetadataEndpoint, CustomHttpRequestFactory requestFactory)
 	{
+		this(providerMetadataEndpoint, requestFactory, Runnable::run, null);
+	}
+
+	OpenIdConnectDiscovery(URL providerMetadataEndpoint, CustomHttpRequestFactory requestFactory,
+			Executor refreshExecutor, File backupDirectory)
+	{
+		this(providerMetadataEndpoint, requestFactory, refreshExecutor, backupDirectory, Clock.systemUTC());
+	}
+
+	OpenIdConnectDiscovery(URL providerMetadataEndpoint, CustomHttpRequestFactory requestFactory,
+			Executor refreshExecutor, File backupDirectory, Clock clock)
+	{
+		this.clock = clock;
 		this.providerMetadataEndpoint = providerMetadataEndpoint;
 		this.requestFactory = requestFactory;
+		this.refreshExecutor = refreshExecutor;
+		this.backupFile = backupDirectory == null ? null : new File(backupDirectory,
+				DigestUtils.sha256Hex(providerMetadataEndpoint.toExternalForm()) + ".json");
 	}
-	
+
 	public OIDCProviderMetadata getMetadata(CustomProviderProperties config) throws IOException, ParseException
 	{
-		if (providerMeta == null || expiresAt < System.currentTimeMillis())
-			downloadMetadata(config);
-		
-		return providerMeta;
+		CachedMetadata current = cached;
+		if (current == null)
+			current = loadInitial(config);
+		if (current.refreshAt <= clock.millis())
+			refreshInBackground(config);
+		return current.metadata;
+	}
+
+	private CachedMetadata loadInitial(CustomProviderProperties config) throws IOException, ParseException
+	{
+		synchronized (initialLoadLock)
+		{
+			if (cached != null)
+				return cached;
+			if (nextAttemptAt > clock.millis())
+				throw new IOException("Metadata of OpenID provider " + providerMetadataEndpoint
+						+ " is not available, its recent download failed");
+			try
+			{
+				cached = downloadMetadata(config);
+			} catch (IOException | ParseException | RuntimeException e)
+			{
+				OIDCProviderMetadata backup = loadBackup();
+				if (backup == null)
+				{
+					recordFailure(MAX_INITIAL_BACKOFF);
+					throw e;
+				}
+				long backoff = recordFailure(MAX_BACKOFF);
+				log.warn("Can not download metadata of OpenID provider " + providerMetadataEndpoint
+						+ ", using the last known good copy. Will retry in " + backoff + "ms", e);
+				cached = new CachedMetadata(backup, nextAttemptAt);
+			}
+			return cached;
+		}
+	}
+
+	private void refreshInBackground(CustomProviderProperties config)
+	{
+		if (nextAttemptAt > clock.millis() || !refreshing.compareAndSet(false, true))
+			return;
+		try
+		{
+			refreshExecutor.execute(() -> refresh(config));
+		} catch (RejectedExecutionException e)
+		{
+			refreshing.set(false);
+			log.warn("Can not schedule refresh of OpenID provider " + providerMetadataEndpoint
+					+ " metadata", e);
+		}
 	}
-	
-	private void downloadMetadata(CustomProviderProperties config) throws IOException, ParseException
+
+	private void refresh(CustomProviderProperties config)
+	{
+		try
+		{
+			cached = downloadMetadata(config);
+		} catch (Exception e)
+		{
+			long backoff = recordFailure(MAX_BACKOFF);
+			log.warn("Can not refresh metadata of OpenID provider " + providerMetadataEndpoint
+					+ ", using the previously obtained one. Will retry in " + backoff + "ms", e);
+		} finally
+		{
+			refreshing.set(false);
+		}
+	}
+
+	private CachedMetadata downloadMetadata(CustomProviderProperties config) throws IOException, ParseException
 	{
 		HTTPRequest request = wrapRequest(new HTTPRequest(Method.GET, providerMetadataEndpoint), config);
 		HTTPResponse response = request.send();
-		String cacheControl = response.getCacheControl();
-		expiresAt = getExpiresOn(cacheControl);
+		long maxAge = getMaxAge(response.getCacheControl());
 		String content = response.getContent();
-		final String MS_ENDPOINT = "https://login.microsoftonline.com/common/v2.0/.well-known/openid-configuration"; 
 		if (MS_ENDPOINT.equals(providerMetadataEndpoint.toExternalForm()))
-			content = content.replace("https://login.microsoftonline.com/{tenantid}/v2.0", 
+			content = content.replace("https://login.microsoftonline.com/{tenantid}/v2.0",
 					"https://login.microsoftonline.com/tenantid/v2.0");
-		providerMeta = OIDCProviderMetadata.parse(content);
+		OIDCProviderMetadata providerMeta = OIDCProviderMetadata.parse(content);
+		recordSuccess();
+		storeBackup(content);
+		return new CachedMetadata(providerMeta, clock.millis() + maxAge * 3 / 4);
 	}
-	
-	private long getExpiresOn(String cacheControl)
+
+	/**
+	 * @return max-age in ms from the Cache-Control header, limited to the range accepted by this class.
+	 */
+	static long getMaxAge(String cacheControl)
 	{
 		if (cacheControl == null)
-			return System.currentTimeMillis() + DEFAULT_MAX_AGE;
-		StringTokenizer stok = new StringTokenizer(cacheControl, " ");
-		while (stok.hasMoreTokens())
+			return DEFAULT_MAX_AGE;
+		long maxAge = DEFAULT_MAX_AGE;
+		for (String directive: cacheControl.split(","))
 		{
-			String token = stok.nextToken().trim();
+			String token = directive.trim().toLowerCase();
+			if (token.equals("no-cache") || token.equals("no-store"))
+				return MIN_MAX_AGE;
 			if (token.startsWith("max-age="))
 			{
-				long validity = Long.parseLong(token.substring("max-age=".length()));
-				return System.currentTimeMillis() + validity;
-			} else if (token.startsWith("no-cache"))
+				String value = token.substring("max-age=".length()).replace("\"", "").trim();
+				try
+				{
+					maxAge = Long.parseLong(value) * 1000;
+				} catch (NumberFormatException e)
+				{
+					log.debug("Ignoring invalid max-age in Cache-Control: {}", cacheControl);
+				}
+			}
+		}
+		return Math.min(Math.max(maxAge, MIN_MAX_AGE), MAX_MAX_AGE);
+	}
+
+	private synchronized long recordFailure(long maxBackoff)
+	{
+		long backoff = Math.min(MIN_BACKOFF << Math.min(failures, 16), maxBackoff);
+		failures++;
+		nextAttemptAt = clock.millis() + backoff;
+		return backoff;
+	}
+
+	private synchronized void recordSuccess()
+	{
+		failures = 0;
+		nextAttemptAt = 0;
+	}
+
+	private synchronized void storeBackup(String content)
+	{
+		if (backupFile == null || content.equals(storedContent))
+			return;
+		try
+		{
+			File directory = backupFile.getParentFile();
+			if (!directory.exists())
+				directory.mkdirs();
+			File part = File.createTempFile(backupFile.getName(), ".part", directory);
+			try
 			{
-				return -1;
+				Files.write(part.toPath(), content.getBytes(StandardCharsets.UTF_8));
+				Files.move(part.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally
+			{
+				part.delete();
 			}
+			storedContent = content;
+		} catch (IOException e)
+		{
+			log.warn("Can not store backup of OpenID provider " + providerMetadataEndpoint
+					+ " metadata in " + backupFile, e);
+		}
+	}
+
+	private OIDCProviderMetadata loadBackup()
+	{
+		if (backupFile == null || !backupFile.isFile())
+			return null;
+		try
+		{
+			String content = new String(Files.readAllBytes(backupFile.toPath()), StandardCharsets.UTF_8);
+			return OIDCProviderMetadata.parse(content);
+		} catch (IOException | ParseException e)
+		{
+			log.warn("Can not load backup of OpenID provider " + providerMetadataEndpoint
+					+ " metadata from " + backupFile, e);
+			return null;
 		}
-		return System.currentTimeMillis() + DEFAULT_MAX_AGE;
 	}
-	
+
 	private HTTPRequest wrapRequest(HTTPRequest httpRequest, CustomProviderProperties config)
 	{
-		return requestFactory.wrapRequest(httpRequest, config); 
+		return requestFactory.wrapRequest(httpRequest, config);
+	}
+
+	private static class CachedMetadata
+	{
+		private final OIDCProviderMetadata metadata;
+		private final long refreshAt;
+
+		CachedMetadata(OIDCProviderMetadata metadata, long refreshAt)
+		{
+			this.metadata = metadata;
+			this.refreshAt = refreshAt;
+		}
 	}
 }
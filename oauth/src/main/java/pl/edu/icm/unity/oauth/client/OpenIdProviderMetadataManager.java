@@ -4,11 +4,13 @@
  */
 package pl.edu.icm.unity.oauth.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.openid.connect.sdk.op.OIDCProviderMetadata;
@@ -21,13 +23,27 @@ import pl.edu.icm.unity.oauth.client.config.CustomProviderProperties;
  */
 public class OpenIdProviderMetadataManager
 {
-	private Map<String, OpenIdConnectDiscovery> providers = new HashMap<String, OpenIdConnectDiscovery>();
-	
+	private final Map<String, OpenIdConnectDiscovery> providers = new ConcurrentHashMap<>();
+	private final Executor refreshExecutor;
+	private final File backupDirectory;
+
+	/**
+	 * @param refreshExecutor used to refresh metadata in background
+	 * @param backupDirectory where the last known good metadata is stored, can be null
+	 */
+	public OpenIdProviderMetadataManager(Executor refreshExecutor, File backupDirectory)
+	{
+		this.refreshExecutor = refreshExecutor;
+		this.backupDirectory = backupDirectory;
+	}
+
 	public void addProvider(String url) throws MalformedURLException
 	{
-		providers.put(url, new OpenIdConnectDiscovery(new URL(url)));
+		URL parsed = new URL(url);
+		providers.computeIfAbsent(url,
+				key -> new OpenIdConnectDiscovery(parsed, refreshExecutor, backupDirectory));
 	}
-	
+
 	public OIDCProviderMetadata getMetadata(String url, CustomProviderProperties cfg) throws ParseException, IOException
 	{
 		return providers.get(url).getMetadata(cfg);
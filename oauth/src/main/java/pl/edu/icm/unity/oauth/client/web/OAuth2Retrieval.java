@@ -29,6 +29,7 @@ import pl.edu.icm.unity.oauth.client.OAuthExchange;
 import pl.edu.icm.unity.oauth.client.config.OAuthClientProperties;
 import pl.edu.icm.unity.webui.authn.ProxyAuthenticationCapable;
 import pl.edu.icm.unity.webui.authn.VaadinAuthentication;
+import pl.edu.icm.unity.webui.common.logo.LogoCache;
 
 /**
  * OAuth2 authn retrieval. It is responsible for browser redirection to the OAuth provider with an authorization
@@ -46,15 +47,17 @@ public class OAuth2Retrieval extends AbstractCredentialRetrieval<OAuthExchange>
 	private OAuthContextsManagement contextManagement;
 	private ExecutorsService executorsService;
 	private OAuthProxyAuthnHandler oAuthProxyAuthnHandler;
+	private LogoCache logoCache;
 	
 	@Autowired
 	public OAuth2Retrieval(UnityMessageSource msg, OAuthContextsManagement contextManagement, 
-			ExecutorsService executorsService)
+			ExecutorsService executorsService, LogoCache logoCache)
 	{
 		super(VaadinAuthentication.NAME);
 		this.msg = msg;
 		this.contextManagement = contextManagement;
 		this.executorsService = executorsService;
+		this.logoCache = logoCache;
 	}
 
 	@Override
@@ -86,7 +89,7 @@ public class OAuth2Retrieval extends AbstractCredentialRetrieval<OAuthExchange>
 			String idpKey = key.substring(OAuthClientProperties.PROVIDERS.length(), 
 					key.length()-1);
 			ret.add(new OAuth2RetrievalUI(msg, credentialExchange, contextManagement, 
-					executorsService, idpKey, key, getAuthenticatorId(), context));
+					executorsService, idpKey, key, getAuthenticatorId(), context, logoCache));
 		}
 		return ret;
 	}
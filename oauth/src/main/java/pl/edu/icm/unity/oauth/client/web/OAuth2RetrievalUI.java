@@ -46,9 +46,9 @@ import pl.edu.icm.unity.webui.authn.VaadinAuthentication.AuthenticationStyle;
 import pl.edu.icm.unity.webui.authn.VaadinAuthentication.Context;
 import pl.edu.icm.unity.webui.authn.VaadinAuthentication.VaadinAuthenticationUI;
 import pl.edu.icm.unity.webui.common.ConfirmDialog;
-import pl.edu.icm.unity.webui.common.ImageUtils;
 import pl.edu.icm.unity.webui.common.Images;
 import pl.edu.icm.unity.webui.common.NotificationPopup;
+import pl.edu.icm.unity.webui.common.logo.LogoCache;
 
 /**
  * UI part of OAuth retrieval. Shows a single provider, redirects to it if requested.
@@ -73,12 +73,14 @@ public class OAuth2RetrievalUI implements VaadinAuthenticationUI
 
 	private IdPAuthNComponent idpComponent;
 	private Context context;
+	private LogoCache logoCache;
 
 	private ExpectedIdentity expectedIdentity;
 
 	public OAuth2RetrievalUI(UnityMessageSource msg, OAuthExchange credentialExchange,
 			OAuthContextsManagement contextManagement, ExecutorsService executorsService, 
-			String idpKey, String configKey, String authenticatorName, Context context)
+			String idpKey, String configKey, String authenticatorName, Context context, 
+			LogoCache logoCache)
 	{
 		this.msg = msg;
 		this.credentialExchange = credentialExchange;
@@ -87,6 +89,7 @@ public class OAuth2RetrievalUI implements VaadinAuthenticationUI
 		this.configKey = configKey;
 		this.authenticatorName = authenticatorName;
 		this.context = context;
+		this.logoCache = logoCache;
 		initUI();
 	}
 
@@ -121,7 +124,7 @@ public class OAuth2RetrievalUI implements VaadinAuthenticationUI
 		Resource logo;
 		try
 		{
-			logo = logoUrl == null ? Images.empty.getResource() : ImageUtils.getLogoResource(logoUrl);
+			logo = logoUrl == null ? Images.empty.getResource() : logoCache.getLogoResource(logoUrl);
 		} catch (MalformedURLException e)
 		{
 			log.warn("Can't load logo from " + logoUrl, e);
@@ -169,7 +172,7 @@ public class OAuth2RetrievalUI implements VaadinAuthenticationUI
 
 		try
 		{
-			return ImageUtils.getLogoResource(url);
+			return logoCache.getLogoResource(url);
 		} catch (MalformedURLException e)
 		{
 			log.error("Invalid logo URL " + url, e);
@@ -5,14 +5,33 @@
 
 package pl.edu.icm.unity.oauth.client;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -68,4 +87,251 @@ public class OIDCDiscoveryTest
 		
 		Assert.assertEquals("https://mock-issuer", meta.getIssuer().getValue());
 	}
+
+	@Test
+	public void shouldUseMaxAgeInSeconds()
+	{
+		assertThat(OpenIdConnectDiscovery.getMaxAge("public, max-age=3600"), is(3600000L));
+		assertThat(OpenIdConnectDiscovery.getMaxAge("max-age=3600, no-cache"), 
+				is(OpenIdConnectDiscovery.MIN_MAX_AGE));
+		assertThat(OpenIdConnectDiscovery.getMaxAge("max-age=31536000"), 
+				is(OpenIdConnectDiscovery.MAX_MAX_AGE));
+		assertThat(OpenIdConnectDiscovery.getMaxAge("private"), is(OpenIdConnectDiscovery.DEFAULT_MAX_AGE));
+	}
+	
+	@Test
+	public void shouldUseLastKnownGoodMetadataWhenProviderIsUnavailable() throws Exception
+	{
+		File backupDir = new File("target/oidcDiscoveryTest");
+		FileUtils.deleteDirectory(backupDir);
+		CustomProviderProperties def = mock(CustomProviderProperties.class);
+		URL url = new URL("https://test.org");
+		CustomHttpRequestFactory workingFactory = mock(CustomHttpRequestFactory.class);
+		HTTPRequest wrapped =  mock(HTTPRequest.class);
+		HTTPResponse response = mock(HTTPResponse.class);
+		when(workingFactory.wrapRequest(any(), any())).thenReturn(wrapped);
+		when(wrapped.send()).thenReturn(response);
+		when(response.getContent()).thenReturn(META);
+		new OpenIdConnectDiscovery(url, workingFactory, Runnable::run, backupDir).getMetadata(def);
+		CustomHttpRequestFactory failingFactory = mock(CustomHttpRequestFactory.class);
+		HTTPRequest failing =  mock(HTTPRequest.class);
+		when(failingFactory.wrapRequest(any(), any())).thenReturn(failing);
+		when(failing.send()).thenThrow(new IOException("Connection refused"));
+		OpenIdConnectDiscovery tested = new OpenIdConnectDiscovery(url, failingFactory, 
+				Runnable::run, backupDir);
+		
+		OIDCProviderMetadata meta = tested.getMetadata(def);
+		
+		assertThat(meta.getIssuer().getValue(), is("https://mock-issuer"));
+	}
+
+	@Test
+	public void shouldRefreshInBackgroundAfterThreeQuartersOfMaxAge() throws Exception
+	{
+		HTTPRequest request = mock(HTTPRequest.class);
+		HTTPResponse response = response("max-age=100");
+		when(request.send()).thenReturn(response);
+		OpenIdConnectDiscovery tested = new OpenIdConnectDiscovery(new URL("https://test.org"), 
+				requestFactory(request), executor, null, clock);
+		tested.getMetadata(config);
+		
+		clock.setMillis(74999);
+		tested.getMetadata(config);
+		assertThat(executor.tasks.size(), is(0));
+		
+		clock.setMillis(75000);
+		tested.getMetadata(config);
+		tested.getMetadata(config);
+		assertThat(executor.tasks.size(), is(1));
+		verify(request, times(1)).send();
+		
+		executor.runAll();
+		verify(request, times(2)).send();
+	}
+
+	@Test
+	public void shouldReturnPreviousMetadataWhenRefreshFails() throws Exception
+	{
+		HTTPRequest request = mock(HTTPRequest.class);
+		HTTPResponse response = response("max-age=100");
+		when(request.send()).thenReturn(response)
+			.thenThrow(new IOException("Connection refused"));
+		OpenIdConnectDiscovery tested = new OpenIdConnectDiscovery(new URL("https://test.org"), 
+				requestFactory(request), executor, null, clock);
+		tested.getMetadata(config);
+		clock.setMillis(75000);
+		tested.getMetadata(config);
+		
+		executor.runAll();
+		OIDCProviderMetadata meta = tested.getMetadata(config);
+		
+		verify(request, times(2)).send();
+		assertThat(meta.getIssuer().getValue(), is("https://mock-issuer"));
+	}
+
+	@Test
+	public void shouldBackOffRefreshAfterFailure() throws Exception
+	{
+		HTTPRequest request = mock(HTTPRequest.class);
+		HTTPResponse response = response("max-age=100");
+		when(request.send()).thenReturn(response)
+			.thenThrow(new IOException("Connection refused"));
+		OpenIdConnectDiscovery tested = new OpenIdConnectDiscovery(new URL("https://test.org"), 
+				requestFactory(request), executor, null, clock);
+		tested.getMetadata(config);
+		clock.setMillis(75000);
+		tested.getMetadata(config);
+		executor.runAll();
+		
+		clock.setMillis(75000 + OpenIdConnectDiscovery.MIN_BACKOFF - 1);
+		tested.getMetadata(config);
+		assertThat(executor.tasks.size(), is(0));
+		
+		clock.setMillis(75000 + OpenIdConnectDiscovery.MIN_BACKOFF);
+		tested.getMetadata(config);
+		assertThat(executor.tasks.size(), is(1));
+		executor.runAll();
+		
+		clock.setMillis(75000 + 3 * OpenIdConnectDiscovery.MIN_BACKOFF - 1);
+		tested.getMetadata(config);
+		assertThat(executor.tasks.size(), is(0));
+		
+		clock.setMillis(75000 + 3 * OpenIdConnectDiscovery.MIN_BACKOFF);
+		tested.getMetadata(config);
+		assertThat(executor.tasks.size(), is(1));
+	}
+
+	@Test
+	public void shouldRetryInitialRetrievalAfterShortBackOff() throws Exception
+	{
+		HTTPRequest request = mock(HTTPRequest.class);
+		when(request.send()).thenThrow(new IOException("Connection refused"));
+		OpenIdConnectDiscovery tested = new OpenIdConnectDiscovery(new URL("https://test.org"), 
+				requestFactory(request), executor, null, clock);
+		
+		assertGetMetadataFails(tested);
+		clock.setMillis(OpenIdConnectDiscovery.MIN_BACKOFF - 1);
+		assertGetMetadataFails(tested);
+		verify(request, times(1)).send();
+		
+		int attempts = 1;
+		for (int i = 0; i < 10; i++)
+		{
+			clock.setMillis(clock.millis() + OpenIdConnectDiscovery.MAX_INITIAL_BACKOFF);
+			assertGetMetadataFails(tested);
+			verify(request, times(++attempts)).send();
+		}
+	}
+
+	@Test
+	public void shouldRetrieveMetadataOnceForConcurrentFirstCallers() throws Exception
+	{
+		HTTPRequest request = mock(HTTPRequest.class);
+		HTTPResponse response = response("max-age=100");
+		CountDownLatch downloadStarted = new CountDownLatch(1);
+		CountDownLatch downloadAllowed = new CountDownLatch(1);
+		when(request.send()).thenAnswer(invocation -> {
+			downloadStarted.countDown();
+			downloadAllowed.await();
+			return response;
+		});
+		OpenIdConnectDiscovery tested = new OpenIdConnectDiscovery(new URL("https://test.org"), 
+				requestFactory(request), executor, null, clock);
+		int threads = 4;
+		ExecutorService callers = Executors.newFixedThreadPool(threads);
+		List<Future<OIDCProviderMetadata>> results = new ArrayList<>();
+		for (int i = 0; i < threads; i++)
+			results.add(callers.submit(() -> tested.getMetadata(config)));
+		
+		assertThat(downloadStarted.await(30, TimeUnit.SECONDS), is(true));
+		downloadAllowed.countDown();
+		for (Future<OIDCProviderMetadata> result: results)
+			assertThat(result.get(30, TimeUnit.SECONDS).getIssuer().getValue(), is("https://mock-issuer"));
+		callers.shutdown();
+		
+		verify(request, times(1)).send();
+	}
+
+	private final MutableClock clock = new MutableClock();
+	private final QueuedExecutor executor = new QueuedExecutor();
+	private final CustomProviderProperties config = mock(CustomProviderProperties.class);
+
+	private void assertGetMetadataFails(OpenIdConnectDiscovery tested) throws Exception
+	{
+		try
+		{
+			tested.getMetadata(config);
+			fail("Metadata retrieval should fail");
+		} catch (IOException e)
+		{
+			//OK
+		}
+	}
+	
+	private CustomHttpRequestFactory requestFactory(HTTPRequest request)
+	{
+		CustomHttpRequestFactory reqFactory = mock(CustomHttpRequestFactory.class);
+		when(reqFactory.wrapRequest(any(), any())).thenReturn(request);
+		return reqFactory;
+	}
+	
+	private HTTPResponse response(String cacheControl)
+	{
+		HTTPResponse response = mock(HTTPResponse.class);
+		when(response.getCacheControl()).thenReturn(cacheControl);
+		when(response.getContent()).thenReturn(META);
+		return response;
+	}
+	
+	private static class QueuedExecutor implements Executor
+	{
+		private final List<Runnable> tasks = new ArrayList<>();
+
+		@Override
+		public void execute(Runnable command)
+		{
+			tasks.add(command);
+		}
+		
+		void runAll()
+		{
+			List<Runnable> toRun = new ArrayList<>(tasks);
+			tasks.clear();
+			toRun.forEach(Runnable::run);
+		}
+	}
+	
+	private static class MutableClock extends Clock
+	{
+		private volatile long millis;
+
+		void setMillis(long millis)
+		{
+			this.millis = millis;
+		}
+		
+		@Override
+		public long millis()
+		{
+			return millis;
+		}
+		
+		@Override
+		public Instant instant()
+		{
+			return Instant.ofEpochMilli(millis);
+		}
+		
+		@Override
+		public ZoneId getZone()
+		{
+			return ZoneOffset.UTC;
+		}
+		
+		@Override
+		public Clock withZone(ZoneId zone)
+		{
+			return this;
+		}
+	}
 }
@@ -43,6 +43,9 @@ import pl.edu.icm.unity.types.basic.IdentityTaV;
 
 /**
  * Performs a final authentication, basing on the endpoint's configuration.
+ * <p>
+ * Faults thrown by credential retrievals, as when the server is too busy to check a credential, are 
+ * propagated to the client and are not counted as unsuccessful authentications.
  * 
  * @author K. Benedyczak
  */
@@ -7,7 +7,9 @@ package pl.edu.icm.unity.rest.authn.ext;
 import java.util.Properties;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.apache.cxf.interceptor.Fault;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.phase.AbstractPhaseInterceptor;
 import org.apache.cxf.phase.PhaseInterceptorChain;
@@ -20,6 +22,7 @@ import pl.edu.icm.unity.engine.api.authn.AbstractCredentialRetrieval;
 import pl.edu.icm.unity.engine.api.authn.AuthenticationResult;
 import pl.edu.icm.unity.engine.api.authn.AuthenticationResult.Status;
 import pl.edu.icm.unity.engine.api.authn.CredentialRetrieval;
+import pl.edu.icm.unity.engine.api.authn.ServerBusyAuthenticationException;
 import pl.edu.icm.unity.exceptions.InternalException;
 import pl.edu.icm.unity.rest.authn.CXFAuthentication;
 import pl.edu.icm.unity.stdext.credential.pass.PasswordExchange;
@@ -71,16 +74,31 @@ public abstract class HttpBasicRetrievalBase extends AbstractCredentialRetrieval
 			return new AuthenticationResult(Status.notApplicable, null);
 		}
 		log.trace("HTTP BASIC auth header found");
+		return checkPassword(authnTokens);
+	}
+
+	/**
+	 * @throws Fault with 503 status if the password can not be checked as the server is busy. This way 
+	 * the request is not treated as an unsuccessful authentication.
+	 */
+	AuthenticationResult checkPassword(HTTPAuthNTokens authnTokens)
+	{
 		try
 		{
 			return credentialExchange.checkPassword(authnTokens.getUserName(), authnTokens.getPasswd(),
 					null);
+		} catch (ServerBusyAuthenticationException e)
+		{
+			log.info("HTTP BASIC credential of " + authnTokens.getUserName() + 
+					" can not be checked now: " + e.getMessage());
+			Fault fault = new Fault(e);
+			fault.setStatusCode(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			throw fault;
 		} catch (Exception e)
 		{
 			log.trace("HTTP BASIC credential is invalid");
 			return new AuthenticationResult(Status.deny, null);
 		}
-
 	}
 	
 	private static HTTPAuthNTokens getHTTPCredentials(Logger log, boolean urlEncoded)
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.rest.authn.ext;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import org.apache.cxf.interceptor.Fault;
+import org.junit.Test;
+
+import eu.unicore.security.HTTPAuthNTokens;
+import pl.edu.icm.unity.engine.api.authn.AuthenticationException;
+import pl.edu.icm.unity.engine.api.authn.AuthenticationResult;
+import pl.edu.icm.unity.engine.api.authn.AuthenticationResult.Status;
+import pl.edu.icm.unity.engine.api.authn.CredentialReset;
+import pl.edu.icm.unity.engine.api.authn.ServerBusyAuthenticationException;
+import pl.edu.icm.unity.engine.api.authn.remote.SandboxAuthnResultCallback;
+import pl.edu.icm.unity.stdext.credential.pass.PasswordExchange;
+
+public class TestHttpBasicRetrieval
+{
+	@Test
+	public void shouldFailWithServiceUnavailableWhenServerIsBusy()
+	{
+		HttpBasicRetrieval retrieval = new HttpBasicRetrieval();
+		retrieval.setCredentialExchange(new StubPasswordExchange(
+				new ServerBusyAuthenticationException("busy", null)), "authn");
+
+		try
+		{
+			retrieval.checkPassword(new HTTPAuthNTokens("user", "pass"));
+			fail("Busy server was not reported");
+		} catch (Fault e)
+		{
+			assertThat(e.getStatusCode(), is(503));
+		}
+	}
+
+	@Test
+	public void shouldDenyWhenPasswordIsWrong()
+	{
+		HttpBasicRetrieval retrieval = new HttpBasicRetrieval();
+		retrieval.setCredentialExchange(new StubPasswordExchange(
+				new AuthenticationException("wrong")), "authn");
+
+		AuthenticationResult result = retrieval.checkPassword(new HTTPAuthNTokens("user", "pass"));
+
+		assertThat(result.getStatus(), is(Status.deny));
+	}
+
+	private static class StubPasswordExchange implements PasswordExchange
+	{
+		private final AuthenticationException error;
+
+		StubPasswordExchange(AuthenticationException error)
+		{
+			this.error = error;
+		}
+
+		@Override
+		public String getExchangeId()
+		{
+			return ID;
+		}
+
+		@Override
+		public AuthenticationResult checkPassword(String username, String password,
+				SandboxAuthnResultCallback sandboxCallback) throws AuthenticationException
+		{
+			throw error;
+		}
+
+		@Override
+		public CredentialReset getCredentialResetBackend()
+		{
+			return null;
+		}
+	}
+}
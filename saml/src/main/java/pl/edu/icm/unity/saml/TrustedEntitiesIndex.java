@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.saml;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.Logger;
+
+import eu.emi.security.authn.x509.impl.X500NameUtils;
+import pl.edu.icm.unity.base.utils.Log;
+
+/**
+ * Immutable index of trusted SAML entities (SPs trusted by IdP or IdPs trusted by SP), defined in a structured
+ * list of the configuration. Allows for finding entity's configuration key by its SAML entity id or DN
+ * with a hash lookup, instead of scanning all the configuration properties, what is costly when thousands
+ * of entities are loaded from federation metadata. Index is built once per configuration change.
+ * <p>
+ * In case when the same identifier is used by several entries, the first one in the order of configuration
+ * keys is returned, as it was done by the sequential search.
+ *
+ * @author K. Benedyczak
+ */
+public class TrustedEntitiesIndex
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER_SAML, TrustedEntitiesIndex.class);
+
+	private final Set<String> keys;
+	private final Map<String, String> keysByEntityId;
+	private final Map<String, String> keysByDN;
+	private final Map<String, Set<String>> certificatesByKey;
+
+	private TrustedEntitiesIndex(Set<String> keys, Map<String, String> keysByEntityId,
+			Map<String, String> keysByDN, Map<String, Set<String>> certificatesByKey)
+	{
+		this.keys = Collections.unmodifiableSet(keys);
+		this.keysByEntityId = keysByEntityId;
+		this.keysByDN = keysByDN;
+		this.certificatesByKey = certificatesByKey;
+	}
+
+	/**
+	 * @param dnProperty can be null if entities can not be identified by DN
+	 */
+	public static TrustedEntitiesIndex build(SamlProperties config, String listPrefix, String entityIdProperty,
+			String dnProperty, String certificateProperty, String certificatesProperty)
+	{
+		long start = System.currentTimeMillis();
+		Set<String> keys = new LinkedHashSet<>(config.getStructuredListKeys(listPrefix));
+		Map<String, String> keysByEntityId = new HashMap<>();
+		Map<String, String> keysByDN = new HashMap<>();
+		Map<String, Set<String>> certificatesByKey = new HashMap<>();
+		for (String key: keys)
+		{
+			String entityId = config.getValue(key + entityIdProperty);
+			if (entityId != null)
+				keysByEntityId.putIfAbsent(entityId, key);
+			String dn = dnProperty == null ? null : config.getValue(key + dnProperty);
+			if (dn != null)
+			{
+				String comparableDN = getComparableDN(dn);
+				if (comparableDN != null)
+					keysByDN.putIfAbsent(comparableDN, key);
+				else
+					log.warn("Trusted SAML entity " + key + " has an invalid DN " + dn
+							+ ", it won't be matched");
+			}
+			certificatesByKey.put(key, Collections.unmodifiableSet(config.getCertificateNames(key,
+					certificateProperty, certificatesProperty)));
+		}
+		log.debug("Indexed " + keys.size() + " trusted SAML entities of " + listPrefix + ", took "
+				+ (System.currentTimeMillis() - start) + "ms");
+		return new TrustedEntitiesIndex(keys, keysByEntityId, keysByDN, certificatesByKey);
+	}
+
+	/**
+	 * @return configuration keys of all trusted entities, in the configuration order.
+	 */
+	public Set<String> getKeys()
+	{
+		return keys;
+	}
+
+	/**
+	 * @return configuration key of an entity with the given SAML entity id or null if not found
+	 */
+	public String getKeyOfEntity(String entityId)
+	{
+		return entityId == null ? null : keysByEntityId.get(entityId);
+	}
+
+	/**
+	 * @return configuration key of an entity with the given DN or null if not found
+	 */
+	public String getKeyOfDN(String dn)
+	{
+		String comparableDN = dn == null ? null : getComparableDN(dn);
+		return comparableDN == null ? null : keysByDN.get(comparableDN);
+	}
+
+	/**
+	 * @return names of certificates configured for the entity with the given key.
+	 */
+	public Set<String> getCertificateNames(String key)
+	{
+		return certificatesByKey.getOrDefault(key, Collections.emptySet());
+	}
+
+	private static String getComparableDN(String dn)
+	{
+		try
+		{
+			return X500NameUtils.getComparableForm(dn);
+		} catch (IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+}
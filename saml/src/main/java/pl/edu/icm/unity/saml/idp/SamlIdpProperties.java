@@ -12,6 +12,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -25,7 +26,6 @@ import org.apache.log4j.Logger;
 
 import eu.emi.security.authn.x509.X509CertChainValidator;
 import eu.emi.security.authn.x509.X509Credential;
-import eu.emi.security.authn.x509.impl.X500NameUtils;
 import eu.unicore.samly2.SAMLConstants;
 import eu.unicore.samly2.trust.AcceptingSamlTrustChecker;
 import eu.unicore.samly2.trust.EnumeratedTrustChecker;
@@ -44,7 +44,10 @@ import pl.edu.icm.unity.engine.api.idp.CommonIdPProperties;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.exceptions.InternalException;
 import pl.edu.icm.unity.saml.SamlProperties;
+import pl.edu.icm.unity.saml.TrustedEntitiesIndex;
+import pl.edu.icm.unity.saml.validator.LocalReplayCache;
 import pl.edu.icm.unity.saml.validator.UnityAuthnRequestValidator;
+import pl.edu.icm.unity.saml.validator.UnityReplayAttackChecker;
 import xmlbeans.org.oasis.saml2.assertion.NameIDType;
 import xmlbeans.org.oasis.saml2.protocol.AuthnRequestType;
 
@@ -247,11 +250,14 @@ public class SamlIdpProperties extends SamlProperties
 	private SamlAttributeMapper attributesMapper;
 	private PKIManagement pkiManagement;
 	private IdentityTypeMapper idTypeMapper;
-	private Map<Integer, String> allowedRequestersByIndex;
+	private Map<String, Map<Integer, String>> allowedRequestersByIndex;
+	private TrustedEntitiesIndex trustedSPs;
 	
 	public SamlIdpProperties(Properties src, PKIManagement pkiManagement) throws ConfigurationException, IOException
 	{
 		super(P, cleanupLegacyProperties(src), defaults, log);
+		addCachedPrefixes("unity\\.saml\\.acceptedSP\\.[^.]+\\.certificates\\.",
+				"unity\\.saml\\.acceptedSP\\.[^.]+\\.returnURLs\\.");
 		sourceProperties = new Properties();
 		sourceProperties.putAll(properties);
 		this.pkiManagement = pkiManagement;
@@ -265,6 +271,54 @@ public class SamlIdpProperties extends SamlProperties
 		}
 		init();
 	}
+
+	/**
+	 * For cloning only. The state established during initialization is not modified afterwards, 
+	 * so it is shared with the cloned object.
+	 */
+	private SamlIdpProperties(SamlIdpProperties cloned)
+	{
+		super(cloned);
+		this.sourceProperties = cloned.sourceProperties;
+		this.pkiManagement = cloned.pkiManagement;
+		this.signRespNever = cloned.signRespNever;
+		this.signRespAlways = cloned.signRespAlways;
+		this.replayChecker = cloned.replayChecker;
+		this.authnTrustChecker = cloned.authnTrustChecker;
+		this.soapTrustChecker = cloned.soapTrustChecker;
+		this.sloTrustChecker = cloned.sloTrustChecker;
+		this.requestValidity = cloned.requestValidity;
+		this.trustedValidator = cloned.trustedValidator;
+		this.groupChooser = cloned.groupChooser;
+		this.attributesMapper = cloned.attributesMapper;
+		this.idTypeMapper = cloned.idTypeMapper;
+		this.allowedRequestersByIndex = cloned.allowedRequestersByIndex;
+		this.trustedSPs = cloned.trustedSPs;
+	}
+
+	/**
+	 * Used when configuration is updated with remote metadata. All the derived state is rebuilt, 
+	 * in case of error the previous configuration is restored.
+	 */
+	@Override
+	public synchronized void setProperties(Properties properties) throws ConfigurationException
+	{
+		long start = System.currentTimeMillis();
+		Properties previous = new Properties();
+		previous.putAll(this.properties);
+		try
+		{
+			super.setProperties(properties);
+			init();
+		} catch (ConfigurationException e)
+		{
+			super.setProperties(previous);
+			init();
+			throw e;
+		}
+		log.info("Updated trusted SPs configuration with " + trustedSPs.getKeys().size() 
+				+ " explicit trusted providers, took " + (System.currentTimeMillis() - start) + "ms");
+	}
 	
 	private static Properties cleanupLegacyProperties(Properties src)
 	{
@@ -287,6 +341,9 @@ public class SamlIdpProperties extends SamlProperties
 	
 	private void init()
 	{
+		trustedSPs = TrustedEntitiesIndex.build(this, ALLOWED_SP_PREFIX, ALLOWED_SP_ENTITY, ALLOWED_SP_DN, 
+				ALLOWED_SP_CERTIFICATE, ALLOWED_SP_CERTIFICATES);
+		allowedRequestersByIndex = new HashMap<>();
 		ResponseSigningPolicy repPolicy = getEnumValue(SamlIdpProperties.SIGN_RESPONSE, ResponseSigningPolicy.class);
 		signRespAlways = signRespNever = false;
 		if (repPolicy == ResponseSigningPolicy.always)
@@ -315,14 +372,12 @@ public class SamlIdpProperties extends SamlProperties
 			EnumeratedTrustChecker authnTrustChecker = new EnumeratedTrustChecker();
 			this.authnTrustChecker = authnTrustChecker;
 			
-			Set<String> allowedKeys = getStructuredListKeys(ALLOWED_SP_PREFIX);
-			for (String allowedKey: allowedKeys)
+			for (String allowedKey: trustedSPs.getKeys())
 				initValidRequester(authnTrustChecker, allowedKey);
 			this.sloTrustChecker = createStrictTrustChecker();
 		}
 		
-		Set<String> allowedKeys = getStructuredListKeys(ALLOWED_SP_PREFIX);
-		for (String allowedKey: allowedKeys)
+		for (String allowedKey: trustedSPs.getKeys())
 		{
 			Set<String> spCertNames = getAllowedSpCerts(allowedKey);
 			if (getBooleanValue(allowedKey + ALLOWED_SP_ENCRYPT) && spCertNames.isEmpty())
@@ -337,7 +392,8 @@ public class SamlIdpProperties extends SamlProperties
 			soapTrustChecker = new PKISamlTrustChecker(trustedValidator, true);
 		else
 			soapTrustChecker = new AcceptingSamlTrustChecker();
-		replayChecker = new ReplayAttackChecker();
+		if (replayChecker == null)
+			replayChecker = new UnityReplayAttackChecker(new LocalReplayCache());
 		requestValidity = getLongValue(SamlIdpProperties.SAML_REQUEST_VALIDITY)*1000;
 		
 		groupChooser = new GroupChooser(this);
@@ -362,9 +418,10 @@ public class SamlIdpProperties extends SamlProperties
 		if (name != null)
 		{
 			List<String> allowedEndpoints = getListOfValues(allowedKey + ALLOWED_SP_RETURN_URLS);
-			allowedRequestersByIndex = initAllowedRequesters(allowedEndpoints);
+			Map<Integer, String> spEndpointsByIndex = initAllowedRequesters(allowedEndpoints);
+			allowedRequestersByIndex.put(allowedKey, spEndpointsByIndex);
 			authnTrustChecker.addTrustedIssuer(name, returnAddress);
-			for (String endpoint: allowedRequestersByIndex.values())
+			for (String endpoint: spEndpointsByIndex.values())
 				authnTrustChecker.addTrustedIssuer(name, endpoint);
 		} else
 		{
@@ -416,8 +473,7 @@ public class SamlIdpProperties extends SamlProperties
 	private StrictSamlTrustChecker createStrictTrustChecker()
 	{
 		StrictSamlTrustChecker authnTrustChecker = new StrictSamlTrustChecker();
-		Set<String> allowedKeys = getStructuredListKeys(ALLOWED_SP_PREFIX);
-		for (String allowedKey: allowedKeys)
+		for (String allowedKey: trustedSPs.getKeys())
 		{
 			
 			String type = SAMLConstants.NFORMAT_ENTITY;
@@ -477,8 +533,7 @@ public class SamlIdpProperties extends SamlProperties
 	
 	public void configureKnownRequesters(UnityAuthnRequestValidator validator)
 	{
-		Set<String> allowedKeys = getStructuredListKeys(ALLOWED_SP_PREFIX);
-		for (String allowedKey: allowedKeys)
+		for (String allowedKey: trustedSPs.getKeys())
 		{
 			String name = getValue(allowedKey + ALLOWED_SP_ENTITY);
 			if (name == null)
@@ -500,7 +555,7 @@ public class SamlIdpProperties extends SamlProperties
 		Integer requestedServiceIdx = req.isSetAssertionConsumerServiceIndex() ? 
 				req.getAssertionConsumerServiceIndex() : null;
 		return (requestedServiceIdx != null) ? 
-				allowedRequestersByIndex.get(requestedServiceIdx) 
+				allowedRequestersByIndex.getOrDefault(spKey, Collections.emptyMap()).get(requestedServiceIdx) 
 				: getValue(spKey + ALLOWED_SP_RETURN_URL);
 	}
 	
@@ -549,45 +604,20 @@ public class SamlIdpProperties extends SamlProperties
 	
 	public Set<String> getAllowedSpCerts(String idpKey)
 	{
-		return getCertificateNames(idpKey, ALLOWED_SP_CERTIFICATE, ALLOWED_SP_CERTIFICATES);
+		return trustedSPs.getCertificateNames(idpKey);
 	}
 	
 	public String getSPConfigKey(NameIDType requester)
 	{
-		Set<String> allowedKeys = getStructuredListKeys(ALLOWED_SP_PREFIX);
 		boolean dnName = requester.getFormat() != null && requester.getFormat().equals(
 				SAMLConstants.NFORMAT_DN); 
-		for (String allowedKey: allowedKeys)
-		{
-			if (dnName)
-			{
-				String name = getValue(allowedKey + ALLOWED_SP_DN);
-				if (name == null)
-					continue;
-				if (!X500NameUtils.equal(name, requester.getStringValue()))
-					continue;
-			} else
-			{
-				String name = getValue(allowedKey + ALLOWED_SP_ENTITY);
-				if (name == null)
-					continue;
-				if (!name.equals(requester.getStringValue()))
-					continue;
-			}
-			return allowedKey;
-		}
-		return null;
+		return dnName ? trustedSPs.getKeyOfDN(requester.getStringValue()) : 
+			trustedSPs.getKeyOfEntity(requester.getStringValue());
 	}
 
 	public String getPrefixOfSP(String entity)
 	{
-		Set<String> keys = getStructuredListKeys(ALLOWED_SP_PREFIX);
-		for (String key: keys)
-		{
-			if (entity.equals(getValue(key+ALLOWED_SP_ENTITY)))
-				return key;
-		}
-		return null;
+		return trustedSPs.getKeyOfEntity(entity);
 	}
 	
 	public SamlTrustChecker getSoapTrustChecker()
@@ -647,16 +677,9 @@ public class SamlIdpProperties extends SamlProperties
 	}
 
 	@Override
-	public SamlProperties clone()
+	public synchronized SamlProperties clone()
 	{
-		try
-		{
-			return new SamlIdpProperties(getProperties(), pkiManagement);
-		} catch (IOException e)
-		{
-			throw new ConfigurationException("Can not clone saml properties", e);
-		} 
-		
+		return new SamlIdpProperties(this);
 	}
 
 	public Properties getSourceProperties()
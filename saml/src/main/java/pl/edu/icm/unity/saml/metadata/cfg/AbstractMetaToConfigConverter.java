@@ -79,18 +79,43 @@ public abstract class AbstractMetaToConfigConverter
 	protected void convertToProperties(EntitiesDescriptorDocument metaDoc, Properties properties, 
 			SamlProperties realConfig, String configKey)
 	{
+		convertToProperties(metaDoc, properties, realConfig, configKey, new HashMap<>());
+	}
+
+	/**
+	 * As {@link #convertToProperties(EntitiesDescriptorDocument, Properties, SamlProperties, String)} but
+	 * entities which are the same as in the previous conversion of the same metadata source are not 
+	 * converted again (what includes their certificates handling): the previous results are reused. 
+	 * Entities are compared with digests of their descriptors. Entities which could not be converted 
+	 * completely are not recorded, so they are converted again the next time.
+	 * 
+	 * @param convertedEntities results of the previous conversion, by digests of entity descriptors. 
+	 * Updated with results of this conversion.
+	 */
+	protected ConversionResult convertToProperties(EntitiesDescriptorDocument metaDoc, Properties properties, 
+			SamlProperties realConfig, String configKey, Map<String, Properties> convertedEntities)
+	{
+		long start = System.currentTimeMillis();
+		ConversionState state = new ConversionState(convertedEntities);
+		convertedEntities.clear();
 		EntitiesDescriptorType meta = metaDoc.getEntitiesDescriptor();
-		convertToProperties(meta, properties, realConfig, configKey);
+		convertToProperties(meta, properties, realConfig, configKey, state);
+		log.debug("Converted metadata to configuration of {}: {} entities converted, {} unchanged, "
+				+ "{} failed, took {}ms", configKey, state.converted.size() - state.reused, state.reused, 
+				state.failed, System.currentTimeMillis() - start);
+		boolean changed = state.failed > 0 || state.reused != state.previous.size() 
+				|| state.reused != state.converted.size();
+		return new ConversionResult(changed, state.failed == 0);
 	}
 	
-	protected void convertToProperties(EntitiesDescriptorType meta, Properties properties, 
-			SamlProperties realConfig, String configKey)
+	private void convertToProperties(EntitiesDescriptorType meta, Properties properties, 
+			SamlProperties realConfig, String configKey, ConversionState state)
 	{
 		EntitiesDescriptorType[] nested = meta.getEntitiesDescriptorArray();
 		if (nested != null)
 		{
 			for (EntitiesDescriptorType nestedD: nested)
-				convertToProperties(nestedD, properties, realConfig, configKey);
+				convertToProperties(nestedD, properties, realConfig, configKey, state);
 		}
 		EntityDescriptorType[] entities = meta.getEntityDescriptorArray();
 		
@@ -98,12 +123,36 @@ public abstract class AbstractMetaToConfigConverter
 		{
 			for (EntityDescriptorType entity: entities)
 			{
-				convertToProperties(entity, properties, realConfig, configKey);
+				convertToProperties(entity, properties, realConfig, configKey, state);
 			}
 		}
 	}
+
+	private void convertToProperties(EntityDescriptorType entity, Properties properties, 
+			SamlProperties realConfig, String configKey, ConversionState state)
+	{
+		String digest = DigestUtils.sha256Hex(entity.xmlText());
+		Properties previousProperties = state.previous.get(digest);
+		if (previousProperties != null)
+		{
+			properties.putAll(previousProperties);
+			state.reused++;
+			state.converted.put(digest, previousProperties);
+			return;
+		}
+		EntityProperties entityProperties = new EntityProperties(properties);
+		if (convertToProperties(entity, entityProperties, realConfig, configKey))
+			state.converted.put(digest, entityProperties.getRecorded());
+		else
+			state.failed++;
+	}
 	
-	protected abstract void convertToProperties(EntityDescriptorType meta, Properties properties, 
+	/**
+	 * @return false if the entity was not converted completely because of an error, which can be 
+	 * temporary. Such entity is converted again the next time, even if its descriptor is not changed.
+	 * Entities which are skipped intentionally (e.g. as not supported) are converted completely.
+	 */
+	protected abstract boolean convertToProperties(EntityDescriptorType meta, EntityProperties properties, 
 			SamlProperties realConfig, String configKey);
 	
 	protected boolean supportsSaml2(SSODescriptorType idpDef)
@@ -355,7 +404,7 @@ public abstract class AbstractMetaToConfigConverter
 	}
 	
 	
-	protected void setSLOProperty(Properties properties, String configKey, boolean noPerEntryConfig,
+	protected void setSLOProperty(EntityProperties properties, String configKey, boolean noPerEntryConfig,
 			EndpointType sloEndpoint, String SLOProperty, String SLORetProperty)
 	{
 		if (noPerEntryConfig || !properties.containsKey(configKey + SLOProperty))
@@ -370,4 +419,81 @@ public abstract class AbstractMetaToConfigConverter
 			}
 		}
 	}
+
+	/**
+	 * Outcome of a conversion of metadata, which reuses results of the previous conversion.
+	 */
+	public static class ConversionResult
+	{
+		private final boolean changed;
+		private final boolean complete;
+
+		ConversionResult(boolean changed, boolean complete)
+		{
+			this.changed = changed;
+			this.complete = complete;
+		}
+
+		/**
+		 * @return true if results of conversion differ from the previous ones
+		 */
+		public boolean isChanged()
+		{
+			return changed;
+		}
+
+		/**
+		 * @return false if some of the entities could not be converted because of errors
+		 */
+		public boolean isComplete()
+		{
+			return complete;
+		}
+	}
+	
+	private static class ConversionState
+	{
+		private final Map<String, Properties> previous;
+		private final Map<String, Properties> converted;
+		private int reused;
+		private int failed;
+		
+		ConversionState(Map<String, Properties> converted)
+		{
+			this.previous = new HashMap<>(converted);
+			this.converted = converted;
+		}
+	}
+	
+	/**
+	 * Configuration of a single entity which is being converted. Only checking and setting of entries 
+	 * is possible: the entries are set in the target properties and recorded, so they can be reused. 
+	 * Checks of keys presence are performed on the target properties. 
+	 */
+	protected static class EntityProperties
+	{
+		private final Properties target;
+		private final Properties recorded = new Properties();
+
+		EntityProperties(Properties target)
+		{
+			this.target = target;
+		}
+
+		public void setProperty(String key, String value)
+		{
+			recorded.setProperty(key, value);
+			target.setProperty(key, value);
+		}
+
+		public boolean containsKey(String key)
+		{
+			return target.containsKey(key);
+		}
+		
+		Properties getRecorded()
+		{
+			return recorded;
+		}
+	}
 }
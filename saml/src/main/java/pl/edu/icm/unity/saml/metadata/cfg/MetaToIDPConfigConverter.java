@@ -11,7 +11,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Random;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.Logger;
@@ -67,7 +66,7 @@ public class MetaToIDPConfigConverter extends AbstractMetaToConfigConverter
 	
 	
 	@Override
-	protected void convertToProperties(EntityDescriptorType meta, Properties properties,
+	protected boolean convertToProperties(EntityDescriptorType meta, EntityProperties properties,
 			SamlProperties realConfigG, String configKey)
 	{
 		SamlIdpProperties realConfig = (SamlIdpProperties) realConfigG;
@@ -75,9 +74,10 @@ public class MetaToIDPConfigConverter extends AbstractMetaToConfigConverter
 		RequestAcceptancePolicy trustMode = realConfig.getEnumValue(SamlIdpProperties.SP_ACCEPT_POLICY, 
 				RequestAcceptancePolicy.class);
 		if (spDefs == null || spDefs.length == 0)
-			return;
+			return true;
 	
 		String entityId = meta.getEntityID();
+		boolean complete = true;
 		Random r = new Random(); 
 		for (SPSSODescriptorType spDef: spDefs)
 		{
@@ -104,6 +104,7 @@ public class MetaToIDPConfigConverter extends AbstractMetaToConfigConverter
 				{
 					log.error("Adding remote SPs certs to local certs store failed, "
 							+ "skipping IdP: " + entityId, e);
+					complete = false;
 					continue;
 				}
 			} else if (trustMode == RequestAcceptancePolicy.strict)
@@ -135,13 +136,14 @@ public class MetaToIDPConfigConverter extends AbstractMetaToConfigConverter
 					soapSLOEndpoint, postSLOEndpoint, redirectSLOEndpoint,
 					realConfig, configKey, properties, r, 
 					certs, names, logos);					
-		}		
+		}
+		return complete;
 	}
 
 	private void addEntryToProperties(String entityId, String defaultServiceEndpoint,
 			Map<Integer, String> indexedServiceEndpoints,
 			EndpointType sloSoapEndpoint, EndpointType sloPostEndpoint, EndpointType sloRedirectEndpoint,
-			SamlIdpProperties realConfig, String metaConfigKey, Properties properties,
+			SamlIdpProperties realConfig, String metaConfigKey, EntityProperties properties,
 			Random r, List<X509Certificate> certs, Map<String, String> names,
 			Map<String, LogoType> logos)
 	{
@@ -215,13 +217,8 @@ public class MetaToIDPConfigConverter extends AbstractMetaToConfigConverter
 		
 	private String getExistingKey(String entityId, SamlIdpProperties realConfig)
 	{
-		Set<String> keys = realConfig.getStructuredListKeys(SamlIdpProperties.ALLOWED_SP_PREFIX);
-		for (String key: keys)
-		{
-			if (entityId.equals(realConfig.getValue(key+SamlIdpProperties.ALLOWED_SP_ENTITY)))
-				return SamlIdpProperties.P + key;
-		}
-		return null;
+		String key = realConfig.getPrefixOfSP(entityId);
+		return key == null ? null : SamlIdpProperties.P + key;
 	}
 
 	private EndpointType selectEndpointByBinding(EndpointType[] endpoints, String binding)
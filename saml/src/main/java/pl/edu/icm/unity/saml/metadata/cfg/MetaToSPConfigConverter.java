@@ -8,7 +8,7 @@ import java.security.cert.X509Certificate;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
+import java.util.function.BiConsumer;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.logging.log4j.Logger;
@@ -41,10 +41,22 @@ public class MetaToSPConfigConverter extends AbstractMetaToConfigConverter
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER_SAML, MetaToSPConfigConverter.class);
 	private static final String SP_META_CERT = "_SP_METADATA_CERT_";
+	private final BiConsumer<String, String> logoConsumer;
 	
 	public MetaToSPConfigConverter(PKIManagement pkiManagement, UnityMessageSource msg)
+	{
+		this(pkiManagement, msg, (logo, truststore) -> {});
+	}
+
+	/**
+	 * @param logoConsumer receives URIs of logos of the converted IdPs, so they can be prefetched, 
+	 * together with the name of the truststore of their metadata source (can be null)
+	 */
+	public MetaToSPConfigConverter(PKIManagement pkiManagement, UnityMessageSource msg, 
+			BiConsumer<String, String> logoConsumer)
 	{
 		super(pkiManagement, msg);
+		this.logoConsumer = logoConsumer;
 	}
 
 	/**
@@ -61,15 +73,16 @@ public class MetaToSPConfigConverter extends AbstractMetaToConfigConverter
 	}
 	
 	@Override
-	protected void convertToProperties(EntityDescriptorType meta, Properties properties, 
+	protected boolean convertToProperties(EntityDescriptorType meta, EntityProperties properties, 
 			SamlProperties realConfigG, String configKey)
 	{
 		SAMLSPProperties realConfig = (SAMLSPProperties) realConfigG;
 		IDPSSODescriptorType[] idpDefs = meta.getIDPSSODescriptorArray();
 		if (idpDefs == null || idpDefs.length == 0)
-			return;
+			return true;
 
 		String entityId = meta.getEntityID();
+		boolean complete = true;
 		for (IDPSSODescriptorType idpDef: idpDefs)
 		{
 			if (!supportsSaml2(idpDef))
@@ -113,6 +126,7 @@ public class MetaToSPConfigConverter extends AbstractMetaToConfigConverter
 			{
 				log.error("Adding remote IDPs certs to local certs store failed, "
 						+ "skipping IdP: " + entityId, e);
+				complete = false;
 				continue;
 			}
 			UIInfoType uiInfo = parseMDUIInfo(idpDef.getExtensions(), entityId);
@@ -135,12 +149,13 @@ public class MetaToSPConfigConverter extends AbstractMetaToConfigConverter
 						configKey, properties, 2, certs, names, logos);
 			}
 		}
+		return complete;
 	}
 	
 	private void addEntryToProperties(String entityId, EndpointType endpoint, 
 			EndpointType sloSoapEndpoint, EndpointType sloPostEndpoint, EndpointType sloRedirectEndpoint,
 			boolean requireSignedReq,
-			SAMLSPProperties realConfig, String metaConfigKey, Properties properties, int index,
+			SAMLSPProperties realConfig, String metaConfigKey, EntityProperties properties, int index,
 			List<X509Certificate> certs,
 			Map<String, String> names, Map<String, LogoType> logos)
 	{
@@ -153,6 +168,9 @@ public class MetaToSPConfigConverter extends AbstractMetaToConfigConverter
 	
 		String perMetaRegForm = realConfig.getValue(metaConfigKey + 
 				SAMLSPProperties.IDPMETA_REGISTRATION_FORM);
+		
+		String metaTruststore = realConfig.getValue(metaConfigKey + 
+				SamlProperties.METADATA_HTTPS_TRUSTSTORE);
 	
 		boolean noPerIdpConfig = configKey == null;
 		String entityHex = DigestUtils.md5Hex(entityId);
@@ -196,7 +214,10 @@ public class MetaToSPConfigConverter extends AbstractMetaToConfigConverter
 		{
 			String key = configKey + SAMLSPProperties.IDP_LOGO + logo.getKey();
 			if (noPerIdpConfig || !properties.containsKey(key))
+			{
 				properties.setProperty(key, logo.getValue().getStringValue());
+				logoConsumer.accept(logo.getValue().getStringValue(), metaTruststore);
+			}
 		}
 
 		if (noPerIdpConfig || !properties.containsKey(configKey + SAMLSPProperties.IDP_SIGN_REQUEST))
@@ -224,13 +245,8 @@ public class MetaToSPConfigConverter extends AbstractMetaToConfigConverter
 		
 	private String getExistingKey(String entityId, SAMLSPProperties realConfig)
 	{
-		Set<String> keys = realConfig.getStructuredListKeys(SAMLSPProperties.IDP_PREFIX);
-		for (String key: keys)
-		{
-			if (entityId.equals(realConfig.getValue(key+SAMLSPProperties.IDP_ID)))
-				return SAMLSPProperties.P + key;
-		}
-		return null;
+		String key = realConfig.getPrefixOfIdP(entityId);
+		return key == null ? null : SAMLSPProperties.P + key;
 	}
 	
 	private EndpointType selectWebEndpoint(EndpointType[] endpoints)
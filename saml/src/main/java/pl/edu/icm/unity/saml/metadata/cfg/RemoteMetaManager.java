@@ -20,6 +20,7 @@ import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.engine.api.PKIManagement;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.saml.SamlProperties;
+import pl.edu.icm.unity.saml.metadata.cfg.AbstractMetaToConfigConverter.ConversionResult;
 import pl.edu.icm.unity.saml.metadata.cfg.MetadataVerificator.MetadataValidationException;
 import pl.edu.icm.unity.saml.metadata.srv.RemoteMetadataService;
 import pl.edu.icm.unity.saml.sp.SAMLSPProperties;
@@ -123,8 +124,13 @@ public class RemoteMetaManager
 		this.virtualConfiguration.setProperties(virtualConfigProps);
 	}
 
-	private void reloadSingle(EntitiesDescriptorDocument metadata, String key, String url,
-			Properties virtualProps, SamlProperties configuration)
+	/**
+	 * @return result of the conversion, telling if the configuration obtained from the metadata was changed
+	 * @throws IllegalStateException if metadata can not be used. Entities obtained previously from 
+	 * the metadata are removed from the virtual configuration in such case.
+	 */
+	private ConversionResult reloadSingle(EntitiesDescriptorDocument metadata, String key, String url,
+			Properties virtualProps, SamlProperties configuration, Map<String, Properties> convertedEntities)
 	{
 		MetadataSignatureValidation sigCheckingMode = configuration.getEnumValue(
 				key + SamlProperties.METADATA_SIGNATURE, MetadataSignatureValidation.class);
@@ -138,23 +144,26 @@ public class RemoteMetaManager
 					sigCheckingMode, issuerCertificate);
 		} catch (MetadataValidationException e)
 		{
-			log.error("Metadata from " + url + " is invalid, won't be used", e);
-			return;
+			convertedEntities.clear();
+			throw new IllegalStateException("Metadata from " + url + " is invalid, won't be used", e);
 		} catch (EngineException e)
 		{
-			log.error("Problem establishing certificate for metadata validation " + 
+			convertedEntities.clear();
+			throw new IllegalStateException("Problem establishing certificate for metadata validation " + 
 					issuerCertificateName, e);
-			return;
 		}
 		
-		converter.convertToProperties(metadata, virtualProps, configuration, key);
+		ConversionResult result = converter.convertToProperties(metadata, virtualProps, configuration, key,
+				convertedEntities);
 		log.trace("Converted metadata from " + url + " to virtual configuration");
+		return result;
 	}
 
 	private class MetadataConsumer
 	{
 		private String url;
 		private String propertiesKey;
+		private Map<String, Properties> convertedEntities = new HashMap<>();
 		
 		public MetadataConsumer(String url, String propertiesKey)
 		{
@@ -162,11 +171,26 @@ public class RemoteMetaManager
 			this.propertiesKey = propertiesKey;
 		}
 		
-		private void updateMetadata(EntitiesDescriptorDocument metadata, String consumerId)
+		private synchronized void updateMetadata(EntitiesDescriptorDocument metadata, String consumerId)
 		{
 			Properties virtualConfigProps = configuration.getSourceProperties();
-			reloadSingle(metadata, propertiesKey, url, virtualConfigProps, configuration);
-			assembleProperties(propertiesKey, virtualConfigProps, consumerId);
+			ConversionResult result;
+			try
+			{
+				result = reloadSingle(metadata, propertiesKey, url, virtualConfigProps, configuration, 
+						convertedEntities);
+			} catch (IllegalStateException e)
+			{
+				assembleProperties(propertiesKey, virtualConfigProps, consumerId);
+				throw e;
+			}
+			if (result.isChanged())
+				assembleProperties(propertiesKey, virtualConfigProps, consumerId);
+			else
+				log.debug("Metadata from {} has no changed entities, configuration is not updated", url);
+			if (!result.isComplete())
+				throw new IllegalStateException("Some entities of metadata from " + url + 
+						" could not be converted, the metadata will be used again");
 		}
 	}
 }
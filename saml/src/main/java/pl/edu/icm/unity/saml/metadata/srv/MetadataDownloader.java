@@ -13,6 +13,7 @@ import java.io.InputStream;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.Optional;
+import java.util.Properties;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
@@ -22,11 +23,15 @@ import org.apache.xmlbeans.XmlException;
 
 import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.saml.metadata.srv.NetworkClient.DownloadedContent;
 import xmlbeans.org.oasis.saml2.metadata.EntitiesDescriptorDocument;
 
 /**
  * Downloads on demand a remote metadata file and caches it on disk. 
  * Allows for returning recently loaded file. 
+ * <p>
+ * Together with the cached file the HTTP ETag and Last-Modified headers of the response are stored,
+ * so that subsequent downloads are conditional and unchanged metadata is neither transferred nor parsed.
  * 
  * @author K. Benedyczak
  */
@@ -34,6 +39,9 @@ public class MetadataDownloader
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER_SAML, MetadataDownloader.class);
 	private static final String CACHE_DIR = "downloadedMetadata";
+	private static final String VALIDATORS_SUFFIX = "_validators";
+	private static final String ETAG = "eTag";
+	private static final String LAST_MODIFIED = "lastModified";
 
 	private final String workspaceDirectory;
 	private final NetworkClient client;
@@ -51,23 +59,26 @@ public class MetadataDownloader
 	 * 
 	 * @param url
 	 * @param customTruststore
-	 * @return
+	 * @return empty if the remote server confirmed that the metadata was not modified since 
+	 * the previous download.
 	 * @throws EngineException
 	 * @throws IOException
 	 * @throws XmlException
 	 * @throws InterruptedException 
 	 */
-	EntitiesDescriptorDocument getFresh(String url, String customTruststore)
+	Optional<EntitiesDescriptorDocument> getFresh(String url, String customTruststore)
 			throws EngineException, IOException, XmlException, InterruptedException
 	{
 		if (url.startsWith("file:"))
 		{
 			URL localUrl = new URL(url);
-			return EntitiesDescriptorDocument.Factory.parse(localUrl.openStream());
+			return Optional.of(EntitiesDescriptorDocument.Factory.parse(localUrl.openStream()));
 		} else
 		{
-			File downloaded = download(url, customTruststore);
-			return loadFile(downloaded);
+			Optional<File> downloaded = download(url, customTruststore);
+			if (!downloaded.isPresent())
+				return Optional.empty();
+			return Optional.of(loadFile(downloaded.get()));
 		}
 	}
 
@@ -95,23 +106,62 @@ public class MetadataDownloader
 		return doc;
 	}
 	
-	private File download(String url, String customTruststore) throws IOException, EngineException
+	private Optional<File> download(String url, String customTruststore) throws IOException, EngineException
 	{
 		File cachedFile = getLocalFile(url, "");
 		File cachedFilePart = getLocalFile(url, "_part");
+		File validatorsFile = getLocalFile(url, VALIDATORS_SUFFIX);
 		if (cachedFilePart.exists())
 			cachedFilePart.delete();
 
+		Properties validators = cachedFile.exists() ? loadValidators(validatorsFile) : new Properties();
 		log.debug("Downloading metadata from " + url + " to " + cachedFilePart.toString());
-		InputStream is = client.download(url, customTruststore);
-		FileOutputStream cacheFos = new FileOutputStream(cachedFilePart);
-		IOUtils.copy(is, cacheFos);
-		cacheFos.close();
+		Optional<DownloadedContent> downloaded = client.downloadIfModified(url, customTruststore, 
+				validators.getProperty(ETAG), validators.getProperty(LAST_MODIFIED));
+		if (!downloaded.isPresent())
+		{
+			log.debug("Metadata from {} was not modified since the previous download", url);
+			return Optional.empty();
+		}
+		try (InputStream is = downloaded.get().getContent();
+				FileOutputStream cacheFos = new FileOutputStream(cachedFilePart))
+		{
+			IOUtils.copy(is, cacheFos);
+		}
+		validatorsFile.delete();
 		cachedFile.delete();
 		FileUtils.moveFile(cachedFilePart, cachedFile);
+		storeValidators(validatorsFile, downloaded.get());
 		log.info("Downloaded metadata from " + url + " and stored in "
 				+ cachedFile.toString());
-		return cachedFile;
+		return Optional.of(cachedFile);
+	}
+
+	private Properties loadValidators(File validatorsFile) throws IOException
+	{
+		Properties validators = new Properties();
+		if (!validatorsFile.exists())
+			return validators;
+		try (InputStream is = new FileInputStream(validatorsFile))
+		{
+			validators.load(is);
+		}
+		return validators;
+	}
+
+	private void storeValidators(File validatorsFile, DownloadedContent downloaded) throws IOException
+	{
+		Properties validators = new Properties();
+		if (downloaded.getETag() != null)
+			validators.setProperty(ETAG, downloaded.getETag());
+		if (downloaded.getLastModified() != null)
+			validators.setProperty(LAST_MODIFIED, downloaded.getLastModified());
+		if (validators.isEmpty())
+			return;
+		try (FileOutputStream os = new FileOutputStream(validatorsFile))
+		{
+			validators.store(os, null);
+		}
 	}
 	
 	private File getLocalFile(String uri, String suffix)
@@ -9,8 +9,10 @@ import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
@@ -27,6 +29,9 @@ import xmlbeans.org.oasis.saml2.metadata.EntitiesDescriptorDocument;
  * <p>
  * For simplicity this handler is triggered at a constant (quite high) rate, 
  * so that refresh interval changes do not require rescheduling of currently scheduled task.
+ * <p>
+ * When metadata was not modified consumers are not notified, except of those which failed to accept
+ * the previous update: those are given the cached metadata again.
  *  
  * @author K. Benedyczak
  */
@@ -43,6 +48,7 @@ class MetadataSourceHandler
 	private long refreshInterval;
 	private Instant lastRefresh;
 	private Map<String, MetadataConsumer> consumersById = new HashMap<>();
+	private Set<String> failedConsumers = new HashSet<>();
 	private ScheduledFuture<?> scheduleWithFixedDelay;
 	
 	MetadataSourceHandler(RemoteMetadataSrc source, ExecutorsService executorsService,
@@ -89,6 +95,7 @@ class MetadataSourceHandler
 	synchronized boolean removeConsumer(String id)
 	{
 		consumersById.remove(id);
+		failedConsumers.remove(id);
 		refreshInterval = getNewRefreshInterval();
 		if (consumersById.isEmpty())
 			stopRefresh();
@@ -154,7 +161,7 @@ class MetadataSourceHandler
 	private void doRefresh()
 	{
 		log.debug("Refreshing metadata for {}", source.url);
-		EntitiesDescriptorDocument metadata;
+		Optional<EntitiesDescriptorDocument> metadata;
 		try
 		{
 			metadata = downloader.getFresh(source.url, source.truststore);
@@ -163,7 +170,46 @@ class MetadataSourceHandler
 			log.error("Error downloading fresh metadata from " + source.url, e);
 			return;
 		}
-		notifyConsumers(metadata);
+		if (!metadata.isPresent())
+		{
+			retryFailedConsumers();
+			return;
+		}
+		notifyConsumers(metadata.get());
+	}
+
+	private void retryFailedConsumers()
+	{
+		Collection<MetadataConsumer> toRetry = new ArrayList<>();
+		synchronized(this)
+		{
+			for (String id: failedConsumers)
+				toRetry.add(consumersById.get(id));
+		}
+		if (toRetry.isEmpty())
+		{
+			log.debug("Metadata of {} was not modified, consumers are not notified", source.url);
+			return;
+		}
+		Optional<EntitiesDescriptorDocument> metadata;
+		try
+		{
+			metadata = downloader.getCached(source.url);
+		} catch (Exception e)
+		{
+			log.error("Error loading cached metadata of " + source.url, e);
+			return;
+		}
+		if (!metadata.isPresent())
+		{
+			log.warn("Metadata of {} was not modified, but it is not cached, "
+					+ "consumers which failed to accept it will be notified after it is modified", 
+					source.url);
+			return;
+		}
+		log.debug("Metadata of {} was not modified, providing cached metadata to consumers "
+				+ "which failed to accept it previously", source.url);
+		toRetry.forEach(consumer -> notifyConsumer(consumer, metadata.get()));
 	}
 
 	private boolean feedWithCached(MetadataConsumer consumer)
@@ -205,9 +251,19 @@ class MetadataSourceHandler
 		{
 			log.debug("Pushing metadata {} to consumer {}", source.url, consumer.id);
 			consumer.consumer.accept(metadata, consumer.id);
+			markFailed(consumer.id, false);
 		} catch (Exception e)
 		{
 			log.error("Metadata consumer failed to accept new metadata", e);
+			markFailed(consumer.id, true);
 		}
 	}
+
+	private synchronized void markFailed(String id, boolean failed)
+	{
+		if (!failed)
+			failedConsumers.remove(id);
+		else if (consumersById.containsKey(id))
+			failedConsumers.add(id);
+	}
 }
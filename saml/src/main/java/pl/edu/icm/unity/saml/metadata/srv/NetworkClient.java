@@ -6,7 +6,10 @@ package pl.edu.icm.unity.saml.metadata.srv;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Optional;
 
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.HttpClient;
@@ -21,7 +24,7 @@ import pl.edu.icm.unity.exceptions.EngineException;
 
 /**
  * Wraps configuration of HTTP client which can use custom truststore 
- * and makes GET connection, returning the stream with HTTP entity.
+ * and makes (conditional) GET connection, returning the stream with HTTP entity.
  * 
  * @author K. Benedyczak
  */
@@ -35,14 +38,30 @@ public class NetworkClient
 	}
 
 
-	public InputStream download(String url, String customTruststore) throws EngineException,
-			IOException
+	/**
+	 * Downloads the resource, unless the server confirms that it was not modified since the previous 
+	 * download. The previous download is identified by the values of the HTTP ETag and Last-Modified headers
+	 * which were returned with it, both can be null.
+	 * @return empty if the resource was not modified.
+	 */
+	public Optional<DownloadedContent> downloadIfModified(String url, String customTruststore, 
+			String eTag, String lastModified) throws EngineException, IOException
 	{
 		HttpClient client = url.startsWith("https:") ? getSSLClient(url, customTruststore)
 				: HttpClientBuilder.create().build();
 		HttpGet request = new HttpGet(url);
+		if (eTag != null)
+			request.setHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+		if (lastModified != null)
+			request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
 		HttpResponse response = client.execute(request);
-		if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK)
+		int status = response.getStatusLine().getStatusCode();
+		if (status == HttpStatus.SC_NOT_MODIFIED && (eTag != null || lastModified != null))
+		{
+			EntityUtils.consumeQuietly(response.getEntity());
+			return Optional.empty();
+		}
+		if (status != HttpStatus.SC_OK)
 		{
 			String body = response.getEntity().getContentLength() < 10240 ? EntityUtils
 					.toString(response.getEntity()) : "";
@@ -51,9 +70,15 @@ public class NetworkClient
 					+ response.getStatusLine().toString() + "; " + body);
 		}
 
-		return response.getEntity().getContent();
+		return Optional.of(new DownloadedContent(response.getEntity().getContent(), 
+				getHeader(response, HttpHeaders.ETAG), getHeader(response, HttpHeaders.LAST_MODIFIED)));
 	}
 	
+	private String getHeader(HttpResponse response, String name)
+	{
+		Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
 
 	private HttpClient getSSLClient(String url, String customTruststore) throws EngineException
 	{
@@ -68,4 +93,37 @@ public class NetworkClient
 			return HttpClientBuilder.create().build();
 		}
 	}
+
+	/**
+	 * Downloaded content with the values of HTTP headers which can be used for a conditional 
+	 * download of the same resource in future.
+	 */
+	public static class DownloadedContent
+	{
+		private final InputStream content;
+		private final String eTag;
+		private final String lastModified;
+
+		public DownloadedContent(InputStream content, String eTag, String lastModified)
+		{
+			this.content = content;
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+		}
+
+		public InputStream getContent()
+		{
+			return content;
+		}
+
+		public String getETag()
+		{
+			return eTag;
+		}
+
+		public String getLastModified()
+		{
+			return lastModified;
+		}
+	}
 }
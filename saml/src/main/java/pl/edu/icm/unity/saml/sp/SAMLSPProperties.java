@@ -27,6 +27,7 @@ import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.engine.api.PKIManagement;
 import pl.edu.icm.unity.exceptions.EngineException;
 import pl.edu.icm.unity.saml.SamlProperties;
+import pl.edu.icm.unity.saml.TrustedEntitiesIndex;
 import pl.edu.icm.unity.saml.ecp.SAMLECPProperties;
 import pl.edu.icm.unity.webui.authn.CommonWebAuthnProperties;
 import xmlbeans.org.oasis.saml2.assertion.NameIDType;
@@ -221,6 +222,7 @@ public class SAMLSPProperties extends SamlProperties
 	
 	private PKIManagement pkiManagement;
 	private Properties sourceProperties;
+	private TrustedEntitiesIndex trustedIdPs;
 
 	public SAMLSPProperties(Properties properties, PKIManagement pkiMan) throws ConfigurationException
 	{
@@ -237,6 +239,7 @@ public class SAMLSPProperties extends SamlProperties
 		super(cloned);
 		this.pkiManagement = cloned.pkiManagement;
 		this.sourceProperties = new Properties(cloned.sourceProperties);
+		this.trustedIdPs = cloned.trustedIdPs;
 	}
 	
 	protected SAMLSPProperties(Properties properties, Map<String, PropertyMD> meta, 
@@ -250,7 +253,8 @@ public class SAMLSPProperties extends SamlProperties
 		sourceProperties = new Properties();
 		sourceProperties.putAll(properties);
 		this.pkiManagement = pkiMan;
-		Set<String> idpKeys = getStructuredListKeys(IDP_PREFIX);
+		trustedIdPs = buildTrustedIdPsIndex();
+		Set<String> idpKeys = trustedIdPs.getKeys();
 		boolean sign = false;
 		for (String idpKey: idpKeys)
 		{
@@ -323,10 +327,16 @@ public class SAMLSPProperties extends SamlProperties
 	{
 		long start = System.currentTimeMillis();
 		super.setProperties(properties);
-		log.info("Updated trusted IdPs configuration with " + getStructuredListKeys(IDP_PREFIX).size() 
+		trustedIdPs = buildTrustedIdPsIndex();
+		log.info("Updated trusted IdPs configuration with " + trustedIdPs.getKeys().size() 
 				+ " explicit trusted providers, took " + (System.currentTimeMillis() - start) + "ms");
 	}
 
+	private TrustedEntitiesIndex buildTrustedIdPsIndex()
+	{
+		return TrustedEntitiesIndex.build(this, IDP_PREFIX, IDP_ID, null, IDP_CERTIFICATE, IDP_CERTIFICATES);
+	}
+
 	public X509Credential getRequesterCredential()
 	{
 		String credential = getValue(SAMLSPProperties.CREDENTIAL);
@@ -343,7 +353,7 @@ public class SAMLSPProperties extends SamlProperties
 	
 	public SamlTrustChecker getTrustChecker() throws ConfigurationException
 	{
-		Set<String> idpKeys = getStructuredListKeys(IDP_PREFIX);
+		Set<String> idpKeys = trustedIdPs.getKeys();
 		CheckingMode mode = getBooleanValue(REQUIRE_SIGNED_ASSERTION) ? 
 					CheckingMode.REQUIRE_SIGNED_ASSERTION : 
 					CheckingMode.REQUIRE_SIGNED_RESPONSE_OR_ASSERTION;
@@ -373,7 +383,7 @@ public class SAMLSPProperties extends SamlProperties
 	
 	public Set<String> getCertificateNames(String idpKey)
 	{
-		return getCertificateNames(idpKey, IDP_CERTIFICATE, IDP_CERTIFICATES);
+		return trustedIdPs.getCertificateNames(idpKey);
 	}
 	
 	public boolean isSignRequest(String idpKey)
@@ -430,17 +440,7 @@ public class SAMLSPProperties extends SamlProperties
 	
 	public String getIdPConfigKey(NameIDType requester)
 	{
-		Set<String> allowedKeys = getStructuredListKeys(IDP_PREFIX);
-		for (String allowedKey: allowedKeys)
-		{
-			String name = getValue(allowedKey + IDP_ID);
-			if (name == null)
-				continue;
-			if (!name.equals(requester.getStringValue()))
-				continue;
-			return allowedKey;
-		}
-		return null;
+		return trustedIdPs.getKeyOfEntity(requester.getStringValue());
 	}
 	
 	/**
@@ -473,13 +473,7 @@ public class SAMLSPProperties extends SamlProperties
 	
 	public String getPrefixOfIdP(String entity)
 	{
-		Set<String> keys = getStructuredListKeys(IDP_PREFIX);
-		for (String key: keys)
-		{
-			if (entity.equals(getValue(key+IDP_ID)))
-				return key;
-		}
-		return null;
+		return trustedIdPs.getKeyOfEntity(entity);
 	}
 	
 	@Override
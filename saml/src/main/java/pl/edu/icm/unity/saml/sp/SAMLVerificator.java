@@ -58,6 +58,7 @@ import pl.edu.icm.unity.saml.slo.SLOReplyInstaller;
 import pl.edu.icm.unity.saml.sp.web.IdPVisalSettings;
 import pl.edu.icm.unity.types.translation.TranslationProfile;
 import pl.edu.icm.unity.webui.authn.CommonWebAuthnProperties;
+import pl.edu.icm.unity.webui.common.logo.LogoCache;
 import xmlbeans.org.oasis.saml2.assertion.NameIDType;
 import xmlbeans.org.oasis.saml2.protocol.AuthnRequestDocument;
 import xmlbeans.org.oasis.saml2.protocol.ResponseDocument;
@@ -86,6 +87,7 @@ public class SAMLVerificator extends AbstractRemoteVerificator implements SAMLEx
 	private SLOSPManager sloManager;
 	private SLOReplyInstaller sloReplyInstaller;
 	private RemoteMetadataService metadataService;
+	private LogoCache logoCache;
 
 	private UnityMessageSource msg;
 
@@ -99,7 +101,7 @@ public class SAMLVerificator extends AbstractRemoteVerificator implements SAMLEx
 			SLOSPManager sloManager, SLOReplyInstaller sloReplyInstaller,
 			UnityMessageSource msg,
 			SharedEndpointManagement sharedEndpointManagement, 
-			NetworkServer jettyServer)
+			NetworkServer jettyServer, LogoCache logoCache)
 	{
 		super(NAME, DESC, SAMLExchange.ID, processor);
 		this.metadataService = metadataService;
@@ -109,6 +111,7 @@ public class SAMLVerificator extends AbstractRemoteVerificator implements SAMLEx
 		this.replayAttackChecker = replayAttackChecker;
 		this.sloManager = sloManager;
 		this.sloReplyInstaller = sloReplyInstaller;
+		this.logoCache = logoCache;
 
 		URL baseAddress = jettyServer.getAdvertisedAddress();
 		String baseContext = sharedEndpointManagement.getBaseContextPath();
@@ -175,7 +178,7 @@ public class SAMLVerificator extends AbstractRemoteVerificator implements SAMLEx
 		{
 			myMetadataManager = new RemoteMetaManager(samlProperties, 
 					pkiMan, 
-					new MetaToSPConfigConverter(pkiMan, msg), 
+					new MetaToSPConfigConverter(pkiMan, msg, logoCache::prefetch), 
 					metadataService, SAMLSPProperties.IDPMETA_PREFIX);
 			remoteMetadataManagers.put(instanceName, myMetadataManager);
 		} else
@@ -30,6 +30,7 @@ import pl.edu.icm.unity.saml.sp.SAMLSPProperties;
 import pl.edu.icm.unity.saml.sp.SamlContextManagement;
 import pl.edu.icm.unity.webui.authn.ProxyAuthenticationCapable;
 import pl.edu.icm.unity.webui.authn.VaadinAuthentication;
+import pl.edu.icm.unity.webui.common.logo.LogoCache;
 
 /**
  * Vaadin part of the SAML authn, creates the UI component driving the SAML auth, the {@link SAMLRetrievalUI}. 
@@ -48,15 +49,17 @@ public class SAMLRetrieval extends AbstractCredentialRetrieval<SAMLExchange>
 	private UnityMessageSource msg;
 	private SamlContextManagement samlContextManagement;
 	private SAMLProxyAuthnHandler proxyAuthnHandler;
+	private LogoCache logoCache;
 	
 	@Autowired
 	public SAMLRetrieval(UnityMessageSource msg, NetworkServer jettyServer, 
 			SharedEndpointManagement sharedEndpointMan,
-			SamlContextManagement samlContextManagement)
+			SamlContextManagement samlContextManagement, LogoCache logoCache)
 	{
 		super(VaadinAuthentication.NAME);
 		this.msg = msg;
 		this.samlContextManagement = samlContextManagement;
+		this.logoCache = logoCache;
 	}
 
 	@Override
@@ -87,7 +90,7 @@ public class SAMLRetrieval extends AbstractCredentialRetrieval<SAMLExchange>
 				{
 					ret.add(new SAMLRetrievalUI(msg, credentialExchange, 
 							samlContextManagement, idpKey, 
-							configKey, getAuthenticatorId(), context));
+							configKey, getAuthenticatorId(), context, logoCache));
 				}
 			}
 		return ret;
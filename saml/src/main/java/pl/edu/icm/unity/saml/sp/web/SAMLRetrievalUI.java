@@ -40,9 +40,9 @@ import pl.edu.icm.unity.webui.authn.VaadinAuthentication.AuthenticationStyle;
 import pl.edu.icm.unity.webui.authn.VaadinAuthentication.Context;
 import pl.edu.icm.unity.webui.authn.VaadinAuthentication.VaadinAuthenticationUI;
 import pl.edu.icm.unity.webui.common.ConfirmDialog;
-import pl.edu.icm.unity.webui.common.ImageUtils;
 import pl.edu.icm.unity.webui.common.Images;
 import pl.edu.icm.unity.webui.common.NotificationPopup;
+import pl.edu.icm.unity.webui.common.logo.LogoCache;
 
 /**
  * The UI part of the remote SAML authn. Shows widget with a single, chosen IdP, implements 
@@ -69,12 +69,13 @@ public class SAMLRetrievalUI implements VaadinAuthenticationUI
 	private Component main;
 	private String authenticatorName;
 	private Context context;
+	private LogoCache logoCache;
 
 	private IdPAuthNComponent idpComponent;
 
 	public SAMLRetrievalUI(UnityMessageSource msg, SAMLExchange credentialExchange, 
 			SamlContextManagement samlContextManagement, String idpKey, 
-			String configKey, String authenticatorName, Context context)
+			String configKey, String authenticatorName, Context context, LogoCache logoCache)
 	{
 		this.msg = msg;
 		this.credentialExchange = credentialExchange;
@@ -84,6 +85,7 @@ public class SAMLRetrievalUI implements VaadinAuthenticationUI
 		this.authenticatorName = authenticatorName;
 		this.configuration = credentialExchange.getVisualSettings(configKey, msg.getLocale());
 		this.context = context;
+		this.logoCache = logoCache;
 		initUI();
 	}
 
@@ -112,7 +114,7 @@ public class SAMLRetrievalUI implements VaadinAuthenticationUI
 		Resource logo;
 		try
 		{
-			logo = logoUrl == null ? Images.empty.getResource() : ImageUtils.getLogoResource(logoUrl);
+			logo = logoUrl == null ? Images.empty.getResource() : logoCache.getLogoResource(logoUrl);
 		} catch (MalformedURLException e)
 		{
 			log.warn("Can't load logo from " + logoUrl, e);
@@ -303,7 +305,7 @@ public class SAMLRetrievalUI implements VaadinAuthenticationUI
 			return null;
 		try
 		{
-			return ImageUtils.getLogoResource(configuration.logoUrl);
+			return logoCache.getLogoResource(configuration.logoUrl);
 		} catch (MalformedURLException e)
 		{
 			log.error("Invalid logo URL " + configuration.logoUrl, e);
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.saml.validator;
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * In-memory {@link ReplayCache} of a single server. Identifiers are forgotten after the validity
+ * of their messages, but not later than after {@link #MAX_TTL}. The number of remembered identifiers is
+ * bounded, the oldest ones are dropped first when the limit is reached.
+ *
+ * @author K. Benedyczak
+ */
+public class LocalReplayCache implements ReplayCache
+{
+	public static final long MAX_TTL = 24*3600*1000L;
+	public static final long MAX_ENTRIES = 200000;
+
+	private final ConcurrentMap<String, Long> received;
+
+	public LocalReplayCache()
+	{
+		this(MAX_TTL, MAX_ENTRIES);
+	}
+
+	LocalReplayCache(long maxTtl, long maxEntries)
+	{
+		this.received = CacheBuilder.newBuilder()
+				.expireAfterWrite(maxTtl, TimeUnit.MILLISECONDS)
+				.maximumSize(maxEntries)
+				.<String, Long>build()
+				.asMap();
+	}
+
+	@Override
+	public boolean storeIfAbsent(String id, Date validUntil)
+	{
+		Long expiry = validUntil.getTime();
+		Long previous = received.putIfAbsent(id, expiry);
+		if (previous == null)
+			return true;
+		return previous < System.currentTimeMillis() && received.replace(id, previous, expiry);
+	}
+}
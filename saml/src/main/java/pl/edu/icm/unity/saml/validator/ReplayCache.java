@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.saml.validator;
+
+import java.util.Date;
+
+/**
+ * Remembers identifiers of received SAML messages, so that their replay can be detected.
+ *
+ * @author K. Benedyczak
+ */
+public interface ReplayCache
+{
+	/**
+	 * Atomically stores the given message id, unless it is already stored.
+	 * @param validUntil time after which the message is not accepted anymore, so its id can be forgotten.
+	 * @return true if the id was stored, false if it was already present (what means a replay)
+	 */
+	boolean storeIfAbsent(String id, Date validUntil);
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.saml.validator;
+
+import java.util.Date;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.logging.log4j.Logger;
+
+import pl.edu.icm.unity.base.utils.Log;
+import pl.edu.icm.unity.engine.api.token.TokensManagement;
+
+/**
+ * {@link ReplayCache} shared by all nodes using the same database. Identifiers are stored as tokens,
+ * which expire together with the messages, so lookups are performed with the token's unique key
+ * and no separate cleanup is needed. Storing is atomic thanks to the uniqueness of tokens.
+ * <p>
+ * A token which already exists means a replay. If the identifier can not be stored for other reasons
+ * the error is logged and the message is also treated as a replay, as its uniqueness can not be confirmed.
+ *
+ * @author K. Benedyczak
+ */
+public class SharedReplayCache implements ReplayCache
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER_SAML, SharedReplayCache.class);
+	public static final String REPLAY_TOKEN_TYPE = "samlReplayProtection";
+	/**
+	 * Tokens are stored with seconds precision, what is compensated by this margin.
+	 */
+	private static final long EXPIRY_MARGIN = 1000;
+
+	private final TokensManagement tokensMan;
+
+	public SharedReplayCache(TokensManagement tokensMan)
+	{
+		this.tokensMan = tokensMan;
+	}
+
+	@Override
+	public boolean storeIfAbsent(String id, Date validUntil)
+	{
+		Date now = new Date();
+		Date expires = new Date(Math.max(validUntil.getTime(), now.getTime()) + EXPIRY_MARGIN);
+		String key = DigestUtils.sha256Hex(id);
+		try
+		{
+			tokensMan.addToken(REPLAY_TOKEN_TYPE, key, new byte[0], now, expires);
+			return true;
+		} catch (IllegalArgumentException e)
+		{
+			log.debug("SAML message with identifier hash " + key + " was already received");
+			return false;
+		} catch (Exception e)
+		{
+			log.error("Can not store identifier of a received SAML message, "
+					+ "the message is rejected as its uniqueness can not be confirmed", e);
+			return false;
+		}
+	}
+}
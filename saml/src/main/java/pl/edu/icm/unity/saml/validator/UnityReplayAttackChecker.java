@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.saml.validator;
+
+import java.util.Date;
+
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import eu.unicore.samly2.exceptions.SAMLRequesterException;
+import eu.unicore.samly2.validators.ReplayAttackChecker;
+import pl.edu.icm.unity.base.utils.Log;
+import pl.edu.icm.unity.engine.api.config.UnityServerConfiguration;
+import pl.edu.icm.unity.engine.api.config.UnityServerConfiguration.ReplayCacheMode;
+import pl.edu.icm.unity.engine.api.token.TokensManagement;
+
+/**
+ * {@link ReplayAttackChecker} which keeps identifiers of received messages in a pluggable {@link ReplayCache}
+ * instead of an unbounded in-memory map. Identifiers are remembered until their messages validity end.
+ * The cache is selected with the {@link UnityServerConfiguration#SAML_REPLAY_CACHE} setting,
+ * the shared one should be used when several nodes are serving the same clients.
+ *
+ * @author K. Benedyczak
+ */
+@Component
+public class UnityReplayAttackChecker extends ReplayAttackChecker
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER_SAML, UnityReplayAttackChecker.class);
+	private final ReplayCache cache;
+
+	@Autowired
+	public UnityReplayAttackChecker(UnityServerConfiguration config, TokensManagement tokensMan)
+	{
+		this(createCache(config.getEnumValue(UnityServerConfiguration.SAML_REPLAY_CACHE,
+				ReplayCacheMode.class), tokensMan));
+	}
+
+	public UnityReplayAttackChecker(ReplayCache cache)
+	{
+		this.cache = cache;
+	}
+
+	@Override
+	public void checkAndStore(String id, Date validUntil) throws SAMLRequesterException
+	{
+		Date expiry = validUntil != null ? validUntil :
+			new Date(System.currentTimeMillis() + LocalReplayCache.MAX_TTL);
+		if (!cache.storeIfAbsent(id, expiry))
+			throw new SAMLRequesterException("The message with ID " + id +
+					" was already received, it is a possible replay attack");
+	}
+
+	private static ReplayCache createCache(ReplayCacheMode mode, TokensManagement tokensMan)
+	{
+		log.info("Using " + mode + " cache of received SAML messages for replay attacks detection");
+		return mode == ReplayCacheMode.shared ? new SharedReplayCache(tokensMan) : new LocalReplayCache();
+	}
+}
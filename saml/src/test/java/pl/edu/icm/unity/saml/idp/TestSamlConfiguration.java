@@ -5,10 +5,16 @@
 package pl.edu.icm.unity.saml.idp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 import static pl.edu.icm.unity.saml.SamlProperties.IDENTITY_LOCAL;
 import static pl.edu.icm.unity.saml.SamlProperties.IDENTITY_MAPPING_PFX;
 import static pl.edu.icm.unity.saml.SamlProperties.IDENTITY_SAML;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_CERTIFICATE;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_CERTIFICATES;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_DN;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_ENTITY;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_PREFIX;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.CREDENTIAL;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.DEFAULT_GROUP;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.GROUP;
@@ -16,11 +22,15 @@ import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.GROUP_PFX;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.GROUP_TARGET;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ISSUER_URI;
 import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.P;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.SP_ACCEPT_POLICY;
 
 import java.util.Properties;
+import java.util.Set;
 
 import org.junit.Test;
 
+import com.google.common.collect.Sets;
+
 import eu.unicore.samly2.SAMLConstants;
 import eu.unicore.samly2.exceptions.SAMLRequesterException;
 import pl.edu.icm.unity.saml.SimplePKIManagement;
@@ -29,6 +39,7 @@ import pl.edu.icm.unity.saml.idp.IdentityTypeMapper;
 import pl.edu.icm.unity.saml.idp.SamlIdpProperties;
 import pl.edu.icm.unity.stdext.identity.TargetedPersistentIdentity;
 import pl.edu.icm.unity.stdext.identity.X500Identity;
+import xmlbeans.org.oasis.saml2.assertion.NameIDType;
 
 public class TestSamlConfiguration
 {
@@ -85,4 +96,37 @@ public class TestSamlConfiguration
 		
 		assertEquals(idMapper.getSupportedIdentityTypes().toString(), 7, idMapper.getSupportedIdentityTypes().size());
 	}
+
+	@Test
+	public void shouldFindTrustedSPsByEntityIdAndDN() throws Exception
+	{
+		Properties p = new Properties();
+		p.setProperty(P+ISSUER_URI, "foo");
+		p.setProperty(P+CREDENTIAL, "MAIN");
+		p.setProperty(P+SP_ACCEPT_POLICY, SamlIdpProperties.RequestAcceptancePolicy.all.name());
+		p.setProperty(P+ALLOWED_SP_PREFIX+"1."+ALLOWED_SP_ENTITY, "http://sp1");
+		p.setProperty(P+ALLOWED_SP_PREFIX+"1."+ALLOWED_SP_CERTIFICATE, "cert1");
+		p.setProperty(P+ALLOWED_SP_PREFIX+"1."+ALLOWED_SP_CERTIFICATES+"1", "cert2");
+		p.setProperty(P+ALLOWED_SP_PREFIX+"2."+ALLOWED_SP_DN, "CN=Some SP,O=Org");
+		p.setProperty(P+ALLOWED_SP_PREFIX+"3."+ALLOWED_SP_ENTITY, "http://sp1");
+		SamlIdpProperties cfg = (SamlIdpProperties) new SamlIdpProperties(p, new SimplePKIManagement()).clone();
+
+		assertEquals(ALLOWED_SP_PREFIX+"1.", cfg.getPrefixOfSP("http://sp1"));
+		assertEquals(ALLOWED_SP_PREFIX+"1.", cfg.getSPConfigKey(getNameID("http://sp1", 
+				SAMLConstants.NFORMAT_ENTITY)));
+		assertEquals(ALLOWED_SP_PREFIX+"2.", cfg.getSPConfigKey(getNameID("cn=Some SP, o=Org", 
+				SAMLConstants.NFORMAT_DN)));
+		assertNull(cfg.getSPConfigKey(getNameID("CN=Some SP,O=Org", SAMLConstants.NFORMAT_ENTITY)));
+		assertNull(cfg.getPrefixOfSP("http://other"));
+		Set<String> certs = cfg.getAllowedSpCerts(ALLOWED_SP_PREFIX+"1.");
+		assertEquals(Sets.newHashSet("cert1", "cert2"), certs);
+	}
+
+	private NameIDType getNameID(String value, String format)
+	{
+		NameIDType nameId = NameIDType.Factory.newInstance();
+		nameId.setStringValue(value);
+		nameId.setFormat(format);
+		return nameId;
+	}
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.saml.metadata.cfg;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_ENTITY;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_PREFIX;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ALLOWED_SP_RETURN_URL;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.CREDENTIAL;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.DEFAULT_GROUP;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.GROUP;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.ISSUER_URI;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.P;
+import static pl.edu.icm.unity.saml.idp.SamlIdpProperties.SPMETA_PREFIX;
+
+import java.io.File;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.edu.icm.unity.engine.api.PKIManagement;
+import pl.edu.icm.unity.engine.api.msg.UnityMessageSource;
+import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.saml.idp.SamlIdpProperties;
+import pl.edu.icm.unity.saml.metadata.cfg.AbstractMetaToConfigConverter.ConversionResult;
+import xmlbeans.org.oasis.saml2.metadata.EntitiesDescriptorDocument;
+import xmlbeans.org.oasis.saml2.metadata.EntitiesDescriptorType;
+import xmlbeans.org.oasis.saml2.metadata.EntityDescriptorType;
+
+public class MetaToConfigConverterReuseTest
+{
+	private static final String META_KEY = P + SPMETA_PREFIX + "1.";
+	private PKIManagement pkiManagement;
+	private SamlIdpProperties configuration;
+	private MetaToIDPConfigConverter converter;
+	private EntityDescriptorType template;
+
+	@Before
+	public void init() throws Exception
+	{
+		pkiManagement = mock(PKIManagement.class);
+		when(pkiManagement.getCredentialNames()).thenReturn(Collections.singleton("MAIN"));
+		when(pkiManagement.getCertificate(anyString())).thenThrow(new IllegalArgumentException("missing"));
+		Properties p = new Properties();
+		p.setProperty(P + CREDENTIAL, "MAIN");
+		p.setProperty(P + ISSUER_URI, "me");
+		p.setProperty(P + GROUP, "group");
+		p.setProperty(P + DEFAULT_GROUP, "group");
+		configuration = new SamlIdpProperties(p, pkiManagement);
+		converter = new MetaToIDPConfigConverter(pkiManagement, mock(UnityMessageSource.class));
+		template = EntitiesDescriptorDocument.Factory.parse(new File("src/test/resources/unity-as-sp-meta.xml"))
+				.getEntitiesDescriptor().getEntityDescriptorArray(0);
+	}
+
+	@Test
+	public void shouldReuseUnchangedEntities() throws Exception
+	{
+		Map<String, Properties> converted = new HashMap<>();
+		convert(metadata("http://sp1", "http://sp2"), converted);
+		reset(pkiManagement);
+
+		Properties target = new Properties();
+		ConversionResult result = convert(metadata("http://sp1", "http://sp2"), converted, target);
+
+		assertThat(result.isChanged(), is(false));
+		assertThat(result.isComplete(), is(true));
+		assertThat(converted.size(), is(2));
+		assertThat(getReturnURL(target, "http://sp1"), is("https://sp1/consumer"));
+		assertThat(getReturnURL(target, "http://sp2"), is("https://sp2/consumer"));
+		verify(pkiManagement, times(0)).addVolatileCertificate(anyString(), any(X509Certificate.class));
+	}
+
+	@Test
+	public void shouldConvertModifiedEntityAgain() throws Exception
+	{
+		Map<String, Properties> converted = new HashMap<>();
+		convert(metadata("http://sp1", "http://sp2"), converted);
+		reset(pkiManagement);
+		when(pkiManagement.getCertificate(anyString())).thenThrow(new IllegalArgumentException("missing"));
+		EntitiesDescriptorDocument modified = metadata("http://sp1", "http://sp2");
+		modified.getEntitiesDescriptor().getEntityDescriptorArray(1).getSPSSODescriptorArray(0)
+				.getAssertionConsumerServiceArray(0).setLocation("https://sp2/modified");
+
+		Properties target = new Properties();
+		ConversionResult result = convert(modified, converted, target);
+
+		assertThat(result.isChanged(), is(true));
+		assertThat(converted.size(), is(2));
+		assertThat(getReturnURL(target, "http://sp1"), is("https://sp1/consumer"));
+		assertThat(getReturnURL(target, "http://sp2"), is("https://sp2/modified"));
+		verify(pkiManagement, times(1)).addVolatileCertificate(anyString(), any(X509Certificate.class));
+	}
+
+	@Test
+	public void shouldDropRemovedEntity() throws Exception
+	{
+		Map<String, Properties> converted = new HashMap<>();
+		convert(metadata("http://sp1", "http://sp2"), converted);
+
+		Properties target = new Properties();
+		ConversionResult result = convert(metadata("http://sp1"), converted, target);
+
+		assertThat(result.isChanged(), is(true));
+		assertThat(converted.size(), is(1));
+		assertThat(getReturnURL(target, "http://sp1"), is("https://sp1/consumer"));
+		assertThat(getReturnURL(target, "http://sp2"), is((String) null));
+	}
+
+	@Test
+	public void shouldReportChangeForAddedEntity() throws Exception
+	{
+		Map<String, Properties> converted = new HashMap<>();
+		convert(metadata("http://sp1"), converted);
+
+		ConversionResult result = convert(metadata("http://sp1", "http://sp2"), converted);
+
+		assertThat(result.isChanged(), is(true));
+		assertThat(converted.size(), is(2));
+	}
+
+	@Test
+	public void shouldConvertAgainEntityWhichFailed() throws Exception
+	{
+		doThrow(new EngineException("test")).when(pkiManagement)
+			.addVolatileCertificate(anyString(), any(X509Certificate.class));
+		Map<String, Properties> converted = new HashMap<>();
+
+		ConversionResult failed = convert(metadata("http://sp1"), converted);
+
+		assertThat(failed.isComplete(), is(false));
+		assertThat(converted.size(), is(0));
+
+		reset(pkiManagement);
+		when(pkiManagement.getCertificate(anyString())).thenThrow(new IllegalArgumentException("missing"));
+		Properties target = new Properties();
+
+		ConversionResult result = convert(metadata("http://sp1"), converted, target);
+
+		assertThat(result.isComplete(), is(true));
+		assertThat(result.isChanged(), is(true));
+		assertThat(converted.size(), is(1));
+		assertThat(getReturnURL(target, "http://sp1"), is("https://sp1/consumer"));
+	}
+
+	private ConversionResult convert(EntitiesDescriptorDocument metadata, Map<String, Properties> converted)
+	{
+		return convert(metadata, converted, new Properties());
+	}
+
+	private ConversionResult convert(EntitiesDescriptorDocument metadata, Map<String, Properties> converted,
+			Properties target)
+	{
+		return converter.convertToProperties(metadata, target, configuration, META_KEY, converted);
+	}
+
+	private EntitiesDescriptorDocument metadata(String... entityIds)
+	{
+		EntitiesDescriptorDocument doc = EntitiesDescriptorDocument.Factory.newInstance();
+		EntitiesDescriptorType entities = doc.addNewEntitiesDescriptor();
+		for (String entityId: entityIds)
+		{
+			EntityDescriptorType entity = entities.addNewEntityDescriptor();
+			entity.set(template);
+			entity.setEntityID(entityId);
+			entity.getSPSSODescriptorArray(0).getAssertionConsumerServiceArray(0)
+				.setLocation(entityId.replace("http://", "https://") + "/consumer");
+		}
+		return doc;
+	}
+
+	private String getReturnURL(Properties properties, String entityId)
+	{
+		for (String key: properties.stringPropertyNames())
+		{
+			if (key.startsWith(P + ALLOWED_SP_PREFIX) && key.endsWith("." + ALLOWED_SP_ENTITY)
+					&& entityId.equals(properties.getProperty(key)))
+			{
+				String prefix = key.substring(0, key.length() - ALLOWED_SP_ENTITY.length());
+				return properties.getProperty(prefix + ALLOWED_SP_RETURN_URL);
+			}
+		}
+		return null;
+	}
+}
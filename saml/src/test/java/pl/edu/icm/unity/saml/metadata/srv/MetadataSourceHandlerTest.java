@@ -12,15 +12,18 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.awaitility.Awaitility;
 import org.awaitility.Duration;
@@ -29,6 +32,7 @@ import org.junit.Test;
 
 import pl.edu.icm.unity.engine.api.utils.ExecutorsService;
 import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.saml.metadata.srv.NetworkClient.DownloadedContent;
 import xmlbeans.org.oasis.saml2.metadata.EntitiesDescriptorDocument;
 
 public class MetadataSourceHandlerTest
@@ -47,8 +51,9 @@ public class MetadataSourceHandlerTest
 		src = new RemoteMetadataSrc("http://url", null);
 
 		client = mock(NetworkClient.class);
-		when(client.download("http://url", null))
-			.thenAnswer((a) -> new FileInputStream("src/test/resources/unity-as-sp-meta.xml"));
+		when(client.downloadIfModified("http://url", null, null, null))
+			.thenAnswer((a) -> Optional.of(new DownloadedContent(
+					new FileInputStream("src/test/resources/unity-as-sp-meta.xml"), null, null)));
 	}
 	
 	@Test
@@ -64,7 +69,7 @@ public class MetadataSourceHandlerTest
 		
 		Awaitility.await().atMost(Duration.ONE_SECOND).until(
 				() -> gotEvent.get());
-		verify(client).download("http://url", null);
+		verify(client).downloadIfModified("http://url", null, null, null);
 	}
 	
 	@Test
@@ -83,7 +88,7 @@ public class MetadataSourceHandlerTest
 		
 		Awaitility.await().atMost(Duration.ONE_SECOND).until(
 				() -> event1.get() && event2.get());
-		verify(client).download("http://url", null);
+		verify(client).downloadIfModified("http://url", null, null, null);
 	}
 
 	@Test
@@ -102,10 +107,60 @@ public class MetadataSourceHandlerTest
 		handler.addConsumer(consumer2);
 		
 		Thread.sleep(400);
-		verify(client).download("http://url", null);
+		verify(client).downloadIfModified("http://url", null, null, null);
 		assertThat(event.get(), is(1));
 	}
 	
+	@Test
+	public void shouldNotNotifyConsumersWhenMetadataWasNotModified() throws Exception
+	{
+		FileUtils.deleteDirectory(new File("target/conditionalDownload"));
+		when(client.downloadIfModified("http://url", null, null, null))
+			.thenAnswer((a) -> Optional.of(new DownloadedContent(
+					new FileInputStream("src/test/resources/unity-as-sp-meta.xml"), "\"v1\"", null)));
+		when(client.downloadIfModified("http://url", null, "\"v1\"", null)).thenReturn(Optional.empty());
+		MetadataDownloader downloader = new MetadataDownloader("target/conditionalDownload", client);
+		MetadataSourceHandler handler = new MetadataSourceHandler(src, 
+				executorsService, downloader, 15);
+		
+		AtomicInteger events = new AtomicInteger(0);
+		MetadataConsumer consumer = new MetadataConsumer(30, (m,id) -> events.incrementAndGet(), "1");
+		handler.addConsumer(consumer);
+		
+		Awaitility.await().atMost(Duration.ONE_SECOND).untilAsserted(
+				() -> verify(client, atLeast(2)).downloadIfModified("http://url", null, "\"v1\"", null));
+		handler.removeConsumer("1");
+		verify(client).downloadIfModified("http://url", null, null, null);
+		assertThat(events.get(), is(1));
+	}
+	
+	@Test
+	public void shouldRetryFailedConsumerWithCachedMetadataWhenMetadataWasNotModified() throws Exception
+	{
+		FileUtils.deleteDirectory(new File("target/conditionalDownloadRetry"));
+		when(client.downloadIfModified("http://url", null, null, null))
+			.thenAnswer((a) -> Optional.of(new DownloadedContent(
+					new FileInputStream("src/test/resources/unity-as-sp-meta.xml"), "\"v1\"", null)));
+		when(client.downloadIfModified("http://url", null, "\"v1\"", null)).thenReturn(Optional.empty());
+		MetadataDownloader downloader = new MetadataDownloader("target/conditionalDownloadRetry", client);
+		MetadataSourceHandler handler = new MetadataSourceHandler(src, 
+				executorsService, downloader, 15);
+		
+		AtomicInteger events = new AtomicInteger(0);
+		MetadataConsumer consumer = new MetadataConsumer(30, (m,id) -> {
+			if (events.incrementAndGet() == 1)
+				throw new IllegalStateException("failed");
+		}, "1");
+		handler.addConsumer(consumer);
+		
+		Awaitility.await().atMost(Duration.ONE_SECOND).until(() -> events.get() == 2);
+		Awaitility.await().atMost(Duration.ONE_SECOND).untilAsserted(
+				() -> verify(client, atLeast(3)).downloadIfModified("http://url", null, "\"v1\"", null));
+		handler.removeConsumer("1");
+		verify(client).downloadIfModified("http://url", null, null, null);
+		assertThat(events.get(), is(2));
+	}
+	
 	@Test
 	public void shouldStopRefreshAfterDeregistrationOfLastConsumer() throws Exception
 	{
@@ -113,7 +168,7 @@ public class MetadataSourceHandlerTest
 		when(downloader.getFresh("http://url", null)).thenAnswer((a) -> {
 			String xml = IOUtils.toString(new FileInputStream("src/test/resources/unity-as-sp-meta.xml"),
 					StandardCharsets.UTF_8);
-			return EntitiesDescriptorDocument.Factory.parse(xml);
+			return Optional.of(EntitiesDescriptorDocument.Factory.parse(xml));
 		});
 		
 		MetadataSourceHandler handler = new MetadataSourceHandler(src, 
@@ -145,7 +200,7 @@ public class MetadataSourceHandlerTest
 		
 		Awaitility.await().atMost(Duration.ONE_SECOND).until(
 				() -> gotEvent.get());
-		verify(client, atLeast(1)).download("http://url", null);
+		verify(client, atLeast(1)).downloadIfModified("http://url", null, null, null);
 	}
 	
 	@Test
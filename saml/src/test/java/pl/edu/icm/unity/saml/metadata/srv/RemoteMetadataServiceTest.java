@@ -41,10 +41,10 @@ public class RemoteMetadataServiceTest
 		ScheduledExecutorService pool = Executors.newScheduledThreadPool(1);
 		when(executorsService.getService()).thenReturn(pool);
 		downloader = mock(MetadataDownloader.class);
-		when(downloader.getFresh("url", null)).thenAnswer((a) -> {
+		when(downloader.getFresh(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenAnswer((a) -> {
 			String xml = IOUtils.toString(new FileInputStream("src/test/resources/unity-as-sp-meta.xml"),
 					StandardCharsets.UTF_8);
-			return EntitiesDescriptorDocument.Factory.parse(xml);
+			return Optional.of(EntitiesDescriptorDocument.Factory.parse(xml));
 		});
 	}
 	
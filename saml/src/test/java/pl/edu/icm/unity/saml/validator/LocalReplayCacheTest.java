@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.saml.validator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+public class LocalReplayCacheTest
+{
+	@Test
+	public void shouldDetectRepeatedId()
+	{
+		LocalReplayCache cache = new LocalReplayCache();
+		Date validUntil = new Date(System.currentTimeMillis() + 60000);
+
+		assertThat(cache.storeIfAbsent("id1", validUntil), is(true));
+		assertThat(cache.storeIfAbsent("id1", validUntil), is(false));
+		assertThat(cache.storeIfAbsent("id2", validUntil), is(true));
+	}
+
+	@Test
+	public void shouldAcceptIdAfterItsValidity()
+	{
+		LocalReplayCache cache = new LocalReplayCache();
+
+		cache.storeIfAbsent("id1", new Date(System.currentTimeMillis() - 1));
+		boolean stored = cache.storeIfAbsent("id1", new Date(System.currentTimeMillis() + 60000));
+
+		assertThat(stored, is(true));
+		assertThat(cache.storeIfAbsent("id1", new Date(System.currentTimeMillis() + 60000)), is(false));
+	}
+
+	@Test
+	public void shouldBoundNumberOfIds()
+	{
+		LocalReplayCache cache = new LocalReplayCache(60000, 10);
+		Date validUntil = new Date(System.currentTimeMillis() + 60000);
+
+		for (int i = 0; i < 100; i++)
+			cache.storeIfAbsent("id" + i, validUntil);
+
+		assertThat(cache.storeIfAbsent("id0", validUntil), is(true));
+		assertThat(cache.storeIfAbsent("id99", validUntil), is(false));
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.saml.validator;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import pl.edu.icm.unity.engine.DBIntegrationTestBase;
+import pl.edu.icm.unity.engine.api.token.TokensManagement;
+import pl.edu.icm.unity.exceptions.InternalException;
+
+public class SharedReplayCacheTest extends DBIntegrationTestBase
+{
+	@Autowired
+	private TokensManagement tokensMan;
+
+	@Test
+	public void shouldDetectRepeatedId()
+	{
+		SharedReplayCache cache = new SharedReplayCache(tokensMan);
+		Date validUntil = new Date(System.currentTimeMillis() + 60000);
+
+		assertThat(cache.storeIfAbsent("id1", validUntil), is(true));
+		assertThat(cache.storeIfAbsent("id1", validUntil), is(false));
+		assertThat(cache.storeIfAbsent("id2", validUntil), is(true));
+	}
+
+	@Test
+	public void shouldAcceptConcurrentlyReceivedIdOnce() throws Exception
+	{
+		SharedReplayCache cache1 = new SharedReplayCache(tokensMan);
+		SharedReplayCache cache2 = new SharedReplayCache(tokensMan);
+		Date validUntil = new Date(System.currentTimeMillis() + 60000);
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger accepted = new AtomicInteger();
+		List<Future<?>> results = new ArrayList<>();
+		for (int i = 0; i < threads; i++)
+		{
+			SharedReplayCache cache = i % 2 == 0 ? cache1 : cache2;
+			results.add(executor.submit(() -> {
+				start.await();
+				if (cache.storeIfAbsent("id1", validUntil))
+					accepted.incrementAndGet();
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> result: results)
+			result.get(30, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		assertThat(accepted.get(), is(1));
+	}
+
+	@Test
+	public void shouldRejectIdWhenItCanNotBeStored() throws Exception
+	{
+		TokensManagement failingTokensMan = mock(TokensManagement.class);
+		doThrow(new InternalException("test")).when(failingTokensMan).addToken(anyString(), anyString(), 
+				any(byte[].class), any(Date.class), any(Date.class));
+		SharedReplayCache cache = new SharedReplayCache(failingTokensMan);
+
+		assertThat(cache.storeIfAbsent("id1", new Date(System.currentTimeMillis() + 60000)), is(false));
+	}
+}
@@ -31,6 +31,7 @@ public class PasswordCredentialResetImpl extends CredentialResetBase
 	private PasswordCredentialResetSettings settings;
 	private PasswordEngine passwordEngine = new PasswordEngine();
 	private int answerAttempts = 0;
+	private String credentialId;
 
 	public PasswordCredentialResetImpl(NotificationProducer notificationProducer,
 			IdentityResolver identityResolver,
@@ -42,6 +43,7 @@ public class PasswordCredentialResetImpl extends CredentialResetBase
 		super(notificationProducer, identityResolver, localVerificator, credentialHelper,
 				credentialId, completeCredentialConfiguration);
 		this.settings = settings;
+		this.credentialId = credentialId;
 	}
 
 	@Override
@@ -96,7 +98,7 @@ public class PasswordCredentialResetImpl extends CredentialResetBase
 		if (storedAnswer == null || question == null)
 			throw new IllegalIdentityValueException("Identity has no question set.");
 
-		if (!passwordEngine.verify(storedAnswer, answer))
+		if (!passwordEngine.verify(credentialId, storedAnswer, answer))
 			throw new WrongArgumentException("The answer is incorrect");
 	}
 
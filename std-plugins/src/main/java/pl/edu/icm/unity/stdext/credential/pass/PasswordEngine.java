@@ -18,6 +18,9 @@ import org.bouncycastle.util.Arrays;
  * Low level password handling.
  * Allows for initial obfuscation of a given password (PasswordInfo is generated, 
  * ready to be stored in DB) and for checking a given password against the one loaded.
+ * <p>
+ * SCrypt hashing is performed with {@link PasswordHashingExecutor}, what limits the number of concurrent
+ * hashing operations. Therefore hashing methods may throw {@link PasswordHashingBusyException}. 
  * 
  * @author K. Benedyczak
  */
@@ -25,12 +28,27 @@ public class PasswordEngine
 {
 	private static final int SALT_LENGTH = 32;
 	private Random random = new SecureRandom();
+	private PasswordHashingExecutor hashingExecutor;
 
-	public PasswordInfo prepareForStore(PasswordCredential credentialSettings, String password)
+	public PasswordEngine()
+	{
+		this(PasswordHashingExecutor.getInstance());
+	}
+	
+	PasswordEngine(PasswordHashingExecutor hashingExecutor)
+	{
+		this.hashingExecutor = hashingExecutor;
+	}
+	
+	/**
+	 * @param credentialName name of the credential, used to limit concurrent hashing per credential
+	 */
+	public PasswordInfo prepareForStore(String credentialName, PasswordCredential credentialSettings, 
+			String password)
 	{
 		byte[] salt = genSalt();
 		ScryptParams scryptParams = credentialSettings.getScryptParams();
-		byte[] hash = scrypt(password, salt, scryptParams);
+		byte[] hash = hashingExecutor.execute(credentialName, () -> scrypt(password, salt, scryptParams));
 		return new PasswordInfo(PasswordHashMethod.SCRYPT, 
 				hash, 
 				salt, 
@@ -38,13 +56,16 @@ public class PasswordEngine
 				System.currentTimeMillis());
 	}
 
-	public boolean verify(PasswordInfo stored, String password)
+	/**
+	 * @param credentialName name of the credential, used to limit concurrent hashing per credential
+	 */
+	public boolean verify(String credentialName, PasswordInfo stored, String password)
 	{
 		PasswordHashMethod method = stored.getMethod();
 		switch (method)
 		{
 		case SCRYPT:
-			return verifySCrypt(stored, password);
+			return hashingExecutor.execute(credentialName, () -> verifySCrypt(stored, password));
 		case SHA256:
 			return verifySHA2(stored, password);
 		}
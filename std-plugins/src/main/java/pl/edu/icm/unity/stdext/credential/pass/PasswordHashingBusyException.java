@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.stdext.credential.pass;
+
+/**
+ * Signals that password can not be hashed now, as the server is overloaded with password hashing requests.
+ * 
+ * @author K. Benedyczak
+ */
+public class PasswordHashingBusyException extends RuntimeException
+{
+	public PasswordHashingBusyException(String message)
+	{
+		super(message);
+	}
+}
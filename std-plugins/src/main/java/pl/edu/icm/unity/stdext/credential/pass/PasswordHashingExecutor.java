@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.stdext.credential.pass;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.Logger;
+
+import pl.edu.icm.unity.base.utils.Log;
+
+/**
+ * Runs password hashing, which is CPU and memory intensive, on a dedicated pool of threads sized to 
+ * the number of available processors. This way bursts of password verifications can not take over 
+ * the threads serving requests.
+ * <p>
+ * The queue of waiting operations is bounded and operations of a single credential can not occupy more 
+ * than a part of the pool capacity. When limits are reached or an operation waits too long, 
+ * {@link PasswordHashingBusyException} is thrown. Queue wait and hashing times are collected and 
+ * periodically logged.
+ * 
+ * @author K. Benedyczak
+ */
+class PasswordHashingExecutor
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER, PasswordHashingExecutor.class);
+	private static final int QUEUE_SIZE_PER_THREAD = 16;
+	private static final long MAX_WAIT_MS = 10000;
+	private static final long STATISTICS_LOG_INTERVAL = 300000;
+	private static final PasswordHashingExecutor INSTANCE = 
+			new PasswordHashingExecutor(Runtime.getRuntime().availableProcessors());
+
+	private final ThreadPoolExecutor executor;
+	private final int perCredentialLimit;
+	private final ConcurrentMap<String, Semaphore> credentialPermits = new ConcurrentHashMap<>();
+	private final LongAdder operations = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+	private final LongAdder queueWaitNanos = new LongAdder();
+	private final LongAdder hashingNanos = new LongAdder();
+	private final AtomicLong lastStatisticsLog = new AtomicLong(System.currentTimeMillis());
+
+	PasswordHashingExecutor(int threads)
+	{
+		int queueSize = threads * QUEUE_SIZE_PER_THREAD;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, 
+				new ArrayBlockingQueue<>(queueSize), 
+				task -> 
+				{
+					Thread thread = new Thread(task, "password-hashing-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+		this.perCredentialLimit = Math.max(1, (threads + queueSize) * 3 / 4);
+	}
+	
+	static PasswordHashingExecutor getInstance()
+	{
+		return INSTANCE;
+	}
+	
+	/**
+	 * Runs the given hashing operation in the pool and waits for its result.
+	 * @param credential name of the credential to which the operation belongs
+	 * @throws PasswordHashingBusyException if the operation can not be performed due to server load
+	 */
+	<T> T execute(String credential, Supplier<T> hashing)
+	{
+		Semaphore permits = credentialPermits.computeIfAbsent(String.valueOf(credential), 
+				key -> new Semaphore(perCredentialLimit));
+		if (!permits.tryAcquire())
+			throw busy("too many concurrent password operations of credential " + credential);
+		HashingTask<T> task = new HashingTask<>(timed(hashing, System.nanoTime()), permits);
+		try
+		{
+			executor.execute(task);
+		} catch (RejectedExecutionException e)
+		{
+			permits.release();
+			throw busy("password hashing queue is full");
+		}
+		return waitForResult(task);
+	}
+
+	private <T> T waitForResult(HashingTask<T> task)
+	{
+		try
+		{
+			return task.get(MAX_WAIT_MS, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e)
+		{
+			task.cancel(false);
+			throw busy("password hashing was not completed in " + MAX_WAIT_MS + "ms");
+		} catch (InterruptedException e)
+		{
+			task.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new PasswordHashingBusyException("Interrupted while waiting for password hashing");
+		} catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if (e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			throw new IllegalStateException("Password hashing failed", e.getCause());
+		}
+	}
+	
+	private PasswordHashingBusyException busy(String reason)
+	{
+		rejections.increment();
+		log.warn("Password operation rejected as server is busy: {}", reason);
+		return new PasswordHashingBusyException("Server is busy, please try again later");
+	}
+	
+	private void recordOperation(long waitNanos, long hashNanos)
+	{
+		operations.increment();
+		queueWaitNanos.add(waitNanos);
+		hashingNanos.add(hashNanos);
+		long now = System.currentTimeMillis();
+		long lastLog = lastStatisticsLog.get();
+		if (now - lastLog > STATISTICS_LOG_INTERVAL && lastStatisticsLog.compareAndSet(lastLog, now))
+			log.info("Password hashing statistics: {}", this);
+	}
+	
+	@Override
+	public String toString()
+	{
+		long count = Math.max(1, operations.sum());
+		return String.format("%d operations, %d rejected, avg queue wait %dms, avg hashing time %dms, "
+				+ "%d pending now", operations.sum(), rejections.sum(), 
+				TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.sum() / count),
+				TimeUnit.NANOSECONDS.toMillis(hashingNanos.sum() / count),
+				getPendingOperations());
+	}
+	
+	/**
+	 * @return number of operations which are queued or being executed
+	 */
+	int getPendingOperations()
+	{
+		return executor.getQueue().size() + executor.getActiveCount();
+	}
+	
+	private <T> Callable<T> timed(Supplier<T> hashing, long submitted)
+	{
+		return () -> 
+		{
+			long started = System.nanoTime();
+			try
+			{
+				return hashing.get();
+			} finally
+			{
+				recordOperation(started - submitted, System.nanoTime() - started);
+			}
+		};
+	}
+	
+	/**
+	 * Releases the credential's permit when completed or cancelled.
+	 */
+	private static class HashingTask<T> extends FutureTask<T>
+	{
+		private final Semaphore permits;
+		
+		HashingTask(Callable<T> hashing, Semaphore permits)
+		{
+			super(hashing);
+			this.permits = permits;
+		}
+
+		@Override
+		protected void done()
+		{
+			permits.release();
+		}
+	}
+}
@@ -19,7 +19,6 @@ import org.springframework.stereotype.Component;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.Lists;
 import com.nulabinc.zxcvbn.Strength;
-import com.nulabinc.zxcvbn.Zxcvbn;
 
 import edu.vt.middleware.password.AlphabeticalSequenceRule;
 import edu.vt.middleware.password.CharacterCharacteristicsRule;
@@ -46,6 +45,7 @@ import pl.edu.icm.unity.engine.api.authn.AuthenticationResult;
 import pl.edu.icm.unity.engine.api.authn.AuthenticationResult.Status;
 import pl.edu.icm.unity.engine.api.authn.CredentialReset;
 import pl.edu.icm.unity.engine.api.authn.EntityWithCredential;
+import pl.edu.icm.unity.engine.api.authn.ServerBusyAuthenticationException;
 import pl.edu.icm.unity.engine.api.authn.local.AbstractLocalCredentialVerificatorFactory;
 import pl.edu.icm.unity.engine.api.authn.local.AbstractLocalVerificator;
 import pl.edu.icm.unity.engine.api.authn.local.CredentialHelper;
@@ -89,6 +89,7 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 	private PasswordEngine passwordEngine;
 	
 	private PasswordCredential credential = new PasswordCredential();
+	private PasswordValidator passwordValidator;
 
 	@Autowired
 	public PasswordVerificator(NotificationProducer notificationProducer, CredentialHelper credentialHelper)
@@ -109,6 +110,7 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 	public void setSerializedConfiguration(String json) throws InternalException
 	{
 		credential.setSerializedConfiguration(JsonUtil.parse(json));
+		passwordValidator = createPasswordValidator();
 	}
 
 	/**
@@ -124,11 +126,17 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 		
 		PasswordToken pToken = PasswordToken.loadFromJson(rawCredential);
 		
-		if (verify)
-			verifyNewPassword(pToken.getPassword(), 
-					currentPasswords, credential.getHistorySize());
-		
-		return prepareCredentialForStorage(currentPasswords, pToken);
+		try
+		{
+			if (verify)
+				verifyNewPassword(pToken.getPassword(), 
+						currentPasswords, credential.getHistorySize());
+			
+			return prepareCredentialForStorage(currentPasswords, pToken);
+		} catch (PasswordHashingBusyException e)
+		{
+			throw new IllegalCredentialException(e.getMessage(), e);
+		}
 	}
 
 	private String prepareCredentialForStorage(Deque<PasswordInfo> currentPasswords, PasswordToken pToken)
@@ -145,13 +153,13 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 				throw new IllegalCredentialException("The chosen answer for security question is invalid");
 		}
 		
-		PasswordInfo currentPassword = passwordEngine.prepareForStore(credential, pToken.getPassword());
+		PasswordInfo currentPassword = passwordEngine.prepareForStore(credentialName, credential, pToken.getPassword());
 		if (credential.getHistorySize() <= currentPasswords.size() && !currentPasswords.isEmpty())
 			currentPasswords.removeLast();
 		currentPasswords.addFirst(currentPassword);
 		
 		PasswordInfo questionAnswer = pToken.getAnswer() != null ? 
-				passwordEngine.prepareForStore(credential, pToken.getAnswer()) :
+				passwordEngine.prepareForStore(credentialName, credential, pToken.getAnswer()) :
 				null;
 
 		return PasswordCredentialDBState.toJson(credential, currentPasswords, 
@@ -252,9 +260,16 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 	 */
 	@Override
 	public AuthenticationResult checkPassword(String username, String password, 
-			SandboxAuthnResultCallback sandboxCallback)
+			SandboxAuthnResultCallback sandboxCallback) throws AuthenticationException
 	{
-		AuthenticationResult authenticationResult = checkPasswordInternal(username, password);
+		AuthenticationResult authenticationResult;
+		try
+		{
+			authenticationResult = checkPasswordInternal(username, password);
+		} catch (PasswordHashingBusyException e)
+		{
+			throw new ServerBusyAuthenticationException(e.getMessage(), e);
+		}
 		if (sandboxCallback != null)
 			sandboxCallback.sandboxedAuthenticationDone(new LocalSandboxAuthnContext(authenticationResult));
 		return authenticationResult;
@@ -284,7 +299,7 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 				return new AuthenticationResult(Status.deny, null);
 			}
 			PasswordInfo current = credentials.getFirst();
-			if (!passwordEngine.verify(current, password))
+			if (!passwordEngine.verify(credentialName, current, password))
 			{
 				log.debug("Password provided by " + username + " is invalid");
 				return new AuthenticationResult(Status.deny, null);
@@ -293,6 +308,9 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 			AuthenticatedEntity ae = new AuthenticatedEntity(resolved.getEntityId(), username, 
 					isOutdated ? resolved.getCredentialName() : null);
 			return new AuthenticationResult(Status.success, ae);
+		} catch (PasswordHashingBusyException e)
+		{
+			throw e;
 		} catch (Exception e)
 		{
 			log.debug("Error during password verification for " + username, e);
@@ -440,13 +458,12 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 
 	private void verifyPasswordStrength(String password) throws IllegalCredentialException
 	{
-		Zxcvbn zxcvbn = new Zxcvbn();
-		Strength strength = zxcvbn.measure(password);
+		Strength strength = StrengthChecker.measureStrength(password);
 		if (strength.getGuessesLog10() < credential.getMinScore())
 			throw new IllegalCredentialException("Password has too low score " 
 					+ strength.getGuessesLog10() + "/" + credential.getMinScore());
 		
-		PasswordValidator validator = getPasswordValidator();
+		PasswordValidator validator = passwordValidator == null ? createPasswordValidator() : passwordValidator;
 		RuleResult result = validator.validate(new PasswordData(new Password(password)));
 		if (!result.isValid())
 			throw new IllegalCredentialException("Password is too weak");
@@ -459,13 +476,13 @@ public class PasswordVerificator extends AbstractLocalVerificator implements Pas
 		for (int i=0; i<historyLookback && iterator.hasNext(); i++)
 		{
 			PasswordInfo pi = iterator.next();
-			if (passwordEngine.verify(pi, password))
+			if (passwordEngine.verify(credentialName, pi, password))
 				throw new CredentialRecentlyUsedException("The same password was recently used");
 		}
 	}
 
 	
-	private PasswordValidator getPasswordValidator()
+	private PasswordValidator createPasswordValidator()
 	{
 		List<Rule> ruleList = new ArrayList<Rule>();
 		ruleList.add(new LengthRule(credential.getMinLength(), 512));
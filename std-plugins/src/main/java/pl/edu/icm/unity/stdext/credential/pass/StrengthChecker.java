@@ -8,9 +8,14 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 import org.springframework.context.support.MessageSourceResourceBundle;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.nulabinc.zxcvbn.Feedback;
 import com.nulabinc.zxcvbn.Strength;
 import com.nulabinc.zxcvbn.Zxcvbn;
@@ -26,6 +31,10 @@ import pl.edu.icm.unity.engine.api.msg.UnityMessageSource;
  * quality measurements of passwords. The returned result is normalized to 0-1 range, 
  * 1 (max score) corresponds to currently very hard not normalized value of 14 or minimum acceptable 
  * value whichever is greater.
+ * <p>
+ * Evaluation is performed frequently (e.g. on each change of password in credential editors), so all 
+ * helper objects, which are thread safe, are created once: zxcvbn evaluator, password rules and message 
+ * bundles of feedback, per message source and locale.
  * 
  * @author K. Benedyczak
  */
@@ -33,6 +42,13 @@ public class StrengthChecker
 {
 	 //10^14 guesses is considered super safe
 	private static final int DEFAULT_PERFECT_SCORE = 14;
+	private static final Zxcvbn ZXCVBN = new Zxcvbn();
+	private static final List<CharacterRule> CHARACTER_CLASSES_RULES = 
+			Collections.unmodifiableList(PasswordVerificator.getCharacteristicsRules());
+	private static final List<Rule> SEQUENCES_RULES = 
+			Collections.unmodifiableList(PasswordVerificator.getSequencesRules());
+	private static final Cache<UnityMessageSource, ConcurrentMap<Locale, ResourceBundle>> FEEDBACK_BUNDLES = 
+			CacheBuilder.newBuilder().weakKeys().build();
 	
 	public static StrengthInfo measure(String password, int minAcceptable, UnityMessageSource msg)
 	{
@@ -42,10 +58,9 @@ public class StrengthChecker
 	static StrengthInfo measure(String password, int minAcceptable, 
 			Locale locale, UnityMessageSource msg)
 	{
-		Zxcvbn zxcvbn = new Zxcvbn();
-		Strength strength = zxcvbn.measure(password);
+		Strength strength = measureStrength(password);
 		
-		ResourceBundle msgAdapter = new MessageSourceResourceBundle(msg, locale);
+		ResourceBundle msgAdapter = getFeedbackBundle(msg, locale);
 		Feedback feedback = strength.getFeedback();
 		Feedback localizedFeedback = feedback.withResourceBundle(msgAdapter);
 
@@ -55,12 +70,28 @@ public class StrengthChecker
 				localizedFeedback.getSuggestions(locale));
 	}
 	
+	static Strength measureStrength(String password)
+	{
+		return ZXCVBN.measure(password);
+	}
+	
+	private static ResourceBundle getFeedbackBundle(UnityMessageSource msg, Locale locale)
+	{
+		try
+		{
+			return FEEDBACK_BUNDLES.get(msg, ConcurrentHashMap::new)
+					.computeIfAbsent(locale, key -> new MessageSourceResourceBundle(msg, key));
+		} catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Can not create feedback messages bundle", e);
+		}
+	}
+	
 	public static int getCharacterClasses(String password)
 	{
-		List<CharacterRule> charClassesRules = PasswordVerificator.getCharacteristicsRules();
 		PasswordData passwordData = new PasswordData(new Password(password));
 		int ret = 0;
-		for (CharacterRule rule: charClassesRules)
+		for (CharacterRule rule: CHARACTER_CLASSES_RULES)
 			if (rule.validate(passwordData).isValid())
 				ret++;
 		return ret;
@@ -68,9 +99,8 @@ public class StrengthChecker
 
 	public static boolean hasNoTrivialSequences(String password)
 	{
-		List<Rule> charClassesRules = PasswordVerificator.getSequencesRules();
 		PasswordData passwordData = new PasswordData(new Password(password));
-		for (Rule rule: charClassesRules)
+		for (Rule rule: SEQUENCES_RULES)
 			if (!rule.validate(passwordData).isValid())
 				return false;
 		return true;
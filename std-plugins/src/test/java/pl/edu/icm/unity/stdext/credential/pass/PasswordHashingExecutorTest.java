@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.stdext.credential.pass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class PasswordHashingExecutorTest
+{
+	@Test
+	public void shouldReturnHashingResult()
+	{
+		PasswordHashingExecutor executor = new PasswordHashingExecutor(2);
+		
+		String result = executor.execute("cred", () -> "hash");
+		
+		assertEquals("hash", result);
+	}
+
+	@Test
+	public void shouldRejectWhenCredentialLimitIsReached() throws Exception
+	{
+		PasswordHashingExecutor executor = new PasswordHashingExecutor(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService callers = Executors.newCachedThreadPool();
+		try
+		{
+			for (int i = 0; i < 12; i++)
+				callers.submit(() -> executor.execute("cred", () -> awaitQuietly(release)));
+			while (executor.getPendingOperations() < 12)
+				Thread.sleep(10);
+			
+			try
+			{
+				executor.execute("cred", () -> true);
+				fail("Operation exceeding the credential limit was accepted");
+			} catch (PasswordHashingBusyException e) {}
+			
+			Future<Boolean> otherCredential = callers.submit(() -> executor.execute("other", () -> false));
+			while (executor.getPendingOperations() < 13)
+				Thread.sleep(10);
+			release.countDown();
+			assertFalse(otherCredential.get());
+		} finally
+		{
+			release.countDown();
+			callers.shutdown();
+		}
+	}
+	
+	private static boolean awaitQuietly(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		return true;
+	}
+}
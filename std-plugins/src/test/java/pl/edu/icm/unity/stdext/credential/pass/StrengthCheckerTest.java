@@ -48,4 +48,16 @@ public class StrengthCheckerTest
 		assertThat(result.toString(), result.warning, 
 				is("Ciągi znaków z klawiatury są łatwe do zgadnięcia"));
 	}
+
+	@Test
+	public void shouldReturnWarningInSelectedLocaleAfterOtherLocaleWasUsed() throws IOException
+	{
+		UnityMessageSource msg = new UnityMessageSource(mock(UnityServerConfiguration.class), true);
+		StrengthInfo english = StrengthChecker.measure("asdfghjkl;'", 10, Locale.ENGLISH, msg);
+		StrengthInfo polish = StrengthChecker.measure("asdfghjkl;'", 10, new Locale("pl"), msg);
+		
+		assertThat(polish.toString(), polish.warning, 
+				is("Ciągi znaków z klawiatury są łatwe do zgadnięcia"));
+		assertThat(english.toString(), english.warning.equals(polish.warning), is(false));
+	}
 }
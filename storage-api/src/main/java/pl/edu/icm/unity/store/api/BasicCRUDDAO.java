@@ -5,6 +5,7 @@
 package pl.edu.icm.unity.store.api;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Basic DAO with typical CRUD operations.
@@ -25,4 +26,14 @@ public interface BasicCRUDDAO<T>
 	T getByKey(long id);
 
 	List<T> getAll();
+	
+	/**
+	 * Passes all elements to the consumer. Contrary to {@link #getAll()} elements are read 
+	 * in batches of the given size, so the whole store is not loaded into memory at once. 
+	 * The consumer may modify the store.
+	 */
+	default void forEach(int batchSize, Consumer<T> consumer)
+	{
+		getAll().forEach(consumer);
+	}
 }
@@ -4,6 +4,8 @@
  */
 package pl.edu.icm.unity.store.api.generic;
 
+import java.util.Map;
+
 import pl.edu.icm.unity.types.registration.EnquiryForm;
 
 /**
@@ -13,4 +15,9 @@ import pl.edu.icm.unity.types.registration.EnquiryForm;
  */
 public interface EnquiryFormDB extends NamedCRUDDAOWithTS<EnquiryForm>
 {
+	/**
+	 * As {@link #getAllAsMap()} but returned forms can be shared with other callers, so they must not 
+	 * be modified. Cheaper as forms which were not changed are not decoded again.
+	 */
+	Map<String, EnquiryForm> getAllAsMapReadOnly();
 }
@@ -14,4 +14,11 @@ public interface TxManager
 	 * Performs manual commit. Useful in code which is running in a transaction with auto commit turned off.
 	 */
 	void commit();
+	
+	/**
+	 * Registers an action which is run after the current transaction is finished, regardless whether it 
+	 * was committed or rolled back. Useful to keep caches in sync with the persisted state. If there is 
+	 * no transaction the action is run immediately.
+	 */
+	void addPostCompletionAction(Runnable action);
 }
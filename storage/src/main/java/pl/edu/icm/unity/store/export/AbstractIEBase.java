@@ -5,7 +5,13 @@
 package pl.edu.icm.unity.store.export;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
 
 import org.apache.logging.log4j.Logger;
 
@@ -23,6 +29,8 @@ import pl.edu.icm.unity.base.utils.Log;
 public abstract class AbstractIEBase<T>
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, AbstractIEBase.class);
+	private static final int IMPORT_CHUNK_SIZE = 1000;
+	private static final int CONVERSION_TASK_SIZE = 250;
 	private int sortKey;
 	private String storeKey;
 	
@@ -82,22 +90,88 @@ public abstract class AbstractIEBase<T>
 		jg.writeTree(asJson);
 	}
 	
-	public void deserialize(JsonParser input) 
-			throws IOException
+	/**
+	 * Imports all elements of the store. Elements are read in chunks. Each chunk is updated and 
+	 * converted from JSON by the given executor, in parallel with storing of the previous chunk.
+	 * Elements are stored in the calling thread, in the order of the dump.
+	 */
+	void deserialize(JsonParser input, UnaryOperator<ObjectNode> elementUpdate, ExecutorService executor,
+			DumpImportProgress progress) throws IOException
 	{
 		JsonUtils.expect(input, JsonToken.START_ARRAY);
-		while(input.nextToken() == JsonToken.START_OBJECT)
+		List<Future<List<T>>> pending = Collections.emptyList();
+		boolean finished = false;
+		while (!finished)
 		{
-			T obj = deserializeFromJson(input);
-			createSingle(obj);
+			List<ObjectNode> chunk = readChunk(input);
+			finished = input.getCurrentToken() != JsonToken.END_OBJECT;
+			List<Future<List<T>>> converted = convertAsync(chunk, elementUpdate, executor);
+			storeConverted(pending, progress);
+			pending = converted;
 		}
+		storeConverted(pending, progress);
 		JsonUtils.expect(input, JsonToken.END_ARRAY);
 	}
 
-	private T deserializeFromJson(JsonParser input)
+	private List<ObjectNode> readChunk(JsonParser input) throws IOException
+	{
+		List<ObjectNode> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+		while (chunk.size() < IMPORT_CHUNK_SIZE && input.nextToken() == JsonToken.START_OBJECT)
+			chunk.add(input.readValueAsTree());
+		return chunk;
+	}
+	
+	private List<Future<List<T>>> convertAsync(List<ObjectNode> chunk, UnaryOperator<ObjectNode> elementUpdate,
+			ExecutorService executor)
+	{
+		List<Future<List<T>>> ret = new ArrayList<>();
+		for (int i = 0; i < chunk.size(); i += CONVERSION_TASK_SIZE)
+		{
+			List<ObjectNode> part = chunk.subList(i, Math.min(chunk.size(), i + CONVERSION_TASK_SIZE));
+			ret.add(executor.submit(() -> convert(part, elementUpdate)));
+		}
+		return ret;
+	}
+
+	private List<T> convert(List<ObjectNode> elements, UnaryOperator<ObjectNode> elementUpdate)
+	{
+		List<T> ret = new ArrayList<>(elements.size());
+		for (ObjectNode element: elements)
+			ret.add(deserializeFromJson(elementUpdate.apply(element)));
+		return ret;
+	}
+	
+	private void storeConverted(List<Future<List<T>>> converted, DumpImportProgress progress) 
 			throws IOException
 	{
-		ObjectNode read = input.readValueAsTree();
+		for (Future<List<T>> future: converted)
+		{
+			List<T> objects = getConverted(future);
+			for (T obj: objects)
+				createSingle(obj);
+			progress.objectsImported(objects.size());
+		}
+	}
+
+	private List<T> getConverted(Future<List<T>> future) throws IOException
+	{
+		try
+		{
+			return future.get();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Import of " + storeKey + " was interrupted", e);
+		} catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IOException("Import of " + storeKey + " failed", e.getCause());
+		}
+	}
+	
+	private T deserializeFromJson(ObjectNode read)
+	{
 		try
 		{
 			return fromJsonSingle(read);
@@ -108,6 +182,3 @@ public abstract class AbstractIEBase<T>
 		}
 	}
 }
-
-
-
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.export;
+
+import org.apache.logging.log4j.Logger;
+
+import pl.edu.icm.unity.base.utils.Log;
+
+/**
+ * Tracks progress of a dump import. Progress is logged periodically, so that long imports can be
+ * monitored. Updated by the importing thread only.
+ * @author K. Benedyczak
+ */
+class DumpImportProgress
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, DumpImportProgress.class);
+	private static final long LOG_INTERVAL = 10000;
+
+	private final int storesTotal;
+	private final long start = System.currentTimeMillis();
+	private int storesImported;
+	private String currentStore;
+	private long objectsInStore;
+	private long objectsTotal;
+	private long lastLog = start;
+
+	DumpImportProgress(int storesTotal)
+	{
+		this.storesTotal = storesTotal;
+	}
+
+	void storeStarted(String storeKey)
+	{
+		currentStore = storeKey;
+		objectsInStore = 0;
+	}
+
+	void objectsImported(int count)
+	{
+		objectsInStore += count;
+		objectsTotal += count;
+		long now = System.currentTimeMillis();
+		if (now - lastLog >= LOG_INTERVAL)
+		{
+			lastLog = now;
+			log.info("Import in progress: {}", this);
+		}
+	}
+
+	void storeFinished()
+	{
+		storesImported++;
+		log.info("Imported {} objects of {}, {}/{} stores done", objectsInStore, currentStore,
+				storesImported, storesTotal);
+	}
+
+	void finished()
+	{
+		log.info("Import of {} objects finished in {}s", objectsTotal,
+				(System.currentTimeMillis() - start) / 1000);
+	}
+
+	@Override
+	public String toString()
+	{
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		return String.format("store %s (%d/%d), %d objects of this store, %d objects in total, %d objects/s",
+				currentStore, storesImported + 1, storesTotal, objectsInStore, objectsTotal,
+				objectsTotal * 1000 / elapsed);
+	}
+}
@@ -6,6 +6,8 @@ package pl.edu.icm.unity.store.export;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,7 +23,8 @@ import pl.edu.icm.unity.store.migration.from2_8.JsonDumpUpdateFromV7;
 
 /**
  * Updates a JSON dump before it is actually imported.
- * Changes are performed in JSON contents, input stream is reset after the changes are performed.
+ * Updates which are not {@link StreamingUpdate}s are performed on the whole JSON contents. 
+ * The trailing sequence of streaming updates is returned to be applied to each element during import.
  * @author K. Benedyczak
  */
 @Component
@@ -50,7 +53,49 @@ public class DumpUpdater
 	@Autowired
 	private JsonDumpUpdateFromV7 updateFrom2_8_x;
 	
-	public InputStream update(InputStream is, DumpHeader header) throws IOException
+	/**
+	 * Performs all updates which must be applied to the whole dump at once. 
+	 * @param dumpProvider provides the whole dump, used only if such update is required.
+	 * @return updated dump or null if no update was needed
+	 */
+	public InputStream updateWholeDump(DumpHeader header, DumpProvider dumpProvider) throws IOException
+	{
+		List<UpdateStep> steps = getUpdateSteps(header);
+		int streamingStart = getStreamingStart(steps);
+		if (streamingStart == 0)
+			return null;
+		InputStream is = dumpProvider.getDump();
+		for (UpdateStep step: steps.subList(0, streamingStart))
+			is = performUpdate(is, step.update, step.toVersion);
+		return is;
+	}
+
+	/**
+	 * @return updates to be applied to each of the dump elements, in order
+	 */
+	public List<StreamingUpdate> getStreamingUpdates(DumpHeader header) throws IOException
+	{
+		List<UpdateStep> steps = getUpdateSteps(header);
+		List<StreamingUpdate> ret = new ArrayList<>();
+		for (UpdateStep step: steps.subList(getStreamingStart(steps), steps.size()))
+		{
+			log.info("Database dump will be updated from " + step.toVersion.getPreviousName() + 
+					" --> " + step.toVersion.getName() + " [" + step.toVersion.getJsonDumpVersion() + 
+					"] during import");
+			ret.add((StreamingUpdate) step.update);
+		}
+		return ret;
+	}
+	
+	private int getStreamingStart(List<UpdateStep> steps)
+	{
+		int streamingStart = steps.size();
+		while (streamingStart > 0 && steps.get(streamingStart - 1).update instanceof StreamingUpdate)
+			streamingStart--;
+		return streamingStart;
+	}
+	
+	private List<UpdateStep> getUpdateSteps(DumpHeader header) throws IOException
 	{
 		if (header.getVersionMajor() < MIN_SUPPORTED_MAJOR || 
 			(header.getVersionMajor() == MIN_SUPPORTED_MAJOR && 
@@ -64,25 +109,26 @@ public class DumpUpdater
 						+ "which were created with Unity versions newer "
 						+ "then the current one.");
 		
+		List<UpdateStep> steps = new ArrayList<>();
 		if (header.getVersionMajor() < DumpSchemaVersion.V_INITIAL_2_0_0.getJsonDumpVersion())
-			is = performUpdate(is, updateFrom1_9_x, DumpSchemaVersion.V_INITIAL_2_0_0);
+			steps.add(new UpdateStep(updateFrom1_9_x, DumpSchemaVersion.V_INITIAL_2_0_0));
 		
 		if (header.getVersionMajor() < DumpSchemaVersion.V_SINCE_2_5_0.getJsonDumpVersion())
-			is = performUpdate(is, updateFrom2_4_x, DumpSchemaVersion.V_SINCE_2_5_0);
+			steps.add(new UpdateStep(updateFrom2_4_x, DumpSchemaVersion.V_SINCE_2_5_0));
 		
 		if (header.getVersionMajor() < DumpSchemaVersion.V_SINCE_2_6_0.getJsonDumpVersion())
-			is = performUpdate(is, updateFrom2_5_x, DumpSchemaVersion.V_SINCE_2_6_0);
+			steps.add(new UpdateStep(updateFrom2_5_x, DumpSchemaVersion.V_SINCE_2_6_0));
 
 		if (header.getVersionMajor() < DumpSchemaVersion.V_SINCE_2_7_0.getJsonDumpVersion())
-			is = performUpdate(is, updateFrom2_6_x, DumpSchemaVersion.V_SINCE_2_7_0);
+			steps.add(new UpdateStep(updateFrom2_6_x, DumpSchemaVersion.V_SINCE_2_7_0));
 
 		if (header.getVersionMajor() < DumpSchemaVersion.V_SINCE_2_8_0.getJsonDumpVersion())
-			is = performUpdate(is, updateFrom2_7_x, DumpSchemaVersion.V_SINCE_2_8_0);
+			steps.add(new UpdateStep(updateFrom2_7_x, DumpSchemaVersion.V_SINCE_2_8_0));
 		
 		if (header.getVersionMajor() < DumpSchemaVersion.V_SINCE_2_9_0.getJsonDumpVersion())
-			is = performUpdate(is, updateFrom2_8_x, DumpSchemaVersion.V_SINCE_2_9_0);
+			steps.add(new UpdateStep(updateFrom2_8_x, DumpSchemaVersion.V_SINCE_2_9_0));
 		
-		return is;
+		return steps;
 	}
 
 	
@@ -93,4 +139,24 @@ public class DumpUpdater
 				" --> " + toVersion.getName() + " [" + toVersion.getJsonDumpVersion() + "]");
 		return updateImpl.update(is);
 	}
+	
+	private static class UpdateStep
+	{
+		private final Update update;
+		private final DumpSchemaVersion toVersion;
+
+		UpdateStep(Update update, DumpSchemaVersion toVersion)
+		{
+			this.update = update;
+			this.toVersion = toVersion;
+		}
+	}
+	
+	/**
+	 * Provides the complete dump contents.
+	 */
+	public interface DumpProvider
+	{
+		InputStream getDump() throws IOException;
+	}
 }
@@ -4,6 +4,7 @@
  */
 package pl.edu.icm.unity.store.export;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -11,6 +12,8 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,19 +26,22 @@ import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.store.AppDataSchemaVersion;
 import pl.edu.icm.unity.store.api.ImportExport;
 
 /**
- * Import/export functionality. 
+ * Import/export functionality. Import is performed in a streaming fashion: dump elements are converted
+ * in parallel and stored sequentially, in the caller's transaction.
  * @author K. Benedyczak
  */
 @Component
 public class ImportExportImpl implements ImportExport
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, ImportExportImpl.class);
+	private static final int MAX_CONVERSION_THREADS = 4;
 	private ObjectMapper objectMapper;
 	private DumpUpdater updater;
 	private List<AbstractIEBase<?>> implementations;
@@ -100,32 +106,91 @@ public class ImportExportImpl implements ImportExport
 		jg.close();
 	}
 
+	/**
+	 * Dump is read with a streaming parser. Only updates of old dumps which are not 
+	 * {@link StreamingUpdate}s require loading the whole dump into memory.
+	 */
 	@Override
 	public void load(InputStream is) throws IOException
 	{
-		if (!is.markSupported())
-			throw new IllegalArgumentException("Only input streams with mark/reset support can "
-					+ "be used to load imported data");
-		is.mark(1000);
 		JsonParser jp = jsonF.createParser(is);
 		DumpHeader header = loadHeader(jp);
-		jp.close();
-		is.reset();
+		JsonParser original = jp;
+		InputStream isUpdated = updater.updateWholeDump(header, () -> readWholeDump(original, header));
+		if (isUpdated != null)
+		{
+			jp.close();
+			jp = jsonF.createParser(isUpdated);
+			loadHeader(jp);
+		}
+		List<StreamingUpdate> streamingUpdates = updater.getStreamingUpdates(header);
 		
-		InputStream isUpdated = updater.update(is, header);
+		JsonUtils.nextExpect(jp, "contents");
+		int threads = Math.max(1, Math.min(MAX_CONVERSION_THREADS, Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads, 
+				task -> new Thread(task, "Dump import converter"));
+		try
+		{
+			loadContents(jp, streamingUpdates, executor);
+		} finally
+		{
+			executor.shutdownNow();
+		}
+		jp.close();
+	}
 
-		JsonParser jp2 = jsonF.createParser(isUpdated);
-		loadHeader(jp2);
-		
-		JsonUtils.nextExpect(jp2, "contents");
+	private void loadContents(JsonParser jp, List<StreamingUpdate> streamingUpdates, ExecutorService executor) 
+			throws IOException
+	{
+		Set<String> addedStores = new HashSet<>();
+		for (StreamingUpdate update: streamingUpdates)
+			addedStores.addAll(update.getAddedStores());
+		DumpImportProgress progress = new DumpImportProgress(implementations.size());
 		
+		JsonToken token = jp.nextToken();
 		for (AbstractIEBase<?> impl: implementations)
 		{
-			log.info("Importing " + impl.getStoreKey());
-			JsonUtils.nextExpect(jp2, impl.getStoreKey());
-			impl.deserialize(jp2);
+			String storeKey = impl.getStoreKey();
+			if (token != JsonToken.FIELD_NAME || !storeKey.equals(jp.getCurrentName()))
+			{
+				if (!addedStores.contains(storeKey))
+					throw new IOException("Expected " + storeKey + " element, got: " + 
+							jp.getCurrentName() + " " + jp.getCurrentLocation() + 
+							" tokenType: [" + token + "]");
+				log.info("No " + storeKey + " in the dump of the previous version, skipping");
+				continue;
+			}
+			log.info("Importing " + storeKey);
+			progress.storeStarted(storeKey);
+			jp.nextToken();
+			impl.deserialize(jp, element -> updateElement(storeKey, element, streamingUpdates), 
+					executor, progress);
+			progress.storeFinished();
+			token = jp.nextToken();
 		}
-		jp2.close();
+		progress.finished();
+	}
+	
+	private ObjectNode updateElement(String storeKey, ObjectNode element, List<StreamingUpdate> updates)
+	{
+		ObjectNode updated = element;
+		for (StreamingUpdate update: updates)
+			updated = update.updateElement(storeKey, updated);
+		return updated;
+	}
+	
+	/**
+	 * Reads the remaining part of the dump, whose header was already read, into memory.
+	 */
+	private InputStream readWholeDump(JsonParser jp, DumpHeader header) throws IOException
+	{
+		ObjectNode root = objectMapper.createObjectNode();
+		root.put("versionMajor", header.getVersionMajor());
+		root.put("versionMinor", header.getVersionMinor());
+		root.put("timestamp", header.getTimestamp());
+		JsonUtils.nextExpect(jp, "contents");
+		root.set("contents", jp.readValueAsTree());
+		return new ByteArrayInputStream(objectMapper.writeValueAsBytes(root));
 	}
 	
 	private DumpHeader loadHeader(JsonParser jp) throws JsonParseException, IOException
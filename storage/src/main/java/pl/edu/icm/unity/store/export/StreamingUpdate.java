@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.export;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import pl.edu.icm.unity.Constants;
+
+/**
+ * Update of JSON dump which is performed on each of the dumped objects separately.
+ * Such update is applied to the objects while they are imported, so the dump is never
+ * loaded into memory as a whole.
+ * @author K. Benedyczak
+ */
+public interface StreamingUpdate extends Update
+{
+	/**
+	 * @param storeKey key of the store to which the element belongs
+	 * @param element element in the JSON form of the previous version
+	 * @return updated element
+	 */
+	ObjectNode updateElement(String storeKey, ObjectNode element);
+
+	/**
+	 * @return keys of stores which are not present in dumps of the previous version.
+	 * Those stores are imported as empty.
+	 */
+	default Set<String> getAddedStores()
+	{
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Updates the whole dump at once. Used only when the update must be performed after a non
+	 * streaming update.
+	 */
+	@Override
+	default InputStream update(InputStream is) throws IOException
+	{
+		ObjectNode root = (ObjectNode) Constants.MAPPER.readTree(is);
+		ObjectNode contents = (ObjectNode) root.get("contents");
+		Iterator<Map.Entry<String, JsonNode>> stores = contents.fields();
+		while (stores.hasNext())
+		{
+			Map.Entry<String, JsonNode> store = stores.next();
+			ArrayNode elements = (ArrayNode) store.getValue();
+			for (int i = 0; i < elements.size(); i++)
+				elements.set(i, updateElement(store.getKey(), (ObjectNode) elements.get(i)));
+		}
+		for (String added: getAddedStores())
+			if (!contents.has(added))
+				contents.putArray(added);
+		return new ByteArrayInputStream(Constants.MAPPER.writeValueAsBytes(root));
+	}
+}
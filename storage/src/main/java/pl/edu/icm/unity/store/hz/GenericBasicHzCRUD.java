@@ -5,14 +5,20 @@
 package pl.edu.icm.unity.store.hz;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import org.apache.logging.log4j.Logger;
 
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IAtomicLong;
+import com.hazelcast.core.IMap;
 import com.hazelcast.core.TransactionalMap;
 
 import pl.edu.icm.unity.base.utils.Log;
@@ -22,6 +28,7 @@ import pl.edu.icm.unity.store.ReferenceUpdateHandler;
 import pl.edu.icm.unity.store.api.BasicCRUDDAO;
 import pl.edu.icm.unity.store.hz.rdbmsflush.RDBMSMutationEvent;
 import pl.edu.icm.unity.store.hz.tx.HzTransactionTL;
+import pl.edu.icm.unity.store.rdbms.GenericRDBMSCRUD;
 
 /**
  * Generic BasicCRUDDAO implementation on hazelcast map.
@@ -30,17 +37,18 @@ import pl.edu.icm.unity.store.hz.tx.HzTransactionTL;
 public abstract class GenericBasicHzCRUD<T> implements BasicCRUDDAO<T>, HzDAO, ReferenceAwareDAO<T>
 {
 	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, GenericBasicHzCRUD.class);
+	public static final int LOAD_CHUNK_SIZE = 1000;
 
 	protected final String STORE_ID;
 	protected final String name;
 	protected final String rdbmsCounterpartDaoName;
 	protected IAtomicLong index;
-	private BasicCRUDDAO<T> rdbmsDAO;
+	private GenericRDBMSCRUD<T, ?> rdbmsDAO;
 	private Set<ReferenceRemovalHandler> deleteHandlers = new HashSet<>();
 	private Set<ReferenceUpdateHandler<T>> updateHandlers = new HashSet<>();
 	
 	public GenericBasicHzCRUD(String storeId, String name, String rdbmsCounterpartDaoName,
-			BasicCRUDDAO<T> rdbmsDAO)
+			GenericRDBMSCRUD<T, ?> rdbmsDAO)
 	{
 		STORE_ID = storeId;
 		this.name = name;
@@ -48,18 +56,68 @@ public abstract class GenericBasicHzCRUD<T> implements BasicCRUDDAO<T>, HzDAO, R
 		this.rdbmsDAO = rdbmsDAO;
 	}
 
+	/**
+	 * Elements are streamed from the database and put directly to the (yet unused) distributed map
+	 * in chunks, what allows Hazelcast to insert them with a single operation per partition.
+	 */
 	@Override
-	public void populateFromRDBMS(HazelcastInstance hzInstance)
+	public long populateFromRDBMS(HazelcastInstance hzInstance)
 	{
 		log.info("Loading " + name + " from persistent storage");
 		index = hzInstance.getAtomicLong(STORE_ID);
-		if (getMap().size() != 0)
+		IMap<Long, T> map = hzInstance.getMap(STORE_ID);
+		if (map.size() != 0)
 			throw new IllegalStateException("In-memory data is non empty before loading " + name + 
-					", have " + getMap().size() + " entries");
+					", have " + map.size() + " entries");
+
+		long initialIndex = index.get();
+		AtomicLong sequence = new AtomicLong(initialIndex);
+		Map<Long, T> chunk = new HashMap<>();
+		rdbmsDAO.streamAll(element -> {
+			long key = getKeyOfLoaded(element, sequence.incrementAndGet());
+			chunk.put(key, element);
+			if (chunk.size() >= LOAD_CHUNK_SIZE)
+			{
+				putLoaded(hzInstance, chunk);
+				chunk.clear();
+			}
+		});
+		if (!chunk.isEmpty())
+			putLoaded(hzInstance, chunk);
+		index.set(sequence.get());
+		return sequence.get() - initialIndex;
+	}
 
-		List<T> all = rdbmsDAO.getAll();
-		for (T element: all)
-			createNoPropagateToRDBMS(element);
+	@Override
+	public void attachToRestoredData(HazelcastInstance hzInstance)
+	{
+		index = hzInstance.getAtomicLong(STORE_ID);
+	}
+	
+	@Override
+	public String getStoreId()
+	{
+		return STORE_ID;
+	}
+	
+	/**
+	 * @param loaded element loaded from the persistent store
+	 * @param sequentialKey next free sequential key
+	 * @return key under which the loaded element should be stored. By default the sequential key.
+	 */
+	protected long getKeyOfLoaded(T loaded, long sequentialKey)
+	{
+		return sequentialKey;
+	}
+	
+	/**
+	 * Stores a chunk of elements loaded from the persistent store. Extensions may maintain 
+	 * additional maps here.
+	 */
+	protected void putLoaded(HazelcastInstance hzInstance, Map<Long, T> chunk)
+	{
+		IMap<Long, T> map = hzInstance.getMap(STORE_ID);
+		map.putAll(chunk);
 	}
 
 	protected long createNoPropagateToRDBMS(T obj) throws IllegalArgumentException
@@ -166,6 +224,24 @@ public abstract class GenericBasicHzCRUD<T> implements BasicCRUDDAO<T>, HzDAO, R
 		return ret;
 	}
 	
+	/**
+	 * Only keys are loaded upfront, elements are fetched one by one, in key order. Batch size is 
+	 * therefore not relevant here.
+	 */
+	@Override
+	public void forEach(int batchSize, Consumer<T> consumer)
+	{
+		TransactionalMap<Long, T> hMap = getMap();
+		List<Long> keys = new ArrayList<>(hMap.keySet());
+		Collections.sort(keys);
+		for (Long key: keys)
+		{
+			T element = hMap.get(key);
+			if (element != null)
+				consumer.accept(element);
+		}
+	}
+	
 	@Override
 	public void addRemovalHandler(ReferenceRemovalHandler handler)
 	{
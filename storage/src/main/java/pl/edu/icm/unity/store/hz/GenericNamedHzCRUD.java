@@ -9,13 +9,15 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
 import com.hazelcast.core.TransactionalMap;
 
-import pl.edu.icm.unity.store.api.BasicCRUDDAO;
 import pl.edu.icm.unity.store.api.NamedCRUDDAO;
 import pl.edu.icm.unity.store.hz.rdbmsflush.RDBMSMutationEvent;
 import pl.edu.icm.unity.store.hz.tx.HzTransactionTL;
 import pl.edu.icm.unity.store.impl.StorageLimits;
+import pl.edu.icm.unity.store.rdbms.GenericRDBMSCRUD;
 import pl.edu.icm.unity.types.NamedObject;
 
 /**
@@ -25,7 +27,7 @@ import pl.edu.icm.unity.types.NamedObject;
 public abstract class GenericNamedHzCRUD<T extends NamedObject> extends GenericBasicHzCRUD<T> implements NamedCRUDDAO<T>
 {
 	public GenericNamedHzCRUD(String storeId, String name, String rdbmsCounterpartDaoName,
-			BasicCRUDDAO<T> rdbmsDAO)
+			GenericRDBMSCRUD<T, ?> rdbmsDAO)
 	{
 		super(storeId, name, rdbmsCounterpartDaoName, rdbmsDAO);
 	}
@@ -42,6 +44,17 @@ public abstract class GenericNamedHzCRUD<T extends NamedObject> extends GenericB
 		return key;
 	}
 	
+	@Override
+	protected void putLoaded(HazelcastInstance hzInstance, Map<Long, T> chunk)
+	{
+		super.putLoaded(hzInstance, chunk);
+		Map<String, Long> names = new HashMap<>(chunk.size());
+		for (Map.Entry<Long, T> entry: chunk.entrySet())
+			names.put(entry.getValue().getName(), entry.getKey());
+		IMap<String, Long> nameMap = hzInstance.getMap(STORE_ID + "_names");
+		nameMap.putAll(names);
+	}
+	
 	@Override
 	public void updateByName(String current, T newValue)
 	{
@@ -35,6 +35,10 @@ public class HzConfiguration extends RDBMSConfiguration
 	public static final String MEMBERS = "members.";
 	public static final String INTERFACE_IP = "listenAddress";
 	public static final String INTERFACE_PORT = "port";
+	public static final String FLUSH_MAX_TRANSACTIONS = "rdbmsFlushMaxTransactions";
+	public static final String FLUSH_STATS_INTERVAL = "rdbmsFlushStatisticsInterval";
+	public static final String SNAPSHOT_FILE = "snapshotFile";
+	public static final String SNAPSHOT_INTERVAL = "snapshotInterval";
 	
 	@DocumentationReferenceMeta
 	public static final Map<String, PropertyMD> META = new HashMap<>();
@@ -59,6 +63,29 @@ public class HzConfiguration extends RDBMSConfiguration
 						+ "Should not be accessible from outside."));
 		META.put(INTERFACE_PORT, new PropertyMD("5701").
 				setDescription("Port used for the internal cluster communication"));
+		META.put(FLUSH_MAX_TRANSACTIONS, new PropertyMD("1").setPositive().
+				setDescription("Maximum number of queued in-memory transactions which are "
+						+ "flushed to the persistent store together. With the default value "
+						+ "each transaction is flushed separately. Larger values enable write-behind "
+						+ "mode: all waiting transactions (up to the limit) are flushed in a "
+						+ "single database transaction, redundant mutations are folded together "
+						+ "and statements are sent using JDBC batching. This greatly improves "
+						+ "flushing throughput under heavy write load."));
+		META.put(FLUSH_STATS_INTERVAL, new PropertyMD("300").setNonNegative().
+				setDescription("Interval in seconds in which statistics of flushing to the "
+						+ "persistent store (queue depth, batch sizes, flush latency) are logged. "
+						+ "Set to 0 to disable."));
+		META.put(SNAPSHOT_FILE, new PropertyMD().setPath().
+				setDescription("If set, the in-memory data is periodically saved to this local file "
+						+ "and used on startup instead of loading everything from the persistent "
+						+ "store, what greatly speeds up restart of large installations. "
+						+ "The snapshot is used only if the persistent store was not modified "
+						+ "after the snapshot was taken, otherwise the regular loading is performed."));
+		META.put(SNAPSHOT_INTERVAL, new PropertyMD("600").setPositive().
+				setDescription("Minimal interval in seconds between subsequent snapshots of "
+						+ "the in-memory data. Snapshot is taken only when there were changes "
+						+ "since the last one and all pending changes are flushed to the persistent "
+						+ "store. Final snapshot is always taken at shutdown."));
 		
 	}
 	
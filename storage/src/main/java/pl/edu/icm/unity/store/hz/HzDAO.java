@@ -13,5 +13,21 @@ import com.hazelcast.core.HazelcastInstance;
  */
 public interface HzDAO
 {
-	void populateFromRDBMS(HazelcastInstance hzInstance);
+	/**
+	 * @return number of loaded entries
+	 */
+	long populateFromRDBMS(HazelcastInstance hzInstance);
+	
+	/**
+	 * Invoked instead of {@link #populateFromRDBMS(HazelcastInstance)} when the distributed objects 
+	 * of the DAO were restored from a snapshot.
+	 */
+	default void attachToRestoredData(HazelcastInstance hzInstance)
+	{
+	}
+	
+	/**
+	 * @return prefix of names of all distributed objects used by the DAO
+	 */
+	String getStoreId();
 }
@@ -4,7 +4,13 @@
  */
 package pl.edu.icm.unity.store.hz;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.PostConstruct;
 
@@ -12,6 +18,7 @@ import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
 import com.hazelcast.core.DistributedObject;
 import com.hazelcast.core.HazelcastInstance;
@@ -23,6 +30,7 @@ import pl.edu.icm.unity.store.StorageEngine;
 import pl.edu.icm.unity.store.StoreLoaderInternal;
 import pl.edu.icm.unity.store.api.tx.TransactionalRunner;
 import pl.edu.icm.unity.store.hz.rdbmsflush.RDBMSEventSink;
+import pl.edu.icm.unity.store.hz.snapshot.HzSnapshotManager;
 import pl.edu.icm.unity.store.hz.tx.HzTransactionTL;
 import pl.edu.icm.unity.store.hz.tx.HzTransactionalRunner;
 import pl.edu.icm.unity.store.impl.attribute.AttributeHzStore;
@@ -39,7 +47,11 @@ import pl.edu.icm.unity.store.rdbms.DB;
 import pl.edu.icm.unity.store.rdbms.tx.SQLTransactionalRunner;
 
 /**
- * Loads Hazelcast data from RDBMS at startup.
+ * Loads Hazelcast data from RDBMS at startup. Stores are loaded in parallel, in two stages:
+ * the stores of dependent objects (identities, memberships and attributes) are loaded after 
+ * the base objects they refer to.
+ * <p>
+ * If enabled, the up to date snapshot of in-memory data is used instead of loading from RDBMS.
  * @author K. Benedyczak
  */
 @Component(HzStoreLoader.NAME)
@@ -48,7 +60,7 @@ public class HzStoreLoader implements StoreLoaderInternal
 	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, HzStoreLoader.class);
 	
 	public static final String NAME = StorageCleanerImpl.BEAN_PFX + "hz";
-	
+	private static final int MAX_LOADING_THREADS = 4;
 	
 	@Autowired
 	private AttributeTypeHzStore attributeTypeDAO;
@@ -95,6 +107,9 @@ public class HzStoreLoader implements StoreLoaderInternal
 	@Autowired
 	private RDBMSEventSink sink;
 
+	@Autowired
+	private HzSnapshotManager snapshotManager;
+
 	@Autowired 
 	private StorageConfiguration cfg;
 	
@@ -106,24 +121,59 @@ public class HzStoreLoader implements StoreLoaderInternal
 			return;
 		//in principle we should be able to simply run loadTransactional()
 		//  but during tests when spring cashes beans bit 'randomly' it is safer bet 
-		reloadHzFromRDBMSInternal();
+		reloadHzFromRDBMSInternal(true);
 	}
 
 	private void loadFromPersistentStore()
 	{
 		log.info("Loading data from the persistent data store");
-		attributeTypeDAO.populateFromRDBMS(hzInstance);
-		identityTypeDAO.populateFromRDBMS(hzInstance);
-		entityDAO.populateFromRDBMS(hzInstance);
-		identityDAO.populateFromRDBMS(hzInstance);
-		groupDAO.populateFromRDBMS(hzInstance);
-		membershipDAO.populateFromRDBMS(hzInstance);
-		attributeDAO.populateFromRDBMS(hzInstance);
-		tokenDAO.populateFromRDBMS(hzInstance);
-		eventDAO.populateFromRDBMS(hzInstance);
-		genericObjDAO.populateFromRDBMS(hzInstance);
+		long start = System.currentTimeMillis();
+		int threads = Math.max(1, Math.min(MAX_LOADING_THREADS, Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads, 
+				task -> new Thread(task, "In-memory store loader"));
+		try
+		{
+			loadInParallel(executor, attributeTypeDAO, identityTypeDAO, entityDAO, groupDAO, 
+					tokenDAO, eventDAO, genericObjDAO);
+			loadInParallel(executor, identityDAO, membershipDAO, attributeDAO);
+		} finally
+		{
+			executor.shutdownNow();
+		}
 		sink.start();
-		log.info("Population of the in-memory data store completed");
+		log.info("Population of the in-memory data store completed in {}ms", 
+				System.currentTimeMillis() - start);
+	}
+	
+	private void loadInParallel(ExecutorService executor, HzDAO... daos)
+	{
+		List<Future<?>> results = new ArrayList<>(daos.length);
+		for (HzDAO dao: daos)
+			results.add(executor.submit(() -> loadSingleStore(dao)));
+		for (Future<?> result: results)
+		{
+			try
+			{
+				result.get();
+			} catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Loading of the in-memory data store was interrupted", e);
+			} catch (ExecutionException e)
+			{
+				throw new IllegalStateException("Loading of the in-memory data store failed", 
+						e.getCause());
+			}
+		}
+	}
+	
+	private void loadSingleStore(HzDAO dao)
+	{
+		long start = System.currentTimeMillis();
+		long loaded = rdbmstx.runInTransactionRet(() -> dao.populateFromRDBMS(hzInstance));
+		long time = Math.max(1, System.currentTimeMillis() - start);
+		log.info("Loaded {} entries of {} in {}ms ({} rows/s)", loaded, 
+				ClassUtils.getUserClass(dao).getSimpleName(), time, loaded * 1000 / time);
 	}
 	
 	private void loadTransactional()
@@ -143,7 +193,8 @@ public class HzStoreLoader implements StoreLoaderInternal
 	{
 		sink.stop();
 		initDB.reset();
-		reloadHzFromRDBMSInternal();
+		snapshotManager.invalidate();
+		reloadHzFromRDBMSInternal(false);
 	}
 
 	@Override
@@ -153,22 +204,52 @@ public class HzStoreLoader implements StoreLoaderInternal
 		rdbmstx.runInTransaction(() -> {
 			initDB.deleteEverything();
 		});
-		reloadHzFromRDBMSInternal();
+		snapshotManager.invalidate();
+		reloadHzFromRDBMSInternal(false);
 	}
 
 	void reloadHzFromRDBMS()
 	{
 		sink.stop();
-		reloadHzFromRDBMSInternal();
+		snapshotManager.invalidate();
+		reloadHzFromRDBMSInternal(false);
 	}
 
-	private void reloadHzFromRDBMSInternal()
+	private void reloadHzFromRDBMSInternal(boolean allowSnapshot)
+	{
+		destroyDistributedObjects();
+		HzTransactionTL.resetTransaction();
+		if (allowSnapshot && restoreFromSnapshot())
+			return;
+		loadTransactional();
+	}
+
+	private boolean restoreFromSnapshot()
+	{
+		if (!snapshotManager.restore(hzInstance))
+		{
+			destroyDistributedObjects();
+			return false;
+		}
+		attributeTypeDAO.attachToRestoredData(hzInstance);
+		identityTypeDAO.attachToRestoredData(hzInstance);
+		entityDAO.attachToRestoredData(hzInstance);
+		identityDAO.attachToRestoredData(hzInstance);
+		groupDAO.attachToRestoredData(hzInstance);
+		membershipDAO.attachToRestoredData(hzInstance);
+		attributeDAO.attachToRestoredData(hzInstance);
+		tokenDAO.attachToRestoredData(hzInstance);
+		eventDAO.attachToRestoredData(hzInstance);
+		genericObjDAO.attachToRestoredData(hzInstance);
+		sink.start();
+		return true;
+	}
+
+	private void destroyDistributedObjects()
 	{
 		Collection<DistributedObject> distributedObjects = hzInstance.getDistributedObjects();
 		for (DistributedObject obj: distributedObjects)
 			obj.destroy();
-		HzTransactionTL.resetTransaction();
-		loadTransactional();
 	}
 	
 	@Override
@@ -4,12 +4,16 @@
  */
 package pl.edu.icm.unity.store.hz.rdbmsflush;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -27,14 +31,26 @@ import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.store.StorageConfiguration;
 import pl.edu.icm.unity.store.StorageEngine;
 import pl.edu.icm.unity.store.api.tx.TransactionalRunner;
+import pl.edu.icm.unity.store.hz.HzConfiguration;
+import pl.edu.icm.unity.store.hz.snapshot.HzSnapshotManager;
 import pl.edu.icm.unity.store.hz.tx.HzTransactionTL;
 import pl.edu.icm.unity.store.hz.tx.HzTransactionalRunner;
+import pl.edu.icm.unity.store.rdbms.DBSessionManager;
+import pl.edu.icm.unity.store.rdbms.tx.SQLTransactionEngine;
+import pl.edu.icm.unity.store.rdbms.tx.SQLTransactionState;
 import pl.edu.icm.unity.store.rdbms.tx.SQLTransactionTL;
 import pl.edu.icm.unity.store.rdbms.tx.SQLTransactionalRunner;
+import pl.edu.icm.unity.store.tx.TransactionalExt;
+import pl.edu.icm.unity.store.tx.TransactionsState;
+import pl.edu.icm.unity.store.tx.TxEngineUtils;
 
 /**
  * Background thread flushing RBMS mutation events from the global queue to RDBMS.
  * Only one such thread is really working in a cluster so we have linear ordering of RDBMS transactions.
+ * <p>
+ * By default each queued batch is applied in a separate RDBMS transaction. If configured to drain more 
+ * then one batch at once, the sink works in write-behind mode: all drained batches are coalesced
+ * (see {@link RDBMSMutationCoalescer}) and applied in a single RDBMS transaction using JDBC batching.
  * 
  * @author K. Benedyczak
  */
@@ -52,6 +68,13 @@ public class RDBMSEventSink
 	private TransactionalRunner hztx;
 	private TransactionalRunner rdbmsTx;
 	private RDBMSMutationEventProcessor rdbmsProcessor;
+	private DBSessionManager dbSessionMan;
+	private int maxBatchesPerFlush = 1;
+	private long statsLogIntervalMs;
+	private long lastStatsLog;
+	private RDBMSFlushStatistics statistics = new RDBMSFlushStatistics();
+	private HzSnapshotManager snapshotManager;
+	private long flushSequence;
 
 	private volatile AtomicBoolean stopped = new AtomicBoolean(false);
 	private volatile CountDownLatch latch = new CountDownLatch(0);
@@ -63,15 +86,21 @@ public class RDBMSEventSink
 	public RDBMSEventSink(StorageConfiguration systemCfg, HazelcastInstance hzInstance,
 			@Qualifier(HzTransactionalRunner.NAME) TransactionalRunner hztx, 
 			@Qualifier(SQLTransactionalRunner.NAME) TransactionalRunner rdbmsTx,
-			RDBMSMutationEventProcessor rdbmsProcessor)
+			RDBMSMutationEventProcessor rdbmsProcessor, DBSessionManager dbSessionMan,
+			HzSnapshotManager snapshotManager)
 	{
 		this.hzInstance = hzInstance;
 		this.hztx = hztx;
 		this.rdbmsTx = rdbmsTx;
 		this.rdbmsProcessor = rdbmsProcessor;
+		this.dbSessionMan = dbSessionMan;
+		this.snapshotManager = snapshotManager;
 		if (systemCfg.getEnumValue(StorageConfiguration.ENGINE, StorageEngine.class) == 
 				StorageEngine.hz)
 		{
+			HzConfiguration hzConfig = systemCfg.getEngineConfig();
+			maxBatchesPerFlush = hzConfig.getIntValue(HzConfiguration.FLUSH_MAX_TRANSACTIONS);
+			statsLogIntervalMs = hzConfig.getLongValue(HzConfiguration.FLUSH_STATS_INTERVAL) * 1000;
 			hzInstance.getLifecycleService().addLifecycleListener(this::onShutdown);
 			Runtime.getRuntime().addShutdownHook(new Thread(() -> stop()));
 			flushThread = new Thread();
@@ -128,11 +157,16 @@ public class RDBMSEventSink
 		log.info("This member was chosen as the RDBMS flush process");
 		try
 		{
+			if (snapshotManager.isEnabled())
+				flushSequence = rdbmsTx.runInTransactionRet(() -> snapshotManager.readFlushSequence());
 			boolean hasMore;
 			do
 			{
 				hasMore = processEvents();
+				if (!hasMore)
+					snapshotManager.writeSnapshotIfDue(hzInstance, flushSequence);
 			} while(!stopped.get() || hasMore);
+			snapshotManager.writeSnapshot(hzInstance, flushSequence);
 		} catch (Exception e)
 		{
 			log.error("Exception when processing events", e);
@@ -157,7 +191,8 @@ public class RDBMSEventSink
 	/**
 	 * Executed only by a single thread in the cluster. Waits for notification on non empty queue 
 	 * (it has also safety measure to recheck the queue from time to time manually) and if some workload is found
-	 * proceeds with operation.
+	 * proceeds with operation. Returns without processing when the queue is empty and a snapshot
+	 * of in-memory data is due, so that the snapshot is written outside of the Hazelcast transaction.
 	 * @return true if there are more batches in the queue
 	 */
 	private boolean processEvents()
@@ -172,6 +207,8 @@ public class RDBMSEventSink
 				try
 				{
 					batch = queue.poll(250, TimeUnit.MILLISECONDS);
+					if (batch == null && snapshotManager.isSnapshotDue(flushSequence))
+						return false;
 				} catch (HazelcastException | InterruptedException e)
 				{
 					log.debug("Got Interrupt");
@@ -183,19 +220,125 @@ public class RDBMSEventSink
 				}
 			} while (batch == null && !stopped.get());
 			if (batch != null)
-				processSingleBatch(batch);
-			return queue.size() > 0;
+			{
+				if (maxBatchesPerFlush > 1)
+					processMultipleBatches(drain(queue, batch));
+				else
+					processSingleBatch(batch);
+			}
+			int queueSize = queue.size();
+			statistics.recordQueueDepth(queueSize);
+			logStatisticsIfNeeded();
+			return queueSize > 0;
 		});
 	}
 
 	private void processSingleBatch(RDBMSEventsBatch batch)
 	{
 		log.trace("Got RDBMS events batch for processing, size: {}", batch.getEvents().size());
+		long start = System.currentTimeMillis();
 		rdbmsTx.runInTransaction(() -> {
 			for (RDBMSMutationEvent event : batch.getEvents())
 				rdbmsProcessor.apply(event, SQLTransactionTL.getSql());
+			updateFlushSequence();
 		});
+		flushSequence++;
+		int size = batch.getEvents().size();
+		statistics.recordFlush(1, size, size, System.currentTimeMillis() - start);
 		log.trace("RDBMS events batch was flushed");
 	}
-}
+	
+	private List<RDBMSEventsBatch> drain(TransactionalQueue<RDBMSEventsBatch> queue, 
+			RDBMSEventsBatch first)
+	{
+		List<RDBMSEventsBatch> batches = new ArrayList<>();
+		batches.add(first);
+		RDBMSEventsBatch next;
+		while (batches.size() < maxBatchesPerFlush && (next = queue.poll()) != null)
+			batches.add(next);
+		return batches;
+	}
+	
+	private void processMultipleBatches(List<RDBMSEventsBatch> batches)
+	{
+		List<RDBMSMutationEvent> allEvents = new ArrayList<>();
+		for (RDBMSEventsBatch batch: batches)
+			allEvents.addAll(batch.getEvents());
+		List<RDBMSMutationEvent> coalesced = RDBMSMutationCoalescer.coalesce(allEvents);
+		log.trace("Got {} RDBMS events batches for processing, {} events, {} after coalescing", 
+				batches.size(), allEvents.size(), coalesced.size());
+		
+		long start = System.currentTimeMillis();
+		int retry = 0;
+		while (true)
+		{
+			try
+			{
+				applyInBatchSession(coalesced);
+				flushSequence++;
+				break;
+			} catch (PersistenceException e)
+			{
+				retry++;
+				if (retry >= TransactionalExt.DEF_MAX_RETRIES)
+					throw e;
+				log.debug("Got persistence error when flushing batch, will do retry #{}; {}", 
+						retry, e.getCause());
+				TxEngineUtils.sleepInterruptible(retry, SQLTransactionEngine.RETRY_BASE_DELAY, 
+						SQLTransactionEngine.RETRY_MAX_DELAY);
+			}
+		}
+		statistics.recordFlush(batches.size(), allEvents.size(), coalesced.size(), 
+				System.currentTimeMillis() - start);
+		log.trace("RDBMS events batches were flushed");
+	}
 
+	/**
+	 * Applies events in a dedicated session with batch executor. The session is installed as the 
+	 * current SQL transaction so that RDBMS DAOs use it.
+	 */
+	private void applyInBatchSession(List<RDBMSMutationEvent> events)
+	{
+		TransactionsState<SQLTransactionState> transactionsStack = SQLTransactionTL.getState();
+		SqlSession sql = dbSessionMan.getSqlSession(ExecutorType.BATCH, true);
+		transactionsStack.push(new SQLTransactionState(sql));
+		try
+		{
+			for (RDBMSMutationEvent event : events)
+				rdbmsProcessor.apply(event, sql);
+			updateFlushSequence();
+			sql.flushStatements();
+			sql.commit();
+		} finally
+		{
+			transactionsStack.pop();
+			sql.close();
+		}
+	}
+	
+	/**
+	 * Stores the sequence number of the flush being performed in the current RDBMS transaction.
+	 * Used to verify whether the in-memory data snapshot is up to date.
+	 */
+	private void updateFlushSequence()
+	{
+		if (snapshotManager.isEnabled())
+			snapshotManager.storeFlushSequence(flushSequence + 1);
+	}
+	
+	private void logStatisticsIfNeeded()
+	{
+		if (statsLogIntervalMs <= 0)
+			return;
+		long now = System.currentTimeMillis();
+		if (now - lastStatsLog < statsLogIntervalMs)
+			return;
+		lastStatsLog = now;
+		log.info("RDBMS flush statistics: {}", statistics);
+	}
+	
+	public RDBMSFlushStatistics getStatistics()
+	{
+		return statistics;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.hz.rdbmsflush;
+
+/**
+ * Statistics of flushing in-memory mutations to RDBMS. Updated by the single flush thread,
+ * can be read from any thread.
+ *
+ * @author K. Benedyczak
+ */
+public class RDBMSFlushStatistics
+{
+	private volatile long flushes;
+	private volatile long transactions;
+	private volatile long events;
+	private volatile long coalescedEvents;
+	private volatile long totalFlushTimeMs;
+	private volatile long maxFlushTimeMs;
+	private volatile long maxBatchSize;
+	private volatile int queueDepth;
+	private volatile int maxQueueDepth;
+
+	synchronized void recordFlush(int transactionsInBatch, int eventsInBatch, int eventsAfterCoalescing,
+			long flushTimeMs)
+	{
+		flushes++;
+		transactions += transactionsInBatch;
+		events += eventsInBatch;
+		coalescedEvents += eventsInBatch - eventsAfterCoalescing;
+		totalFlushTimeMs += flushTimeMs;
+		maxFlushTimeMs = Math.max(maxFlushTimeMs, flushTimeMs);
+		maxBatchSize = Math.max(maxBatchSize, eventsAfterCoalescing);
+	}
+
+	synchronized void recordQueueDepth(int depth)
+	{
+		queueDepth = depth;
+		maxQueueDepth = Math.max(maxQueueDepth, depth);
+	}
+
+	/**
+	 * @return number of RDBMS transactions performed by the flush thread
+	 */
+	public long getFlushes()
+	{
+		return flushes;
+	}
+
+	/**
+	 * @return number of in-memory transactions flushed
+	 */
+	public long getTransactions()
+	{
+		return transactions;
+	}
+
+	/**
+	 * @return number of mutation events which were queued for flushing
+	 */
+	public long getEvents()
+	{
+		return events;
+	}
+
+	/**
+	 * @return number of mutation events which were folded into other events and not applied separately
+	 */
+	public long getCoalescedEvents()
+	{
+		return coalescedEvents;
+	}
+
+	public long getMaxFlushTimeMs()
+	{
+		return maxFlushTimeMs;
+	}
+
+	public long getMaxBatchSize()
+	{
+		return maxBatchSize;
+	}
+
+	public synchronized double getAverageFlushTimeMs()
+	{
+		return flushes == 0 ? 0 : (double) totalFlushTimeMs / flushes;
+	}
+
+	public synchronized double getAverageBatchSize()
+	{
+		return flushes == 0 ? 0 : (double) (events - coalescedEvents) / flushes;
+	}
+
+	/**
+	 * @return number of transactions awaiting flush, as observed after the last flush
+	 */
+	public int getQueueDepth()
+	{
+		return queueDepth;
+	}
+
+	public int getMaxQueueDepth()
+	{
+		return maxQueueDepth;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format("flushes=%d, transactions=%d, events=%d, coalescedEvents=%d, "
+				+ "avgBatchSize=%.1f, maxBatchSize=%d, avgFlushTime=%.1fms, maxFlushTime=%dms, "
+				+ "queueDepth=%d, maxQueueDepth=%d",
+				flushes, transactions, events, coalescedEvents, getAverageBatchSize(), maxBatchSize,
+				getAverageFlushTimeMs(), maxFlushTimeMs, queueDepth, maxQueueDepth);
+	}
+}
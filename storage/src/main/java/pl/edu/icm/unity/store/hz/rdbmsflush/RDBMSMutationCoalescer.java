@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.hz.rdbmsflush;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds redundant {@link RDBMSMutationEvent}s together. Only adjacent mutations of the same object are
+ * folded, so the order of all remaining mutations is preserved and the final state of the database is
+ * the same as after applying the original sequence. Supported cases:
+ * <ul>
+ * <li> update followed by update of the same object - only the last update is retained,
+ * <li> create followed by update - the create is retained with the updated value,
+ * <li> create followed by delete - both are dropped.
+ * </ul>
+ * @author K. Benedyczak
+ */
+class RDBMSMutationCoalescer
+{
+	private static final String CREATE = "createWithId";
+	private static final String UPDATE = "updateByKey";
+	private static final String DELETE = "deleteByKey";
+
+	static List<RDBMSMutationEvent> coalesce(List<RDBMSMutationEvent> events)
+	{
+		List<RDBMSMutationEvent> ret = new ArrayList<>(events.size());
+		for (RDBMSMutationEvent event: events)
+		{
+			RDBMSMutationEvent previous = ret.isEmpty() ? null : ret.get(ret.size() - 1);
+			if (previous == null || !isSameObject(previous, event))
+			{
+				ret.add(event);
+				continue;
+			}
+
+			if (isOperation(event, UPDATE, 2) && isOperation(previous, UPDATE, 2))
+			{
+				ret.set(ret.size() - 1, event);
+			} else if (isOperation(event, UPDATE, 2) && isOperation(previous, CREATE, 2))
+			{
+				ret.set(ret.size() - 1, new RDBMSMutationEvent(previous.getDao(), CREATE,
+						previous.getArgs()[0], event.getArgs()[1]));
+			} else if (isOperation(event, DELETE, 1) && isOperation(previous, CREATE, 2))
+			{
+				ret.remove(ret.size() - 1);
+			} else
+			{
+				ret.add(event);
+			}
+		}
+		return ret;
+	}
+
+	private static boolean isSameObject(RDBMSMutationEvent a, RDBMSMutationEvent b)
+	{
+		if (!a.getDao().equals(b.getDao()))
+			return false;
+		Object[] argsA = a.getArgs();
+		Object[] argsB = b.getArgs();
+		return argsA != null && argsB != null && argsA.length > 0 && argsB.length > 0
+				&& argsA[0] instanceof Long && argsA[0].equals(argsB[0]);
+	}
+
+	private static boolean isOperation(RDBMSMutationEvent event, String operation, int argsNum)
+	{
+		return operation.equals(event.getOperation()) && event.getArgs().length == argsNum;
+	}
+}
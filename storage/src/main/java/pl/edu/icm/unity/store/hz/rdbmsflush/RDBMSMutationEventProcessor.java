@@ -4,6 +4,9 @@
  */
 package pl.edu.icm.unity.store.hz.rdbmsflush;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
@@ -18,7 +21,8 @@ import pl.edu.icm.unity.base.utils.Log;
 import pl.edu.icm.unity.store.rdbms.RDBMSDAO;
 
 /**
- * Applies RDBMS mutation described by {@link RDBMSMutationEvent}
+ * Applies RDBMS mutation described by {@link RDBMSMutationEvent}. DAO operations are resolved
+ * upfront to method handles bound to the target DAO, so applying an event doesn't involve reflection.
  * @author K. Benedyczak
  */
 @Component
@@ -27,16 +31,18 @@ public class RDBMSMutationEventProcessor
 	private static final Logger log = Log.getLogger(Log.U_SERVER_DB,
 			RDBMSMutationEventProcessor.class);
 	
-	private Map<String, Map<String, Method>> daoMethods;
-	private Map<String, RDBMSDAO> daos;
+	private static final MethodType INVOKER_TYPE = MethodType.methodType(void.class, Object[].class);
+	
+	private Map<String, Map<String, MethodHandle>> daoMethods;
 	
 	@Autowired
 	public RDBMSMutationEventProcessor(Map<String, RDBMSDAO> daos)
 	{
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
 		daoMethods = new HashMap<>();
 		for (Map.Entry<String, RDBMSDAO> entry: daos.entrySet())
 		{
-			Map<String, Method> methods = new HashMap<>();
+			Map<String, MethodHandle> methods = new HashMap<>();
 			daoMethods.put(entry.getKey(), methods);
 			
 			Class<? extends RDBMSDAO> clazz = entry.getValue().getClass();
@@ -46,37 +52,59 @@ public class RDBMSMutationEventProcessor
 				if (m.getDeclaringClass().equals(Object.class) || m.isSynthetic())
 					continue;
 				
-				if (methods.put(m.getName(), m) != null)
+				if (methods.put(m.getName(), toInvoker(lookup, m, entry.getValue())) != null)
 					throw new IllegalStateException("RDBMSDAO " + entry.getKey() + 
 							" has methods with ambigous names: " + m.getName() + 
 							", this is not supported.");
 			}
 		}
-		this.daos = daos;
+	}
+	
+	/**
+	 * @return handle of (Object[])void type, invoking the given method on the given DAO 
+	 * with arguments spread from the array.
+	 */
+	private static MethodHandle toInvoker(MethodHandles.Lookup lookup, Method method, RDBMSDAO dao)
+	{
+		try
+		{
+			return lookup.unreflect(method)
+					.bindTo(dao)
+					.asSpreader(Object[].class, method.getParameterCount())
+					.asType(INVOKER_TYPE);
+		} catch (IllegalAccessException e)
+		{
+			throw new IllegalStateException("Can not access RDBMSDAO method " + method, e);
+		}
 	}
 	
 	public void apply(RDBMSMutationEvent event, SqlSession sql)
 	{
-		Map<String, Method> daoM = daoMethods.get(event.getDao());
+		Map<String, MethodHandle> daoM = daoMethods.get(event.getDao());
 		if (daoM == null)
 			throw new IllegalStateException("Unknown DAO, this is fatal error: " + event.getDao());
 		
 		try
 		{
 			invokeOnDAO(daoM, event, sql);
-		} catch (Exception e)
+		} catch (PersistenceException e)
+		{
+			throw e;
+		} catch (Throwable e)
 		{
 			throw new PersistenceException(e);
 		}
 	}
 	
-	private void invokeOnDAO(Map<String, Method> daoM, RDBMSMutationEvent event, SqlSession sql) 
-			throws Exception
+	private void invokeOnDAO(Map<String, MethodHandle> daoM, RDBMSMutationEvent event, SqlSession sql) 
+			throws Throwable
 	{
-		Method method = daoM.get(event.getOperation());
-		RDBMSDAO dao = daos.get(event.getDao());
+		MethodHandle method = daoM.get(event.getOperation());
+		if (method == null)
+			throw new IllegalStateException("Unknown operation " + event.getOperation() + 
+					" of DAO " + event.getDao());
 		if (log.isTraceEnabled())
 			log.trace("Will apply event {} with method {}", event, method);
-		method.invoke(dao, event.getArgs());
+		method.invokeExact(event.getArgs());
 	}
 }
@@ -0,0 +1,18 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.hz.snapshot;
+
+/**
+ * Access to the HzSnapshot.xml operations.
+ * @author K. Benedyczak
+ */
+public interface FlushSequenceMapper
+{
+	Long getSequence();
+	
+	void insertSequence(long sequence);
+	
+	void updateSequence(long sequence);
+}
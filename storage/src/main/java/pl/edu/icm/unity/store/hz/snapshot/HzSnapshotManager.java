@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.hz.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.pool.KryoPool;
+import com.hazelcast.core.DistributedObject;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IAtomicLong;
+import com.hazelcast.core.IMap;
+
+import pl.edu.icm.unity.base.utils.Log;
+import pl.edu.icm.unity.store.StorageConfiguration;
+import pl.edu.icm.unity.store.StorageEngine;
+import pl.edu.icm.unity.store.api.tx.TransactionalRunner;
+import pl.edu.icm.unity.store.hz.GenericBasicHzCRUD;
+import pl.edu.icm.unity.store.hz.HzConfiguration;
+import pl.edu.icm.unity.store.hz.HzDAO;
+import pl.edu.icm.unity.store.hz.rdbmsflush.RDBMSEventSink;
+import pl.edu.icm.unity.store.rdbms.tx.SQLTransactionTL;
+import pl.edu.icm.unity.store.rdbms.tx.SQLTransactionalRunner;
+
+/**
+ * Maintains a local snapshot file with the contents of the in-memory store.
+ * <p>
+ * Each RDBMS transaction performed by the flush process increases a flush sequence number,
+ * which is stored in the database in the same transaction. Snapshot is tagged with the flush
+ * sequence number of the last flushed transaction (and the DB schema version).
+ * On startup the snapshot is used only if its tag matches the database state, i.e. when nothing
+ * was written to the database after the snapshot was taken.
+ * <p>
+ * Snapshot is written only by the cluster member which is flushing data to the RDBMS,
+ * and only when there are no pending mutations in the flush queue.
+ * If any mutation appears while the snapshot is being written, the snapshot is discarded.
+ * <p>
+ * Snapshot contains all Hazelcast maps and atomic longs of the {@link HzDAO}s, with keys and values
+ * serialized with Kryo. It is read through a memory mapped buffer, or as a stream if it is too large
+ * to be mapped at once.
+ *
+ * @author K. Benedyczak
+ */
+@Component
+public class HzSnapshotManager
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, HzSnapshotManager.class);
+
+	private static final String MAGIC = "UNITY-HZ-SNAPSHOT";
+	private static final int FORMAT_VERSION = 1;
+	private static final byte MAP_ENTRY = 1;
+	private static final byte ATOMIC_LONG_ENTRY = 2;
+	private static final byte END = 0;
+	private static final int STREAM_BUFFER_SIZE = 1024*1024;
+
+	private final Path snapshotFile;
+	private final long intervalMs;
+	private final KryoPool kryoPool;
+	private final List<HzDAO> daos;
+	private final TransactionalRunner rdbmsTx;
+
+	private volatile String dbVersion;
+	private long lastSnapshotFlushSequence = -1;
+	private long lastSnapshotTime;
+
+	@Autowired
+	public HzSnapshotManager(StorageConfiguration systemCfg, KryoPool kryoPool, List<HzDAO> daos,
+			@Qualifier(SQLTransactionalRunner.NAME) TransactionalRunner rdbmsTx)
+	{
+		this.kryoPool = kryoPool;
+		this.daos = daos;
+		this.rdbmsTx = rdbmsTx;
+		Path file = null;
+		long interval = 0;
+		if (systemCfg.getEnumValue(StorageConfiguration.ENGINE, StorageEngine.class) == StorageEngine.hz)
+		{
+			HzConfiguration hzConfig = systemCfg.getEngineConfig();
+			if (hzConfig.isSet(HzConfiguration.SNAPSHOT_FILE))
+				file = hzConfig.getFileValue(HzConfiguration.SNAPSHOT_FILE, false).toPath();
+			interval = hzConfig.getLongValue(HzConfiguration.SNAPSHOT_INTERVAL) * 1000;
+		}
+		this.snapshotFile = file;
+		this.intervalMs = interval;
+	}
+
+	public boolean isEnabled()
+	{
+		return snapshotFile != null;
+	}
+
+	/**
+	 * Must be invoked in RDBMS transaction.
+	 * @return the current flush sequence number stored in database.
+	 */
+	public long readFlushSequence()
+	{
+		FlushSequenceMapper mapper = SQLTransactionTL.getSql().getMapper(FlushSequenceMapper.class);
+		Long sequence = mapper.getSequence();
+		if (sequence == null)
+		{
+			sequence = 0L;
+			mapper.insertSequence(sequence);
+		}
+		dbVersion = SQLTransactionTL.getSql().selectOne("getDBVersion");
+		return sequence;
+	}
+
+	/**
+	 * Must be invoked in the RDBMS transaction flushing the mutations.
+	 */
+	public void storeFlushSequence(long sequence)
+	{
+		FlushSequenceMapper mapper = SQLTransactionTL.getSql().getMapper(FlushSequenceMapper.class);
+		mapper.updateSequence(sequence);
+	}
+
+	/**
+	 * @return true if the configured interval has passed since the last snapshot and if there were
+	 * any changes flushed since then.
+	 */
+	public boolean isSnapshotDue(long flushSequence)
+	{
+		return isEnabled() && dbVersion != null && flushSequence != lastSnapshotFlushSequence 
+				&& System.currentTimeMillis() - lastSnapshotTime >= intervalMs;
+	}
+
+	/**
+	 * Writes snapshot if it is due, see {@link #isSnapshotDue(long)}. Must not be invoked in 
+	 * a Hazelcast transaction, as writing may take long time on large stores.
+	 */
+	public void writeSnapshotIfDue(HazelcastInstance hzInstance, long flushSequence)
+	{
+		if (isSnapshotDue(flushSequence))
+			writeSnapshot(hzInstance, flushSequence);
+	}
+
+	public void writeSnapshot(HazelcastInstance hzInstance, long flushSequence)
+	{
+		if (!isEnabled() || flushSequence == lastSnapshotFlushSequence || dbVersion == null)
+			return;
+		lastSnapshotTime = System.currentTimeMillis();
+		Path tmpFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+		try
+		{
+			if (!isFlushQueueEmpty(hzInstance))
+			{
+				log.debug("Skipping snapshot of in-memory data as there are pending changes");
+				return;
+			}
+			writeSnapshotFile(hzInstance, flushSequence, tmpFile);
+			if (!isFlushQueueEmpty(hzInstance))
+			{
+				log.debug("Discarding snapshot of in-memory data as data was changed in the meantime");
+				Files.deleteIfExists(tmpFile);
+				return;
+			}
+			Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			lastSnapshotFlushSequence = flushSequence;
+			log.info("Snapshot of in-memory data written to {} in {}ms (flush sequence {})", snapshotFile,
+					System.currentTimeMillis() - lastSnapshotTime, flushSequence);
+		} catch (Exception e)
+		{
+			log.warn("Writing snapshot of in-memory data failed", e);
+		}
+	}
+
+	/**
+	 * Removes the snapshot file, so it won't be used on the next startup.
+	 */
+	public void invalidate()
+	{
+		if (!isEnabled())
+			return;
+		lastSnapshotFlushSequence = -1;
+		try
+		{
+			Files.deleteIfExists(snapshotFile);
+		} catch (IOException e)
+		{
+			log.warn("Can not remove snapshot file " + snapshotFile, e);
+		}
+	}
+
+	/**
+	 * Restores contents of Hazelcast distributed objects from the snapshot. The snapshot is verified
+	 * to be up to date with the RDBMS contents.
+	 * @return false if snapshot was not restored. In such case the distributed objects may be
+	 * partially populated.
+	 */
+	public boolean restore(HazelcastInstance hzInstance)
+	{
+		if (!isEnabled())
+			return false;
+		if (!Files.isReadable(snapshotFile))
+		{
+			log.info("Snapshot of in-memory data {} is not available", snapshotFile);
+			return false;
+		}
+		long start = System.currentTimeMillis();
+		long dbFlushSequence = rdbmsTx.runInTransactionRet(() -> readFlushSequence());
+		try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ);
+				Input input = openInput(channel))
+		{
+			Kryo kryo = kryoPool.borrow();
+			try
+			{
+				if (!isSnapshotUpToDate(input, kryo, dbFlushSequence))
+					return false;
+				long entries = readContents(input, kryo, hzInstance);
+				lastSnapshotFlushSequence = dbFlushSequence;
+				log.info("Restored {} entries of in-memory data from snapshot {} in {}ms",
+						entries, snapshotFile, System.currentTimeMillis() - start);
+				return true;
+			} finally
+			{
+				kryoPool.release(kryo);
+			}
+		} catch (Exception e)
+		{
+			log.warn("Restoring in-memory data from snapshot " + snapshotFile + " failed", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Snapshot is read through a memory mapped buffer. Files which can not be mapped with a single
+	 * buffer are read as a stream.
+	 */
+	private Input openInput(FileChannel channel) throws IOException
+	{
+		if (channel.size() <= Integer.MAX_VALUE)
+			return new ByteBufferInput(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		log.debug("Snapshot of in-memory data {} is too large to be mapped, it will be streamed", 
+				snapshotFile);
+		return new Input(Channels.newInputStream(channel), STREAM_BUFFER_SIZE);
+	}
+
+	private boolean isSnapshotUpToDate(Input input, Kryo kryo, long dbFlushSequence)
+	{
+		if (!MAGIC.equals(input.readString()) || input.readInt() != FORMAT_VERSION)
+		{
+			log.info("Snapshot of in-memory data {} has unsupported format, ignoring it", snapshotFile);
+			return false;
+		}
+		long flushSequence = input.readLong();
+		String snapshotDBVersion = input.readString();
+		String kryoFingerprint = input.readString();
+		if (flushSequence != dbFlushSequence || !snapshotDBVersion.equals(dbVersion))
+		{
+			log.info("Snapshot of in-memory data {} is stale (flush sequence {}, DB version {}), "
+					+ "while database is at flush sequence {}, DB version {}", snapshotFile,
+					flushSequence, snapshotDBVersion, dbFlushSequence, dbVersion);
+			return false;
+		}
+		if (!kryoFingerprint.equals(getKryoFingerprint(kryo)))
+		{
+			log.info("Snapshot of in-memory data {} was created with different serialization settings, "
+					+ "ignoring it", snapshotFile);
+			return false;
+		}
+		return true;
+	}
+
+	private long readContents(Input input, Kryo kryo, HazelcastInstance hzInstance)
+	{
+		long entries = 0;
+		byte type;
+		while ((type = input.readByte()) != END)
+		{
+			String name = input.readString();
+			if (type == ATOMIC_LONG_ENTRY)
+			{
+				hzInstance.getAtomicLong(name).set(input.readLong());
+			} else if (type == MAP_ENTRY)
+			{
+				IMap<Object, Object> map = hzInstance.getMap(name);
+				int size = input.readInt();
+				Map<Object, Object> chunk = new HashMap<>();
+				for (int i = 0; i < size; i++)
+				{
+					chunk.put(kryo.readClassAndObject(input), kryo.readClassAndObject(input));
+					if (chunk.size() >= GenericBasicHzCRUD.LOAD_CHUNK_SIZE)
+					{
+						map.putAll(chunk);
+						chunk.clear();
+					}
+				}
+				if (!chunk.isEmpty())
+					map.putAll(chunk);
+				entries += size;
+			} else
+			{
+				throw new IllegalStateException("Snapshot is corrupted, unknown entry type " + type);
+			}
+		}
+		return entries;
+	}
+
+	private void writeSnapshotFile(HazelcastInstance hzInstance, long flushSequence, Path file)
+			throws IOException
+	{
+		Kryo kryo = kryoPool.borrow();
+		try (Output output = new Output(new BufferedOutputStream(Files.newOutputStream(file))))
+		{
+			output.writeString(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			output.writeLong(flushSequence);
+			output.writeString(dbVersion);
+			output.writeString(getKryoFingerprint(kryo));
+			for (DistributedObject distributedObject: hzInstance.getDistributedObjects())
+			{
+				if (!isOwnedByDAO(distributedObject.getName()))
+					continue;
+				if (distributedObject instanceof IMap)
+					writeMap(output, kryo, (IMap<?, ?>) distributedObject);
+				else if (distributedObject instanceof IAtomicLong)
+					writeAtomicLong(output, (IAtomicLong) distributedObject);
+			}
+			output.writeByte(END);
+		} finally
+		{
+			kryoPool.release(kryo);
+		}
+	}
+
+	private void writeMap(Output output, Kryo kryo, IMap<?, ?> map)
+	{
+		Set<? extends Map.Entry<?, ?>> entries = map.entrySet();
+		output.writeByte(MAP_ENTRY);
+		output.writeString(map.getName());
+		output.writeInt(entries.size());
+		for (Map.Entry<?, ?> entry: entries)
+		{
+			kryo.writeClassAndObject(output, entry.getKey());
+			kryo.writeClassAndObject(output, entry.getValue());
+		}
+	}
+
+	private void writeAtomicLong(Output output, IAtomicLong atomicLong)
+	{
+		output.writeByte(ATOMIC_LONG_ENTRY);
+		output.writeString(atomicLong.getName());
+		output.writeLong(atomicLong.get());
+	}
+
+	private boolean isOwnedByDAO(String objectName)
+	{
+		for (HzDAO dao: daos)
+			if (objectName.startsWith(dao.getStoreId()))
+				return true;
+		return false;
+	}
+
+	private boolean isFlushQueueEmpty(HazelcastInstance hzInstance)
+	{
+		return hzInstance.getQueue(RDBMSEventSink.RDBMS_EVENTS_QUEUE).isEmpty();
+	}
+
+	/**
+	 * @return description of Kryo class registrations. Snapshot can be read only if
+	 * the registrations are the same as when it was written.
+	 */
+	private String getKryoFingerprint(Kryo kryo)
+	{
+		StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < kryo.getNextRegistrationId(); i++)
+		{
+			Registration registration = kryo.getRegistration(i);
+			if (registration != null)
+				ret.append(i).append('=').append(registration.getType().getName()).append(';');
+		}
+		return ret.toString();
+	}
+}
@@ -0,0 +1,10 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+
+/**
+ * Local snapshots of the in-memory data, used to speed up restarts.
+ * @author K. Benedyczak
+ */
+package pl.edu.icm.unity.store.hz.snapshot;
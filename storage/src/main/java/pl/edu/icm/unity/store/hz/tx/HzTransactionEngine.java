@@ -249,6 +249,7 @@ public class HzTransactionEngine implements TransactionEngine
 		{
 			log.trace("Transactions stack is empty for {} releasing resources",
 						 pjp.toShortString());
+			transactionsStack.runPostCompletionActions();
 		}
 	}
 }
@@ -6,13 +6,18 @@ package pl.edu.icm.unity.store.impl.attribute;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
 import com.hazelcast.core.TransactionalMap;
 import com.hazelcast.query.EntryObject;
 import com.hazelcast.query.PredicateBuilder;
@@ -29,10 +34,15 @@ import pl.edu.icm.unity.store.types.StoredAttribute;
 import pl.edu.icm.unity.types.basic.AttributeExt;
 import pl.edu.icm.unity.types.basic.AttributeType;
 import pl.edu.icm.unity.types.basic.Group;
+import pl.edu.icm.unity.types.basic.GroupMembership;
 
 
 /**
- * Hazelcast implementation of attribute store.
+ * Hazelcast implementation of attribute store. Besides the main map two additional maps are maintained:
+ * the first one maps (entity, group, attribute name) to the key of the attribute, the second one maps entity
+ * to the keys of all its attributes. Therefore access to a single attribute or to all attributes of an
+ * entity doesn't require querying the main map. As the persisted data doesn't enforce uniqueness of 
+ * (entity, group, attribute name), both maps hold sets of keys.
  * 
  * @author K. Benedyczak
  */
@@ -57,20 +67,19 @@ public class AttributeHzStore extends GenericBasicHzCRUD<StoredAttribute> implem
 
 	private void cascadeAttributeTypeRemoval(long key, String name)
 	{
-		PredicateBuilder pBuilder = getAttributePredicate(name, null, null);
-		genericDelete(pBuilder);
+		PredicateBuilder pBuilder = getAttributePredicate(name, null);
+		genericDelete(getMap().keySet(pBuilder));
 	}
 	
 	private void cascadeEntityRemoval(long key, String name)
 	{
-		PredicateBuilder pBuilder = getAttributePredicate(null, key, null);
-		genericDelete(pBuilder);
+		genericDelete(getEntityAttributeKeys(key));
 	}
 
 	private void cascadeGroupRemoval(long key, String name)
 	{
-		PredicateBuilder pBuilder = getAttributePredicate(null, null, name);
-		genericDelete(pBuilder);
+		PredicateBuilder pBuilder = getAttributePredicate(null, name);
+		genericDelete(getMap().keySet(pBuilder));
 	}
 	
 	private void cascadeAttributeTypeUpdate(long modifiedId, String modifiedName, AttributeType newValue)
@@ -79,7 +88,7 @@ public class AttributeHzStore extends GenericBasicHzCRUD<StoredAttribute> implem
 		if (newName.equals(modifiedName))
 			return;
 
-		PredicateBuilder pBuilder = getAttributePredicate(modifiedName, null, null);
+		PredicateBuilder pBuilder = getAttributePredicate(modifiedName, null);
 		TransactionalMap<Long, StoredAttribute> hMap = getMap();
 		Set<Long> keys = hMap.keySet(pBuilder);
 		for (Long key: keys)
@@ -90,6 +99,8 @@ public class AttributeHzStore extends GenericBasicHzCRUD<StoredAttribute> implem
 			preUpdateCheck(sa, clone);
 			firePreUpdate(key, null, clone, sa);
 			hMap.put(key, clone);
+			removeFromIndex(getAttributeKeyMap(), getAttributeKey(sa), key);
+			addToIndex(getAttributeKeyMap(), getAttributeKey(clone), key);
 		}
 	}
 
@@ -99,7 +110,7 @@ public class AttributeHzStore extends GenericBasicHzCRUD<StoredAttribute> implem
 		if (newName.equals(modifiedName))
 			return;
 
-		PredicateBuilder pBuilder = getAttributePredicate(null, null, modifiedName);
+		PredicateBuilder pBuilder = getAttributePredicate(null, modifiedName);
 		TransactionalMap<Long, StoredAttribute> hMap = getMap();
 		Set<Long> keys = hMap.keySet(pBuilder);
 		for (Long key: keys)
@@ -110,9 +121,75 @@ public class AttributeHzStore extends GenericBasicHzCRUD<StoredAttribute> implem
 			preUpdateCheck(sa, clone);
 			firePreUpdate(key, null, clone, sa);
 			hMap.put(key, clone);
+			removeFromIndex(getAttributeKeyMap(), getAttributeKey(sa), key);
+			addToIndex(getAttributeKeyMap(), getAttributeKey(clone), key);
 		}
 	}
 	
+	@Override
+	protected long createNoPropagateToRDBMS(StoredAttribute obj) throws IllegalArgumentException
+	{
+		long key = super.createNoPropagateToRDBMS(obj);
+		addToIndex(key, obj);
+		return key;
+	}
+	
+	@Override
+	public void createWithId(long key, StoredAttribute obj)
+	{
+		super.createWithId(key, obj);
+		addToIndex(key, obj);
+	}
+	
+	@Override
+	protected void putLoaded(HazelcastInstance hzInstance, Map<Long, StoredAttribute> chunk)
+	{
+		super.putLoaded(hzInstance, chunk);
+		Map<String, Set<Long>> attributeKeys = new HashMap<>(chunk.size());
+		Map<Long, Set<Long>> entityKeys = new HashMap<>();
+		for (Map.Entry<Long, StoredAttribute> entry: chunk.entrySet())
+		{
+			attributeKeys.computeIfAbsent(getAttributeKey(entry.getValue()), k -> new HashSet<>())
+				.add(entry.getKey());
+			entityKeys.computeIfAbsent(entry.getValue().getEntityId(), k -> new HashSet<>())
+				.add(entry.getKey());
+		}
+		putLoadedIndex(hzInstance.getMap(STORE_ID + "_keys"), attributeKeys);
+		putLoadedIndex(hzInstance.getMap(STORE_ID + "_byEntity"), entityKeys);
+	}
+	
+	/**
+	 * Elements of a single index entry may be loaded in subsequent chunks, so entries are merged 
+	 * with the already loaded ones.
+	 */
+	private <K> void putLoadedIndex(IMap<K, Set<Long>> index, Map<K, Set<Long>> loadedChunk)
+	{
+		Map<K, Set<Long>> existing = index.getAll(loadedChunk.keySet());
+		for (Map.Entry<K, Set<Long>> entry: existing.entrySet())
+			loadedChunk.get(entry.getKey()).addAll(entry.getValue());
+		index.putAll(loadedChunk);
+	}
+	
+	@Override
+	public void updateByKey(long id, StoredAttribute obj)
+	{
+		StoredAttribute old = getByKey(id);
+		super.updateByKey(id, obj);
+		if (!getAttributeKey(old).equals(getAttributeKey(obj)))
+		{
+			removeFromIndex(id, old);
+			addToIndex(id, obj);
+		}
+	}
+	
+	@Override
+	public StoredAttribute deleteByKeyRet(long id, boolean fireEvent)
+	{
+		StoredAttribute removed = super.deleteByKeyRet(id, fireEvent);
+		removeFromIndex(id, removed);
+		return removed;
+	}
+	
 	@Override
 	public void updateAttribute(StoredAttribute a)
 	{
@@ -123,15 +200,13 @@ public class AttributeHzStore extends GenericBasicHzCRUD<StoredAttribute> implem
 
 	private void updateAttributeHZOnly(StoredAttribute a)
 	{
-		PredicateBuilder pBuilder = getAttributePredicate(a.getAttribute().getName(), 
-				a.getEntityId(), a.getAttribute().getGroupPath());
-		TransactionalMap<Long, StoredAttribute> hMap = getMap();
-		Set<Long> values = hMap.keySet(pBuilder);
-		
-		if (values.isEmpty())
+		Set<Long> keys = getAttributeKeys(a.getEntityId(), a.getAttribute().getGroupPath(), 
+				a.getAttribute().getName());
+		if (keys.isEmpty())
 			throw new IllegalArgumentException("attribute [" + a.getAttribute().getName() + 
 					"] does not exist");
-		long id = values.iterator().next();
+		long id = keys.iterator().next();
+		TransactionalMap<Long, StoredAttribute> hMap = getMap();
 		StoredAttribute old = hMap.get(id);
 		preUpdateCheck(old, a);
 		firePreUpdate(id, null, a, old);
@@ -141,8 +216,7 @@ public class AttributeHzStore extends GenericBasicHzCRUD<StoredAttribute> implem
 	@Override
 	public void deleteAttribute(String attribute, long entityId, String group)
 	{
-		PredicateBuilder pBuilder = getAttributePredicate(attribute, entityId, group);
-		genericDelete(pBuilder);
+		genericDelete(getAttributeKeys(entityId, group, attribute));
 		HzTransactionTL.enqueueRDBMSMutation(new RDBMSMutationEvent(rdbmsCounterpartDaoName, 
 				"deleteAttribute", attribute, entityId, group));
 	}
@@ -150,50 +224,71 @@ public class AttributeHzStore extends GenericBasicHzCRUD<StoredAttribute> implem
 	@Override
 	public void deleteAttributesInGroup(long entityId, String group)
 	{
-		PredicateBuilder pBuilder = getAttributePredicate(null, entityId, group);
-		genericDelete(pBuilder);
+		TransactionalMap<Long, StoredAttribute> hMap = getMap();
+		Set<Long> keys = new HashSet<>();
+		for (Long key: getEntityAttributeKeys(entityId))
+			if (group.equals(hMap.get(key).getAttribute().getGroupPath()))
+				keys.add(key);
+		genericDelete(keys);
 		HzTransactionTL.enqueueRDBMSMutation(new RDBMSMutationEvent(rdbmsCounterpartDaoName, 
 				"deleteAttributesInGroup", entityId, group));
 	}
 
-	private void genericDelete(PredicateBuilder pBuilder)
+	private void genericDelete(Collection<Long> keys)
 	{
 		TransactionalMap<Long, StoredAttribute> hMap = getMap();
-		Set<Long> values = hMap.keySet(pBuilder);
-		for (Long key: values)
+		for (Long key: keys)
 		{
-			firePreRemove(key, null, hMap.get(key));
+			StoredAttribute removed = hMap.get(key);
+			firePreRemove(key, null, removed);
 			hMap.remove(key);
+			removeFromIndex(key, removed);
 		}
 	}
 
 	@Override
 	public List<StoredAttribute> getAttributes(String attribute, Long entityId, String group)
 	{
-		PredicateBuilder pBuilder = getAttributePredicate(attribute, entityId, group);
+		if (entityId != null)
+			return getEntityStoredAttributes(entityId, attribute, group);
+		PredicateBuilder pBuilder = getAttributePredicate(attribute, group);
 		TransactionalMap<Long, StoredAttribute> hMap = getMap();
-		Collection<StoredAttribute> values = hMap.values(pBuilder);
+		Collection<StoredAttribute> values = pBuilder == null ? hMap.values() : hMap.values(pBuilder);
 		return new ArrayList<>(values);
 	}
 	
 	@Override
 	public List<AttributeExt> getEntityAttributes(long entityId, String attribute, String group)
 	{
-		PredicateBuilder pBuilder = getAttributePredicate(attribute, entityId, group);
-		TransactionalMap<Long, StoredAttribute> hMap = getMap();
-		Collection<StoredAttribute> values = hMap.values(pBuilder);
+		List<StoredAttribute> values = getEntityStoredAttributes(entityId, attribute, group);
 		List<AttributeExt> ret = new ArrayList<>(values.size());
 		for (StoredAttribute sa: values)
 			ret.add(sa.getAttribute());
 		return ret;
 	}
 	
-	private PredicateBuilder getAttributePredicate(String attribute, Long entityId, String group)
+	private List<StoredAttribute> getEntityStoredAttributes(long entityId, String attribute, String group)
+	{
+		TransactionalMap<Long, StoredAttribute> hMap = getMap();
+		Set<Long> keys = attribute != null && group != null ? 
+				getAttributeKeys(entityId, group, attribute) : getEntityAttributeKeys(entityId);
+		List<StoredAttribute> ret = new ArrayList<>(keys.size());
+		for (Long key: keys)
+		{
+			StoredAttribute sa = hMap.get(key);
+			if (attribute != null && !attribute.equals(sa.getAttribute().getName()))
+				continue;
+			if (group != null && !group.equals(sa.getAttribute().getGroupPath()))
+				continue;
+			ret.add(sa);
+		}
+		return ret;
+	}
+	
+	private PredicateBuilder getAttributePredicate(String attribute, String group)
 	{
 		EntryObject e = new PredicateBuilder().getEntryObject();
 		PredicateBuilder pBuilder = null;
-		if (entityId != null)
-			pBuilder = safeAdd(pBuilder, e.get("entityId").equal(entityId));
 		if (attribute != null)
 			pBuilder = safeAdd(pBuilder, e.get("name").equal(attribute));
 		if (group != null)
@@ -209,12 +304,80 @@ public class AttributeHzStore extends GenericBasicHzCRUD<StoredAttribute> implem
 	@Override
 	public List<StoredAttribute> getAttributesOfGroupMembers(String group)
 	{
-		Set<Long> members = membershipDAO.getMembers(group).stream()
-				.map(mem -> mem.getEntityId())
-				.collect(Collectors.toSet());
 		TransactionalMap<Long, StoredAttribute> hMap = getMap();
-		return hMap.values().stream()
-				.filter(sa -> members.contains(sa.getEntityId()))
-				.collect(Collectors.toList());
+		List<StoredAttribute> ret = new ArrayList<>();
+		for (GroupMembership membership: membershipDAO.getMembers(group))
+			for (Long key: getEntityAttributeKeys(membership.getEntityId()))
+				ret.add(hMap.get(key));
+		return ret;
+	}
+	
+	private void addToIndex(long key, StoredAttribute attribute)
+	{
+		addToIndex(getAttributeKeyMap(), getAttributeKey(attribute), key);
+		addToIndex(getEntityMap(), attribute.getEntityId(), key);
+	}
+	
+	private void removeFromIndex(long key, StoredAttribute attribute)
+	{
+		removeFromIndex(getAttributeKeyMap(), getAttributeKey(attribute), key);
+		removeFromIndex(getEntityMap(), attribute.getEntityId(), key);
+	}
+	
+	private static <K> void addToIndex(TransactionalMap<K, Set<Long>> index, K indexKey, long key)
+	{
+		Set<Long> keys = index.getForUpdate(indexKey);
+		Set<Long> updated = keys == null ? new HashSet<>() : new HashSet<>(keys);
+		updated.add(key);
+		index.put(indexKey, updated);
+	}
+
+	private static <K> void removeFromIndex(TransactionalMap<K, Set<Long>> index, K indexKey, long key)
+	{
+		Set<Long> keys = index.getForUpdate(indexKey);
+		if (keys == null)
+			return;
+		Set<Long> updated = new HashSet<>(keys);
+		updated.remove(key);
+		if (updated.isEmpty())
+			index.remove(indexKey);
+		else
+			index.put(indexKey, updated);
+	}
+	
+	private Set<Long> getAttributeKeys(long entityId, String group, String name)
+	{
+		Set<Long> keys = getAttributeKeyMap().get(getAttributeKey(entityId, group, name));
+		return keys == null ? Collections.emptySet() : keys;
+	}
+	
+	private Set<Long> getEntityAttributeKeys(long entityId)
+	{
+		Set<Long> keys = getEntityMap().get(entityId);
+		return keys == null ? Collections.emptySet() : keys;
+	}
+	
+	private static String getAttributeKey(StoredAttribute attribute)
+	{
+		return getAttributeKey(attribute.getEntityId(), attribute.getAttribute().getGroupPath(), 
+				attribute.getAttribute().getName());
+	}
+
+	/**
+	 * Name is prefixed with its length, so the key is unambiguous for any group and name.
+	 */
+	private static String getAttributeKey(long entityId, String group, String name)
+	{
+		return entityId + ":" + name.length() + ":" + name + group;
+	}
+	
+	private TransactionalMap<String, Set<Long>> getAttributeKeyMap()
+	{
+		return HzTransactionTL.getHzContext().getMap(STORE_ID + "_keys");
+	}
+
+	private TransactionalMap<Long, Set<Long>> getEntityMap()
+	{
+		return HzTransactionTL.getHzContext().getMap(STORE_ID + "_byEntity");
 	}
 }
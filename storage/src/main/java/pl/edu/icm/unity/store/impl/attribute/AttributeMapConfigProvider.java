@@ -17,8 +17,8 @@ import pl.edu.icm.unity.store.types.StoredAttribute;
 
 
 /**
- * Configures attributes map: indices on entity, group and name. Adds custom extractor of those attributes
- * from StoredAttribute.
+ * Configures attributes map: indices on group and name. Adds custom extractor of those attributes
+ * from StoredAttribute. Attributes of entity are found with a dedicated map, see {@link AttributeHzStore}.
  * @author K. Benedyczak
  */
 @Component
@@ -32,9 +32,6 @@ public class AttributeMapConfigProvider implements MapConfigProvider
 
 		configureIndexedAttribute(mapConfig, NameExtractor.class.getName(), "name");
 		configureIndexedAttribute(mapConfig, GroupExtractor.class.getName(), "group");
-
-		MapIndexConfig indexCfg = new MapIndexConfig("entityId", false);
-		mapConfig.addMapIndexConfig(indexCfg);
 		return mapConfig;
 	}
 	
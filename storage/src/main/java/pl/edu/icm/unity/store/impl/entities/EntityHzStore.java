@@ -51,6 +51,12 @@ public class EntityHzStore extends GenericBasicHzCRUD<EntityInformation> impleme
 		return key;
 	}
 
+	@Override
+	protected long getKeyOfLoaded(EntityInformation loaded, long sequentialKey)
+	{
+		return loaded.getId();
+	}
+
 	@Override
 	public long create(EntityInformation obj) throws IllegalArgumentException
 	{
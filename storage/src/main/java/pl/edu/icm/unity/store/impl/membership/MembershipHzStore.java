@@ -8,17 +8,22 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
 import com.hazelcast.core.TransactionalMap;
+import com.hazelcast.query.EntryObject;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.PredicateBuilder;
 
 import pl.edu.icm.unity.base.utils.Log;
-import pl.edu.icm.unity.store.api.GroupDAO;
 import pl.edu.icm.unity.store.api.MembershipDAO;
+import pl.edu.icm.unity.store.hz.GenericBasicHzCRUD;
 import pl.edu.icm.unity.store.hz.HzDAO;
 import pl.edu.icm.unity.store.hz.rdbmsflush.RDBMSMutationEvent;
 import pl.edu.icm.unity.store.hz.tx.HzTransactionTL;
@@ -31,11 +36,11 @@ import pl.edu.icm.unity.types.basic.GroupMembership;
 /**
  * Hazelcast impl of {@link MembershipDAO}.
  * 
- * Implementation is based on two maps, one indexed with entities another with groups - 
- * for quick lookup (duplicated values are anyway very small). Each of maps contains
- * another map as value - indexed with group and entity respectively. This allows for 
- * quick search in all cases.
- * 
+ * Implementation is based on a single, flat map, with one entry per each (entity, group) pair.
+ * The map has indices on entity and group (see {@link MembershipMapConfigProvider}), which are 
+ * used for by-entity and by-group lookups. Thanks to that adding or removing a member 
+ * costs the same regardless of the group size and concurrent additions to the same group 
+ * do not conflict.
  * 
  * @author K. Benedyczak
  */
@@ -49,15 +54,12 @@ public class MembershipHzStore implements MembershipDAO, HzDAO
 	private static final String RDBMS_DAO_NAME = MembershipRDBMSStore.BEAN;
 
 	private MembershipRDBMSStore rdbmsStore;
-
-	private GroupDAO groupDAO;
 	
 	@Autowired
 	public MembershipHzStore(MembershipRDBMSStore rdbmsStore, GroupHzStore groupDAO, 
 			EntityHzStore entityDAO)
 	{
 		this.rdbmsStore = rdbmsStore;
-		this.groupDAO = groupDAO;
 		groupDAO.addRemovalHandler(this::groupRemoved);
 		groupDAO.addUpdateHandler(this::groupUpdated);
 		entityDAO.addRemovalHandler(this::entityRemoved);
@@ -68,59 +70,60 @@ public class MembershipHzStore implements MembershipDAO, HzDAO
 		if (oldName.equals(newValue.getName()))
 			return;
 		
-		TransactionalMap<String, Map<Long, GroupMembership>> byGroupMap = getByGroupMap();
-		TransactionalMap<Long, Map<String, GroupMembership>> byEntityMap = getByEntityMap();
-		Map<Long, GroupMembership> map = byGroupMap.remove(oldName);
-		if (map == null)
-			return;
-		for (Map.Entry<Long, GroupMembership> e: map.entrySet())
+		TransactionalMap<String, GroupMembership> map = getMap();
+		for (GroupMembership gm: getMembers(oldName))
 		{
-			GroupMembership gm = e.getValue();
-			gm.setGroup(newValue.getName());
-			
-			Map<String, GroupMembership> entityMemberships = byEntityMap.get(e.getKey());
-			GroupMembership removed = entityMemberships.remove(oldName);
-			GroupMembership cloned = new GroupMembership(removed);
+			map.remove(getKey(gm.getEntityId(), oldName));
+			GroupMembership cloned = new GroupMembership(gm);
 			cloned.setGroup(newValue.getName());
-			entityMemberships.put(newValue.getName(), cloned);
-			byEntityMap.put(e.getKey(), entityMemberships);
+			map.put(getKey(cloned.getEntityId(), cloned.getGroup()), cloned);
 		}
-		byGroupMap.put(newValue.getName(), map);
-		
 	}
 	
 	private void groupRemoved(long removedId, String removedName)
 	{
-		cascadeRemoved(getByGroupMap().get(removedName));
+		cascadeRemoved(getMembers(removedName));
 	}
 
 	private void entityRemoved(long removedId, String removedName)
 	{
-		cascadeRemoved(getByEntityMap().get(removedId));
+		cascadeRemoved(getEntityMembership(removedId));
 	}
 
-	private void cascadeRemoved(Map<?, GroupMembership> toRemove)
+	private void cascadeRemoved(List<GroupMembership> toRemove)
 	{
-		if (toRemove == null)
-			return;
-		for (GroupMembership gm: toRemove.values())
+		for (GroupMembership gm: toRemove)
 			deleteByKeyHzOnly(gm.getEntityId(), gm.getGroup());
 	}
 	
 	@Override
-	public void populateFromRDBMS(HazelcastInstance hzInstance)
+	public long populateFromRDBMS(HazelcastInstance hzInstance)
 	{
 		log.info("Loading group memberships from persistent storage");
-		List<Group> allGroups = groupDAO.getAll();
-		for (Group group: allGroups)
-		{
-			List<GroupMembership> all = rdbmsStore.getMembers(group.getName());
-			for (GroupMembership element: all)
-				createHZOnly(element);
-		}
-		log.info("Loaded {} group memberships from persistent storage", allGroups.size());
+		IMap<String, GroupMembership> map = hzInstance.getMap(STORE_ID);
+		Map<String, GroupMembership> chunk = new HashMap<>();
+		AtomicLong loaded = new AtomicLong();
+		rdbmsStore.streamAll(element -> {
+			chunk.put(getKey(element.getEntityId(), element.getGroup()), element);
+			if (chunk.size() >= GenericBasicHzCRUD.LOAD_CHUNK_SIZE)
+			{
+				map.putAll(chunk);
+				chunk.clear();
+			}
+			loaded.incrementAndGet();
+		});
+		if (!chunk.isEmpty())
+			map.putAll(chunk);
+		log.info("Loaded {} group memberships from persistent storage", loaded.get());
+		return loaded.get();
 	}
 
+	@Override
+	public String getStoreId()
+	{
+		return STORE_ID;
+	}
+	
 	@Override
 	public void create(GroupMembership obj)
 	{
@@ -131,30 +134,7 @@ public class MembershipHzStore implements MembershipDAO, HzDAO
 
 	public void createHZOnly(GroupMembership obj)
 	{
-		createByEntity(obj);
-		createByGroup(obj);
-	}
-	
-	private void createByEntity(GroupMembership obj)
-	{
-		TransactionalMap<Long, Map<String, GroupMembership>> mapByEntity = getByEntityMap();
-		Map<String, GroupMembership> map = mapByEntity.get(obj.getEntityId());
-		if (map == null)
-			map = new HashMap<>(128);
-		
-		map.put(obj.getGroup(), obj);
-		mapByEntity.put(obj.getEntityId(), map);
-	}
-
-	private void createByGroup(GroupMembership obj)
-	{
-		TransactionalMap<String, Map<Long, GroupMembership>> mapByGroup = getByGroupMap();
-		Map<Long, GroupMembership> map = mapByGroup.get(obj.getGroup());
-		if (map == null)
-			map = new HashMap<>();
-		
-		map.put(obj.getEntityId(), obj);
-		mapByGroup.put(obj.getGroup(), map);
+		getMap().put(getKey(obj.getEntityId(), obj.getGroup()), obj);
 	}
 	
 	@Override
@@ -167,95 +147,52 @@ public class MembershipHzStore implements MembershipDAO, HzDAO
 
 	public void deleteByKeyHzOnly(long entityId, String group)
 	{
-		removeFromEntitesMap(entityId, group);
-		removeFromGroupsMap(entityId, group);
-	}
-	
-	private void removeFromEntitesMap(long entityId, String group)
-	{
-		TransactionalMap<Long, Map<String, GroupMembership>> mapByEntity = getByEntityMap();
-		Map<String, GroupMembership> entityMembership = mapByEntity.get(entityId);
-		if (entityMembership != null)
-		{
-			GroupMembership removed = entityMembership.remove(group);
-			if (removed != null)
-			{
-				if (entityMembership.isEmpty())
-					mapByEntity.remove(entityId);
-				else
-					mapByEntity.put(entityId, entityMembership);
-				return;
-			}
-		}
-		throw new IllegalArgumentException("Entity " + entityId + 
-				" is not a member of group " + group);
-	}
-
-	private void removeFromGroupsMap(long entityId, String group)
-	{
-		TransactionalMap<String, Map<Long, GroupMembership>> mapByGroup = getByGroupMap();
-		Map<Long, GroupMembership> groupMembers = mapByGroup.get(group);
-		if (groupMembers != null)
-		{
-			GroupMembership removed = groupMembers.remove(entityId);
-			if (removed != null)
-			{
-				if (groupMembers.isEmpty())
-					mapByGroup.remove(group);
-				else
-					mapByGroup.put(group, groupMembers);
-			}
-		}
+		GroupMembership removed = getMap().remove(getKey(entityId, group));
+		if (removed == null)
+			throw new IllegalArgumentException("Entity " + entityId + 
+					" is not a member of group " + group);
 	}
 	
 	@Override
 	public boolean isMember(long entityId, String group)
 	{
-		TransactionalMap<Long, Map<String, GroupMembership>> map = getByEntityMap();
-		Map<String, GroupMembership> memberships = map.get(entityId);
-		if (memberships == null)
-			return false;
-		return memberships.containsKey(group);
+		return getMap().containsKey(getKey(entityId, group));
 	}
 
 	@Override
 	public List<GroupMembership> getEntityMembership(long entityId)
 	{
-		TransactionalMap<Long, Map<String, GroupMembership>> map = getByEntityMap();
-		Map<String, GroupMembership> memberships = map.get(entityId);
-		if (memberships == null)
-			return new ArrayList<>(0);
-		return new ArrayList<>(memberships.values());
+		EntryObject e = new PredicateBuilder().getEntryObject();
+		@SuppressWarnings("unchecked")
+		Predicate<String, GroupMembership> predicate = e.get("entityId").equal(entityId);
+		return new ArrayList<>(getMap().values(predicate));
 	}
 
 	@Override
 	public List<GroupMembership> getMembers(String group)
 	{
-		TransactionalMap<String, Map<Long, GroupMembership>> byGroupMap = getByGroupMap();
-		Map<Long, GroupMembership> map = byGroupMap.get(group);
-		if (map == null)
-			return new ArrayList<>(0);
-		return new ArrayList<>(map.values());
+		EntryObject e = new PredicateBuilder().getEntryObject();
+		@SuppressWarnings("unchecked")
+		Predicate<String, GroupMembership> predicate = e.get("group").equal(group);
+		return new ArrayList<>(getMap().values(predicate));
 	}
 
 	@Override
 	public List<GroupMembership> getAll()
 	{
-		TransactionalMap<String, Map<Long, GroupMembership>> byGroupMap = getByGroupMap();
-		List<GroupMembership> ret = new ArrayList<>(1000);
-		for (Map<Long, GroupMembership> map: byGroupMap.values())
-			ret.addAll(map.values());
-		return ret;
+		return new ArrayList<>(getMap().values());
 	}
 	
-	private TransactionalMap<Long, Map<String, GroupMembership>> getByEntityMap()
+	/**
+	 * Group names always start with '/' so the key is unambiguous.
+	 */
+	private static String getKey(long entityId, String group)
 	{
-		return HzTransactionTL.getHzContext().getMap(STORE_ID + "_byEntity");
+		return entityId + group;
 	}
-
-	private TransactionalMap<String, Map<Long, GroupMembership>> getByGroupMap()
+	
+	private TransactionalMap<String, GroupMembership> getMap()
 	{
-		return HzTransactionTL.getHzContext().getMap(STORE_ID + "_byGroup");
+		return HzTransactionTL.getHzContext().getMap(STORE_ID);
 	}
-
 }
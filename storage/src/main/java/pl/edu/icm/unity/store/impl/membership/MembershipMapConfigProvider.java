@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.impl.membership;
+
+import org.springframework.stereotype.Component;
+
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.MapIndexConfig;
+
+import pl.edu.icm.unity.store.hz.MapConfigProvider;
+
+
+/**
+ * Configures memberships map: indices on entityId and group. Those are used as secondary indexes
+ * for by-entity and by-group lookups.
+ * @author K. Benedyczak
+ */
+@Component
+public class MembershipMapConfigProvider implements MapConfigProvider
+{
+	@Override
+	public MapConfig getMapConfig()
+	{
+		MapConfig mapConfig = new MapConfig();
+		mapConfig.setName(MembershipHzStore.STORE_ID);
+
+		mapConfig.addMapIndexConfig(new MapIndexConfig("entityId", false));
+		mapConfig.addMapIndexConfig(new MapIndexConfig("group", false));
+		return mapConfig;
+	}
+}
@@ -6,6 +6,9 @@ package pl.edu.icm.unity.store.impl.membership;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.session.ResultHandler;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
@@ -92,6 +95,15 @@ public class MembershipRDBMSStore implements MembershipDAO, RDBMSDAO
 		return deserializeList(entityMembershipB);
 	}
 	
+	/**
+	 * Passes all memberships to the consumer, one by one, as they are read from the database cursor.
+	 */
+	public void streamAll(Consumer<GroupMembership> consumer)
+	{
+		ResultHandler<GroupElementBean> handler = 
+				context -> consumer.accept(jsonSerializer.fromDB(context.getResultObject()));
+		SQLTransactionTL.getSql().select(MembershipMapper.class.getName() + ".getAll", handler);
+	}
 	
 	private List<GroupMembership> deserializeList(List<GroupElementBean> entityMembershipB)
 	{
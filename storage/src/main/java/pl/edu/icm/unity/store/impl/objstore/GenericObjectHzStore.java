@@ -48,6 +48,13 @@ public class GenericObjectHzStore extends GenericBasicHzCRUD<GenericObjectBean>
 		return key;
 	}
 	
+	@Override
+	protected long getKeyOfLoaded(GenericObjectBean loaded, long sequentialKey)
+	{
+		loaded.setId(sequentialKey);
+		return sequentialKey;
+	}
+	
 	@Override
 	public Set<String> getNamesOfType(String type)
 	{
@@ -13,7 +13,8 @@ import pl.edu.icm.unity.store.hz.MapConfigProvider;
 
 
 /**
- * Configures tokens map: indices on owner, type and name.
+ * Configures tokens map: indices on owner and type. Lookups by value use a dedicated map.
+ * Ordered index on expiration time allows for selecting expired tokens without scanning all of them.
  * @author K. Benedyczak
  */
 @Component
@@ -29,8 +30,8 @@ public class TokenConfigProvider implements MapConfigProvider
 		mapConfig.addMapIndexConfig(ownerIndexCfg);
 		MapIndexConfig typeIndexCfg = new MapIndexConfig("type", false);
 		mapConfig.addMapIndexConfig(typeIndexCfg);
-		MapIndexConfig valueIndexCfg = new MapIndexConfig("value", false);
-		mapConfig.addMapIndexConfig(valueIndexCfg);
+		MapIndexConfig expiresIndexCfg = new MapIndexConfig("expires", true);
+		mapConfig.addMapIndexConfig(expiresIndexCfg);
 		return mapConfig;
 	}
 }
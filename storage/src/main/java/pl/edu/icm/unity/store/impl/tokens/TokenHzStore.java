@@ -7,11 +7,15 @@ package pl.edu.icm.unity.store.impl.tokens;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
 import com.hazelcast.core.TransactionalMap;
 import com.hazelcast.query.EntryObject;
 import com.hazelcast.query.PredicateBuilder;
@@ -19,10 +23,16 @@ import com.hazelcast.query.PredicateBuilder;
 import pl.edu.icm.unity.base.token.Token;
 import pl.edu.icm.unity.store.api.TokenDAO;
 import pl.edu.icm.unity.store.hz.GenericBasicHzCRUD;
+import pl.edu.icm.unity.store.hz.tx.HzTransactionTL;
 
 
 /**
- * Hazelcast implementation of token store.
+ * Hazelcast implementation of token store. Besides the main map, an additional map is maintained,
+ * with the token's (type, value) as the key and the main map key as the value, so tokens can be
+ * accessed by (type, value) without querying the main map.
+ * <p>
+ * Uniqueness of (type, value) is checked with a lock on the value map's key, held until the end of 
+ * transaction, so that concurrent creations of the same token in the cluster can not both succeed.
  * 
  * @author K. Benedyczak
  */
@@ -37,53 +47,98 @@ public class TokenHzStore extends GenericBasicHzCRUD<Token> implements TokenDAO
 		super(STORE_ID, NAME, TokenRDBMSStore.BEAN, rdbmsDAO);
 	}
 
+	@Override
+	protected long createNoPropagateToRDBMS(Token obj) throws IllegalArgumentException
+	{
+		TransactionalMap<String, Long> valueMap = getValueMap();
+		String valueKey = getValueKey(obj.getType(), obj.getValue());
+		if (valueMap.getForUpdate(valueKey) != null)
+			throw new IllegalArgumentException("Token with key [" + obj.getType() + "//" + 
+					obj.getValue() + "] already exists");
+		long key = super.createNoPropagateToRDBMS(obj);
+		valueMap.put(valueKey, key);
+		return key;
+	}
+	
+	@Override
+	public void createWithId(long key, Token obj)
+	{
+		TransactionalMap<String, Long> valueMap = getValueMap();
+		String valueKey = getValueKey(obj.getType(), obj.getValue());
+		if (valueMap.getForUpdate(valueKey) != null)
+			throw new IllegalArgumentException("Token with key [" + obj.getType() + "//" + 
+					obj.getValue() + "] already exists");
+		super.createWithId(key, obj);
+		valueMap.put(valueKey, key);
+	}
+	
+	@Override
+	protected void putLoaded(HazelcastInstance hzInstance, Map<Long, Token> chunk)
+	{
+		super.putLoaded(hzInstance, chunk);
+		Map<String, Long> values = new HashMap<>(chunk.size());
+		for (Map.Entry<Long, Token> entry: chunk.entrySet())
+			values.put(getValueKey(entry.getValue().getType(), entry.getValue().getValue()), 
+					entry.getKey());
+		IMap<String, Long> valueMap = hzInstance.getMap(STORE_ID + "_values");
+		valueMap.putAll(values);
+	}
+	
+	@Override
+	public void updateByKey(long id, Token obj)
+	{
+		Token old = getByKey(id);
+		String oldValueKey = getValueKey(old.getType(), old.getValue());
+		String newValueKey = getValueKey(obj.getType(), obj.getValue());
+		TransactionalMap<String, Long> valueMap = getValueMap();
+		if (!oldValueKey.equals(newValueKey) && valueMap.getForUpdate(newValueKey) != null)
+			throw new IllegalArgumentException("Token with key [" + obj.getType() + "//" + 
+					obj.getValue() + "] already exists");
+		super.updateByKey(id, obj);
+		if (!oldValueKey.equals(newValueKey))
+		{
+			valueMap.remove(oldValueKey);
+			valueMap.put(newValueKey, id);
+		}
+	}
+	
+	@Override
+	public Token deleteByKeyRet(long id, boolean fireEvent)
+	{
+		Token removed = super.deleteByKeyRet(id, fireEvent);
+		getValueMap().remove(getValueKey(removed.getType(), removed.getValue()));
+		return removed;
+	}
+	
 	@Override
 	public void delete(String type, String id)
 	{
-		PredicateBuilder pBuilder = getPredicate(type, null, id);
-		TransactionalMap<Long, Token> hMap = getMap();
-		Collection<Long> keys = hMap.keySet(pBuilder);
-		if (keys.isEmpty())
-			throw new IllegalArgumentException("Token with key [" + type + "//" + id +
-					"] does not exist");
-		deleteByKey(keys.iterator().next());
+		deleteByKey(getKey(type, id));
 	}
 
 	@Override
 	public void update(Token token)
 	{
-		PredicateBuilder pBuilder = getPredicate(token.getType(), null, token.getValue());
-		TransactionalMap<Long, Token> hMap = getMap();
-		Collection<Long> keys = hMap.keySet(pBuilder);
-		if (keys.isEmpty())
-			throw new IllegalArgumentException("Token with key [" + 
-					token.getType() + "//" + token.getValue() + "] does not exist");
-		updateByKey(keys.iterator().next(), token);
+		updateByKey(getKey(token.getType(), token.getValue()), token);
 	}
 
 	@Override
 	public Token get(String type, String id)
 	{
-		PredicateBuilder pBuilder = getPredicate(type, null, id);
-		TransactionalMap<Long, Token> hMap = getMap();
-		Collection<Token> values = hMap.values(pBuilder);
-		if (values.isEmpty())
-			throw new IllegalArgumentException("Token with key [" + type + "//" + id +
-					"] does not exist");
-		return values.iterator().next();
+		return getMap().get(getKey(type, id));
 	}
 
 	@Override
 	public List<Token> getByType(String type)
 	{
-		PredicateBuilder pBuilder = getPredicate(type, null, null);
+		PredicateBuilder pBuilder = getPredicate(type, null);
 		return getByPredicate(pBuilder);
 	}
 
 	@Override
 	public List<Token> getOwned(String type, long entityId)
 	{
-		PredicateBuilder pBuilder = getPredicate(type, entityId, null);
+		PredicateBuilder pBuilder = getPredicate(type, entityId);
 		return getByPredicate(pBuilder);
 	}
 
@@ -102,7 +157,7 @@ public class TokenHzStore extends GenericBasicHzCRUD<Token> implements TokenDAO
 		return new ArrayList<>(values);
 	}
 	
-	private PredicateBuilder getPredicate(String type, Long owner, String value)
+	private PredicateBuilder getPredicate(String type, Long owner)
 	{
 		EntryObject e = new PredicateBuilder().getEntryObject();
 		PredicateBuilder pBuilder = null;
@@ -110,8 +165,6 @@ public class TokenHzStore extends GenericBasicHzCRUD<Token> implements TokenDAO
 			pBuilder = safeAdd(pBuilder, e.get("owner").equal(owner));
 		if (type != null)
 			pBuilder = safeAdd(pBuilder, e.get("type").equal(type));
-		if (value != null)
-			pBuilder = safeAdd(pBuilder, e.get("value").equal(value));
 		return pBuilder;
 	}
 	
@@ -119,4 +172,26 @@ public class TokenHzStore extends GenericBasicHzCRUD<Token> implements TokenDAO
 	{
 		return existing == null ? condition : existing.and(condition);
 	}
+	
+	private long getKey(String type, String value)
+	{
+		Long key = getValueMap().get(getValueKey(type, value));
+		if (key == null)
+			throw new IllegalArgumentException("Token with key [" + type + "//" + value +
+					"] does not exist");
+		return key;
+	}
+	
+	/**
+	 * Type is prefixed with its length, so the key is unambiguous for any type and value.
+	 */
+	private static String getValueKey(String type, String value)
+	{
+		return type.length() + ":" + type + value;
+	}
+	
+	private TransactionalMap<String, Long> getValueMap()
+	{
+		return HzTransactionTL.getHzContext().getMap(STORE_ID + "_values");
+	}
 }
@@ -5,77 +5,40 @@
 
 package pl.edu.icm.unity.store.migration.from2_7;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.Map;
 
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import pl.edu.icm.unity.store.export.Update;
+import pl.edu.icm.unity.store.export.StreamingUpdate;
 
 /**
  * Update JSon dump from V6 version, see {@link UpdateHelperFrom2_7}
  */
 @Component
-public class JsonDumpUpdateFromV6 implements Update
+public class JsonDumpUpdateFromV6 implements StreamingUpdate
 {
-	@Autowired
-	private ObjectMapper objectMapper;
-
-	@Override
-	public InputStream update(InputStream is) throws IOException
-	{
-		ObjectNode root = (ObjectNode) objectMapper.readTree(is);
-		ObjectNode contents = (ObjectNode) root.get("contents");
-		updateAuthenticators(contents);
-		updateRegistrationRequest(contents);
-		updateEnquiryResponse(contents);
-		updateInvitationWithCode(contents);
-		
-		return new ByteArrayInputStream(objectMapper.writeValueAsBytes(root));
-	}
-	
-	private void updateInvitationWithCode(ObjectNode contents)
-	{
-		genericObjectUpdate("invitationWithCode", contents, UpdateHelperFrom2_7::updateInvitationWithCode);
-	}
-
-	private void updateAuthenticators(ObjectNode contents)
-	{
-		genericObjectUpdate("authenticator", contents, UpdateHelperFrom2_7::updateAuthenticator);
-	}
+	private final Map<String, GenericObjectDataUpdater> updaters = new HashMap<>();
 	
-	private void updateRegistrationRequest(ObjectNode contents)
+	public JsonDumpUpdateFromV6()
 	{
-		genericObjectUpdate("registrationRequest", contents, UpdateHelperFrom2_7::updateRegistrationRequest);
-	}
-
-	private void updateEnquiryResponse(ObjectNode contents)
-	{
-		genericObjectUpdate("enquiryResponse", contents, UpdateHelperFrom2_7::updateEnquiryResponse);
+		updaters.put("authenticator", UpdateHelperFrom2_7::updateAuthenticator);
+		updaters.put("registrationRequest", UpdateHelperFrom2_7::updateRegistrationRequest);
+		updaters.put("enquiryResponse", UpdateHelperFrom2_7::updateEnquiryResponse);
+		updaters.put("invitationWithCode", UpdateHelperFrom2_7::updateInvitationWithCode);
 	}
 	
-	private void genericObjectUpdate(String type, ObjectNode contents, GenericObjectDataUpdater updater)
+	@Override
+	public ObjectNode updateElement(String storeKey, ObjectNode element)
 	{
-		ArrayNode generics = (ArrayNode) contents.get(type);
-		if (generics == null)
-			return;
-		
-		Iterator<JsonNode> elements = generics.elements();
-		
-		while (elements.hasNext())
-		{
-			ObjectNode next = (ObjectNode) elements.next();
-			ObjectNode genericObject = (ObjectNode)next.get("obj");
-			ObjectNode updated = updater.update(genericObject);
-			next.set("obj", updated);
-		}
+		GenericObjectDataUpdater updater = updaters.get(storeKey);
+		if (updater == null)
+			return element;
+		ObjectNode genericObject = (ObjectNode) element.get("obj");
+		ObjectNode updated = updater.update(genericObject);
+		element.set("obj", updated);
+		return element;
 	}
 }
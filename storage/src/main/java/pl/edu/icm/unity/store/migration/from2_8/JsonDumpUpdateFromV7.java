@@ -5,20 +5,14 @@
 
 package pl.edu.icm.unity.store.migration.from2_8;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
 
-import org.apache.logging.log4j.Logger;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import pl.edu.icm.unity.base.utils.Log;
-import pl.edu.icm.unity.store.export.Update;
-import pl.edu.icm.unity.store.migration.from2_5.JsonDumpUpdateFromV4;
+import pl.edu.icm.unity.store.export.StreamingUpdate;
 
 /**
  * Update JSon dump from V7 version, see {@link UpdateHelperFrom2_8}
@@ -26,26 +20,17 @@ import pl.edu.icm.unity.store.migration.from2_5.JsonDumpUpdateFromV4;
  *
  */
 @Component
-public class JsonDumpUpdateFromV7 implements Update
+public class JsonDumpUpdateFromV7 implements StreamingUpdate
 {
-	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, JsonDumpUpdateFromV4.class);
-	
-	@Autowired
-	private ObjectMapper objectMapper;
-
 	@Override
-	public InputStream update(InputStream is) throws IOException
+	public ObjectNode updateElement(String storeKey, ObjectNode element)
 	{
-		ObjectNode root = (ObjectNode) objectMapper.readTree(is);
-		ObjectNode contents = (ObjectNode) root.get("contents");
-		addCertificate(contents);		
-		return new ByteArrayInputStream(objectMapper.writeValueAsBytes(root));
-	
+		return element;
 	}
 
-	private void addCertificate(ObjectNode contents)
-	{	
-		log.info("Add empty certificate array");
-		contents.putArray("certificate");
+	@Override
+	public Set<String> getAddedStores()
+	{
+		return Collections.singleton("certificate");
 	}
-}
\ No newline at end of file
+}
@@ -23,4 +23,14 @@ public interface GenericEntityHandler<T>
 
 	public GenericObjectBean toBlob(T value);
 	public T fromBlob(GenericObjectBean blob);
+	
+	/**
+	 * @return deep copy of the given object, which was decoded from the given blob. Used to return 
+	 * cached objects. By default the object is decoded again, implementations of types which are cached 
+	 * should override it with a cheaper, structural copy.
+	 */
+	public default T copy(T value, GenericObjectBean blob)
+	{
+		return fromBlob(blob);
+	}
 }
@@ -6,6 +6,7 @@ package pl.edu.icm.unity.store.objstore;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -14,6 +15,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 import pl.edu.icm.unity.store.ReferenceAwareDAO;
 import pl.edu.icm.unity.store.ReferenceRemovalHandler;
 import pl.edu.icm.unity.store.ReferenceUpdateHandler;
@@ -32,21 +37,38 @@ import pl.edu.icm.unity.types.NamedObject;
  * It uses {@link GenericEntityHandler} for performing type-specific operations.
  * To maintain database consistency events are produced before all modification operations, so the registered
  * listeners can block the operation.
+ * <p>
+ * Optionally decoded objects are cached, what is useful for types which are read frequently. 
+ * Cached object is used only if the stored object has the same update timestamp and contents as 
+ * the one which was decoded, so the cache is coherent with changes performed by other cluster nodes.
+ * Callers get a copy of the cached object (see {@link GenericEntityHandler#copy(Object, GenericObjectBean)}), 
+ * so modifications of returned objects don't affect the cache. Subclasses may share cached objects with 
+ * callers which don't modify them.
  * 
  * @author K. Benedyczak
  */
 public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDAOWithTS<T>, ReferenceAwareDAO<T>
 {
+	private static final int DECODED_CACHE_SIZE = 1000;
 	protected GenericEntityHandler<T> handler;
 	protected ObjectStoreDAO dbGeneric;
 	protected String type;
 	protected String objectName;
 	private Set<ReferenceRemovalHandler> deleteHandlers = new HashSet<>();
 	private Set<ReferenceUpdateHandler<T>> updateHandlers = new HashSet<>();
+	private final Cache<String, DecodedObject<T>> decodedCache;
 	
 	public GenericObjectsDAOImpl(GenericEntityHandler<T> handler, ObjectStoreDAO dbGeneric, 
 			Class<T> handledObjectClass, String name)
 	{
+		this(handler, dbGeneric, handledObjectClass, name, false);
+	}
+
+	public GenericObjectsDAOImpl(GenericEntityHandler<T> handler, ObjectStoreDAO dbGeneric, 
+			Class<T> handledObjectClass, String name, boolean cacheDecoded)
+	{
+		this.decodedCache = cacheDecoded ? 
+				CacheBuilder.newBuilder().maximumSize(DECODED_CACHE_SIZE).recordStats().build() : null;
 		this.handler = handler;
 		this.dbGeneric = dbGeneric;
 		if (!handledObjectClass.equals(this.handler.getModelClass()))
@@ -82,7 +104,7 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 		GenericObjectBean raw = dbGeneric.getObjectByNameType(name, type);
 		if (raw == null)
 			throw new IllegalArgumentException("There is no [" + name + "] " + objectName);
-		return handler.fromBlob(raw);
+		return fromBlob(raw);
 	}
 	
 	@Override
@@ -91,7 +113,7 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 		List<GenericObjectBean> allRaw = dbGeneric.getObjectsOfType(type);
 		List<T> ret = new ArrayList<>(allRaw.size());
 		for (GenericObjectBean raw: allRaw)
-			ret.add(handler.fromBlob(raw));
+			ret.add(fromBlob(raw));
 		return ret;
 	}
 
@@ -103,7 +125,7 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 		
 		for (GenericObjectBean raw: allRaw)
 			ret.add(new AbstractMap.SimpleEntry<T, Date>(
-					handler.fromBlob(raw), raw.getLastUpdate()));
+					fromBlob(raw), raw.getLastUpdate()));
 		return ret;
 	}
 
@@ -144,7 +166,20 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 		List<GenericObjectBean> allRaw = dbGeneric.getObjectsOfType(type);
 		Map<String, T> ret = new HashMap<>(allRaw.size());
 		for (GenericObjectBean raw: allRaw)
-			ret.put(raw.getName(), handler.fromBlob(raw));
+			ret.put(raw.getName(), fromBlob(raw));
+		return ret;
+	}
+	
+	/**
+	 * As {@link #getAllAsMap()} but the returned objects are not copied when taken from the cache. 
+	 * The objects can be shared with other callers, so must not be modified.
+	 */
+	protected Map<String, T> getAllAsMapShared()
+	{
+		List<GenericObjectBean> allRaw = dbGeneric.getObjectsOfType(type);
+		Map<String, T> ret = new HashMap<>(allRaw.size());
+		for (GenericObjectBean raw: allRaw)
+			ret.put(raw.getName(), getShared(raw));
 		return ret;
 	}
 	
@@ -154,16 +189,18 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 		GenericObjectBean raw = dbGeneric.getObjectByNameType(name, type);
 		if (raw == null)
 			throw new IllegalArgumentException("There is no [" + name + "] " + objectName);
-		T removed = handler.fromBlob(raw);
+		T removed = fromBlob(raw);
 		
 		firePreRemove(raw.getId(), name, removed);
 		dbGeneric.removeObject(name, type);
+		invalidate(name);
 	}
 
 	@Override
 	public void deleteAll()
 	{
 		dbGeneric.removeObjectsByType(type);
+		invalidateAll();
 	}
 	
 	@Override
@@ -173,13 +210,14 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 		GenericObjectBean raw = dbGeneric.getObjectByNameType(current, type);
 		if (raw == null)
 			throw new IllegalArgumentException("There is no [" + current + "] " + objectName);
-		T updated = handler.fromBlob(raw);
+		T updated = fromBlob(raw);
 
 		firePreUpdate(raw.getId(), current, newValue, updated);
 		
 		GenericObjectBean blob = handler.toBlob(newValue);
 		blob.setLastUpdate(new Date());
 		dbGeneric.updateObject(current, blob.getType(), blob);
+		invalidate(current);
 	}
 
 	@Override
@@ -189,6 +227,7 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 		GenericObjectBean raw = handler.toBlob(obj);
 		raw.setLastUpdate(new Date());
 		dbGeneric.updateByKey(id, raw);
+		invalidateAll();
 	}
 
 	@Override
@@ -234,13 +273,14 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 	public void deleteByKey(long id)
 	{
 		dbGeneric.deleteByKey(id);
+		invalidateAll();
 	}
 
 	@Override
 	public T getByKey(long id)
 	{
 		GenericObjectBean raw = dbGeneric.getByKey(id);
-		return handler.fromBlob(raw);
+		return fromBlob(raw);
 	}
 
 	@Override
@@ -252,6 +292,53 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 		return raw.getId();
 	}
 	
+	public String getObjectName()
+	{
+		return objectName;
+	}
+	
+	/**
+	 * @return statistics of the decoded objects cache or null if the cache is not enabled
+	 */
+	public CacheStats getDecodedCacheStats()
+	{
+		return decodedCache == null ? null : decodedCache.stats();
+	}
+	
+	private T fromBlob(GenericObjectBean raw)
+	{
+		if (decodedCache == null)
+			return handler.fromBlob(raw);
+		return handler.copy(getShared(raw), raw);
+	}
+
+	/**
+	 * @return decoded object, which can be shared with other callers if the cache is enabled
+	 */
+	private T getShared(GenericObjectBean raw)
+	{
+		if (decodedCache == null)
+			return handler.fromBlob(raw);
+		DecodedObject<T> cached = decodedCache.getIfPresent(raw.getName());
+		if (cached != null && cached.isDecodedFrom(raw))
+			return cached.object;
+		T decoded = handler.fromBlob(raw);
+		decodedCache.put(raw.getName(), new DecodedObject<>(raw, decoded));
+		return decoded;
+	}
+	
+	private void invalidate(String name)
+	{
+		if (decodedCache != null)
+			decodedCache.invalidate(name);
+	}
+
+	private void invalidateAll()
+	{
+		if (decodedCache != null)
+			decodedCache.invalidateAll();
+	}
+	
 	@Override
 	public void addRemovalHandler(ReferenceRemovalHandler handler)
 	{
@@ -275,4 +362,24 @@ public class GenericObjectsDAOImpl<T extends NamedObject> implements NamedCRUDDA
 		for (ReferenceUpdateHandler<T> handler: updateHandlers)
 			handler.preUpdateCheck(modifiedId, modifiedName, newVal);
 	}
+	
+	private static class DecodedObject<T>
+	{
+		private final Date lastUpdate;
+		private final byte[] contents;
+		private final T object;
+
+		DecodedObject(GenericObjectBean source, T object)
+		{
+			this.lastUpdate = source.getLastUpdate();
+			this.contents = source.getContents();
+			this.object = object;
+		}
+		
+		boolean isDecodedFrom(GenericObjectBean raw)
+		{
+			return lastUpdate != null && lastUpdate.equals(raw.getLastUpdate()) 
+					&& Arrays.equals(contents, raw.getContents());
+		}
+	}
 }
@@ -23,6 +23,6 @@ public class AttributeClassDBImpl extends GenericObjectsDAOImpl<AttributesClass>
 	AttributeClassDBImpl(AttributeClassHandler handler,
 			ObjectStoreDAO dbGeneric)
 	{
-		super(handler, dbGeneric, AttributesClass.class, "attributes class");
+		super(handler, dbGeneric, AttributesClass.class, "attributes class", true);
 	}
 }
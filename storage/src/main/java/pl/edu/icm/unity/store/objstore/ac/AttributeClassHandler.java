@@ -54,4 +54,10 @@ public class AttributeClassHandler extends DefaultEntityHandler<AttributesClass>
 			throw new InternalException("Can't deserialize attribute class from JSON", e);
 		}
 	}
+
+	@Override
+	public AttributesClass copy(AttributesClass value, GenericObjectBean blob)
+	{
+		return value.clone();
+	}
 }
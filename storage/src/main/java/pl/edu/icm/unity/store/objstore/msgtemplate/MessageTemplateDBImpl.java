@@ -24,7 +24,7 @@ public class MessageTemplateDBImpl extends GenericObjectsDAOImpl<MessageTemplate
 	@Autowired
 	public MessageTemplateDBImpl(MessageTemplateHandler handler, ObjectStoreDAO dbGeneric)
 	{
-		super(handler, dbGeneric, MessageTemplate.class, "message template");
+		super(handler, dbGeneric, MessageTemplate.class, "message template", true);
 	}
 }
 
@@ -42,4 +42,10 @@ public class MessageTemplateHandler extends DefaultEntityHandler<MessageTemplate
 	{
 		return new MessageTemplate(JsonUtil.parse(blob.getContents()));
 	}
+
+	@Override
+	public MessageTemplate copy(MessageTemplate value, GenericObjectBean blob)
+	{
+		return value.clone();
+	}
 }
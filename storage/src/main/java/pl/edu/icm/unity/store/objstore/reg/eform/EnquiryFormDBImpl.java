@@ -5,6 +5,7 @@
 package pl.edu.icm.unity.store.objstore.reg.eform;
 
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -46,7 +47,7 @@ public class EnquiryFormDBImpl extends GenericObjectsDAOImpl<EnquiryForm> implem
 			CredentialDBImpl credDAO, AttributeTypeDAOInternal atDAO, GroupDAOInternal groupDAO,
 			MessageTemplateDBImpl msgTemplateDB)
 	{
-		super(handler, dbGeneric, EnquiryForm.class, "enquiry form");
+		super(handler, dbGeneric, EnquiryForm.class, "enquiry form", true);
 		credDAO.addRemovalHandler(new CredentialChangeListener(this));
 		credDAO.addUpdateHandler(new CredentialRenameListener<>(this));
 		
@@ -65,6 +66,12 @@ public class EnquiryFormDBImpl extends GenericObjectsDAOImpl<EnquiryForm> implem
 		addUpdateHandler(changeListener);
 	}
 	
+	@Override
+	public Map<String, EnquiryForm> getAllAsMapReadOnly()
+	{
+		return getAllAsMapShared();
+	}
+	
 	private class MessageTemplateChangeListener extends BaseTemplateChangeListener
 	{
 		@Override
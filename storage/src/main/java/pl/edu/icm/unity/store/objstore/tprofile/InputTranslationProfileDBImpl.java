@@ -24,6 +24,6 @@ public class InputTranslationProfileDBImpl extends GenericObjectsDAOImpl<Transla
 	@Autowired
 	public InputTranslationProfileDBImpl(InputTranslationProfileHandler handler, ObjectStoreDAO dbGeneric)
 	{
-		super(handler, dbGeneric, TranslationProfile.class, "input translation profile");
+		super(handler, dbGeneric, TranslationProfile.class, "input translation profile", true);
 	}
 }
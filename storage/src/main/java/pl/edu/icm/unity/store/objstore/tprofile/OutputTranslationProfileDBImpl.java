@@ -24,6 +24,6 @@ public class OutputTranslationProfileDBImpl extends GenericObjectsDAOImpl<Transl
 	@Autowired
 	public OutputTranslationProfileDBImpl(OutputTranslationProfileHandler handler, ObjectStoreDAO dbGeneric)
 	{
-		super(handler, dbGeneric, TranslationProfile.class, "output translation profile");
+		super(handler, dbGeneric, TranslationProfile.class, "output translation profile", true);
 	}
 }
@@ -46,4 +46,10 @@ public class OutputTranslationProfileHandler extends DefaultEntityHandler<Transl
 	{
 		return new TranslationProfile(JsonUtil.parse(blob.getContents()));
 	}
+
+	@Override
+	public TranslationProfile copy(TranslationProfile value, GenericObjectBean blob)
+	{
+		return value.clone();
+	}
 }
@@ -6,6 +6,8 @@ package pl.edu.icm.unity.store.rdbms;
 
 import java.util.List;
 
+import org.apache.ibatis.annotations.Param;
+
 /**
  * All mappers extend this interface, and those operations are available on all tables.
  * @author K. Benedyczak
@@ -25,5 +27,10 @@ public interface BasicCRUDMapper<BEAN>
 	
 	List<BEAN> getAll();
 	
+	/**
+	 * @return up to limit elements with keys greater then the given one, ordered by key
+	 */
+	List<BEAN> getBatch(@Param("afterKey") long afterKey, @Param("limit") int limit);
+	
 	BEAN getByKey(long key);
 }
@@ -8,6 +8,9 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.session.ResultHandler;
 
 import pl.edu.icm.unity.store.ReferenceAwareDAO;
 import pl.edu.icm.unity.store.ReferenceRemovalHandler;
@@ -132,6 +135,37 @@ public abstract class GenericRDBMSCRUD<T, DBT extends GenericDBBean>
 		return convertList(allInDB);
 	}
 	
+	/**
+	 * Elements are read in batches ordered by key, each batch with a separate query. Therefore 
+	 * no database cursor is open while the consumer is invoked.
+	 */
+	@Override
+	public void forEach(int batchSize, Consumer<T> consumer)
+	{
+		BasicCRUDMapper<DBT> mapper = SQLTransactionTL.getSql().getMapper(mapperClass);
+		long afterKey = Long.MIN_VALUE;
+		List<DBT> batch;
+		do
+		{
+			batch = mapper.getBatch(afterKey, batchSize);
+			for (DBT bean: batch)
+				consumer.accept(jsonSerializer.fromDB(bean));
+			if (!batch.isEmpty())
+				afterKey = batch.get(batch.size() - 1).getId();
+		} while (batch.size() == batchSize);
+	}
+	
+	/**
+	 * Passes all stored elements to the consumer, one by one, as they are read from the database cursor.
+	 * Contrary to {@link #getAll()} the whole table is never materialized in memory.
+	 */
+	public void streamAll(Consumer<T> consumer)
+	{
+		ResultHandler<DBT> handler = 
+				context -> consumer.accept(jsonSerializer.fromDB(context.getResultObject()));
+		SQLTransactionTL.getSql().select(mapperClass.getName() + ".getAll", handler);
+	}
+	
 	protected List<T> convertList(List<DBT> fromDB)
 	{
 		List<T> ret = new ArrayList<>(fromDB.size());
@@ -115,6 +115,7 @@ public class SQLTransactionEngine implements TransactionEngine
 			if (log.isTraceEnabled())
 				log.trace("Releassing sql session for " + pjp.toShortString());
 			ti.getSql().close();
+			transactionsStack.runPostCompletionActions();
 		}
 	}
 }
@@ -21,6 +21,15 @@ public class TransactionTL
 		get().getCurrent().manualCommit();
 	}
 
+	public static void addPostCompletionAction(Runnable action)
+	{
+		TransactionsState<? extends TransactionState> state = get();
+		if (state.isEmpty())
+			action.run();
+		else
+			state.addPostCompletionAction(action);
+	}
+
 	private static TransactionsState<? extends TransactionState> get()
 	{
 		if (HzTransactionTL.getState().isEmpty())
@@ -5,7 +5,13 @@
 package pl.edu.icm.unity.store.tx;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+
+import pl.edu.icm.unity.base.utils.Log;
 
 /**
  * Stores transaction state, useful when transactions are nested
@@ -13,7 +19,9 @@ import java.util.Deque;
  */
 public class TransactionsState<T extends TransactionState>
 {
+	private static final Logger log = Log.getLogger(Log.U_SERVER_DB, TransactionsState.class);
 	private Deque<T> transactionsStack = new ArrayDeque<>();
+	private List<Runnable> postCompletionActions = new ArrayList<>();
 	
 	public void push(T transactionInfo)
 	{
@@ -52,6 +60,33 @@ public class TransactionsState<T extends TransactionState>
 		return transactionsStack.size() > 1;
 	}
 	
+	public void addPostCompletionAction(Runnable action)
+	{
+		postCompletionActions.add(action);
+	}
+	
+	/**
+	 * Runs and forgets all registered post completion actions. Should be called when the 
+	 * outermost transaction is finished.
+	 */
+	public void runPostCompletionActions()
+	{
+		if (postCompletionActions.isEmpty())
+			return;
+		List<Runnable> actions = postCompletionActions;
+		postCompletionActions = new ArrayList<>();
+		for (Runnable action: actions)
+		{
+			try
+			{
+				action.run();
+			} catch (Exception e)
+			{
+				log.error("Post transaction action failed", e);
+			}
+		}
+	}
+	
 	public static class TransactionsThreadLocal<T extends TransactionState> 
 			extends ThreadLocal<TransactionsState<T>>
 	{
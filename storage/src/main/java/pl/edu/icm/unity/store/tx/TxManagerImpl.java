@@ -20,4 +20,10 @@ public class TxManagerImpl implements TxManager
 	{
 		TransactionTL.manualCommit();
 	}
+
+	@Override
+	public void addPostCompletionAction(Runnable action)
+	{
+		TransactionTL.addPostCompletionAction(action);
+	}
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.hz.rdbmsflush;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RDBMSMutationCoalescerTest
+{
+	@Test
+	public void subsequentUpdatesShouldBeFolded()
+	{
+		List<RDBMSMutationEvent> events = Arrays.asList(
+				new RDBMSMutationEvent("dao", "updateByKey", 1L, "v1"),
+				new RDBMSMutationEvent("dao", "updateByKey", 1L, "v2"),
+				new RDBMSMutationEvent("dao", "updateByKey", 1L, "v3"));
+
+		List<RDBMSMutationEvent> coalesced = RDBMSMutationCoalescer.coalesce(events);
+
+		assertThat(coalesced).hasSize(1);
+		assertThat(coalesced.get(0).getArgs()).containsExactly(1L, "v3");
+	}
+
+	@Test
+	public void updateShouldBeFoldedIntoCreate()
+	{
+		List<RDBMSMutationEvent> events = Arrays.asList(
+				new RDBMSMutationEvent("dao", "createWithId", 1L, "v1"),
+				new RDBMSMutationEvent("dao", "updateByKey", 1L, "v2"));
+
+		List<RDBMSMutationEvent> coalesced = RDBMSMutationCoalescer.coalesce(events);
+
+		assertThat(coalesced).hasSize(1);
+		assertThat(coalesced.get(0).getOperation()).isEqualTo("createWithId");
+		assertThat(coalesced.get(0).getArgs()).containsExactly(1L, "v2");
+	}
+
+	@Test
+	public void createFollowedByDeleteShouldBeDropped()
+	{
+		List<RDBMSMutationEvent> events = Arrays.asList(
+				new RDBMSMutationEvent("dao", "updateByKey", 2L, "v1"),
+				new RDBMSMutationEvent("dao", "createWithId", 1L, "v1"),
+				new RDBMSMutationEvent("dao", "deleteByKey", 1L),
+				new RDBMSMutationEvent("dao", "updateByKey", 2L, "v2"));
+
+		List<RDBMSMutationEvent> coalesced = RDBMSMutationCoalescer.coalesce(events);
+
+		assertThat(coalesced).hasSize(1);
+		assertThat(coalesced.get(0).getArgs()).containsExactly(2L, "v2");
+	}
+
+	@Test
+	public void nonAdjacentMutationsShouldBePreserved()
+	{
+		List<RDBMSMutationEvent> events = Arrays.asList(
+				new RDBMSMutationEvent("dao", "updateByKey", 1L, "v1"),
+				new RDBMSMutationEvent("other", "updateByKey", 1L, "v1"),
+				new RDBMSMutationEvent("dao", "updateByKey", 1L, "v2"),
+				new RDBMSMutationEvent("dao", "deleteByKey", 1L));
+
+		List<RDBMSMutationEvent> coalesced = RDBMSMutationCoalescer.coalesce(events);
+
+		assertThat(coalesced).containsExactlyElementsOf(events);
+	}
+}
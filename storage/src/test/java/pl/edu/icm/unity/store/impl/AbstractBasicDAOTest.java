@@ -15,6 +15,7 @@ import static org.junit.Assert.fail;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.After;
@@ -128,6 +129,24 @@ public abstract class AbstractBasicDAOTest<T>
 		});
 	}
 
+	@Test
+	public void shouldIterateOverAllInBatches()
+	{
+		tx.runInTransaction(() -> {
+			BasicCRUDDAO<T> dao = getDAO();
+			dao.create(getObject("name1"));
+			dao.create(getObject("name2"));
+			dao.create(getObject("name3"));
+			List<T> all = dao.getAll();
+			
+			List<T> iterated = new ArrayList<>();
+			dao.forEach(2, iterated::add);
+
+			assertThat(iterated.size(), is(all.size()));
+			assertThat(iterated.containsAll(all), is(true));
+		});
+	}
+	
 	@Test
 	public void shouldReturnTwoCreatedWithinCollectionsWithCommit()
 	{
@@ -358,6 +358,24 @@ public class AttributeTest extends AbstractBasicDAOTest<StoredAttribute>
 		});
 	}
 	
+	@Test
+	public void attributeMovedToOtherGroupIsReturnedFromNewGroupOnly()
+	{
+		tx.runInTransaction(() -> {
+			AttributeDAO dao = getDAO();
+			StoredAttribute obj = getObject("");
+			long key = dao.create(obj);
+
+			StoredAttribute moved = getObject("");
+			moved.getAttribute().setGroupPath("/C");
+			dao.updateByKey(key, moved);
+
+			assertThat(dao.getEntityAttributes(entityId, "attr", "/A").isEmpty(), is(true));
+			assertAllAndOnlyAllIn(Lists.newArrayList(moved.getAttribute()), 
+					dao.getEntityAttributes(entityId, "attr", "/C"));
+		});
+	}
+	
 	@Test
 	public void updatedAttributeIsReturned()
 	{
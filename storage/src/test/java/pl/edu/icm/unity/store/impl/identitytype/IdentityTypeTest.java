@@ -8,6 +8,7 @@ import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -79,6 +80,22 @@ public class IdentityTypeTest extends AbstractNamedDAOTest<IdentityType>
 		});
 	}
 	
+	@Test
+	@Override
+	public void shouldIterateOverAllInBatches()
+	{
+		tx.runInTransaction(() -> {
+			IdentityType obj = getObject("");
+			idTypeDAO.create(obj);
+
+			List<IdentityType> iterated = new ArrayList<>();
+			idTypeDAO.forEach(2, iterated::add);
+
+			assertThat(iterated.size(), is(1));
+			assertThat(iterated.get(0), is(obj));
+		});
+	}
+	
 	@Test
 	@Override
 	public void shouldReturnTwoCreatedWithinCollectionsByName()
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.impl.membership;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import pl.edu.icm.unity.base.utils.StopWatch;
+import pl.edu.icm.unity.store.StorageConfiguration;
+import pl.edu.icm.unity.store.StorageEngine;
+import pl.edu.icm.unity.store.api.tx.TransactionalRunner;
+import pl.edu.icm.unity.store.hz.HzStoreLoader;
+import pl.edu.icm.unity.store.hz.tx.HzTransactionalRunner;
+import pl.edu.icm.unity.store.impl.entities.EntityHzStore;
+import pl.edu.icm.unity.types.basic.EntityInformation;
+import pl.edu.icm.unity.types.basic.GroupMembership;
+
+/**
+ * Measures latency of adding and removing a member of a large group. Only run on HZ storage engine.
+ * By default a moderate group is used, to get the 1M members case run with
+ * -Dunity.perf.membership.groupSize=1000000
+ * @author K. Benedyczak
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations={"classpath*:META-INF/components.xml"})
+public class MembershipPerfTest
+{
+	private static final int GROUP_SIZE = Integer.getInteger("unity.perf.membership.groupSize", 5000);
+	private static final int BATCH = 1000;
+	private static final int N = 200;
+
+	@Autowired
+	private HzStoreLoader dbCleaner;
+
+	@Autowired @Qualifier(HzTransactionalRunner.NAME)
+	private TransactionalRunner txHz;
+
+	@Autowired
+	private MembershipHzStore dao;
+
+	@Autowired
+	private EntityHzStore entityDao;
+
+	@Autowired
+	private StorageConfiguration systemCfg;
+
+	@Before
+	public void cleanDB()
+	{
+		StorageEngine engine = systemCfg.getEnumValue(StorageConfiguration.ENGINE, StorageEngine.class);
+		Assume.assumeTrue(engine == StorageEngine.hz);
+
+		dbCleaner.reset();
+	}
+
+	@After
+	public void shutdown()
+	{
+		dbCleaner.shutdown();
+	}
+
+	@Test
+	public void addAndRemoveInLargeGroup()
+	{
+		StopWatch watch = new StopWatch();
+		for (int i = 0; i < GROUP_SIZE; i += BATCH)
+		{
+			int batchSize = Math.min(BATCH, GROUP_SIZE - i);
+			txHz.runInTransaction(() -> {
+				for (int j = 0; j < batchSize; j++)
+				{
+					long entity = entityDao.create(new EntityInformation());
+					dao.create(new GroupMembership("/", entity, new Date()));
+				}
+			});
+		}
+		watch.printPeriod("Populated / with " + GROUP_SIZE + " members: {0}");
+
+		List<Long> added = new ArrayList<>(N);
+		txHz.runInTransaction(() -> {
+			for (int i = 0; i < N; i++)
+				added.add(entityDao.create(new EntityInformation()));
+		});
+		watch.printPeriod("Entities created: {0}");
+
+		for (long entity: added)
+			txHz.runInTransaction(() -> dao.create(new GroupMembership("/", entity, new Date())));
+		watch.printPeriod(N + " single member additions: {0}");
+
+		for (long entity: added)
+			txHz.runInTransaction(() -> dao.isMember(entity, "/"));
+		watch.printPeriod(N + " membership checks: {0}");
+
+		for (long entity: added)
+			txHz.runInTransaction(() -> dao.deleteByKey(entity, "/"));
+		watch.printPeriod(N + " single member removals: {0}");
+
+		watch.printTotal("Total: {0}");
+	}
+}
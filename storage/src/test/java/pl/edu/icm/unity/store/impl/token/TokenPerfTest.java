@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.store.impl.token;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.TransactionalMap;
+import com.hazelcast.query.EntryObject;
+import com.hazelcast.query.PredicateBuilder;
+
+import pl.edu.icm.unity.base.token.Token;
+import pl.edu.icm.unity.base.utils.StopWatch;
+import pl.edu.icm.unity.store.StorageConfiguration;
+import pl.edu.icm.unity.store.StorageEngine;
+import pl.edu.icm.unity.store.api.tx.TransactionalRunner;
+import pl.edu.icm.unity.store.hz.HzStoreLoader;
+import pl.edu.icm.unity.store.hz.tx.HzTransactionTL;
+import pl.edu.icm.unity.store.hz.tx.HzTransactionalRunner;
+import pl.edu.icm.unity.store.impl.tokens.TokenHzStore;
+
+/**
+ * Compares lookup of tokens by (type, value) with the query on indexed value attribute, which was
+ * used previously. Only run on HZ storage engine. By default a moderate number of tokens is used,
+ * to get the 1M tokens case run with -Dunity.perf.tokens.count=1000000
+ * @author K. Benedyczak
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations={"classpath*:META-INF/components.xml"})
+public class TokenPerfTest
+{
+	private static final int TOKENS = Integer.getInteger("unity.perf.tokens.count", 10000);
+	private static final int BATCH = 1000;
+	private static final int WARMUP = 2000;
+	private static final int N = 10000;
+	private static final String TYPE = "perfType";
+
+	@Autowired
+	private HzStoreLoader dbCleaner;
+
+	@Autowired @Qualifier(HzTransactionalRunner.NAME)
+	private TransactionalRunner txHz;
+
+	@Autowired
+	private TokenHzStore dao;
+
+	@Autowired
+	private HazelcastInstance hzInstance;
+
+	@Autowired
+	private StorageConfiguration systemCfg;
+
+	@Before
+	public void cleanDB()
+	{
+		StorageEngine engine = systemCfg.getEnumValue(StorageConfiguration.ENGINE, StorageEngine.class);
+		Assume.assumeTrue(engine == StorageEngine.hz);
+
+		dbCleaner.reset();
+	}
+
+	@After
+	public void shutdown()
+	{
+		dbCleaner.shutdown();
+	}
+
+	@Test
+	public void lookupByValue()
+	{
+		StopWatch watch = new StopWatch();
+		for (int i = 0; i < TOKENS; i += BATCH)
+		{
+			int start = i;
+			int batchSize = Math.min(BATCH, TOKENS - i);
+			txHz.runInTransaction(() -> {
+				for (int j = start; j < start + batchSize; j++)
+					dao.create(getToken(j));
+			});
+		}
+		watch.printPeriod("Created " + TOKENS + " tokens: {0}");
+
+		hzInstance.getMap(TokenHzStore.STORE_ID).addIndex("value", false);
+		Random random = new Random(1);
+		txHz.runInTransaction(() -> {
+			for (int i = 0; i < WARMUP; i++)
+			{
+				dao.get(TYPE, "token" + random.nextInt(TOKENS));
+				getByQuery("token" + random.nextInt(TOKENS));
+			}
+		});
+		watch.printPeriod("Warmup: {0}");
+
+		txHz.runInTransaction(() -> {
+			for (int i = 0; i < N; i++)
+				assertThat(getByQuery("token" + random.nextInt(TOKENS))).hasSize(1);
+		});
+		watch.printPeriod(N + " lookups with indexed query: {0}");
+
+		txHz.runInTransaction(() -> {
+			for (int i = 0; i < N; i++)
+				assertThat(dao.get(TYPE, "token" + random.nextInt(TOKENS))).isNotNull();
+		});
+		watch.printPeriod(N + " lookups by key: {0}");
+
+		txHz.runInTransaction(() -> {
+			for (int i = 0; i < N; i++)
+			{
+				Token token = dao.get(TYPE, "token" + random.nextInt(TOKENS));
+				token.setExpires(new Date(System.currentTimeMillis() + 1000));
+				dao.update(token);
+			}
+		});
+		watch.printPeriod(N + " updates by key: {0}");
+		watch.printTotal("Total: {0}");
+	}
+
+	private Collection<Token> getByQuery(String value)
+	{
+		TransactionalMap<Long, Token> map = HzTransactionTL.getHzContext().getMap(TokenHzStore.STORE_ID);
+		EntryObject e = new PredicateBuilder().getEntryObject();
+		return map.values(e.get("type").equal(TYPE).and(e.get("value").equal(value)));
+	}
+
+	private Token getToken(int i)
+	{
+		Token ret = new Token(TYPE, "token" + i, null);
+		ret.setContents(new byte[] {'a'});
+		ret.setCreated(new Date());
+		ret.setExpires(new Date(System.currentTimeMillis() + 3600000));
+		return ret;
+	}
+}
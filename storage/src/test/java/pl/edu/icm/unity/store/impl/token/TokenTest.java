@@ -11,8 +11,15 @@ import static org.hamcrest.CoreMatchers.isA;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -192,6 +199,38 @@ public class TokenTest extends AbstractBasicDAOTest<Token>
 		});
 	}	
 
+	@Test
+	public void concurrentCreationOfTheSameTokenSucceedsOnce() throws Exception
+	{
+		int threads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger created = new AtomicInteger();
+		List<Future<?>> results = new ArrayList<>();
+		for (int i = 0; i < threads; i++)
+			results.add(executor.submit(() -> {
+				start.await();
+				try
+				{
+					tx.runInTransaction(() -> dao.create(getObject("type1", "name", entityId)));
+					created.incrementAndGet();
+				} catch (RuntimeException e)
+				{
+					//expected for all but one
+				}
+				return null;
+			}));
+		start.countDown();
+		for (Future<?> result: results)
+			result.get(30, TimeUnit.SECONDS);
+		executor.shutdown();
+
+		assertThat(created.get(), is(1));
+		tx.runInTransaction(() -> {
+			assertThat(dao.getByType("type1").size(), is(1));
+		});
+	}
+
 	@Override
 	@Test
 	public void importExportIsIdempotent()
@@ -4,6 +4,9 @@
  */
 package pl.edu.icm.unity.store.objstore.msgtemplate;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import pl.edu.icm.unity.store.api.generic.MessageTemplateDB;
@@ -18,6 +21,9 @@ public class MsgTemplateTest extends AbstractNamedWithTSTest<MessageTemplate>
 {
 	@Autowired
 	private MessageTemplateDB dao;
+
+	@Autowired
+	private MessageTemplateDBImpl daoImpl;
 	
 	@Override
 	protected NamedCRUDDAOWithTS<MessageTemplate> getDAO()
@@ -42,4 +48,44 @@ public class MsgTemplateTest extends AbstractNamedWithTSTest<MessageTemplate>
 		src.setType(MessageType.HTML);
 		return src;
 	}
+
+	@Test
+	public void decodedTemplateIsReusedUntilUpdated()
+	{
+		tx.runInTransaction(() -> {
+			dao.create(getObject("name1"));
+			MessageTemplate first = dao.get("name1");
+			long hits = daoImpl.getDecodedCacheStats().hitCount();
+
+			MessageTemplate second = dao.getAllAsMap().get("name1");
+
+			assertThat(second).isEqualTo(first);
+			assertThat(daoImpl.getDecodedCacheStats().hitCount()).isEqualTo(hits + 1);
+
+			MessageTemplate changed = getObject("name1");
+			changed.setDescription("description2");
+			dao.update(changed);
+			
+			MessageTemplate updated = dao.get("name1");
+			
+			assertThat(updated).isNotSameAs(first);
+			assertThat(updated.getDescription()).isEqualTo("description2");
+		});
+	}
+
+	@Test
+	public void modificationOfReturnedTemplateDoesNotAffectCache()
+	{
+		tx.runInTransaction(() -> {
+			dao.create(getObject("name1"));
+			MessageTemplate first = dao.get("name1");
+			String description = first.getDescription();
+
+			first.setDescription("modified in place");
+			MessageTemplate second = dao.get("name1");
+
+			assertThat(second).isNotSameAs(first);
+			assertThat(second.getDescription()).isEqualTo(description);
+		});
+	}
 }
@@ -4,14 +4,18 @@
  */
 package pl.edu.icm.unity.store.objstore.reg;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 import java.util.List;
 
+import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.google.common.collect.Lists;
 
 import pl.edu.icm.unity.store.api.generic.EnquiryFormDB;
 import pl.edu.icm.unity.store.api.generic.NamedCRUDDAOWithTS;
+import pl.edu.icm.unity.store.objstore.reg.eform.EnquiryFormDBImpl;
 import pl.edu.icm.unity.types.I18nString;
 import pl.edu.icm.unity.types.registration.AgreementRegistrationParam;
 import pl.edu.icm.unity.types.registration.CredentialRegistrationParam;
@@ -28,6 +32,9 @@ public class EnquiryFormTest extends BaseFormTest<EnquiryForm>
 {
 	@Autowired
 	private EnquiryFormDB dao;
+
+	@Autowired
+	private EnquiryFormDBImpl daoImpl;
 	
 	@Override
 	protected NamedCRUDDAOWithTS<EnquiryForm> getDAO()
@@ -94,4 +101,44 @@ public class EnquiryFormTest extends BaseFormTest<EnquiryForm>
 				.endIdentityParam();
 		return builder.build();
 	}
+
+	@Test
+	public void readOnlyFormsAreSharedUntilUpdated()
+	{
+		tx.runInTransaction(() -> {
+			dao.create(getObject("name1"));
+			EnquiryForm first = dao.getAllAsMapReadOnly().get("name1");
+			long hits = daoImpl.getDecodedCacheStats().hitCount();
+
+			EnquiryForm second = dao.getAllAsMapReadOnly().get("name1");
+
+			assertThat(second).isSameAs(first);
+			assertThat(daoImpl.getDecodedCacheStats().hitCount()).isEqualTo(hits + 1);
+
+			EnquiryForm changed = getObject("name1");
+			changed.setTargetCondition("changed");
+			dao.update(changed);
+
+			EnquiryForm updated = dao.getAllAsMapReadOnly().get("name1");
+
+			assertThat(updated).isNotSameAs(first);
+			assertThat(updated.getTargetCondition()).isEqualTo("changed");
+		});
+	}
+
+	@Test
+	public void modificationOfReturnedFormDoesNotAffectCache()
+	{
+		tx.runInTransaction(() -> {
+			dao.create(getObject("name1"));
+			EnquiryForm shared = dao.getAllAsMapReadOnly().get("name1");
+			EnquiryForm first = dao.get("name1");
+
+			first.setTargetCondition("modified in place");
+
+			assertThat(first).isNotSameAs(shared);
+			assertThat(shared.getTargetCondition()).isNotEqualTo("modified in place");
+			assertThat(dao.get("name1").getTargetCondition()).isNotEqualTo("modified in place");
+		});
+	}
 }
@@ -44,6 +44,12 @@ public class I18nMessage
 		return subject;
 	}
 
+	@Override
+	public I18nMessage clone()
+	{
+		return new I18nMessage(subject == null ? null : subject.clone(), body == null ? null : body.clone());
+	}
+
 	@Override
 	public int hashCode()
 	{
@@ -246,10 +246,11 @@ public class MessageTemplate extends DescribedObjectImpl
 	}
 	
 	
+	@Override
 	public MessageTemplate clone()
 	{
-		ObjectNode json = toJson();
-		return new MessageTemplate(json);
+		return new MessageTemplate(getName(), getDescription(), message == null ? null : message.clone(), 
+				consumer, type, notificationChannel);
 	}
 
 	@Override
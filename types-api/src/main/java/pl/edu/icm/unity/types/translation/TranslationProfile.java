@@ -212,9 +212,17 @@ public class TranslationProfile extends DescribedObjectImpl
 		return super.equals(obj);
 	}
 	
+	@Override
 	public TranslationProfile clone()
 	{
-		ObjectNode p = toJsonObject();
-		return new TranslationProfile(p);	
+		List<TranslationRule> rulesCopy = new ArrayList<>(rules.size());
+		for (TranslationRule rule: rules)
+		{
+			TranslationAction action = rule.getAction();
+			String[] parameters = action.getParameters() == null ? null : action.getParameters().clone();
+			rulesCopy.add(new TranslationRule(rule.getCondition(), 
+					new TranslationAction(action.getName(), parameters)));
+		}
+		return new TranslationProfile(getName(), getDescription(), profileType, profileMode, rulesCopy);
 	}
 }
@@ -36,6 +36,7 @@ import pl.edu.icm.unity.engine.api.authn.AbstractCredentialRetrievalFactory;
 import pl.edu.icm.unity.engine.api.authn.AuthenticationException;
 import pl.edu.icm.unity.engine.api.authn.AuthenticationResult;
 import pl.edu.icm.unity.engine.api.authn.AuthenticationResult.Status;
+import pl.edu.icm.unity.engine.api.authn.ServerBusyAuthenticationException;
 import pl.edu.icm.unity.engine.api.authn.remote.SandboxAuthnResultCallback;
 import pl.edu.icm.unity.engine.api.msg.UnityMessageSource;
 import pl.edu.icm.unity.engine.api.utils.PrototypeComponent;
@@ -207,7 +208,19 @@ public class PasswordRetrieval extends AbstractCredentialRetrieval<PasswordExcha
 			} else 
 			{
 				callback.onStartedAuthentication(AuthenticationStyle.IMMEDIATE);
-				AuthenticationResult authenticationResult = getAuthenticationResult(username, password);
+				AuthenticationResult authenticationResult;
+				try
+				{
+					authenticationResult = getAuthenticationResult(username, password);
+				} catch (ServerBusyAuthenticationException e)
+				{
+					log.info("Password of " + username + " can not be checked now: " + e.getMessage());
+					passwordField.setValue("");
+					callback.onCancelledAuthentication();
+					NotificationPopup.showError(msg.getMessage("AuthenticationUI.authnErrorTitle"), 
+							msg.getMessage("WebPasswordRetrieval.serverBusy"));
+					return;
+				}
 				if (authenticationResult.getStatus() == Status.deny)
 				{
 					callback.onFailedAuthentication(authenticationResult, 
@@ -221,7 +234,12 @@ public class PasswordRetrieval extends AbstractCredentialRetrieval<PasswordExcha
 			}
 		}
 		
-		private AuthenticationResult getAuthenticationResult(String username, String password)
+		/**
+		 * @throws ServerBusyAuthenticationException if the password can not be checked now. This is not
+		 * an authentication failure.
+		 */
+		private AuthenticationResult getAuthenticationResult(String username, String password) 
+				throws ServerBusyAuthenticationException
 		{
 			if (username.equals("") && password.equals(""))
 			{
@@ -234,6 +252,9 @@ public class PasswordRetrieval extends AbstractCredentialRetrieval<PasswordExcha
 			{
 				authenticationResult = credentialExchange.checkPassword(
 						username, password, sandboxCallback);
+			} catch (ServerBusyAuthenticationException e)
+			{
+				throw e;
 			} catch (AuthenticationException e)
 			{
 				log.debug("Authentication error during password checking", e);
@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.webui.common.logo;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.Logger;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.vaadin.server.ExternalResource;
+import com.vaadin.server.Resource;
+
+import eu.unicore.util.httpclient.DefaultClientConfiguration;
+import eu.unicore.util.httpclient.HttpUtils;
+import pl.edu.icm.unity.base.utils.Log;
+import pl.edu.icm.unity.engine.api.PKIManagement;
+import pl.edu.icm.unity.engine.api.config.UnityServerConfiguration;
+import pl.edu.icm.unity.engine.api.endpoint.SharedEndpointManagement;
+import pl.edu.icm.unity.exceptions.EngineException;
+import pl.edu.icm.unity.stdext.utils.UnityImage;
+import pl.edu.icm.unity.stdext.utils.UnityImage.ImageType;
+import pl.edu.icm.unity.webui.common.ImageUtils;
+
+/**
+ * Local cache of logos of remote authentication providers, which are given with http(s) or data URIs.
+ * Logos are downloaded or decoded in background, scaled down to {@link #MAX_WIDTH} x {@link #MAX_HEIGHT},
+ * converted to PNG and stored on disk under names derived from their contents. Cached logos are served
+ * by the {@link LogoCacheServlet}, so the authentication screen neither contacts third party servers nor
+ * embeds large data URIs in its pages.
+ * <p>
+ * Logo which is not cached yet is returned in its original form and its caching is triggered.
+ * Logos which can not be loaded are not retried for {@link #RETRY_INTERVAL}. Cached logos are loaded
+ * again when used after {@link #REVALIDATE_INTERVAL}, the previous version is served until then.
+ * <p>
+ * Logos are downloaded with the truststore of the metadata which advertised them, if given. Redirects
+ * are not followed and logos hosted on loopback, link local or site local addresses are not downloaded.
+ * <p>
+ * Caching is performed by a small, dedicated pool of threads with a bounded queue, so that a large
+ * federation can not occupy the threads shared by other server tasks. Logos larger than
+ * {@link #MAX_LOGO_SIZE} bytes or {@link #MAX_SOURCE_PIXELS} pixels are not cached.
+ * <p>
+ * The mapping of URIs (by their digest) to cached files is stored next to the files, so the cache
+ * survives restarts. The mapping is stored when all the pending logos are cached, not after each of them.
+ * Entries which were not used for {@link #MAX_UNUSED_AGE} are dropped and files not referenced from 
+ * the index are removed.
+ *
+ * @author K. Benedyczak
+ */
+@Component
+public class LogoCache
+{
+	private static final Logger log = Log.getLogger(Log.U_SERVER_WEB, LogoCache.class);
+	public static final String SERVLET_PATH = "/logos";
+	public static final int MAX_WIDTH = 300;
+	public static final int MAX_HEIGHT = 150;
+	public static final long RETRY_INTERVAL = 3600000;
+	public static final long REVALIDATE_INTERVAL = 24 * 3600000L;
+	public static final long MAX_UNUSED_AGE = 30 * 24 * 3600000L;
+	private static final int MAX_LOGO_SIZE = 2*1024*1024;
+	private static final int MAX_SOURCE_PIXELS = 4096*4096;
+	private static final String CACHE_DIR = "logoCache";
+	private static final String INDEX_FILE = "index.properties";
+	private static final int NETWORK_TIMEOUT = 20000;
+	private static final int THREADS = 2;
+	private static final int QUEUE_SIZE = 256;
+
+	private final Executor executor;
+	private final PKIManagement pkiManagement;
+	private final File directory;
+	private final File indexFile;
+	private final String servletPath;
+	private final Map<String, CachedLogo> cachedLogos = new ConcurrentHashMap<>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicBoolean indexModified = new AtomicBoolean();
+	private final AtomicBoolean logosReplaced = new AtomicBoolean();
+	private final Cache<String, Boolean> attempted = CacheBuilder.newBuilder()
+			.expireAfterWrite(RETRY_INTERVAL, TimeUnit.MILLISECONDS)
+			.build();
+
+	@Autowired
+	public LogoCache(UnityServerConfiguration config, SharedEndpointManagement sharedEndpointManagement,
+			@Qualifier("insecure") PKIManagement pkiManagement) throws EngineException
+	{
+		this(config, sharedEndpointManagement, pkiManagement, createExecutor());
+	}
+
+	LogoCache(UnityServerConfiguration config, SharedEndpointManagement sharedEndpointManagement,
+			PKIManagement pkiManagement, Executor executor) throws EngineException
+	{
+		this.executor = executor;
+		this.pkiManagement = pkiManagement;
+		this.directory = new File(config.getValue(UnityServerConfiguration.WORKSPACE_DIRECTORY), CACHE_DIR);
+		this.indexFile = new File(directory, INDEX_FILE);
+		this.servletPath = sharedEndpointManagement.getBaseContextPath() + SERVLET_PATH + "/";
+		if (!directory.exists())
+			directory.mkdirs();
+		loadIndex();
+		collectGarbage();
+		sharedEndpointManagement.deployInternalEndpointServlet(SERVLET_PATH,
+				new ServletHolder(new LogoCacheServlet(directory)), false);
+	}
+
+	private static ThreadPoolExecutor createExecutor()
+	{
+		AtomicInteger threadNumber = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(QUEUE_SIZE),
+				task ->
+				{
+					Thread thread = new Thread(task, "logo-cache-" + threadNumber.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * As {@link ImageUtils#getLogoResource(String)} but returns the locally cached logo if available.
+	 */
+	public Resource getLogoResource(String uri) throws MalformedURLException
+	{
+		CachedLogo cached = uri == null || !isCacheable(uri) ? null : cachedLogos.get(getDigest(uri));
+		prefetch(uri);
+		if (cached != null)
+			return new ExternalResource(servletPath + cached.name);
+		return ImageUtils.getLogoResource(uri);
+	}
+
+	/**
+	 * Triggers background caching of the logo, if it is not cached or it should be revalidated,
+	 * and it was not tried recently. Logos with other schemes than http(s) and data are ignored.
+	 */
+	public void prefetch(String uri)
+	{
+		prefetch(uri, null);
+	}
+
+	/**
+	 * As {@link #prefetch(String)}, https logos are downloaded using the given truststore.
+	 * @param customTruststore name of the truststore, if null the default JDK truststore is used
+	 */
+	public void prefetch(String uri, String customTruststore)
+	{
+		if (uri == null || !isCacheable(uri))
+			return;
+		String digest = getDigest(uri);
+		CachedLogo cached = cachedLogos.get(digest);
+		if (cached != null && cached.cachedAt + REVALIDATE_INTERVAL > System.currentTimeMillis())
+			return;
+		if (attempted.asMap().putIfAbsent(digest, Boolean.TRUE) != null)
+			return;
+		pending.incrementAndGet();
+		try
+		{
+			executor.execute(() -> cache(uri, customTruststore, digest));
+		} catch (RejectedExecutionException e)
+		{
+			attempted.invalidate(digest);
+			cachingFinished();
+			log.debug("Logo caching queue is full, {} will be cached later", shorten(uri));
+		}
+	}
+
+	private boolean isCacheable(String uri)
+	{
+		return uri.startsWith("http:") || uri.startsWith("https:") || uri.startsWith("data:");
+	}
+
+	private String getDigest(String uri)
+	{
+		return DigestUtils.sha256Hex(uri);
+	}
+
+	private void cache(String uri, String customTruststore, String digest)
+	{
+		try
+		{
+			byte[] original = uri.startsWith("data:") ? decodeDataUri(uri) : download(uri, customTruststore);
+			BufferedImage image = readImage(original);
+			if (image == null)
+			{
+				log.debug("Logo {} has unsupported format, it won't be cached", shorten(uri));
+				return;
+			}
+			byte[] normalized = new UnityImage(image, ImageType.PNG).getScaledDownImage(MAX_WIDTH, MAX_HEIGHT);
+			String name = DigestUtils.sha256Hex(normalized) + ".png";
+			store(name, normalized);
+			updateIndex(digest, new CachedLogo(name, System.currentTimeMillis()));
+			log.debug("Cached logo {} as {}, {} bytes reduced to {}", shorten(uri), name,
+					original.length, normalized.length);
+		} catch (Exception e)
+		{
+			log.warn("Can not cache logo " + shorten(uri) + ", will retry in " + RETRY_INTERVAL + "ms", e);
+		} finally
+		{
+			cachingFinished();
+		}
+	}
+
+	/**
+	 * Stores the index and removes replaced files when the last of the pending logos was cached.
+	 */
+	private void cachingFinished()
+	{
+		if (pending.decrementAndGet() > 0)
+			return;
+		if (indexModified.getAndSet(false))
+			storeIndex();
+		if (logosReplaced.getAndSet(false))
+			collectGarbage();
+	}
+
+	/**
+	 * @return decoded image or null if format is not supported
+	 * @throws IOException if the image is too large or can not be decoded
+	 */
+	private BufferedImage readImage(byte[] contents) throws IOException
+	{
+		try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(contents)))
+		{
+			Iterator<ImageReader> readers = iis == null ? null : ImageIO.getImageReaders(iis);
+			if (readers == null || !readers.hasNext())
+				return null;
+			ImageReader reader = readers.next();
+			try
+			{
+				reader.setInput(iis, true, true);
+				long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+				if (pixels > MAX_SOURCE_PIXELS)
+					throw new IOException("Logo has " + pixels + " pixels, more than allowed "
+							+ MAX_SOURCE_PIXELS);
+				return reader.read(0);
+			} finally
+			{
+				reader.dispose();
+			}
+		}
+	}
+
+	private byte[] decodeDataUri(String uri) throws IOException
+	{
+		int comma = uri.indexOf(',');
+		if (comma == -1 || !uri.substring(0, comma).endsWith(";base64"))
+			throw new IOException("Only base64 encoded data URIs are supported");
+		if (uri.length() - comma - 1 > 2L * MAX_LOGO_SIZE)
+			throw new IOException("Logo is larger than " + MAX_LOGO_SIZE + " bytes");
+		byte[] ret = Base64.getMimeDecoder().decode(uri.substring(comma + 1).getBytes(StandardCharsets.US_ASCII));
+		if (ret.length > MAX_LOGO_SIZE)
+			throw new IOException("Logo is larger than " + MAX_LOGO_SIZE + " bytes");
+		return ret;
+	}
+
+	private byte[] download(String uri, String customTruststore) throws IOException, EngineException
+	{
+		checkPublicAddress(getHost(uri));
+		HttpClient client = uri.startsWith("https:") && customTruststore != null ? 
+				getSSLClient(uri, customTruststore) : HttpClientBuilder.create().build();
+		HttpGet request = new HttpGet(uri);
+		request.setConfig(RequestConfig.custom()
+				.setRedirectsEnabled(false)
+				.setConnectTimeout(NETWORK_TIMEOUT)
+				.setConnectionRequestTimeout(NETWORK_TIMEOUT)
+				.setSocketTimeout(NETWORK_TIMEOUT)
+				.build());
+		HttpResponse response = client.execute(request);
+		int status = response.getStatusLine().getStatusCode();
+		if (status != HttpStatus.SC_OK)
+		{
+			EntityUtils.consumeQuietly(response.getEntity());
+			throw new IOException("Logo download error: " + response.getStatusLine().toString());
+		}
+		try (InputStream is = new BoundedInputStream(response.getEntity().getContent(), MAX_LOGO_SIZE + 1))
+		{
+			byte[] ret = IOUtils.toByteArray(is);
+			if (ret.length > MAX_LOGO_SIZE)
+				throw new IOException("Logo is larger than " + MAX_LOGO_SIZE + " bytes");
+			return ret;
+		}
+	}
+
+	private HttpClient getSSLClient(String uri, String customTruststore) throws EngineException
+	{
+		DefaultClientConfiguration config = new DefaultClientConfiguration();
+		config.setSslEnabled(true);
+		config.setValidator(pkiManagement.getValidator(customTruststore));
+		return HttpUtils.createClient(uri, config);
+	}
+
+	private static String getHost(String uri) throws IOException
+	{
+		try
+		{
+			String host = new URI(uri).getHost();
+			if (host == null)
+				throw new IOException("Logo URI has no host");
+			return host;
+		} catch (URISyntaxException e)
+		{
+			throw new IOException("Logo URI is invalid", e);
+		}
+	}
+
+	/**
+	 * @throws IOException if the host can not be resolved or any of its addresses is not public
+	 */
+	static void checkPublicAddress(String host) throws IOException
+	{
+		for (InetAddress address: InetAddress.getAllByName(host))
+		{
+			if (address.isLoopbackAddress() || address.isSiteLocalAddress() || address.isLinkLocalAddress()
+					|| address.isAnyLocalAddress() || address.isMulticastAddress())
+				throw new IOException("Logos are not downloaded from local address " + address);
+		}
+	}
+
+	private void store(String name, byte[] contents) throws IOException
+	{
+		File target = new File(directory, name);
+		if (target.exists())
+			return;
+		File part = File.createTempFile(name, ".part", directory);
+		try
+		{
+			Files.write(part.toPath(), contents);
+			Files.move(part.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally
+		{
+			part.delete();
+		}
+	}
+
+	private void updateIndex(String digest, CachedLogo logo)
+	{
+		CachedLogo previous = cachedLogos.put(digest, logo);
+		indexModified.set(true);
+		if (previous != null && !previous.name.equals(logo.name))
+			logosReplaced.set(true);
+	}
+
+	private synchronized void loadIndex()
+	{
+		if (!indexFile.isFile())
+			return;
+		Properties index = new Properties();
+		try (InputStream is = new FileInputStream(indexFile))
+		{
+			index.load(is);
+		} catch (IOException e)
+		{
+			log.warn("Can not load index of cached logos from " + indexFile + ", logos will be cached again", e);
+			return;
+		}
+		for (String digest: index.stringPropertyNames())
+		{
+			CachedLogo logo = CachedLogo.parse(index.getProperty(digest));
+			if (logo != null && new File(directory, logo.name).isFile())
+				cachedLogos.put(digest, logo);
+		}
+		log.debug("Loaded {} cached logos", cachedLogos.size());
+	}
+
+	private synchronized void storeIndex()
+	{
+		Properties index = new Properties();
+		cachedLogos.forEach((digest, logo) -> index.setProperty(digest, logo.toString()));
+		try
+		{
+			File part = File.createTempFile(INDEX_FILE, ".part", directory);
+			try
+			{
+				try (OutputStream os = new FileOutputStream(part))
+				{
+					index.store(os, "Cached logos: digest of URI = file cachedAt");
+				}
+				Files.move(part.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally
+			{
+				part.delete();
+			}
+		} catch (IOException e)
+		{
+			log.warn("Can not store index of cached logos in " + indexFile, e);
+		}
+	}
+
+	/**
+	 * Drops index entries not used for a long time and removes files not referenced from the index.
+	 * Recently modified files are left, as those can be just being cached.
+	 */
+	private synchronized void collectGarbage()
+	{
+		long now = System.currentTimeMillis();
+		long minCachedAt = now - MAX_UNUSED_AGE;
+		if (cachedLogos.values().removeIf(logo -> logo.cachedAt < minCachedAt))
+			storeIndex();
+		Set<String> referenced = new HashSet<>();
+		cachedLogos.values().forEach(logo -> referenced.add(logo.name));
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File file: files)
+		{
+			String name = file.getName();
+			if (name.equals(INDEX_FILE) || referenced.contains(name) 
+					|| file.lastModified() > now - RETRY_INTERVAL)
+				continue;
+			if (file.delete())
+				log.debug("Removed not used cached logo {}", name);
+		}
+	}
+
+	private static String shorten(String uri)
+	{
+		return uri.length() > 100 ? uri.substring(0, 100) + "..." : uri;
+	}
+
+	private static class CachedLogo
+	{
+		private final String name;
+		private final long cachedAt;
+
+		CachedLogo(String name, long cachedAt)
+		{
+			this.name = name;
+			this.cachedAt = cachedAt;
+		}
+
+		static CachedLogo parse(String value)
+		{
+			String[] parts = value.split(" ");
+			if (parts.length != 2)
+				return null;
+			try
+			{
+				return new CachedLogo(parts[0], Long.parseLong(parts[1]));
+			} catch (NumberFormatException e)
+			{
+				return null;
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			return name + " " + cachedAt;
+		}
+	}
+}
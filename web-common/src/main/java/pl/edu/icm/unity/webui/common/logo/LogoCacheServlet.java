@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.webui.common.logo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves logos cached by {@link LogoCache}. As file names are derived from the contents, served files
+ * never change: they are returned with strong ETags and can be cached by browsers without revalidation.
+ *
+ * @author K. Benedyczak
+ */
+class LogoCacheServlet extends HttpServlet
+{
+	private static final Pattern LOGO_NAME = Pattern.compile("/[0-9a-f]{64}\\.png");
+	private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+	private final File directory;
+
+	LogoCacheServlet(File directory)
+	{
+		this.directory = directory;
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException
+	{
+		String path = req.getPathInfo();
+		File logo = path != null && LOGO_NAME.matcher(path).matches() ? new File(directory, path.substring(1)) : null;
+		if (logo == null || !logo.isFile())
+		{
+			resp.sendError(HttpServletResponse.SC_NOT_FOUND, "No logo at this location");
+			return;
+		}
+		String eTag = "\"" + path.substring(1, path.length() - 4) + "\"";
+		resp.setHeader("ETag", eTag);
+		resp.setHeader("Cache-Control", CACHE_CONTROL);
+		if (eTag.equals(req.getHeader("If-None-Match")))
+		{
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		resp.setContentType("image/png");
+		resp.setContentLengthLong(logo.length());
+		Files.copy(logo.toPath(), resp.getOutputStream());
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2019 Bixbit - Krzysztof Benedyczak. All rights reserved.
+ * See LICENCE.txt file for licensing information.
+ */
+package pl.edu.icm.unity.webui.common.logo;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vaadin.server.ExternalResource;
+
+import pl.edu.icm.unity.engine.api.PKIManagement;
+import pl.edu.icm.unity.engine.api.config.UnityServerConfiguration;
+import pl.edu.icm.unity.engine.api.endpoint.SharedEndpointManagement;
+
+public class LogoCacheTest
+{
+	private static final String WORKSPACE = "target/logoCacheTest";
+	private ExecutorService pool;
+	private LogoCache cache;
+
+	@Before
+	public void init() throws Exception
+	{
+		FileUtils.deleteDirectory(new File(WORKSPACE));
+		cache = createCache();
+	}
+
+	private LogoCache createCache() throws Exception
+	{
+		UnityServerConfiguration config = mock(UnityServerConfiguration.class);
+		when(config.getValue(UnityServerConfiguration.WORKSPACE_DIRECTORY)).thenReturn(WORKSPACE);
+		SharedEndpointManagement sharedEndpointManagement = mock(SharedEndpointManagement.class);
+		when(sharedEndpointManagement.getBaseContextPath()).thenReturn("/unitygw");
+		pool = Executors.newSingleThreadExecutor();
+		return new LogoCache(config, sharedEndpointManagement, mock(PKIManagement.class), pool);
+	}
+
+	private void awaitCaching() throws Exception
+	{
+		pool.shutdown();
+		pool.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void shouldServeScaledDownDataLogoFromCache() throws Exception
+	{
+		String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(createPng(600, 200));
+
+		ExternalResource first = (ExternalResource) cache.getLogoResource(dataUri);
+		awaitCaching();
+		ExternalResource second = (ExternalResource) cache.getLogoResource(dataUri);
+
+		assertThat(first.getURL(), is(dataUri));
+		assertThat(second.getURL().matches("/unitygw/logos/[0-9a-f]{64}\\.png"), is(true));
+		File cached = new File(WORKSPACE + "/logoCache", second.getURL().substring("/unitygw/logos/".length()));
+		BufferedImage cachedImage = ImageIO.read(cached);
+		assertThat(cachedImage.getWidth(), is(LogoCache.MAX_WIDTH));
+		assertThat(cachedImage.getHeight(), is(100));
+	}
+
+	@Test
+	public void shouldNotCacheThemeLogo() throws Exception
+	{
+		cache.getLogoResource("file:../common/img/other/logo.png");
+		awaitCaching();
+
+		assertThat(new File(WORKSPACE + "/logoCache").list().length, is(0));
+	}
+
+	@Test
+	public void shouldServeCachedLogoAfterRestart() throws Exception
+	{
+		String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(createPng(600, 200));
+		cache.prefetch(dataUri);
+		awaitCaching();
+		String cachedURL = ((ExternalResource) cache.getLogoResource(dataUri)).getURL();
+
+		LogoCache restarted = createCache();
+		ExternalResource afterRestart = (ExternalResource) restarted.getLogoResource(dataUri);
+
+		assertThat(afterRestart.getURL(), is(cachedURL));
+	}
+
+	@Test
+	public void shouldRemoveNotReferencedFiles() throws Exception
+	{
+		File orphan = new File(WORKSPACE + "/logoCache", DigestUtils.sha256Hex("orphan") + ".png");
+		FileUtils.writeByteArrayToFile(orphan, createPng(10, 10));
+		orphan.setLastModified(System.currentTimeMillis() - LogoCache.RETRY_INTERVAL - 1000);
+
+		createCache();
+
+		assertThat(orphan.exists(), is(false));
+	}
+
+	@Test
+	public void shouldNotCacheLogoWithTooManyPixels() throws Exception
+	{
+		BufferedImage image = new BufferedImage(5000, 5000, BufferedImage.TYPE_BYTE_BINARY);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", bos);
+		String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(bos.toByteArray());
+
+		cache.prefetch(dataUri);
+		awaitCaching();
+
+		assertThat(((ExternalResource) cache.getLogoResource(dataUri)).getURL(), is(dataUri));
+	}
+
+	@Test
+	public void shouldNotCacheTooLargeDataLogo() throws Exception
+	{
+		byte[] png = createPng(10, 10);
+		byte[] padded = new byte[3*1024*1024];
+		System.arraycopy(png, 0, padded, 0, png.length);
+		String dataUri = "data:image/png;base64," + Base64.getEncoder().encodeToString(padded);
+
+		cache.prefetch(dataUri);
+		awaitCaching();
+
+		assertThat(((ExternalResource) cache.getLogoResource(dataUri)).getURL(), is(dataUri));
+	}
+
+	@Test
+	public void shouldRefuseDownloadFromLocalAddresses() throws Exception
+	{
+		for (String host: new String[] {"localhost", "127.0.0.1", "10.1.2.3", "192.168.1.1", "169.254.169.254",
+				"[::1]", "0.0.0.0"})
+		{
+			try
+			{
+				LogoCache.checkPublicAddress(host);
+				fail("Download from " + host + " was allowed");
+			} catch (IOException e)
+			{
+				//OK
+			}
+		}
+		LogoCache.checkPublicAddress("8.8.8.8");
+	}
+
+	private byte[] createPng(int width, int height) throws Exception
+	{
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", bos);
+		return bos.toByteArray();
+	}
+}